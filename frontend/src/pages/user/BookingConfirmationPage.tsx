@@ -108,18 +108,22 @@ const BookingConfirmationPage: React.FC = () => {
   }, [bookingId, bookingData]);
 
   useEffect(() => {
-    let pollInterval: NodeJS.Timeout | null = null;
+    let cancelled = false;
 
-    const checkPaymentStatus = async () => {
+    const waitForPaymentStatus = async () => {
       if (!bookingId || !paymentStatus) return;
+      if (paymentStatus !== "success" && paymentStatus !== "error") return;
 
-      if (paymentStatus === "success" || paymentStatus === "error") {
-        console.log("Checking payment status for booking:", bookingId);
-        
+      console.log("Waiting for payment status for booking:", bookingId);
+
+      // Long-poll up to 3 times (~75 seconds); the server answers as soon as
+      // the webhook or expiry changes the payment status.
+      for (let attempt = 0; attempt < 3 && !cancelled; attempt++) {
         try {
-          const paymentInfo = await paymentService.getPaymentStatusByBooking(
+          const paymentInfo = await paymentService.waitForPaymentStatus(
             parseInt(bookingId, 10),
           );
+          if (cancelled) return;
           console.log("Payment info:", paymentInfo);
 
           const paymentState = String(
@@ -131,49 +135,25 @@ const BookingConfirmationPage: React.FC = () => {
               parseInt(bookingId, 10),
             );
             console.log("Updated booking:", currentBooking);
-            setBooking(currentBooking);
-            
-            // Stop polling if we got a response
-            if (pollInterval) {
-              clearInterval(pollInterval);
-              pollInterval = null;
-            }
-          } else if (["FAILED", "CANCELLED", "EXPIRED"].includes(paymentState)) {
+            if (!cancelled) setBooking(currentBooking);
+            return;
+          } else if (["FAILED", "CANCELLED", "EXPIRED", "REFUND_PENDING"].includes(paymentState)) {
             setError("Payment was not completed. Please try again.");
-            if (pollInterval) {
-              clearInterval(pollInterval);
-              pollInterval = null;
-            }
+            return;
           }
         } catch (err: any) {
           console.error("Error checking payment status:", err);
           console.error("Status:", err.response?.status);
           console.error("Data:", err.response?.data);
+          return;
         }
       }
     };
 
-    // Check immediately
-    checkPaymentStatus();
-
-    // Poll every 3 seconds for up to 30 seconds (10 times)
-    let pollCount = 0;
-    pollInterval = setInterval(() => {
-      if (pollCount >= 10) {
-        if (pollInterval) {
-          clearInterval(pollInterval);
-          pollInterval = null;
-        }
-        return;
-      }
-      checkPaymentStatus();
-      pollCount++;
-    }, 3000);
+    waitForPaymentStatus();
 
     return () => {
-      if (pollInterval) {
-        clearInterval(pollInterval);
-      }
+      cancelled = true;
     };
   }, [bookingId, paymentStatus]);
 
@@ -31,6 +31,16 @@ export const paymentService = {
     return response.data;
   },
 
+  // Long-poll: resolves as soon as the payment leaves PENDING, or with the
+  // current (PENDING) status after timeoutSeconds.
+  async waitForPaymentStatus(bookingId: number, timeoutSeconds = 25) {
+    const response = await api.get(`/payments/sepay/status/wait`, {
+      params: { bookingId, timeoutSeconds },
+      timeout: (timeoutSeconds + 10) * 1000,
+    });
+    return response.data;
+  },
+
   async getPaymentById(paymentId: number) {
     const response = await api.get(`/payments/sepay/${paymentId}`);
     return response.data;
@@ -36,9 +36,24 @@ public class AiProperties {
     private boolean seedMovieEmbeddingsOnStartup = false;
 
     /**
-     * Sleep between embedding calls in batch seed/update flow to reduce API throttling.
+     * Movie texts per EmbeddingModel.embed(List) call in the embedding backfill.
      */
-    private int batchEmbeddingDelayMs = 250;
+    private int backfillBatchSize = 100;
+
+    /**
+     * Embedding batches in flight at once during the backfill.
+     */
+    private int backfillConcurrency = 4;
+
+    /**
+     * Embedding API request budget for the backfill (provider RPM limit).
+     */
+    private int backfillRequestsPerMinute = 500;
+
+    /**
+     * Embedding API token budget for the backfill (provider TPM limit); tokens estimated as chars / 4.
+     */
+    private int backfillTokensPerMinute = 1_000_000;
 
     /**
      * Similarity floor used by movie-to-movie retrieval before fallback.
@@ -71,8 +86,151 @@ public class AiProperties {
     private double semanticFallbackThreshold = 0.50;
 
     /**
-     * Multiplier to widen candidate pool before post-filtering (favorites/excludes).
+     * Multiplier to widen candidate pool before post-filtering (favorites/excludes). With
+     * showtime-aware ranking it is the upper bound; the pool shrinks as more of the catalog is bookable.
      */
     private int recommendationCandidateMultiplier = 3;
-}
 
+    /**
+     * Serve vector top-K from the in-process MovieVectorIndex instead of pgvector.
+     */
+    private boolean vectorIndexEnabled = true;
+
+    /**
+     * In-process index row format: none (float32), int8 or binary; quantized rows are re-ranked exactly.
+     */
+    private String vectorIndexQuantization = "none";
+
+    /**
+     * Quantized first pass keeps k × this many candidates for exact re-ranking (binary wants ~10).
+     */
+    private int vectorIndexRerankMultiplier = 4;
+
+    /**
+     * Neighbours stored per movie in the precomputed similar-movies table.
+     */
+    private int similarMoviesTopK = 20;
+
+    /**
+     * Minimum cosine similarity for a neighbour to be stored at all.
+     */
+    private double similarMoviesMinScore = 0.3;
+
+    /**
+     * MMR trade-off for diversified similar-movie lists: 1.0 = pure relevance, lower values
+     * penalise candidates that are close to movies already picked.
+     */
+    private double mmrLambda = 0.7;
+
+    /**
+     * Candidates re-ranked by MMR per requested result (limit × this).
+     */
+    private int mmrCandidateMultiplier = 4;
+
+    /**
+     * Full reload interval of the in-process vector index (picks up writes from other nodes).
+     */
+    private long vectorIndexRefreshMs = 600_000;
+
+    /**
+     * Embedding API list price (USD per 1M tokens) for the spend counter; text-embedding-3-small.
+     */
+    private double embeddingPricePerMillionTokens = 0.02;
+
+    /**
+     * In-process (L1) query embedding cache size, in front of the Redis (L2) region.
+     */
+    private int queryEmbeddingL1MaxEntries = 2_000;
+
+    /**
+     * Time an entry stays in the L1 query embedding cache.
+     */
+    private long queryEmbeddingL1TtlMs = 3_600_000;
+
+    /**
+     * Serve semantic search from the local hashed n-gram index when the remote embedding API fails.
+     */
+    private boolean localEmbeddingFallbackEnabled = true;
+
+    /**
+     * Dimensions of the local embedding model; matches vector_store so offline mode can persist it.
+     */
+    private int localEmbeddingDimensions = 1536;
+
+    /**
+     * After a remote embedding failure, skip the remote call for this long and answer locally.
+     */
+    private long localFallbackCooldownMs = 30_000;
+
+    /**
+     * Attempts for a search query embedding; kept at 1 so a failing request falls back at once.
+     */
+    private int queryEmbeddingMaxAttempts = 1;
+
+    /**
+     * Send concurrent search query embeddings as one batched API call (EmbeddingBatcher).
+     */
+    private boolean queryEmbeddingBatchEnabled = true;
+
+    /**
+     * Longest a query embedding waits for others to join its batch.
+     */
+    private long queryEmbeddingBatchWindowMs = 10;
+
+    /**
+     * Most texts in one batched query embedding call.
+     */
+    private int queryEmbeddingBatchMaxSize = 64;
+
+    /**
+     * Batched query embedding calls in flight at once.
+     */
+    private int queryEmbeddingBatchConcurrency = 4;
+
+    /**
+     * Longest a caller waits for its batched query embedding before giving up.
+     */
+    private long queryEmbeddingBatchTimeoutMs = 30_000;
+
+    /**
+     * User preference vectors: "local" = weighted mix of favorited/booked movie embeddings and genre
+     * centroids (no API call); "remote" = embed a preference sentence with the embedding model.
+     */
+    private String userVectorMode = "local";
+
+    /**
+     * Local user vector weight of each favorited movie.
+     */
+    private double userVectorFavoriteWeight = 1.0;
+
+    /**
+     * Local user vector weight of each booked (confirmed) movie.
+     */
+    private double userVectorBookingWeight = 0.7;
+
+    /**
+     * Local user vector weight of a genre centroid at preference score 5 (score 3 → one third).
+     */
+    private double userVectorGenreWeight = 0.5;
+
+    /**
+     * Most recent booked movies mixed into a local user vector.
+     */
+    private int userVectorMaxBookings = 50;
+
+    /**
+     * Cross-node single-flight claim (Redis SET NX) lifetime; bounds how long other nodes wait on a
+     * leader that died mid-call.
+     */
+    private long singleFlightClaimMs = 15_000;
+
+    /**
+     * Longest a follower on another node waits for the leader's result before calling itself.
+     */
+    private long singleFlightWaitMs = 10_000;
+
+    /**
+     * How often a follower on another node checks the cache for the leader's result.
+     */
+    private long singleFlightPollMs = 50;
+}
@@ -42,7 +42,7 @@ import java.util.Map;
 public class CacheConfig implements CachingConfigurer {
 
     // =====================================================================
-    // Chỉ cache những gì GỌI OPENAI - 3 cache regions duy nhất
+    // Cache những gì GỌI OPENAI + kết quả gợi ý theo user (invalidate theo generation)
     // =====================================================================
 
     /**
@@ -85,18 +85,38 @@ public class CacheConfig implements CachingConfigurer {
      */
     public static final String USER_PREFERENCE_EMBEDDING_CACHE = "userPreferenceEmbedding";
 
+    /**
+     * CACHE 5: Query Embedding (L2, sau L1 in-process trong QueryEmbeddingCache)
+     * Tốn kém: gọi OpenAI API cho mỗi câu search mới
+     * Key: "q1:" + sha256(canonicalize(query))
+     *   → "Action Movies", "action movies " và "action movie" dùng chung 1 entry
+     * TTL: 30 ngày - embedding của cùng câu query không đổi
+     */
+    public static final String QUERY_EMBEDDINGS_CACHE = "queryEmbeddings";
+
+    /**
+     * CACHE 6: Kết quả gợi ý theo user (RecommendationResultCache)
+     * Không gọi OpenAI, nhưng mỗi request tính lại nhiều query + ranking
+     * Key: kind + userId + limit + userGeneration + globalGeneration
+     *   → generation tăng khi user đổi sở thích/favorite (user) hoặc phim/lịch chiếu đổi (global)
+     *   → key cũ tự miss ngay, không cần scan/xoá
+     * Chỉ lưu movie ids (load phim theo id khi hit)
+     * TTL: 30 phút - chỉ để dọn key cũ, tính đúng đắn dựa vào generation
+     */
+    public static final String RECOMMENDATION_RESULTS_CACHE = "recommendationResults";
+
     // ── Giữ lại các constant cho backward compat với CacheManagementService ──
     // Các cache dưới đây KHÔNG còn được @Cacheable sử dụng,
     // nhưng giữ constant để CacheManagementService dùng trong eviction.
     public static final String SIMILAR_MOVIES_CACHE         = "similarMovies";
-    public static final String RECOMMENDATION_RESULTS_CACHE = "recommendationResults";
     public static final String EMBEDDING_STATS_CACHE        = "embeddingStats";
     public static final String GENRE_RECOMMENDATIONS_CACHE  = "genreRecommendations";
     public static final String SHOWTIME_AWARE_RECS_CACHE    = "showtimeAwareRecs";
 
-    @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
-
+    /**
+     * JSON value serializer cho các cache kết quả (có type info để đọc lại đúng class)
+     */
+    public static GenericJackson2JsonRedisSerializer jsonValueSerializer() {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.activateDefaultTyping(
@@ -104,19 +124,28 @@ public class CacheConfig implements CachingConfigurer {
             ObjectMapper.DefaultTyping.NON_FINAL,
             JsonTypeInfo.As.PROPERTY
         );
+        return new GenericJackson2JsonRedisSerializer(objectMapper);
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
 
         RedisCacheConfiguration base = RedisCacheConfiguration.defaultCacheConfig()
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(
                     new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
-                    new GenericJackson2JsonRedisSerializer(objectMapper)))
+                    jsonValueSerializer()))
                 .disableCachingNullValues();
 
+        // Cache chỉ chứa vector → lưu float32 nhị phân thay vì JSON List<Double>
+        RedisCacheConfiguration embedding = base.serializeValuesWith(
+                RedisSerializationContext.SerializationPair.fromSerializer(new EmbeddingRedisSerializer()));
+
         Map<String, RedisCacheConfiguration> configs = new HashMap<>();
 
         // CACHE 1 – Movie Embedding: 30 ngày safety-net
         // Evict chủ động khi title/genre/director thay đổi
-        configs.put(MOVIE_EMBEDDINGS_CACHE, base.entryTtl(Duration.ofDays(30)));
+        configs.put(MOVIE_EMBEDDINGS_CACHE, embedding.entryTtl(Duration.ofDays(30)));
 
         // CACHE 2 – AI Recommendations: 12h
         // Evict khi admin update showtime, phù hợp chu kỳ cập nhật lịch chiếu
@@ -128,9 +157,15 @@ public class CacheConfig implements CachingConfigurer {
 
         // CACHE 4 – User Preference Embedding: 7 ngày
         // Key encode prefVersion+favVersion → tự miss khi preferences đổi
-        configs.put(USER_PREFERENCE_EMBEDDING_CACHE, base.entryTtl(Duration.ofDays(7)));
+        configs.put(USER_PREFERENCE_EMBEDDING_CACHE, embedding.entryTtl(Duration.ofDays(7)));
+
+        // CACHE 5 – Query Embedding (L2): 30 ngày, binary codec như embedding phim
+        configs.put(QUERY_EMBEDDINGS_CACHE, embedding.entryTtl(Duration.ofDays(30)));
+
+        // CACHE 6 – Recommendation results: 30 phút, invalidation qua generation trong key
+        configs.put(RECOMMENDATION_RESULTS_CACHE, base.entryTtl(Duration.ofMinutes(30)));
 
-        log.info("[Cache] {} active cache regions (OpenAI-cost caches only): {}",
+        log.info("[Cache] {} active cache regions: {}",
                  configs.size(), configs.keySet());
 
         return RedisCacheManager.builder(redisConnectionFactory)
@@ -0,0 +1,29 @@
+package com.example.cinema.config;
+
+import com.example.cinema.service.Embedding;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Binary Redis codec for embedding cache regions - raw little-endian float32 instead of typed JSON.
+ *
+ * Entries written by the old JSON serializer are not in this format; they read back as a
+ * cache miss and are overwritten on the next put.
+ */
+public class EmbeddingRedisSerializer implements RedisSerializer<Embedding> {
+
+    @Override
+    public byte[] serialize(Embedding embedding) throws SerializationException {
+        return embedding == null ? null : embedding.toBytes();
+    }
+
+    @Override
+    public Embedding deserialize(byte[] bytes) throws SerializationException {
+        return bytes == null ? null : Embedding.fromBytes(bytes);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return Embedding.class;
+    }
+}
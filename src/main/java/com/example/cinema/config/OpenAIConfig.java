@@ -1,5 +1,9 @@
 package com.example.cinema.config;
 
+import com.example.cinema.service.LocalHashingEmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.retry.annotation.EnableRetry;
 
@@ -7,9 +11,20 @@ import org.springframework.retry.annotation.EnableRetry;
  * AI Configuration
  * Spring AI auto-configures OpenAiEmbeddingModel and PgVectorStore beans
  * via spring-ai-starter-openai and spring-ai-starter-vector-store-pgvector.
- * This class only enables Spring Retry for resilient OpenAI API calls.
+ * This class enables Spring Retry for resilient OpenAI API calls.
+ *
+ * Offline mode: spring.ai.model.embedding=local switches the OpenAI embedding
+ * auto-configuration off and registers the local hashed n-gram model instead
+ * (tests, air-gapped environments). Vectors from the two models are not comparable,
+ * so re-run the embedding backfill with restart=true after switching.
  */
 @Configuration
 @EnableRetry
 public class OpenAIConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "spring.ai.model.embedding", havingValue = "local")
+    public EmbeddingModel localEmbeddingModel(AiProperties aiProperties) {
+        return new LocalHashingEmbeddingModel(aiProperties.getLocalEmbeddingDimensions());
+    }
 }
@@ -26,6 +26,12 @@ public class SePayConfig {
     private String checkoutUrl = "https://my.sepay.vn/payment/checkout";
     private String callbackUrl;
 
+    /**
+     * Email the booking confirmation when a payment confirms it (webhook, settlement
+     * reconciliation). Off by default and never sent while sepay.simulator.enabled is set.
+     */
+    private boolean confirmationEmailEnabled = false;
+
     public void validate() {
         if (enabled) {
             if (merchantId == null || merchantId.isEmpty()) {
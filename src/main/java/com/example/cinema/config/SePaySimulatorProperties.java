@@ -0,0 +1,70 @@
+package com.example.cinema.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local SePay gateway simulator settings.
+ * Loads from application.yaml: sepay.simulator.*
+ *
+ * The simulator is a stand-in for the real gateway during load tests: it accepts the
+ * checkout form fields, validates the signature and fires signed webhooks back at
+ * sepay.callback-url. Scenario rates are probabilities in [0, 1]; whatever is left
+ * over after failure/cancel/late/duplicate is a plain successful payment.
+ */
+@Component
+@ConfigurationProperties(prefix = "sepay.simulator")
+@Data
+public class SePaySimulatorProperties {
+
+    /**
+     * Registers the simulator endpoints and webhook dispatcher. Never enable in production.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Delay between checkout submission and the first webhook (simulates the user paying).
+     */
+    private long webhookDelayMs = 200;
+
+    /**
+     * Upper bound on webhooks sent per second across all checkouts. 0 = unlimited.
+     */
+    private int maxWebhooksPerSecond = 50;
+
+    /**
+     * Threads used to deliver webhooks over HTTP.
+     */
+    private int senderThreads = 8;
+
+    private double failureRate = 0.0;
+
+    private double cancelRate = 0.0;
+
+    /**
+     * Share of checkouts whose success webhook arrives after the payment deadline.
+     */
+    private double latePaymentRate = 0.0;
+
+    /**
+     * Share of checkouts whose success webhook is delivered more than once.
+     */
+    private double duplicateDeliveryRate = 0.0;
+
+    /**
+     * How long a late payment waits before its webhook is sent. Should exceed
+     * sepay.payment-timeout-minutes + sepay.payment-expiration-grace-seconds.
+     */
+    private long lateDelaySeconds = 16 * 60;
+
+    /**
+     * Number of extra deliveries for the duplicate-delivery scenario.
+     */
+    private int duplicateCopies = 2;
+
+    /**
+     * Spacing between duplicate deliveries of the same webhook.
+     */
+    private long duplicateSpacingMs = 50;
+}
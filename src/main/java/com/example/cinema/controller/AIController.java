@@ -1,13 +1,21 @@
 package com.example.cinema.controller;
 
+import com.example.cinema.service.EmbeddingBatcher;
+import com.example.cinema.service.EmbeddingSpendMeter;
+import com.example.cinema.service.MovieEmbeddingBackfillService;
+import com.example.cinema.service.MovieSimilarityService;
+import com.example.cinema.service.QueryEmbeddingCache;
 import com.example.cinema.service.RecommendationService;
 import com.example.cinema.service.MovieEmbeddingService;
+import com.example.cinema.service.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 /**
  * AI Controller - AI-Powered Movie Features
  * Provides semantic search, AI recommendations, and embedding management
@@ -21,6 +29,12 @@ public class AIController {
 
     private final RecommendationService recommendationService;
     private final MovieEmbeddingService movieEmbeddingService;
+    private final MovieEmbeddingBackfillService movieEmbeddingBackfillService;
+    private final MovieSimilarityService movieSimilarityService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final EmbeddingSpendMeter embeddingSpendMeter;
+    private final SingleFlight singleFlight;
+    private final EmbeddingBatcher embeddingBatcher;
 
     /**
      * Semantic search for movies using natural language
@@ -86,18 +100,19 @@ public class AIController {
     }
 
     /**
-     * Find movies similar to a specific movie using AI
+     * Find movies similar to a specific movie using AI (diversify=true: MMR re-rank, fewer near-duplicates)
      */
     @GetMapping("/movies/{movieId}/similar")
     public ResponseEntity<RecommendationService.RecommendationResponse> findSimilarMovies(
             @PathVariable Long movieId,
-            @RequestParam(defaultValue = "8") int limit) {
+            @RequestParam(defaultValue = "8") int limit,
+            @RequestParam(defaultValue = "false") boolean diversify) {
 
-        log.info("Similar movies request: movieId={}, limit={}", movieId, limit);
+        log.info("Similar movies request: movieId={}, limit={}, diversify={}", movieId, limit, diversify);
 
         try {
             RecommendationService.RecommendationResponse response =
-                    recommendationService.findSimilarMovies(movieId, limit);
+                    recommendationService.findSimilarMovies(movieId, limit, diversify);
 
             log.info("Similar movies found: {} results", response.movies().size());
             return ResponseEntity.ok(response);
@@ -137,27 +152,55 @@ public class AIController {
     }
 
     /**
-     * Batch generate embeddings for all movies without embeddings (Admin only)
+     * Batch generate embeddings for all movies without embeddings in the background (Admin only)
+     * Resumes from the last checkpoint; restart=true starts over from the first movie.
+     * Poll /movies/embeddings/batch/status for progress.
      */
     @PostMapping("/movies/embeddings/batch")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<String> generateAllEmbeddings() {
+    public ResponseEntity<?> generateAllEmbeddings(@RequestParam(defaultValue = "false") boolean restart) {
 
-        log.info("Batch embedding generation request received");
+        log.info("Batch embedding generation request received (restart={})", restart);
 
         try {
-            movieEmbeddingService.generateEmbeddingsForAllMovies();
+            MovieEmbeddingBackfillService.BackfillStatus status = movieEmbeddingBackfillService.runAsync(restart);
 
-            log.info("Batch embedding generation completed successfully");
-            return ResponseEntity.ok("Batch embedding generation started. Check logs for progress.");
+            log.info("Batch embedding generation started from movie id {}", status.lastMovieId());
+            return ResponseEntity.accepted().body(status);
 
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("Batch embedding generation failed: {}", e.getMessage(), e);
+            log.error("Batch embedding generation failed to start: {}", e.getMessage(), e);
             return ResponseEntity.badRequest()
                     .body("Batch embedding generation failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Progress of the current or last embedding backfill (Admin only)
+     */
+    @GetMapping("/movies/embeddings/batch/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<MovieEmbeddingBackfillService.BackfillStatus> getBackfillStatus() {
+        return movieEmbeddingBackfillService.getStatus()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Rebuild the precomputed similar-movies table in the background (Admin only)
+     */
+    @PostMapping("/movies/similarities/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildSimilarMovies() {
+        if (!movieSimilarityService.rebuildAllAsync()) {
+            return ResponseEntity.status(409).body("Similar-movies rebuild is already running");
+        }
+        log.info("Similar-movies rebuild started");
+        return ResponseEntity.accepted().body("Similar-movies rebuild started. Check logs for progress.");
+    }
+
     /**
      * Get embedding statistics (Admin only)
      */
@@ -181,6 +224,17 @@ public class AIController {
         }
     }
 
+    /**
+     * Query embedding cache hit/miss per tier, coalesced and batched embedding calls and embedding
+     * API spend since startup (Admin only)
+     */
+    @GetMapping("/embeddings/query-cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<QueryEmbeddingCacheStats> getQueryEmbeddingCacheStats() {
+        return ResponseEntity.ok(new QueryEmbeddingCacheStats(
+                queryEmbeddingCache.getStats(), singleFlight.getStats(), embeddingBatcher.getStats(), embeddingSpendMeter.snapshot()));
+    }
+
     /**
      * AI-powered mixed recommendations with multiple strategies
      */
@@ -192,44 +246,19 @@ public class AIController {
 
         log.info("Mixed AI recommendations request: userId={}, limit={}", userId, limit);
 
-        try {
-            // Get traditional mixed recommendations first
-            RecommendationService.MixedRecommendationResponse response =
-                    recommendationService.getMixedRecommendations(userId, limit);
-
-            // Try to add AI-powered section if possible
-            try {
-                RecommendationService.RecommendationResponse aiRecommendations =
-                        recommendationService.getAIPersonalizedRecommendations(userId, 8);
-
-                if (!aiRecommendations.movies().isEmpty()) {
-                    // Add AI section to the beginning
-                    java.util.List<RecommendationService.RecommendationSection> sections =
-                            new java.util.ArrayList<>(response.sections());
-
-                    sections.add(0, new RecommendationService.RecommendationSection(
-                            "AI Recommended for You",
-                            aiRecommendations.movies().stream().limit(5).collect(java.util.stream.Collectors.toList()),
-                            "Powered by AI analysis of your preferences"
-                    ));
-
-                    response = new RecommendationService.MixedRecommendationResponse(sections);
-                }
-
-            } catch (Exception aiError) {
-                log.warn("AI recommendations in mixed response failed: {}", aiError.getMessage());
-                // Continue with traditional recommendations
-            }
-
-            log.info("Mixed AI recommendations completed: {} sections", response.sections().size());
-            return ResponseEntity.ok(response);
+        // AI section is computed alongside the other sections; if it fails or is slow it is left out
+        RecommendationService.MixedRecommendationResponse response =
+                recommendationService.getMixedRecommendations(userId, limit, true);
 
-        } catch (Exception e) {
-            log.error("Mixed AI recommendations failed: {}", e.getMessage(), e);
-            // Return basic recommendations as fallback
-            RecommendationService.MixedRecommendationResponse fallback =
-                    recommendationService.getMixedRecommendations(userId, limit);
-            return ResponseEntity.ok(fallback);
-        }
+        log.info("Mixed AI recommendations completed: {} sections", response.sections().size());
+        return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    // DTO
+    public record QueryEmbeddingCacheStats(
+            QueryEmbeddingCache.QueryCacheStats cache,
+            SingleFlight.SingleFlightStats singleFlight,
+            EmbeddingBatcher.BatchStats batching,
+            EmbeddingSpendMeter.SpendSnapshot spend
+    ) {}
+}
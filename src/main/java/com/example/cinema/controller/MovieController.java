@@ -2,6 +2,8 @@ package com.example.cinema.controller;
 
 import com.example.cinema.dto.MovieResponseDto;
 import com.example.cinema.entity.Movie;
+import com.example.cinema.entity.User;
+import com.example.cinema.service.MovieSearchService;
 import com.example.cinema.service.MovieService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +13,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -28,6 +31,7 @@ import java.util.Optional;
 public class MovieController {
 
     private final MovieService movieService;
+    private final MovieSearchService movieSearchService;
 
     /**
      * Get all movies with pagination and sorting (returns DTO to avoid Hibernate proxy issues)
@@ -73,6 +77,31 @@ public class MovieController {
         return ResponseEntity.ok(movies);
     }
 
+    /**
+     * Relevance-ranked hybrid search: full-text/trigram indexes fused with vector search (RRF).
+     * mode = auto | lexical | semantic | hybrid; lexical never calls the embedding API.
+     * Anonymous callers always get lexical results; the vector leg is rate-limited per user.
+     */
+    @GetMapping("/search/hybrid")
+    public ResponseEntity<MovieSearchService.SearchResponse> hybridSearch(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "auto") String mode,
+            @RequestParam(defaultValue = "10") int limit,
+            @AuthenticationPrincipal User currentUser) {
+
+        MovieSearchService.SearchMode searchMode;
+        try {
+            searchMode = MovieSearchService.SearchMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (query.isBlank() || limit < 1 || limit > 100) {
+            return ResponseEntity.badRequest().build();
+        }
+        Long userId = currentUser != null ? currentUser.getId() : null;
+        return ResponseEntity.ok(movieSearchService.search(query, searchMode, limit, userId));
+    }
+
     /**
      * Get currently showing movies (returns DTO to avoid Hibernate proxy issues)
      */
@@ -6,6 +6,7 @@ import com.example.cinema.entity.Booking;
 import com.example.cinema.entity.Payment;
 import com.example.cinema.entity.User;
 import com.example.cinema.service.BookingService;
+import com.example.cinema.service.PaymentStatusNotifier;
 import com.example.cinema.service.SePayService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +14,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Map;
 import java.util.Optional;
@@ -25,6 +27,9 @@ public class PaymentController {
 
     private final SePayService sePayService;
     private final BookingService bookingService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+
+    private static final long MAX_STATUS_WAIT_SECONDS = 60;
 
     @PostMapping("/checkout")
     public ResponseEntity<?> checkout(
@@ -123,11 +128,38 @@ public class PaymentController {
         Payment payment = sePayService.getPaymentByBookingId(bookingId);
         if (payment == null) return ResponseEntity.notFound().build();
 
-        Map<String, Object> response = new java.util.LinkedHashMap<>();
-        response.put("paymentId", payment.getId());
-        response.put("status", payment.getPaymentStatus());
-        response.put("transactionId", payment.getTransactionId());
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(PaymentStatusNotifier.toStatusBody(payment));
+    }
+
+    /**
+     * Long-poll variant of /status: returns immediately if the payment is no longer PENDING,
+     * otherwise parks until the webhook/expiry pushes a status change or the timeout elapses
+     * (then the current PENDING status is returned and the client polls again).
+     */
+    @GetMapping("/status/wait")
+    public DeferredResult<Map<String, Object>> waitForStatus(
+            @RequestParam("bookingId") Long bookingId,
+            @RequestParam(value = "timeoutSeconds", defaultValue = "25") long timeoutSeconds
+    ) {
+        long timeoutMillis = Math.min(Math.max(timeoutSeconds, 1), MAX_STATUS_WAIT_SECONDS) * 1000;
+
+        // Park first, then read: a status change published between the read and the
+        // registration would otherwise be missed until the timeout.
+        DeferredResult<Map<String, Object>> result = paymentStatusNotifier.await(bookingId, timeoutMillis);
+
+        Payment payment = sePayService.getPaymentByBookingId(bookingId);
+        if (payment == null) {
+            result.setErrorResult(ResponseEntity.notFound().build());
+            return result;
+        }
+
+        Map<String, Object> current = PaymentStatusNotifier.toStatusBody(payment);
+        if (payment.getPaymentStatus() != Payment.PaymentStatus.PENDING) {
+            result.setResult(current);
+        } else {
+            result.onTimeout(() -> result.setResult(current));
+        }
+        return result;
     }
 
     @GetMapping("/{paymentId}")
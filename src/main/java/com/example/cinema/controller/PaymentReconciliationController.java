@@ -0,0 +1,63 @@
+package com.example.cinema.controller;
+
+import com.example.cinema.service.PaymentReconciliationService;
+import com.example.cinema.service.SettlementFileReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Payment Reconciliation Controller - Admin endpoint to reconcile payments with a gateway settlement file
+ */
+@RestController
+@RequestMapping("/api/admin/payments/reconciliation")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@PreAuthorize("hasRole('ADMIN')")
+@Slf4j
+public class PaymentReconciliationController {
+
+    private final PaymentReconciliationService paymentReconciliationService;
+
+    /**
+     * Upload a settlement file (CSV or JSON, sorted by booking id) and reconcile it.
+     * Dry run by default; pass applyFixes=true to batch-fix payments with a missing webhook.
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> reconcile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "format", required = false) SettlementFileReader.Format format,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "applyFixes", defaultValue = "false") boolean applyFixes
+    ) {
+        SettlementFileReader.Format resolvedFormat = format != null ? format : detectFormat(file);
+        log.info("Admin started payment reconciliation: file={}, format={}, applyFixes={}",
+                file.getOriginalFilename(), resolvedFormat, applyFixes);
+
+        try {
+            return ResponseEntity.ok(paymentReconciliationService.reconcile(file, resolvedFormat, from, to, applyFixes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            log.error("Failed to read settlement file", e);
+            return ResponseEntity.badRequest().body(Map.of("error", "Cannot read settlement file"));
+        }
+    }
+
+    private SettlementFileReader.Format detectFormat(MultipartFile file) {
+        String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+        return name.endsWith(".json") || name.endsWith(".ndjson")
+                ? SettlementFileReader.Format.JSON
+                : SettlementFileReader.Format.CSV;
+    }
+}
@@ -1,12 +1,20 @@
 package com.example.cinema.controller;
 
 import com.example.cinema.entity.User;
+import com.example.cinema.service.CollaborativeFilteringService;
+import com.example.cinema.service.RecommendationPrecomputeService;
 import com.example.cinema.service.RecommendationService;
+import com.example.cinema.service.RecommendationResultCache;
+import com.example.cinema.service.ShowtimeAvailabilityIndex;
+import com.example.cinema.service.TrendingService;
 import com.example.cinema.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 /**
  * Recommendation Controller - API endpoints for movie recommendations
  * Provides personalized movie recommendations based on user preferences and behavior
@@ -19,6 +27,11 @@ public class RecommendationController {
 
     private final RecommendationService recommendationService;
     private final UserService userService;
+    private final CollaborativeFilteringService collaborativeFilteringService;
+    private final RecommendationPrecomputeService recommendationPrecomputeService;
+    private final TrendingService trendingService;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
+    private final RecommendationResultCache recommendationResultCache;
 
     /**
      * Get personalized recommendations for current user
@@ -121,14 +134,15 @@ public class RecommendationController {
     }
 
     /**
-     * Find movies similar to a specific movie using AI
+     * Find movies similar to a specific movie using AI (diversify=true: MMR re-rank, fewer near-duplicates)
      */
     @GetMapping("/similar-movies/{movieId}")
     public ResponseEntity<RecommendationService.RecommendationResponse> findSimilarMovies(
             @PathVariable Long movieId,
-            @RequestParam(defaultValue = "12") int limit) {
+            @RequestParam(defaultValue = "12") int limit,
+            @RequestParam(defaultValue = "false") boolean diversify) {
         RecommendationService.RecommendationResponse recommendations =
-                recommendationService.findSimilarMovies(movieId, limit);
+                recommendationService.findSimilarMovies(movieId, limit, diversify);
         return ResponseEntity.ok(recommendations);
     }
 
@@ -155,4 +169,123 @@ public class RecommendationController {
                 recommendationService.getPersonalizedRecommendations(currentUser.getId(), limit);
         return ResponseEntity.ok(recommendations);
     }
-}
\ No newline at end of file
+
+    // ================================
+    // COLLABORATIVE FILTERING ENDPOINTS
+    // ================================
+
+    /**
+     * "People who booked this movie also booked"
+     */
+    @GetMapping("/also-booked/{movieId}")
+    public ResponseEntity<RecommendationService.RecommendationResponse> getAlsoBooked(
+            @PathVariable Long movieId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(recommendationService.getAlsoBookedRecommendations(movieId, limit));
+    }
+
+    /**
+     * Collaborative filtering recommendations for current user
+     */
+    @GetMapping("/collaborative")
+    public ResponseEntity<RecommendationService.RecommendationResponse> getCollaborativeRecommendations(
+            @RequestParam(defaultValue = "12") int limit) {
+        User currentUser = userService.getCurrentUser();
+        return ResponseEntity.ok(recommendationService.getCollaborativeRecommendations(currentUser.getId(), limit));
+    }
+
+    /**
+     * Rebuild the collaborative filtering model in the background (admin only)
+     */
+    @PostMapping("/collaborative/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildCollaborativeModel() {
+        if (!collaborativeFilteringService.rebuildAsync()) {
+            return ResponseEntity.status(409).body("Collaborative filtering rebuild is already running");
+        }
+        return ResponseEntity.accepted().body("Collaborative filtering rebuild started");
+    }
+
+    /**
+     * Collaborative filtering model size and build time (admin only)
+     */
+    @GetMapping("/collaborative/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CollaborativeFilteringService.CollaborativeFilteringStats> getCollaborativeStats() {
+        return ResponseEntity.ok(collaborativeFilteringService.getStats());
+    }
+
+    /**
+     * Precompute AI recommendations for active users now instead of waiting for the nightly run (admin only)
+     */
+    @PostMapping("/precompute/run")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> runRecommendationPrecompute() {
+        if (!recommendationPrecomputeService.runAsync()) {
+            return ResponseEntity.status(409).body("Recommendation precompute is already running");
+        }
+        return ResponseEntity.accepted().body("Recommendation precompute started");
+    }
+
+    /**
+     * Stored recommendation rows and the last precompute run (admin only)
+     */
+    @GetMapping("/precompute/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RecommendationPrecomputeService.PrecomputeStats> getRecommendationPrecomputeStats() {
+        return ResponseEntity.ok(recommendationPrecomputeService.getStats());
+    }
+
+    /**
+     * Trending movies (time-decayed bookings, favorites and reviews)
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<RecommendationService.RecommendationResponse> getTrendingMovies(
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(new RecommendationService.RecommendationResponse(
+                "Trending Now",
+                recommendationService.getTrendingMovies(limit),
+                List.of("Most booked, favorited and reviewed recently"),
+                RecommendationService.RecommendationType.TRENDING
+        ));
+    }
+
+    /**
+     * Rebuild trending scores from the database in the background (admin only)
+     */
+    @PostMapping("/trending/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildTrending() {
+        if (!trendingService.rebuildAsync()) {
+            return ResponseEntity.status(409).body("Trending rebuild is already running");
+        }
+        return ResponseEntity.accepted().body("Trending rebuild started");
+    }
+
+    /**
+     * Trending counters and current top movies with decayed scores (admin only)
+     */
+    @GetMapping("/trending/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TrendingService.TrendingStats> getTrendingStats() {
+        return ResponseEntity.ok(trendingService.getStats());
+    }
+
+    /**
+     * Movies bookable in the showtime-aware window and the ranking mode (admin only)
+     */
+    @GetMapping("/showtime-availability/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ShowtimeAvailabilityIndex.AvailabilityStats> getShowtimeAvailabilityStats() {
+        return ResponseEntity.ok(showtimeAvailabilityIndex.getStats());
+    }
+
+    /**
+     * Per-user recommendation result cache hits/misses and invalidations since start (admin only)
+     */
+    @GetMapping("/result-cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RecommendationResultCache.ResultCacheStats> getResultCacheStats() {
+        return ResponseEntity.ok(recommendationResultCache.getStats());
+    }
+}
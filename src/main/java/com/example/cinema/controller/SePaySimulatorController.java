@@ -0,0 +1,92 @@
+package com.example.cinema.controller;
+
+import com.example.cinema.service.SePayGatewaySimulator;
+import com.example.cinema.service.SePayLoadScenarioService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local SePay gateway simulator endpoints (dev / load testing only).
+ * Only registered when sepay.simulator.enabled=true.
+ */
+@RestController
+@RequestMapping("/api/dev/sepay-sim")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@ConditionalOnProperty(prefix = "sepay.simulator", name = "enabled", havingValue = "true")
+@Slf4j
+public class SePaySimulatorController {
+
+    private final SePayGatewaySimulator simulator;
+    private final SePayLoadScenarioService loadScenarioService;
+
+    /**
+     * Stand-in for the SePay checkout page: accepts the same form the frontend posts to
+     * sepay.checkout-url and redirects back like the real gateway would.
+     */
+    @PostMapping(value = "/checkout", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<?> checkout(@RequestParam Map<String, String> form,
+                                      @RequestParam(value = "scenario", required = false) SePayGatewaySimulator.Scenario scenario) {
+        Map<String, String> formFields = new LinkedHashMap<>(form);
+        formFields.remove("scenario");
+
+        SePayGatewaySimulator.SimulatedCheckout checkout;
+        try {
+            checkout = simulator.acceptCheckout(formFields, scenario);
+        } catch (IllegalArgumentException e) {
+            log.warn("Simulator rejected checkout: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        String redirect = switch (checkout.scenario()) {
+            case FAILURE -> formFields.get("error_url");
+            case CANCEL -> formFields.get("cancel_url");
+            default -> formFields.get("success_url");
+        };
+        if (redirect == null || redirect.isBlank()) {
+            return ResponseEntity.ok(Map.of(
+                    "invoice", checkout.invoice(),
+                    "transactionId", checkout.transactionId(),
+                    "scenario", checkout.scenario()
+            ));
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(URI.create(redirect));
+        return new ResponseEntity<>(headers, HttpStatus.FOUND);
+    }
+
+    /**
+     * Simulator counters (checkouts, webhooks sent / failed / queued)
+     */
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SePayGatewaySimulator.SimulatorStats> stats() {
+        return ResponseEntity.ok(simulator.getStats());
+    }
+
+    /**
+     * Run the checkout → webhook → confirm scenario against existing PENDING bookings.
+     */
+    @PostMapping("/load")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SePayLoadScenarioService.LoadReport> runLoad(
+            @RequestParam(defaultValue = "100") int bookings,
+            @RequestParam(required = false) SePayGatewaySimulator.Scenario scenario,
+            @RequestParam(defaultValue = "120") long timeoutSeconds
+    ) {
+        log.info("Admin started SePay load scenario: bookings={}, scenario={}", bookings, scenario);
+        return ResponseEntity.ok(loadScenarioService.run(bookings, scenario, timeoutSeconds));
+    }
+}
@@ -7,6 +7,7 @@ import com.example.cinema.entity.Theater;
 import com.example.cinema.repository.MovieRepository;
 import com.example.cinema.repository.ShowtimeRepository;
 import com.example.cinema.repository.TheaterRepository;
+import com.example.cinema.service.ShowtimeCancellationService;
 import com.example.cinema.service.ShowtimeService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +16,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -23,6 +25,7 @@ import java.time.LocalDate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -39,6 +42,7 @@ public class ShowtimeController {
     private final MovieRepository movieRepository;
     private final TheaterRepository theaterRepository;
     private final ShowtimeService showtimeService;
+    private final ShowtimeCancellationService showtimeCancellationService;
 
     /**
      * Get all showtimes with pagination and sorting (returns DTO to avoid Hibernate proxy issues)
@@ -262,6 +266,32 @@ public class ShowtimeController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Cancel showtime and all its bookings in bulk (Admin only).
+     * Returns a job that can be polled for progress; a retry while the job runs returns the same
+     * job, and 409 once the showtime is already cancelled.
+     */
+    @PostMapping("/{id}/cancel")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> cancelShowtime(@PathVariable Long id) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(showtimeCancellationService.startCancellation(id));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Progress of a bulk showtime cancellation (Admin only)
+     */
+    @GetMapping("/cancellations/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ShowtimeCancellationService.CancellationStatus> getCancellationStatus(@PathVariable String jobId) {
+        return showtimeCancellationService.getStatus(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Check seat availability for a showtime
      */
@@ -6,6 +6,7 @@ import com.example.cinema.entity.UserGenrePreference;
 import com.example.cinema.service.MovieService;
 import com.example.cinema.service.UserGenrePreferenceService;
 import com.example.cinema.service.UserService;
+import com.example.cinema.service.UserSimilarityService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +29,7 @@ public class UserGenrePreferenceController {
     private final UserGenrePreferenceService preferenceService;
     private final MovieService movieService;
     private final UserService userService;
+    private final UserSimilarityService userSimilarityService;
 
     /**
      * Get all available genres in the system
@@ -171,12 +173,37 @@ public class UserGenrePreferenceController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<UserGenrePreferenceService.SimilarUser>> findSimilarUsers(
             @RequestParam Long userId,
-            @RequestParam(defaultValue = "3") int minCommonGenres) {
+            @RequestParam(defaultValue = "3") int minCommonGenres,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > 10_000) {
+            return ResponseEntity.badRequest().build();
+        }
         List<UserGenrePreferenceService.SimilarUser> similarUsers =
-                preferenceService.findUsersWithSimilarPreferences(userId, minCommonGenres);
+                preferenceService.findUsersWithSimilarPreferences(userId, minCommonGenres, limit);
         return ResponseEntity.ok(similarUsers);
     }
 
+    /**
+     * User similarity index size and build time (Admin only)
+     */
+    @GetMapping("/similar-users/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserSimilarityService.SimilarityIndexStats> getSimilarUsersIndexStats() {
+        return ResponseEntity.ok(userSimilarityService.getStats());
+    }
+
+    /**
+     * Rebuild the user similarity index in the background (Admin only)
+     */
+    @PostMapping("/similar-users/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<String> rebuildSimilarUsersIndex() {
+        if (!userSimilarityService.rebuildAsync()) {
+            return ResponseEntity.status(409).body("User similarity index rebuild is already running");
+        }
+        return ResponseEntity.accepted().body("User similarity index rebuild started");
+    }
+
     /**
      * Get genre popularity statistics (Admin only)
      */
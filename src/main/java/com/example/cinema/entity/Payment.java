@@ -115,6 +115,7 @@ public class Payment {
         SUCCESS,      // Payment completed successfully
         FAILED,       // Payment failed
         CANCELLED,    // Payment was cancelled by user
-        EXPIRED       // Payment was not completed before checkout deadline
+        EXPIRED,      // Payment was not completed before checkout deadline
+        REFUND_PENDING // Paid, but the showtime was cancelled - waiting for refund
     }
 }
@@ -56,6 +56,9 @@ public class Showtime {
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
+    @Column(name = "cancelled_at")
+    private LocalDateTime cancelledAt;
+
     // Relationships
     @OneToMany(mappedBy = "showtime", fetch = FetchType.LAZY)
     @JsonIgnore
@@ -82,8 +85,12 @@ public class Showtime {
         return getEndDatetime().isBefore(LocalDateTime.now());
     }
 
+    public boolean isCancelled() {
+        return cancelledAt != null;
+    }
+
     public boolean isBookable() {
-        return isUpcoming() && availableSeats > 0;
+        return !isCancelled() && isUpcoming() && availableSeats > 0;
     }
 
     public Integer getCapacity() {
@@ -1,9 +1,13 @@
 package com.example.cinema.repository;
 
 import com.example.cinema.entity.Payment;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -22,6 +26,14 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     Optional<Payment> findByBookingId(Long bookingId);
 
+    /**
+     * Payment row locked (SELECT ... FOR UPDATE) until the caller's transaction ends, so a
+     * webhook and the expiry sweeper never work on the same payment at once.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.booking.id = :bookingId")
+    Optional<Payment> findByBookingIdForUpdate(@Param("bookingId") Long bookingId);
+
     Page<Payment> findByPaymentStatus(Payment.PaymentStatus status, Pageable pageable);
 
     Page<Payment> findByBookingUserId(Long userId, Pageable pageable);
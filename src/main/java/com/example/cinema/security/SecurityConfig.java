@@ -74,6 +74,8 @@ public class SecurityConfig {
 
                 // SePay webhook - must be public for payment gateway
                 .requestMatchers(HttpMethod.POST, "/api/payments/sepay/webhook").permitAll()
+                // Local SePay simulator checkout form (only registered when sepay.simulator.enabled)
+                .requestMatchers(HttpMethod.POST, "/api/dev/sepay-sim/checkout").permitAll()
 
                 // Admin only endpoints
                 .requestMatchers("/api/admin/**").hasRole("ADMIN")
@@ -37,7 +37,7 @@ public class BookingEmailService {
     /**
      * Sends a booking confirmation email asynchronously.
      * This method returns immediately; the email is dispatched on a background thread.
-     * Called from the controller AFTER the booking transaction has committed.
+     * Called after the confirming transaction (webhook or settlement reconciliation) has committed.
      */
     @Async
     public void sendBookingConfirmation(BookingDto booking, List<SeatBookingDto> seatBookings) {
@@ -59,10 +59,80 @@ public class BookingEmailService {
         }
     }
 
+    /**
+     * Sends showtime cancellation emails for one chunk of cancelled bookings asynchronously.
+     * Called by ShowtimeCancellationService after the chunk transaction has committed.
+     */
+    @Async
+    public void sendShowtimeCancellations(String movieTitle,
+                                          String theaterName,
+                                          java.time.LocalDateTime showDatetime,
+                                          List<ShowtimeCancellationNotice> notices) {
+        int sent = 0;
+        for (ShowtimeCancellationNotice notice : notices) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+                helper.setFrom(fromAddress);
+                helper.setTo(notice.email());
+                helper.setSubject("Showtime Cancelled – " + notice.bookingReference());
+                helper.setText(buildCancellationHtml(movieTitle, theaterName, showDatetime, notice), true);
+                mailSender.send(message);
+                sent++;
+            } catch (Exception e) {
+                log.error("Failed to send showtime cancellation email for booking {}: {}",
+                        notice.bookingReference(), e.getMessage());
+            }
+        }
+        log.info("Sent {}/{} showtime cancellation emails for {}", sent, notices.size(), movieTitle);
+    }
+
+    public record ShowtimeCancellationNotice(
+            String email,
+            String fullName,
+            String bookingReference,
+            java.math.BigDecimal refundAmount
+    ) {}
+
     // -------------------------------------------------------------------------
     // HTML template
     // -------------------------------------------------------------------------
 
+    private String buildCancellationHtml(String movieTitle,
+                                         String theaterName,
+                                         java.time.LocalDateTime showDatetime,
+                                         ShowtimeCancellationNotice notice) {
+        String date = showDatetime != null ? showDatetime.format(DATE_FORMATTER) : "—";
+        String time = showDatetime != null ? showDatetime.format(TIME_FORMATTER) : "—";
+        String refund = notice.refundAmount() != null
+                ? "A refund of <strong style='color:#ffffff;'>$" + notice.refundAmount().setScale(2, java.math.RoundingMode.HALF_UP)
+                  + "</strong> will be returned to your original payment method."
+                : "No payment was taken for this booking.";
+
+        return "<!DOCTYPE html>" +
+                "<html lang='en'><head><meta charset='UTF-8'><title>Showtime Cancelled</title></head>" +
+                "<body style='margin:0;padding:0;background-color:#0a0a0a;font-family:Arial,Helvetica,sans-serif;'>" +
+                "<table width='100%' cellpadding='0' cellspacing='0' style='background-color:#0a0a0a;'><tr><td align='center' style='padding:36px 16px;'>" +
+                "<table width='600' cellpadding='0' cellspacing='0' style='max-width:600px;width:100%;background-color:#141414;border-radius:14px;overflow:hidden;border:1px solid #2a0e0e;'>" +
+                "<tr><td style='background:linear-gradient(135deg,#7f1d1d 0%,#b91c1c 50%,#ef4444 100%);padding:36px 40px;text-align:center;'>" +
+                "<p style='margin:0 0 6px 0;font-size:11px;letter-spacing:3px;text-transform:uppercase;color:#fecaca;'>Showtime Cancelled</p>" +
+                "<h1 style='margin:0;font-size:30px;font-weight:800;color:#ffffff;'>" + escapeHtml(appName) + "</h1>" +
+                "</td></tr>" +
+                "<tr><td style='padding:32px 40px 0;'>" +
+                "<p style='margin:0;font-size:16px;color:#d1d5db;'>Hi <strong style='color:#ffffff;'>" + escapeHtml(notice.fullName()) + "</strong>,</p>" +
+                "<p style='margin:8px 0 0;font-size:14px;color:#9ca3af;line-height:1.6;'>We&apos;re sorry – the showtime for booking <strong style='color:#ffffff;'>" +
+                escapeHtml(notice.bookingReference()) + "</strong> has been cancelled. " + refund + "</p>" +
+                "</td></tr>" +
+                "<tr><td style='padding:24px 40px 28px;'>" +
+                "<table width='100%' cellpadding='0' cellspacing='0' style='background-color:#1a0505;border-radius:10px;border:1px solid #2a0e0e;'>" +
+                detailRow("Movie",   escapeHtml(movieTitle)) +
+                detailRow("Theater", escapeHtml(theaterName)) +
+                detailRow("Date",    escapeHtml(date)) +
+                detailRow("Time",    escapeHtml(time)) +
+                "</table></td></tr>" +
+                "</table></td></tr></table></body></html>";
+    }
+
     private String buildHtml(BookingDto booking, List<SeatBookingDto> seatBookings) {
         ShowtimeDto showtime = booking.getShowtime();
 
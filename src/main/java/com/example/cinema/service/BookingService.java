@@ -52,6 +52,11 @@ public class BookingService {
     private final DistributedLockService distributedLockService;
     private final SeatBookingRepository seatBookingRepository;
     private final PaymentRepository paymentRepository;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final TrendingService trendingService;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
+    private final RecommendationResultCache recommendationResultCache;
+    private final PrecomputedRecommendationStore precomputedRecommendationStore;
 
     /**
      * Get all bookings with pagination (Admin only)
@@ -242,6 +247,7 @@ public class BookingService {
             if (updatedRows == 0) {
                 throw new BusinessRuleViolationException("Failed to update showtime seat count");
             }
+            showtimeAvailabilityIndex.refreshShowtimeAfterCommit(showtime.getId());
 
             // Convert entities to DTOs to avoid Hibernate proxy serialization issues
             BookingDto bookingDto = BookingDto.fromEntity(booking);
@@ -295,8 +301,13 @@ public class BookingService {
         if (updatedRows == 0) {
             throw new BusinessRuleViolationException("Failed to book seats - insufficient availability");
         }
+        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(showtime.getId());
 
-        return bookingRepository.save(booking);
+        Booking saved = bookingRepository.save(booking);
+        trendingService.recordAfterCommit(showtime.getMovie().getId(), TrendingService.Signal.BOOKING);
+        recommendationResultCache.invalidateUserAfterCommit(user.getId());
+        precomputedRecommendationStore.evictAfterCommit(user.getId());
+        return saved;
     }
 
     /**
@@ -320,6 +331,8 @@ public class BookingService {
 
         // Release the showtime capacity that was reserved by the booking.
         showtimeRepository.releaseSeats(booking.getShowtime().getId(), booking.getSeatsBooked());
+        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(booking.getShowtime().getId());
+        recommendationResultCache.invalidateUserAfterCommit(booking.getUser().getId());
 
         return bookingRepository.save(booking);
     }
@@ -347,6 +360,9 @@ public class BookingService {
 
         // Release seats back to showtime
         showtimeRepository.releaseSeats(booking.getShowtime().getId(), booking.getSeatsBooked());
+        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(booking.getShowtime().getId());
+        recommendationResultCache.invalidateUserAfterCommit(booking.getUser().getId());
+        precomputedRecommendationStore.evictAfterCommit(booking.getUser().getId());
 
         return bookingRepository.save(booking);
     }
@@ -361,6 +377,7 @@ public class BookingService {
                     // If booking is confirmed, release seats
                     if (booking.isConfirmed()) {
                         showtimeRepository.releaseSeats(booking.getShowtime().getId(), booking.getSeatsBooked());
+                        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(booking.getShowtime().getId());
                     }
 
                     bookingRepository.delete(booking);
@@ -379,6 +396,7 @@ public class BookingService {
         // If booking is confirmed, release seats
         if (booking.isConfirmed()) {
             showtimeRepository.releaseSeats(booking.getShowtime().getId(), booking.getSeatsBooked());
+            showtimeAvailabilityIndex.refreshShowtimeAfterCommit(booking.getShowtime().getId());
         }
 
         bookingRepository.delete(booking);
@@ -541,6 +559,7 @@ public class BookingService {
                 .ifPresent(payment -> {
                     payment.markAsExpired(reason);
                     paymentRepository.save(payment);
+                    paymentStatusNotifier.publish(payment);
                 });
     }
 
@@ -24,6 +24,11 @@ import static com.example.cinema.config.CacheConfig.*;
  *    - Similar movies: evict khi có phim mới hoặc batch embedding xong
  *    - Semantic search: evict khi có phim mới thêm vào hệ thống
  *    - AI recommendations: evict khi admin cập nhật lịch chiếu (showtime)
+ *
+ * 3. GENERATION (RecommendationResultCache): kết quả gợi ý theo user
+ *    - sở thích / favorite của user đổi → tăng generation của user đó
+ *    - phim thêm/sửa/xoá, batch embedding, lịch chiếu đổi → tăng generation chung
+ *    → chạy sau commit, chỉ key bị ảnh hưởng miss, không cần allEntries
  */
 @Service
 @RequiredArgsConstructor
@@ -31,6 +36,7 @@ import static com.example.cinema.config.CacheConfig.*;
 public class CacheManagementService {
 
     private final CacheManager cacheManager;
+    private final RecommendationResultCache recommendationResultCache;
 
     // ─────────────────────────────────────────────────────────────
     // Evict khi NỘI DUNG PHIM thay đổi (title, genre, director)
@@ -44,6 +50,7 @@ public class CacheManagementService {
     @CacheEvict(value = {MOVIE_EMBEDDINGS_CACHE, SIMILAR_MOVIES_CACHE}, allEntries = true)
     public void onMovieContentChanged(Long movieId) {
         log.info("[Cache] Movie {} content changed → evict embeddings & similar-movies", movieId);
+        recommendationResultCache.invalidateAllAfterCommit();
     }
 
     /**
@@ -60,6 +67,7 @@ public class CacheManagementService {
     }, allEntries = true)
     public void onMovieDeleted(Long movieId) {
         log.info("[Cache] Movie {} deleted → evict all content-dependent caches", movieId);
+        recommendationResultCache.invalidateAllAfterCommit();
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -74,6 +82,7 @@ public class CacheManagementService {
     @CacheEvict(value = {SEMANTIC_SEARCH_CACHE, EMBEDDING_STATS_CACHE}, allEntries = true)
     public void onMovieAdded() {
         log.info("[Cache] New movie added → evict semantic-search & stats");
+        recommendationResultCache.invalidateAllAfterCommit();
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -92,6 +101,7 @@ public class CacheManagementService {
     }, allEntries = true)
     public void onBatchEmbeddingCompleted() {
         log.info("[Cache] Batch embedding done → evict similarity & search caches");
+        recommendationResultCache.invalidateAllAfterCommit();
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -112,6 +122,7 @@ public class CacheManagementService {
     }, allEntries = true)
     public void onShowtimeChanged() {
         log.info("[Cache] Showtime changed → evict recommendation caches");
+        recommendationResultCache.invalidateAllAfterCommit();
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -121,7 +132,8 @@ public class CacheManagementService {
     @CacheEvict(value = {
         MOVIE_EMBEDDINGS_CACHE, AI_RECOMMENDATIONS_CACHE, SEMANTIC_SEARCH_CACHE,
         SIMILAR_MOVIES_CACHE, USER_PREFERENCE_EMBEDDING_CACHE, RECOMMENDATION_RESULTS_CACHE,
-        EMBEDDING_STATS_CACHE, GENRE_RECOMMENDATIONS_CACHE, SHOWTIME_AWARE_RECS_CACHE
+        EMBEDDING_STATS_CACHE, GENRE_RECOMMENDATIONS_CACHE, SHOWTIME_AWARE_RECS_CACHE,
+        QUERY_EMBEDDINGS_CACHE
     }, allEntries = true)
     public void clearAllCaches() {
         log.warn("[Cache] Admin cleared ALL caches");
@@ -147,11 +159,13 @@ public class CacheManagementService {
      *
      * NOTE: embedding của user (USER_PREFERENCE_EMBEDDING_CACHE) tự miss
      * thông qua versioned key (prefVersion+favVersion) - không cần evict.
-     * Chỉ cần evict AI_RECOMMENDATIONS_CACHE để force recalculate.
+     * Chỉ cần evict AI_RECOMMENDATIONS_CACHE để force recalculate; kết quả trong
+     * RECOMMENDATION_RESULTS_CACHE chỉ của user này bị bỏ (generation của user tăng).
      */
     @CacheEvict(value = AI_RECOMMENDATIONS_CACHE, allEntries = true)
     public void evictUserRecommendationCaches(Long userId) {
         log.info("[Cache] User {} changed preferences/favorites → evict AI recommendations", userId);
+        recommendationResultCache.invalidateUserAfterCommit(userId);
     }
 
     /** Alias cho backward compat */
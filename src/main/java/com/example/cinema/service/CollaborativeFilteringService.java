@@ -0,0 +1,202 @@
+package com.example.cinema.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collaborative Filtering Service - item-based CF from bookings, favorites and reviews.
+ *
+ * Signals (strongest per user-movie wins):
+ *   - confirmed booking : 3.0
+ *   - favorite          : 2.0
+ *   - review            : rating - 2 (4★ → 2.0, 5★ → 3.0; ≤2★ ignored)
+ *
+ * The model lives in memory (ItemCooccurrenceModel). A full rebuild streams every interaction
+ * into a fresh model and swaps it in; between rebuilds, new interactions since the last
+ * watermark are applied incrementally. Cancelled bookings and removed favorites only drop out
+ * at the next full rebuild (nightly by default).
+ */
+@Service
+@Slf4j
+public class CollaborativeFilteringService {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    // Bookings are confirmed after creation (payment), so the incremental window looks back a little
+    private static final long INCREMENTAL_LOOKBACK_MINUTES = 60;
+
+    private static final String INTERACTIONS_SQL = """
+            SELECT b.user_id, s.movie_id, 3.0 AS weight
+            FROM bookings b
+            JOIN showtimes s ON s.id = b.showtime_id
+            WHERE b.booking_status = 'CONFIRMED' AND b.created_at > ?
+            UNION ALL
+            SELECT fm.user_id, fm.movie_id, 2.0 AS weight
+            FROM favorite_movies fm
+            WHERE fm.added_at > ?
+            UNION ALL
+            SELECT r.user_id, r.movie_id, r.rating - 2.0 AS weight
+            FROM reviews r
+            WHERE r.rating >= 3 AND r.created_at > ?
+            """;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "collaborative-filtering-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile ItemCooccurrenceModel model;
+    private volatile LocalDateTime watermark = LocalDateTime.MIN;
+    private volatile long lastBuildMs;
+
+    @Value("${app.recommendation.collaborative.max-items-per-user:500}")
+    private int maxItemsPerUser;
+
+    @Value("${app.recommendation.collaborative.neighbours-per-item:50}")
+    private int neighboursPerItem;
+
+    public CollaborativeFilteringService(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        // Postgres only streams with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuildAsync();
+    }
+
+    @Scheduled(cron = "${app.recommendation.collaborative.rebuild-cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        rebuildAsync();
+    }
+
+    /**
+     * Apply interactions created since the last build or refresh.
+     */
+    @Scheduled(
+            initialDelayString = "${app.recommendation.collaborative.refresh-ms:300000}",
+            fixedDelayString = "${app.recommendation.collaborative.refresh-ms:300000}")
+    public void refreshIncremental() {
+        ItemCooccurrenceModel current = model;
+        if (current == null || rebuilding.get()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long applied = load(current, watermark.minusMinutes(INCREMENTAL_LOOKBACK_MINUTES));
+        int refreshed = current.refreshNeighbours();
+        watermark = now;
+        if (applied > 0) {
+            log.debug("Collaborative filtering applied {} interactions, re-ranked {} items", applied, refreshed);
+        }
+    }
+
+    /**
+     * Full rebuild in the background; the previous model keeps serving until the swap.
+     */
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.submit(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Collaborative filtering rebuild failed: {}", e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    void rebuild() {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        ItemCooccurrenceModel fresh = new ItemCooccurrenceModel(maxItemsPerUser, neighboursPerItem);
+        long loaded = load(fresh, LocalDateTime.of(1970, 1, 1, 0, 0));
+        fresh.refreshNeighbours();
+        model = fresh;
+        watermark = now;
+        lastBuildMs = (System.nanoTime() - started) / 1_000_000;
+        ItemCooccurrenceModel.ModelStats stats = fresh.stats();
+        log.info("Collaborative filtering model built from {} signals: {} users, {} movies, {} co-occurrence entries, ~{} KB in {} ms",
+                loaded, stats.users(), stats.items(), stats.cooccurrenceEntries(), stats.estimatedBytes() / 1024, lastBuildMs);
+    }
+
+    /**
+     * "People who booked X also booked" - empty until the first build completes.
+     */
+    public List<MovieVectorIndex.ScoredMovie> alsoBooked(Long movieId, int limit) {
+        ItemCooccurrenceModel current = model;
+        return current == null ? List.of() : current.neighbours(movieId, limit);
+    }
+
+    /**
+     * Per-user CF scores over movies the user has not interacted with yet.
+     */
+    public List<MovieVectorIndex.ScoredMovie> recommendForUser(Long userId, int limit, Set<Long> excludeMovieIds) {
+        ItemCooccurrenceModel current = model;
+        return current == null ? List.of() : current.recommend(userId, limit, excludeMovieIds);
+    }
+
+    public CollaborativeFilteringStats getStats() {
+        ItemCooccurrenceModel current = model;
+        return new CollaborativeFilteringStats(
+                current != null,
+                rebuilding.get(),
+                current != null ? current.stats() : null,
+                lastBuildMs,
+                watermark == LocalDateTime.MIN ? null : watermark
+        );
+    }
+
+    private long load(ItemCooccurrenceModel target, LocalDateTime since) {
+        Timestamp from = Timestamp.valueOf(since);
+        long[] count = new long[1];
+        readOnlyTransaction.executeWithoutResult(tx ->
+                streamingJdbcTemplate.query(INTERACTIONS_SQL, rs -> {
+                    target.add(rs.getLong(1), rs.getLong(2), rs.getFloat(3));
+                    count[0]++;
+                }, from, from, from));
+        return count[0];
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    // DTO
+    public record CollaborativeFilteringStats(
+            boolean ready,
+            boolean rebuilding,
+            ItemCooccurrenceModel.ModelStats model,
+            long lastBuildMs,
+            LocalDateTime watermark
+    ) {}
+}
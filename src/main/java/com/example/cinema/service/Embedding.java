@@ -0,0 +1,152 @@
+package com.example.cinema.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Embedding - compact vector value backed by a primitive float[]
+ *
+ * The model returns float[] and pgvector stores float4, so there is no precision to keep by
+ * widening to double. A 1536-dim vector is ~6 KB here versus ~43 KB as a boxed List<Double>.
+ *
+ * Binary form (Redis cache values): magic 'E', format version, int32 dimensions,
+ * then dimensions x float32, all little-endian.
+ */
+public final class Embedding {
+
+    static final byte MAGIC = 'E';
+    static final byte FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 6;
+
+    private final float[] values;
+
+    private Embedding(float[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Wrap without copying - the caller hands over ownership of the array.
+     */
+    public static Embedding of(float[] values) {
+        if (values == null || values.length == 0) {
+            throw new IllegalArgumentException("Embedding cannot be null or empty");
+        }
+        return new Embedding(values);
+    }
+
+    public int dimensions() {
+        return values.length;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Backing array, not a copy. Read-only by convention: Embedding instances are shared through the cache.
+     */
+    public float[] values() {
+        return values;
+    }
+
+    /**
+     * pgvector literal, e.g. [0.1,0.2,...]
+     */
+    public String toVectorLiteral() {
+        StringBuilder sb = new StringBuilder(values.length * 12 + 2).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Parse pgvector text output "[0.1,0.2,...]" without boxing.
+     *
+     * @return null for blank or empty input
+     */
+    public static Embedding parse(String text) {
+        float[] values = parseValues(text);
+        return values.length == 0 ? null : new Embedding(values);
+    }
+
+    static float[] parseValues(String text) {
+        if (text == null) {
+            return new float[0];
+        }
+        int start = text.indexOf('[');
+        int end = text.lastIndexOf(']');
+        if (start < 0 || end <= start + 1) {
+            return new float[0];
+        }
+        int count = 1;
+        for (int i = start + 1; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                count++;
+            }
+        }
+        float[] values = new float[count];
+        int index = 0;
+        int tokenStart = start + 1;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || text.charAt(i) == ',') {
+                // Double.parseDouble is markedly faster than Float.parseFloat on JDK 17 and round-trips pgvector's float4 output
+                values[index++] = (float) Double.parseDouble(text.substring(tokenStart, i).trim());
+                tokenStart = i + 1;
+            }
+        }
+        return values;
+    }
+
+    // ── Binary codec ─────────────────────────────────────────────────────────
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + values.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC).put(FORMAT_VERSION).putInt(values.length);
+        buffer.asFloatBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * @return null when the bytes are not in this format (e.g. legacy JSON cache entries)
+     */
+    public static Embedding fromBytes(byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(2);
+        int dims = buffer.getInt();
+        if (dims <= 0 || bytes.length != HEADER_BYTES + dims * Float.BYTES) {
+            return null;
+        }
+        float[] values = new float[dims];
+        buffer.asFloatBuffer().get(values);
+        return new Embedding(values);
+    }
+
+    static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length > HEADER_BYTES
+                && bytes[0] == MAGIC && bytes[1] == FORMAT_VERSION;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Embedding other && Arrays.equals(values, other.values));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "Embedding[dimensions=" + values.length + "]";
+    }
+}
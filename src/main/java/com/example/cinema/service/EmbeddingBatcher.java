@@ -0,0 +1,210 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Embedding Batcher - micro-batches concurrent single-text embedding requests.
+ *
+ * Callers enqueue a text and wait on a future. A dispatcher thread takes the first waiting
+ * text, keeps collecting for at most {@code app.ai.query-embedding-batch-window-ms} or until
+ * {@code query-embedding-batch-max-size} texts, and sends them as one embedding call; each
+ * future is completed from its position in the response. Batches are sent on a small pool so
+ * the next window fills while the previous call is in flight.
+ *
+ * An idle caller pays at most the window on top of the API call; under load N searches cost one
+ * round-trip and one request against the rate limit instead of N. Every enqueued future is
+ * completed: by the call, by shutdown (queued, collecting or waiting for a sender), or by
+ * {@code query-embedding-batch-timeout-ms} as a last resort.
+ */
+@Service
+@Slf4j
+public class EmbeddingBatcher {
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingSpendMeter embeddingSpendMeter;
+    private final AiProperties aiProperties;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService sender;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final DistributionSummary batchSizes;
+    private final Counter batchFailures;
+
+    public EmbeddingBatcher(EmbeddingModel embeddingModel,
+                            EmbeddingSpendMeter embeddingSpendMeter,
+                            AiProperties aiProperties,
+                            MeterRegistry meterRegistry) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingSpendMeter = embeddingSpendMeter;
+        this.aiProperties = aiProperties;
+        this.batchSizes = DistributionSummary.builder("ai.embedding.batch.size")
+                .description("Texts per batched query embedding call")
+                .register(meterRegistry);
+        this.batchFailures = Counter.builder("ai.embedding.batch.failures")
+                .description("Batched query embedding calls that failed")
+                .register(meterRegistry);
+
+        int concurrency = Math.max(aiProperties.getQueryEmbeddingBatchConcurrency(), 1);
+        this.sender = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "embedding-batch-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "embedding-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public boolean isEnabled() {
+        return aiProperties.isQueryEmbeddingBatchEnabled();
+    }
+
+    /**
+     * Embedding of one (already cleaned) text, sent together with whatever else arrives within the window.
+     */
+    public Embedding embed(String text) {
+        Pending pending = new Pending(text, new CompletableFuture<>());
+        if (!running) {
+            throw new IllegalStateException("Embedding batcher is shut down");
+        }
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // Shutdown drained the queue before this text was added
+            throw new IllegalStateException("Embedding batcher is shut down");
+        }
+        try {
+            return pending.result()
+                    .orTimeout(aiProperties.getQueryEmbeddingBatchTimeoutMs(), TimeUnit.MILLISECONDS)
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                queue.remove(pending);
+                throw new IllegalStateException("Batched query embedding timed out after "
+                        + aiProperties.getQueryEmbeddingBatchTimeoutMs() + " ms", e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    public BatchStats getStats() {
+        return new BatchStats(isEnabled(), queue.size(), batchSizes.count(),
+                batchSizes.count() > 0 ? batchSizes.mean() : 0, batchSizes.max(), (long) batchFailures.count());
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            int maxSize = Math.max(aiProperties.getQueryEmbeddingBatchMaxSize(), 1);
+            List<Pending> batch = new ArrayList<>(maxSize);
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(aiProperties.getQueryEmbeddingBatchWindowMs());
+                while (batch.size() < maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                sender.execute(new BatchSend(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(batch);
+                return;
+            } catch (RejectedExecutionException e) {
+                fail(batch);
+                return;
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        List<String> texts = batch.stream().map(Pending::text).toList();
+        try {
+            EmbeddingResponse response = embeddingModel.embedForResponse(texts);
+            embeddingSpendMeter.record("query", response, texts);
+            if (response.getResults().size() != batch.size()) {
+                throw new IllegalStateException("Embedding response has " + response.getResults().size()
+                        + " results for " + batch.size() + " texts");
+            }
+            batchSizes.record(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                // Results come back in input order (index i ↔ text i)
+                batch.get(i).result().complete(Embedding.of(response.getResults().get(i).getOutput()));
+            }
+        } catch (RuntimeException e) {
+            batchFailures.increment();
+            log.warn("Batched embedding call for {} texts failed: {}", batch.size(), e.getMessage());
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        for (Runnable notStarted : sender.shutdownNow()) {
+            if (notStarted instanceof BatchSend send) {
+                fail(send.batch());
+            }
+        }
+        List<Pending> queued = new ArrayList<>();
+        queue.drainTo(queued);
+        fail(queued);
+    }
+
+    private static void fail(List<Pending> batch) {
+        IllegalStateException stopped = new IllegalStateException("Embedding batcher is shut down");
+        batch.forEach(p -> p.result().completeExceptionally(stopped));
+    }
+
+    private record Pending(String text, CompletableFuture<Embedding> result) {}
+
+    /**
+     * Sender task; a named type so shutdown can fail the batches that never started.
+     */
+    private final class BatchSend implements Runnable {
+
+        private final List<Pending> batch;
+
+        BatchSend(List<Pending> batch) {
+            this.batch = batch;
+        }
+
+        List<Pending> batch() {
+            return batch;
+        }
+
+        @Override
+        public void run() {
+            send(batch);
+        }
+    }
+
+    // DTO
+    public record BatchStats(
+            boolean enabled,
+            int queued,
+            long batches,
+            double meanBatchSize,
+            double maxBatchSize,
+            long failedBatches
+    ) {}
+}
@@ -3,6 +3,9 @@ package com.example.cinema.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
@@ -15,10 +18,16 @@ import static com.example.cinema.config.CacheConfig.*;
 /**
  * Embedding Service - Generates vector embeddings via Spring AI OpenAI
  *
+ * Embeddings are float[]-backed {@link Embedding} values end-to-end (model → Redis → pgvector);
+ * the embedding cache regions store them in a binary codec (see EmbeddingRedisSerializer).
+ *
  * Cache key strategy:
  * - generateMovieEmbedding: key = movieId + content hash
  *   → cache miss when title/genre/director change → auto-regenerate
  *
+ * Cache misses go through SingleFlight keyed by the same cache key: concurrent misses for one
+ * key (on this node or across nodes) make one OpenAI call, the rest read its cached result.
+ *
  * VectorStore (PgVectorStore) is injected separately in MovieEmbeddingService
  * and RecommendationService; it calls EmbeddingModel internally for search queries.
  */
@@ -28,6 +37,10 @@ import static com.example.cinema.config.CacheConfig.*;
 public class EmbeddingService {
 
     private final EmbeddingModel embeddingModel;
+    private final EmbeddingSpendMeter embeddingSpendMeter;
+    private final SingleFlight singleFlight;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final CacheManager cacheManager;
 
     /**
      * Generate raw text embedding — единственная точка вызова OpenAI.
@@ -44,19 +57,40 @@ public class EmbeddingService {
         maxAttempts = 3,
         backoff = @Backoff(delay = 1000, multiplier = 2)
     )
-    public List<Double> generateEmbedding(String text) {
+    public Embedding generateEmbedding(String text) {
         if (text == null || text.trim().isEmpty()) {
             throw new IllegalArgumentException("Text cannot be null or empty");
         }
-        String cleanedText = cleanText(text);
-        log.debug("Generating embedding for text: {} characters", cleanedText.length());
-        float[] embeddingArray = embeddingModel.embed(cleanedText);
-        List<Double> embedding = new java.util.ArrayList<>(embeddingArray.length);
-        for (float value : embeddingArray) {
-            embedding.add((double) value);
+        String key = "text:" + contentHash(text, "", "");
+        return singleFlight.execute("embedding:" + key, () -> {
+            String cleanedText = cleanText(text);
+            log.debug("Generating embedding for text: {} characters", cleanedText.length());
+            Embedding embedding = embed("text", cleanedText);
+            log.debug("Successfully generated embedding with {} dimensions", embedding.dimensions());
+            return embedding;
+        }, () -> cached(MOVIE_EMBEDDINGS_CACHE, key));
+    }
+
+    /**
+     * Embed an already-canonical search query. Not cached here: QueryEmbeddingCache owns the
+     * L1/L2 lookup and only calls this on a miss in both tiers. A single attempt by default:
+     * the caller falls back to the local index instead of retrying on the request thread.
+     * Concurrent queries are micro-batched into one API call by EmbeddingBatcher.
+     */
+    @Retryable(
+        retryFor = {Exception.class},
+        maxAttemptsExpression = "${app.ai.query-embedding-max-attempts:1}",
+        backoff = @Backoff(delay = 1000, multiplier = 2)
+    )
+    public Embedding embedQuery(String canonicalQuery) {
+        if (canonicalQuery == null || canonicalQuery.isEmpty()) {
+            throw new IllegalArgumentException("Query cannot be null or empty");
         }
-        log.debug("Successfully generated embedding with {} dimensions", embedding.size());
-        return embedding;
+        log.debug("Generating embedding for search query: {} characters", canonicalQuery.length());
+        if (embeddingBatcher.isEnabled()) {
+            return embeddingBatcher.embed(cleanText(canonicalQuery));
+        }
+        return embed("query", cleanText(canonicalQuery));
     }
 
     /**
@@ -67,14 +101,17 @@ public class EmbeddingService {
      */
     @Cacheable(value = MOVIE_EMBEDDINGS_CACHE,
                key = "'movie:' + #movieId + ':v' + T(com.example.cinema.service.EmbeddingService).contentHash(#title, #genre, #director)")
-    public List<Double> generateMovieEmbedding(Long movieId, String title, String description,
-                                               String genre, String director) {
+    public Embedding generateMovieEmbedding(Long movieId, String title, String description,
+                                            String genre, String director) {
         String movieText = buildMovieText(title, description, genre, director);
         if (movieText.isEmpty()) {
             throw new IllegalArgumentException("Movie must have at least title or description");
         }
         log.debug("Generating embedding for movie: {}", title);
-        return generateEmbedding(movieText);
+        String key = "movie:" + movieId + ":v" + contentHash(title, genre, director);
+        return singleFlight.execute("embedding:" + key,
+                () -> generateEmbedding(movieText),
+                () -> cached(MOVIE_EMBEDDINGS_CACHE, key));
     }
 
     /**
@@ -82,12 +119,15 @@ public class EmbeddingService {
      */
     @Cacheable(value = USER_PREFERENCE_EMBEDDING_CACHE,
                key = "'user:' + #userId + ':pref' + #prefVersion + ':fav' + #favVersion")
-    public List<Double> generateUserPreferenceEmbedding(Long userId, int prefVersion, int favVersion,
-                                                        List<String> preferredGenres, List<String> favoriteMovieTitles) {
+    public Embedding generateUserPreferenceEmbedding(Long userId, int prefVersion, int favVersion,
+                                                     List<String> preferredGenres, List<String> favoriteMovieTitles) {
         String preferenceText = buildUserPreferenceText(preferredGenres, favoriteMovieTitles);
         log.debug("Generating preference embedding for user {} with key versions pref={}, fav={}",
                  userId, prefVersion, favVersion);
-        return generateEmbedding(preferenceText);
+        String key = "user:" + userId + ":pref" + prefVersion + ":fav" + favVersion;
+        return singleFlight.execute("embedding:" + key,
+                () -> generateEmbedding(preferenceText),
+                () -> cached(USER_PREFERENCE_EMBEDDING_CACHE, key));
     }
 
     // ── Static text-building helpers ────────────────────────────────────────
@@ -130,6 +170,28 @@ public class EmbeddingService {
 
     // ── Internal utilities ───────────────────────────────────────────────────
 
+    private Embedding embed(String source, String text) {
+        List<String> input = List.of(text);
+        EmbeddingResponse response = embeddingModel.embedForResponse(input);
+        embeddingSpendMeter.record(source, response, input);
+        return Embedding.of(response.getResult().getOutput());
+    }
+
+    /**
+     * Value another node has already put under the @Cacheable key, or null.
+     */
+    private Embedding cached(String cacheName, String key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return null;
+        }
+        try {
+            return cache.get(key, Embedding.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
     private String cleanText(String text) {
         return text.trim()
                    .replaceAll("\\s+", " ")
@@ -164,23 +226,4 @@ public class EmbeddingService {
         }
         return h & 0x7FFFFFFF;
     }
-
-    /**
-     * Convert numeric embedding to pgvector literal string, e.g. [0.1,0.2,...].
-     */
-    public static String toVectorLiteral(List<Double> embedding) {
-        if (embedding == null || embedding.isEmpty()) {
-            throw new IllegalArgumentException("Embedding cannot be null or empty");
-        }
-
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < embedding.size(); i++) {
-            if (i > 0) {
-                sb.append(',');
-            }
-            sb.append(embedding.get(i));
-        }
-        sb.append(']');
-        return sb.toString();
-    }
 }
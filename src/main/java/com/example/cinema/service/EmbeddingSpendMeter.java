@@ -0,0 +1,96 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Embedding Spend Meter - counts embedding API requests, tokens and estimated USD cost per caller.
+ *
+ * Tokens come from the provider's usage block when present, otherwise are estimated as chars / 4.
+ * Meters: ai.embedding.requests / ai.embedding.tokens / ai.embedding.cost (tag: source).
+ */
+@Component
+public class EmbeddingSpendMeter {
+
+    private final MeterRegistry meterRegistry;
+    private final AiProperties aiProperties;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final DoubleAdder costUsd = new DoubleAdder();
+
+    public EmbeddingSpendMeter(MeterRegistry meterRegistry, AiProperties aiProperties) {
+        this.meterRegistry = meterRegistry;
+        this.aiProperties = aiProperties;
+    }
+
+    /**
+     * Record one embedding API call.
+     *
+     * @param source   caller tag, e.g. "query", "movie", "backfill"
+     * @param response provider response (may be null when the call returned plain vectors)
+     * @param texts    the inputs sent, for the token estimate fallback
+     */
+    public void record(String source, EmbeddingResponse response, List<String> texts) {
+        if (isLocal(response)) {
+            return;
+        }
+        long used = reportedTokens(response);
+        if (used <= 0) {
+            used = estimateTokens(texts);
+        }
+        double cost = used * aiProperties.getEmbeddingPricePerMillionTokens() / 1_000_000.0;
+
+        requests.incrementAndGet();
+        tokens.addAndGet(used);
+        costUsd.add(cost);
+
+        counter("ai.embedding.requests", "Embedding API requests", source).increment();
+        counter("ai.embedding.tokens", "Embedding API tokens billed", source).increment(used);
+        counter("ai.embedding.cost", "Estimated embedding API spend in USD", source).increment(cost);
+    }
+
+    public SpendSnapshot snapshot() {
+        return new SpendSnapshot(requests.get(), tokens.get(), costUsd.sum());
+    }
+
+    static long estimateTokens(List<String> texts) {
+        long estimate = 0;
+        for (String text : texts) {
+            estimate += text.length() / 4 + 1;
+        }
+        return estimate;
+    }
+
+    private static boolean isLocal(EmbeddingResponse response) {
+        return response != null && response.getMetadata() != null
+                && LocalHashingEmbeddingModel.MODEL_NAME.equals(response.getMetadata().getModel());
+    }
+
+    private static long reportedTokens(EmbeddingResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return 0;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        Integer total = usage != null ? usage.getTotalTokens() : null;
+        return total != null ? total : 0;
+    }
+
+    private Counter counter(String name, String description, String source) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    // DTO
+    public record SpendSnapshot(long requests, long tokens, double estimatedCostUsd) {}
+}
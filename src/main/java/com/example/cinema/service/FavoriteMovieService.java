@@ -32,6 +32,7 @@ public class FavoriteMovieService {
     private final MovieRepository movieRepository;
     private final UserRepository userRepository;
     private final CacheManagementService cacheManagementService;
+    private final TrendingService trendingService;
 
     /**
      * Add movie to user's favorites
@@ -59,6 +60,7 @@ public class FavoriteMovieService {
 
         // Evict user's recommendation caches
         cacheManagementService.evictUserRecommendationCaches(userId);
+        trendingService.recordAfterCommit(movieId, TrendingService.Signal.FAVORITE);
 
         return saved;
     }
@@ -0,0 +1,449 @@
+package com.example.cinema.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Item-based collaborative filtering model on sparse primitive co-occurrence rows.
+ *
+ * Each user holds a weighted item set (w_ui = strongest signal: booking > favorite > review).
+ * Item-item co-occurrence is C(i,j) = Σ_u w_ui · w_uj and similarity is cosine:
+ * C(i,j) / sqrt(N(i) · N(j)) with N(i) = Σ_u w_ui². Rows are open-addressing int→float maps
+ * (no boxing), and each item keeps only its top-N neighbours for serving.
+ *
+ * Updates are incremental: add() applies the weight delta against the user's other items only,
+ * and marks the touched items dirty; refreshNeighbours() re-ranks just those rows. Rows that only
+ * change through another item's norm are left until the next full rebuild.
+ */
+public final class ItemCooccurrenceModel {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxItemsPerUser;
+    private final int neighboursPerItem;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongIntHashMap itemIndex = new LongIntHashMap(INITIAL_CAPACITY);
+    private final LongIntHashMap userIndex = new LongIntHashMap(INITIAL_CAPACITY);
+    private long[] itemIds = new long[INITIAL_CAPACITY];
+    private IntFloatHashMap[] userItems = new IntFloatHashMap[INITIAL_CAPACITY];
+    private IntFloatHashMap[] cooccurrence = new IntFloatHashMap[INITIAL_CAPACITY];
+    private double[] norms = new double[INITIAL_CAPACITY];
+    private int[][] neighbourItems = new int[INITIAL_CAPACITY][];
+    private float[][] neighbourScores = new float[INITIAL_CAPACITY][];
+    private final BitSet dirty = new BitSet();
+    private int itemCount;
+    private int userCount;
+    private long interactions;
+
+    /**
+     * @param maxItemsPerUser   cap on items per user; bounds the O(n²) pair work of very heavy users
+     * @param neighboursPerItem neighbours kept per item for serving
+     */
+    public ItemCooccurrenceModel(int maxItemsPerUser, int neighboursPerItem) {
+        this.maxItemsPerUser = Math.max(maxItemsPerUser, 1);
+        this.neighboursPerItem = Math.max(neighboursPerItem, 1);
+    }
+
+    /**
+     * Record a user-item signal. Weights only increase (the strongest signal wins).
+     *
+     * @return true if the model changed
+     */
+    public boolean add(long userId, long movieId, float weight) {
+        if (weight <= 0) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            int u = userSlot(userId);
+            IntFloatHashMap items = userItems[u];
+            int i = itemSlot(movieId);
+            float old = items.get(i);
+            if (weight <= old || (old == 0 && items.size() >= maxItemsPerUser)) {
+                return false;
+            }
+
+            float delta = weight - old;
+            IntFloatHashMap row = cooccurrence[i];
+            for (int slot = 0; slot < items.capacity(); slot++) {
+                int j = items.keyAt(slot);
+                if (j < 0 || j == i) {
+                    continue;
+                }
+                float increment = delta * items.valueAt(slot);
+                row.add(j, increment);
+                cooccurrence[j].add(i, increment);
+                dirty.set(j);
+            }
+            norms[i] += (double) weight * weight - (double) old * old;
+            items.put(i, weight);
+            if (old == 0) {
+                interactions++;
+            }
+            dirty.set(i);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-rank the neighbour lists of every item touched since the last call.
+     *
+     * @return number of rows re-ranked
+     */
+    public int refreshNeighbours() {
+        lock.writeLock().lock();
+        try {
+            int refreshed = 0;
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                rankNeighbours(i);
+                refreshed++;
+            }
+            dirty.clear();
+            return refreshed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * "People who booked X also booked": strongest neighbours of one movie.
+     */
+    public List<MovieVectorIndex.ScoredMovie> neighbours(long movieId, int k) {
+        lock.readLock().lock();
+        try {
+            int i = itemIndex.get(movieId);
+            if (i < 0 || neighbourItems[i] == null) {
+                return List.of();
+            }
+            int n = Math.min(k, neighbourItems[i].length);
+            List<MovieVectorIndex.ScoredMovie> result = new ArrayList<>(n);
+            for (int t = 0; t < n; t++) {
+                result.add(new MovieVectorIndex.ScoredMovie(itemIds[neighbourItems[i][t]], neighbourScores[i][t]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Per-user scores: score(u, j) = Σ_i w_ui · sim(i, j) over the user's items, excluding
+     * movies the user already interacted with and {@code excludeMovieIds}.
+     */
+    public List<MovieVectorIndex.ScoredMovie> recommend(long userId, int k, Set<Long> excludeMovieIds) {
+        lock.readLock().lock();
+        try {
+            int u = userIndex.get(userId);
+            if (u < 0 || k <= 0) {
+                return List.of();
+            }
+            IntFloatHashMap items = userItems[u];
+            float[] scores = new float[itemCount];
+            for (int slot = 0; slot < items.capacity(); slot++) {
+                int i = items.keyAt(slot);
+                if (i < 0 || neighbourItems[i] == null) {
+                    continue;
+                }
+                float w = items.valueAt(slot);
+                int[] nb = neighbourItems[i];
+                float[] sim = neighbourScores[i];
+                for (int t = 0; t < nb.length; t++) {
+                    scores[nb[t]] += w * sim[t];
+                }
+            }
+
+            long[] packed = new long[itemCount];
+            int n = 0;
+            for (int j = 0; j < itemCount; j++) {
+                if (scores[j] > 0 && items.get(j) == 0 && !excludeMovieIds.contains(itemIds[j])) {
+                    packed[n++] = pack(scores[j], j);
+                }
+            }
+            return topPacked(packed, n, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public ModelStats stats() {
+        lock.readLock().lock();
+        try {
+            long entries = 0;
+            long bytes = (long) itemIds.length * Long.BYTES + (long) norms.length * Double.BYTES
+                    + itemIndex.bytes() + userIndex.bytes();
+            for (int i = 0; i < itemCount; i++) {
+                entries += cooccurrence[i].size();
+                bytes += cooccurrence[i].bytes();
+                if (neighbourItems[i] != null) {
+                    bytes += (long) neighbourItems[i].length * (Integer.BYTES + Float.BYTES);
+                }
+            }
+            for (int u = 0; u < userCount; u++) {
+                bytes += userItems[u].bytes();
+            }
+            return new ModelStats(userCount, itemCount, interactions, entries, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ── Internal ─────────────────────────────────────────────────────────────
+
+    private void rankNeighbours(int i) {
+        IntFloatHashMap row = cooccurrence[i];
+        long[] packed = new long[row.size()];
+        int n = 0;
+        for (int slot = 0; slot < row.capacity(); slot++) {
+            int j = row.keyAt(slot);
+            if (j < 0) {
+                continue;
+            }
+            double denom = Math.sqrt(norms[i] * norms[j]);
+            float c = row.valueAt(slot);
+            if (c > 0 && denom > 0) {
+                packed[n++] = pack((float) (c / denom), j);
+            }
+        }
+        Arrays.sort(packed, 0, n);
+        int keep = Math.min(n, neighboursPerItem);
+        int[] nb = new int[keep];
+        float[] sim = new float[keep];
+        for (int t = 0; t < keep; t++) {
+            long p = packed[n - 1 - t];
+            nb[t] = (int) p;
+            sim[t] = Float.intBitsToFloat((int) (p >>> 32));
+        }
+        neighbourItems[i] = nb;
+        neighbourScores[i] = sim;
+    }
+
+    private List<MovieVectorIndex.ScoredMovie> topPacked(long[] packed, int n, int k) {
+        Arrays.sort(packed, 0, n);
+        int keep = Math.min(n, k);
+        List<MovieVectorIndex.ScoredMovie> result = new ArrayList<>(keep);
+        for (int t = 0; t < keep; t++) {
+            long p = packed[n - 1 - t];
+            result.add(new MovieVectorIndex.ScoredMovie(
+                    itemIds[(int) p], Float.intBitsToFloat((int) (p >>> 32))));
+        }
+        return result;
+    }
+
+    /** Positive floats sort like their raw bits, so (score, index) packs into one sortable long. */
+    private static long pack(float score, int index) {
+        return ((long) Float.floatToRawIntBits(score) << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    private int itemSlot(long movieId) {
+        int i = itemIndex.get(movieId);
+        if (i >= 0) {
+            return i;
+        }
+        i = itemCount++;
+        if (i == itemIds.length) {
+            int capacity = itemIds.length * 2;
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            cooccurrence = Arrays.copyOf(cooccurrence, capacity);
+            norms = Arrays.copyOf(norms, capacity);
+            neighbourItems = Arrays.copyOf(neighbourItems, capacity);
+            neighbourScores = Arrays.copyOf(neighbourScores, capacity);
+        }
+        itemIds[i] = movieId;
+        cooccurrence[i] = new IntFloatHashMap(8);
+        itemIndex.put(movieId, i);
+        return i;
+    }
+
+    private int userSlot(long userId) {
+        int u = userIndex.get(userId);
+        if (u >= 0) {
+            return u;
+        }
+        u = userCount++;
+        if (u == userItems.length) {
+            userItems = Arrays.copyOf(userItems, userItems.length * 2);
+        }
+        userItems[u] = new IntFloatHashMap(4);
+        userIndex.put(userId, u);
+        return u;
+    }
+
+    public record ModelStats(int users, int items, long interactions, long cooccurrenceEntries, long estimatedBytes) {}
+
+    // ── Primitive open-addressing maps ───────────────────────────────────────
+
+    static final class IntFloatHashMap {
+        private static final int EMPTY = -1;
+        private int[] keys;
+        private float[] values;
+        private int size;
+
+        IntFloatHashMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 2)) << 1;
+            keys = new int[capacity];
+            values = new float[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        float get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                int k = keys[slot];
+                if (k == key) {
+                    return values[slot];
+                }
+                if (k == EMPTY) {
+                    return 0f;
+                }
+            }
+        }
+
+        void put(int key, float value) {
+            int slot = slotFor(key);
+            values[slot] = value;
+        }
+
+        void add(int key, float delta) {
+            // slotFor may grow the arrays, so resolve the slot before touching values
+            int slot = slotFor(key);
+            values[slot] += delta;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        /** Key at a raw slot, or -1 for an empty slot. */
+        int keyAt(int slot) {
+            return keys[slot];
+        }
+
+        float valueAt(int slot) {
+            return values[slot];
+        }
+
+        long bytes() {
+            return (long) keys.length * (Integer.BYTES + Float.BYTES);
+        }
+
+        private int slotFor(int key) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                if (keys[slot] == EMPTY) {
+                    keys[slot] = key;
+                    size++;
+                    return slot;
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            float[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new float[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            int mask = keys.length - 1;
+            for (int s = 0; s < oldKeys.length; s++) {
+                if (oldKeys[s] == EMPTY) {
+                    continue;
+                }
+                int slot = mix(oldKeys[s]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[s];
+                values[slot] = oldValues[s];
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    static final class LongIntHashMap {
+        private static final long EMPTY = Long.MIN_VALUE;
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        LongIntHashMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 2)) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /** Value for key, or -1. */
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    return values[slot];
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == EMPTY) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        long bytes() {
+            return (long) keys.length * (Long.BYTES + Integer.BYTES);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+            for (int s = 0; s < oldKeys.length; s++) {
+                if (oldKeys[s] != EMPTY) {
+                    put(oldKeys[s], oldValues[s]);
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Local Embedding Fallback - keeps semantic search answering when the remote embedding API is
+ * slow or down.
+ *
+ * Local (hashed n-gram) vectors are not comparable with the OpenAI vectors in vector_store, so
+ * the fallback keeps its own in-memory index of every movie embedded with the local model
+ * (~1 ms per 100 movies) and searches that instead.
+ *
+ * Remote failures open a short cool-down window; during it queries go straight to the local
+ * index instead of paying the remote timeout again on every request.
+ *
+ * With spring.ai.model.embedding=local (offline mode) the remote model is never tried and
+ * semantic search is always answered from this index.
+ */
+@Service
+@Slf4j
+public class LocalEmbeddingFallback {
+
+    private static final String LOAD_MOVIES_SQL = "SELECT id, title, description, genre, director FROM movies ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiProperties aiProperties;
+    private final LocalHashingEmbeddingModel model;
+    private final boolean offline;
+
+    private volatile Snapshot snapshot;
+    private volatile long remoteDownUntil;
+
+    public LocalEmbeddingFallback(JdbcTemplate jdbcTemplate,
+                                  AiProperties aiProperties,
+                                  @Value("${spring.ai.model.embedding:openai}") String embeddingProvider) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aiProperties = aiProperties;
+        this.model = new LocalHashingEmbeddingModel(aiProperties.getLocalEmbeddingDimensions());
+        this.offline = "local".equalsIgnoreCase(embeddingProvider);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (isEnabled()) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.ai.vector-index-refresh-ms:600000}",
+               fixedDelayString = "${app.ai.vector-index-refresh-ms:600000}")
+    public void scheduledRebuild() {
+        if (isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * True when the local index can serve queries in place of the remote model.
+     */
+    public boolean isEnabled() {
+        return offline || aiProperties.isLocalEmbeddingFallbackEnabled();
+    }
+
+    public boolean isReady() {
+        return isEnabled() && snapshot != null;
+    }
+
+    /**
+     * False in offline mode and while the cool-down after a remote failure is running.
+     */
+    public boolean isRemoteAvailable() {
+        return !offline && System.currentTimeMillis() >= remoteDownUntil;
+    }
+
+    public void recordRemoteFailure(Exception e) {
+        remoteDownUntil = System.currentTimeMillis() + aiProperties.getLocalFallbackCooldownMs();
+        log.warn("Remote embedding failed, serving local embeddings for {} ms: {}",
+                aiProperties.getLocalFallbackCooldownMs(), e.getMessage());
+    }
+
+    /**
+     * Top-K movies for a free-text query in the local embedding space (score = cosine, no threshold:
+     * lexical scores are not on the same scale as the remote thresholds).
+     */
+    public List<MovieVectorIndex.ScoredMovie> search(String query, int k) {
+        Snapshot current = snapshot;
+        if (current == null || k <= 0) {
+            return List.of();
+        }
+        return current.search(model.embed(query), k);
+    }
+
+    public LocalHashingEmbeddingModel model() {
+        return model;
+    }
+
+    void rebuild() {
+        try {
+            doRebuild();
+        } catch (Exception e) {
+            log.warn("Local embedding index build failed: {}", e.getMessage());
+        }
+    }
+
+    private void doRebuild() {
+        long started = System.nanoTime();
+        List<Long> ids = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        jdbcTemplate.query(LOAD_MOVIES_SQL, rs -> {
+            String text = EmbeddingService.buildMovieText(rs.getString("title"), rs.getString("description"),
+                    rs.getString("genre"), rs.getString("director"));
+            if (!text.isEmpty()) {
+                ids.add(rs.getLong("id"));
+                vectors.add(model.embed(text));
+            }
+        });
+        snapshot = Snapshot.of(ids, vectors, model.dimensions());
+        log.info("Local embedding index built for {} movies in {} ms",
+                ids.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private record Snapshot(long[] movieIds, float[] matrix, int dims) {
+
+        static Snapshot of(List<Long> ids, List<float[]> vectors, int dims) {
+            long[] movieIds = new long[ids.size()];
+            float[] matrix = new float[ids.size() * dims];
+            for (int i = 0; i < movieIds.length; i++) {
+                movieIds[i] = ids.get(i);
+                System.arraycopy(vectors.get(i), 0, matrix, i * dims, dims);
+            }
+            return new Snapshot(movieIds, matrix, dims);
+        }
+
+        List<MovieVectorIndex.ScoredMovie> search(float[] query, int k) {
+            int n = movieIds.length;
+            long[] packed = new long[n];
+            int hits = 0;
+            for (int i = 0; i < n; i++) {
+                float score = MovieVectorIndex.dot(query, matrix, i * dims, dims);
+                if (score > 0) {
+                    // Positive float bits sort like the floats; low half carries the row
+                    packed[hits++] = ((long) Float.floatToIntBits(score) << 32) | i;
+                }
+            }
+            Arrays.sort(packed, 0, hits);
+            List<MovieVectorIndex.ScoredMovie> result = new ArrayList<>(Math.min(k, hits));
+            for (int t = hits - 1; t >= 0 && result.size() < k; t--) {
+                int row = (int) packed[t];
+                result.add(new MovieVectorIndex.ScoredMovie(movieIds[row], Float.intBitsToFloat((int) (packed[t] >>> 32))));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.cinema.service;
+
+import org.springframework.ai.chat.metadata.EmptyUsage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local Hashing Embedding Model - deterministic on-CPU embeddings, no network, no tokens.
+ *
+ * Feature hashing over the canonical text (QueryEmbeddingCache.canonicalize):
+ *   - word unigrams           weight 1.0
+ *   - word bigrams            weight 0.7  (some phrase/order signal)
+ *   - character 3-grams       weight 0.35 (typos, inflections the stemmer misses)
+ * each hashed (64-bit FNV-1a) into one of {@code dimensions} buckets with a hash-derived sign,
+ * sublinear (sqrt) term weighting, then L2-normalized so dot product = cosine.
+ *
+ * Lexical, not semantic: "space adventure" will not match "sci-fi odyssey". Vectors live in their
+ * own space and must never be compared with OpenAI vectors.
+ */
+public class LocalHashingEmbeddingModel implements EmbeddingModel {
+
+    public static final String MODEL_NAME = "local-hashing-ngram";
+
+    private static final float UNIGRAM_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.7f;
+    private static final float TRIGRAM_WEIGHT = 0.35f;
+
+    // Function words plus the field labels EmbeddingService.buildMovieText puts in every movie text
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "the", "and", "or", "of", "for", "with", "about", "to", "in", "on", "at", "by",
+            "is", "are", "it", "its", "this", "that", "from", "as", "be", "me", "i",
+            "title", "description", "genre", "director", "movie", "film");
+
+    private final int dimensions;
+
+    public LocalHashingEmbeddingModel(int dimensions) {
+        if (dimensions < 8) {
+            throw new IllegalArgumentException("Local embedding needs at least 8 dimensions");
+        }
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<org.springframework.ai.embedding.Embedding> results = new ArrayList<>();
+        List<String> texts = request.getInstructions();
+        for (int i = 0; i < texts.size(); i++) {
+            results.add(new org.springframework.ai.embedding.Embedding(embed(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(results, new EmbeddingResponseMetadata(MODEL_NAME, new EmptyUsage()));
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        String[] tokens = QueryEmbeddingCache.canonicalize(text).split(" ");
+
+        String previous = null;
+        for (String token : tokens) {
+            if (token.isEmpty() || STOPWORDS.contains(token)) {
+                previous = null;
+                continue;
+            }
+            accumulate(vector, "w:" + token, UNIGRAM_WEIGHT);
+            if (previous != null) {
+                accumulate(vector, "b:" + previous + ' ' + token, BIGRAM_WEIGHT);
+            }
+            String padded = '<' + token + '>';
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                accumulate(vector, "c:" + padded.substring(i, i + 3), TRIGRAM_WEIGHT);
+            }
+            previous = token;
+        }
+
+        // Sublinear term weighting: repeated words should not dominate the vector
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            float v = vector[i];
+            float damped = (float) (Math.signum(v) * Math.sqrt(Math.abs(v)));
+            vector[i] = damped;
+            norm += (double) damped * damped;
+        }
+        if (norm == 0) {
+            // Empty / all-stopword text: a fixed unit vector keeps downstream code free of NaN
+            vector[0] = 1f;
+            return vector;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= inv;
+        }
+        return vector;
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText() == null ? "" : document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    private void accumulate(float[] vector, String feature, float weight) {
+        long h = fnv1a64(feature);
+        int bucket = (int) Long.remainderUnsigned(h, dimensions);
+        vector[bucket] += (h >>> 63) == 0 ? weight : -weight;
+    }
+
+    private static long fnv1a64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        // Final avalanche so the sign bit is well mixed
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Local User Vector Service - user preference vectors built from embeddings already in
+ * MovieVectorIndex instead of embedding a preference sentence remotely.
+ *
+ *   user = Σ favoriteWeight · v(favorite)
+ *        + Σ bookingWeight  · v(booked movie)          (a movie counts once, highest weight)
+ *        + Σ genreWeight · (score - 2) / 3 · centroid(genre)   for genre scores ≥ 3
+ *   then L2-normalised, so it lives in the same space as the movie vectors it is searched against.
+ *
+ * Genre centroids are normalised means of the indexed movies per genre, rebuilt with the vector
+ * index refresh. A user vector is a few dozen 1536-float additions, so it is recomputed whenever
+ * the user's preferences or favorites change rather than maintained as running sums.
+ */
+@Service
+@Slf4j
+public class LocalUserVectorService {
+
+    private static final String MOVIE_GENRES_SQL =
+            "SELECT id, LOWER(TRIM(genre)) AS genre FROM movies WHERE genre IS NOT NULL AND TRIM(genre) <> ''";
+
+    private static final String BOOKED_MOVIES_SQL = """
+            SELECT s.movie_id
+            FROM bookings b
+            JOIN showtimes s ON s.id = b.showtime_id
+            WHERE b.user_id = ? AND b.booking_status = 'CONFIRMED'
+            GROUP BY s.movie_id
+            ORDER BY MAX(b.created_at) DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MovieVectorIndex movieVectorIndex;
+    private final AiProperties aiProperties;
+
+    private volatile Map<String, float[]> genreCentroids;
+
+    public LocalUserVectorService(JdbcTemplate jdbcTemplate,
+                                  MovieVectorIndex movieVectorIndex,
+                                  AiProperties aiProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.movieVectorIndex = movieVectorIndex;
+        this.aiProperties = aiProperties;
+    }
+
+    /**
+     * Local mode configured and movie vectors loaded; otherwise callers use the remote path.
+     */
+    public boolean isEnabled() {
+        return !"remote".equalsIgnoreCase(aiProperties.getUserVectorMode()) && movieVectorIndex.isReady();
+    }
+
+    @Scheduled(initialDelayString = "${app.ai.vector-index-refresh-ms:600000}",
+               fixedDelayString = "${app.ai.vector-index-refresh-ms:600000}")
+    public void scheduledRefresh() {
+        if (isEnabled() && genreCentroids != null) {
+            rebuildCentroids();
+        }
+    }
+
+    /**
+     * User vector from favorites, confirmed bookings and genre scores; empty when none of them
+     * has an indexed embedding.
+     *
+     * @param genreScores      genre → preference score (1-5)
+     * @param favoriteMovieIds the user's favorite movies
+     */
+    public Optional<Embedding> build(Long userId, Map<String, Integer> genreScores, Collection<Long> favoriteMovieIds) {
+        Map<Long, Double> movieWeights = new LinkedHashMap<>();
+        for (Long movieId : favoriteMovieIds) {
+            movieWeights.put(movieId, aiProperties.getUserVectorFavoriteWeight());
+        }
+        List<Long> booked = jdbcTemplate.queryForList(BOOKED_MOVIES_SQL, Long.class,
+                userId, aiProperties.getUserVectorMaxBookings());
+        for (Long movieId : booked) {
+            movieWeights.merge(movieId, aiProperties.getUserVectorBookingWeight(), Math::max);
+        }
+
+        float[] sum = null;
+        for (Map.Entry<Long, float[]> entry : movieVectorIndex.vectorsOf(movieWeights.keySet()).entrySet()) {
+            sum = addScaled(sum, entry.getValue(), movieWeights.get(entry.getKey()));
+        }
+
+        Map<String, float[]> centroids = centroids();
+        for (Map.Entry<String, Integer> genre : genreScores.entrySet()) {
+            Integer score = genre.getValue();
+            float[] centroid = genre.getKey() == null ? null : centroids.get(genre.getKey().trim().toLowerCase(Locale.ROOT));
+            if (score == null || score < 3 || centroid == null) {
+                continue;
+            }
+            sum = addScaled(sum, centroid, aiProperties.getUserVectorGenreWeight() * (score - 2) / 3.0);
+        }
+
+        if (sum == null || !MovieVectorIndex.normalize(sum)) {
+            return Optional.empty();
+        }
+        return Optional.of(Embedding.of(sum));
+    }
+
+    private Map<String, float[]> centroids() {
+        Map<String, float[]> current = genreCentroids;
+        if (current == null) {
+            synchronized (this) {
+                if (genreCentroids == null) {
+                    rebuildCentroids();
+                }
+                current = genreCentroids;
+            }
+        }
+        return current;
+    }
+
+    private void rebuildCentroids() {
+        long started = System.nanoTime();
+        Map<Long, String> genreByMovie = new HashMap<>();
+        jdbcTemplate.query(MOVIE_GENRES_SQL, rs -> {
+            genreByMovie.put(rs.getLong("id"), rs.getString("genre"));
+        });
+        Map<String, float[]> sums = new HashMap<>();
+        for (Map.Entry<Long, float[]> entry : movieVectorIndex.vectorsOf(genreByMovie.keySet()).entrySet()) {
+            sums.merge(genreByMovie.get(entry.getKey()), entry.getValue(), (a, b) -> addScaled(a, b, 1.0));
+        }
+        Map<String, float[]> centroids = new HashMap<>();
+        sums.forEach((genre, sum) -> {
+            if (MovieVectorIndex.normalize(sum)) {
+                centroids.put(genre, sum);
+            }
+        });
+        genreCentroids = centroids;
+        log.info("Genre centroids rebuilt for {} genres in {} ms",
+                centroids.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static float[] addScaled(float[] target, float[] vector, double weight) {
+        float[] result = target != null ? target : new float[vector.length];
+        float w = (float) weight;
+        for (int i = 0; i < result.length; i++) {
+            result[i] += w * vector[i];
+        }
+        return result;
+    }
+}
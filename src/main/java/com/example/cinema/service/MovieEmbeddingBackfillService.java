@@ -0,0 +1,446 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Movie embedding backfill - embeds every movie without a vector_store row.
+ *
+ * Pipeline:
+ * 1. Keyset-paged reader (id > cursor, no vector_store row) produces batches of movie texts
+ * 2. Workers embed a whole batch with one EmbeddingModel.embed(List) call, under a shared
+ *    requests/min + tokens/min limiter, with retry and backoff on transient failures
+ * 3. Each batch is upserted into vector_store as one JDBC batch with binary vector binding
+ *
+ * Progress is checkpointed in embedding_backfill_checkpoints as a low watermark: the highest
+ * movie id below which every batch has been written. Batches finish out of order, so the
+ * watermark only advances over a contiguous run of finished batches. A failed batch stops the
+ * job and holds the watermark; resuming restarts from it and skips movies already embedded.
+ * The checkpoint row doubles as a claim so only one node runs the backfill at a time.
+ * runAsync claims on the caller's thread and runs the job on a background thread, for the
+ * admin endpoint; progress is polled through getStatus.
+ */
+@Service
+@Slf4j
+public class MovieEmbeddingBackfillService {
+
+    static final String JOB_NAME = "movie-embeddings";
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long STALE_CLAIM_MINUTES = 10;
+
+    private static final String NEXT_PAGE_SQL = """
+            SELECT m.id, m.title, m.description, m.genre, m.director
+            FROM movies m
+            WHERE m.id > ?
+              AND NOT EXISTS (
+                  SELECT 1
+                  FROM vector_store vs
+                  WHERE vs.metadata IS NOT NULL
+                    AND vs.metadata::jsonb ->> 'movieId' = m.id::text
+              )
+            ORDER BY m.id
+            LIMIT ?
+            """;
+
+    private static final String UPSERT_VECTOR_SQL = """
+            INSERT INTO vector_store (id, content, metadata, embedding)
+            VALUES (?, ?, CAST(? AS json), ?)
+            ON CONFLICT (id) DO UPDATE SET
+                content = EXCLUDED.content,
+                metadata = EXCLUDED.metadata,
+                embedding = EXCLUDED.embedding
+            """;
+
+    private static final String ENSURE_CHECKPOINT_SQL = """
+            INSERT INTO embedding_backfill_checkpoints (job_name, status)
+            VALUES (?, 'NEW')
+            ON CONFLICT (job_name) DO NOTHING
+            """;
+
+    // Restart from 0 when asked to, or when the previous run completed; otherwise resume
+    private static final String CLAIM_CHECKPOINT_SQL = """
+            UPDATE embedding_backfill_checkpoints
+            SET status = 'RUNNING',
+                last_movie_id = CASE WHEN ? OR status = 'COMPLETED' THEN 0 ELSE last_movie_id END,
+                embedded = CASE WHEN ? OR status = 'COMPLETED' THEN 0 ELSE embedded END,
+                failed = 0,
+                started_at = CURRENT_TIMESTAMP,
+                updated_at = CURRENT_TIMESTAMP
+            WHERE job_name = ? AND (status <> 'RUNNING' OR updated_at < ?)
+            RETURNING last_movie_id, embedded
+            """;
+
+    private static final String SAVE_CHECKPOINT_SQL = """
+            UPDATE embedding_backfill_checkpoints
+            SET status = ?, last_movie_id = ?, embedded = ?, failed = ?, updated_at = CURRENT_TIMESTAMP
+            WHERE job_name = ?
+            """;
+
+    private static final String LOAD_CHECKPOINT_SQL = """
+            SELECT status, last_movie_id, embedded, failed, started_at, updated_at
+            FROM embedding_backfill_checkpoints
+            WHERE job_name = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgVectorBinding pgVectorBinding;
+    private final EmbeddingModel embeddingModel;
+    private final AiProperties aiProperties;
+    private final MovieVectorIndex movieVectorIndex;
+    private final CacheManagementService cacheManagementService;
+    private final MovieSimilarityService movieSimilarityService;
+    private final EmbeddingSpendMeter embeddingSpendMeter;
+
+    private final ExecutorService runExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "embedding-backfill-run");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MovieEmbeddingBackfillService(JdbcTemplate jdbcTemplate,
+                                         PgVectorBinding pgVectorBinding,
+                                         EmbeddingModel embeddingModel,
+                                         AiProperties aiProperties,
+                                         MovieVectorIndex movieVectorIndex,
+                                         CacheManagementService cacheManagementService,
+                                         MovieSimilarityService movieSimilarityService,
+                                         EmbeddingSpendMeter embeddingSpendMeter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pgVectorBinding = pgVectorBinding;
+        this.embeddingModel = embeddingModel;
+        this.aiProperties = aiProperties;
+        this.movieVectorIndex = movieVectorIndex;
+        this.cacheManagementService = cacheManagementService;
+        this.movieSimilarityService = movieSimilarityService;
+        this.embeddingSpendMeter = embeddingSpendMeter;
+    }
+
+    /**
+     * Run the backfill to completion on the calling thread.
+     *
+     * @param restart ignore the checkpoint and start from the first movie
+     * @throws IllegalStateException if another run holds the checkpoint
+     */
+    public BackfillStatus run(boolean restart) {
+        return execute(claim(restart), restart);
+    }
+
+    /**
+     * Claim the checkpoint and run the backfill in the background.
+     *
+     * @return the claimed checkpoint (status RUNNING)
+     * @throws IllegalStateException if another run holds the checkpoint
+     */
+    public BackfillStatus runAsync(boolean restart) {
+        Checkpoint start = claim(restart);
+        runExecutor.submit(() -> {
+            try {
+                execute(start, restart);
+            } catch (Exception e) {
+                log.error("Embedding backfill failed: {}", e.getMessage(), e);
+            }
+        });
+        return getStatus().orElseThrow();
+    }
+
+    private BackfillStatus execute(Checkpoint start, boolean restart) {
+        int batchSize = Math.max(aiProperties.getBackfillBatchSize(), 1);
+        int concurrency = Math.max(aiProperties.getBackfillConcurrency(), 1);
+        RateLimiter rateLimiter = new RateLimiter(
+                aiProperties.getBackfillRequestsPerMinute(), aiProperties.getBackfillTokensPerMinute());
+        Progress progress = new Progress(start.lastMovieId(), start.embedded());
+
+        log.info("Embedding backfill started from movie id {} (batch={}, concurrency={})",
+                start.lastMovieId(), batchSize, concurrency);
+
+        AtomicInteger threadNo = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "embedding-backfill-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bounds read-ahead: at most two batches queued per worker
+        Semaphore inFlight = new Semaphore(concurrency * 2);
+
+        try {
+            long cursor = start.lastMovieId();
+            while (!progress.hasFailed()) {
+                List<MovieText> page = jdbcTemplate.query(NEXT_PAGE_SQL,
+                        (rs, i) -> new MovieText(rs.getLong("id"), EmbeddingService.buildMovieText(
+                                rs.getString("title"), rs.getString("description"),
+                                rs.getString("genre"), rs.getString("director"))),
+                        cursor, batchSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                cursor = page.get(page.size() - 1).movieId();
+
+                Batch batch = progress.enqueue(cursor);
+                inFlight.acquire();
+                workers.submit(() -> {
+                    try {
+                        processBatch(page, rateLimiter);
+                        progress.completed(batch, page);
+                    } catch (Exception e) {
+                        progress.failed(page.size());
+                        log.error("Embedding backfill batch ending at movie {} failed: {}", batch.lastMovieId, e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                    saveCheckpoint("RUNNING", progress);
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.failed(0);
+        } finally {
+            workers.shutdown();
+            try {
+                workers.awaitTermination(1, TimeUnit.HOURS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        String finalStatus = progress.hasFailed() ? "FAILED" : "COMPLETED";
+        saveCheckpoint(finalStatus, progress);
+        log.info("Embedding backfill {}: {} embedded, {} failed, watermark at movie id {}",
+                finalStatus, progress.embedded.get(), progress.failed.get(), progress.watermark());
+
+        if (progress.embeddedThisRun.get() > 0) {
+            movieVectorIndex.reload();
+            refreshSimilarMovies(progress.embeddedIds, restart);
+            cacheManagementService.onBatchEmbeddingCompleted();
+        }
+        return getStatus().orElseThrow();
+    }
+
+    /**
+     * Full rebuild on a restart or when no list exists yet; otherwise only the movies embedded
+     * in this run and the lists they enter are recomputed.
+     */
+    private void refreshSimilarMovies(Collection<Long> embeddedIds, boolean restart) {
+        if (restart || movieSimilarityService.isEmpty()) {
+            movieSimilarityService.rebuildAllAsync();
+            return;
+        }
+        embeddedIds.forEach(movieSimilarityService::onEmbeddingChanged);
+        log.info("Recomputed similar movies around {} newly embedded movies", embeddedIds.size());
+    }
+
+    public Optional<BackfillStatus> getStatus() {
+        List<BackfillStatus> rows = jdbcTemplate.query(LOAD_CHECKPOINT_SQL, (rs, i) -> new BackfillStatus(
+                rs.getString("status"),
+                rs.getLong("last_movie_id"),
+                rs.getLong("embedded"),
+                rs.getLong("failed"),
+                rs.getTimestamp("started_at").toLocalDateTime(),
+                rs.getTimestamp("updated_at").toLocalDateTime()
+        ), JOB_NAME);
+        return rows.stream().findFirst();
+    }
+
+    // ── Batch processing ─────────────────────────────────────────────────────
+
+    private void processBatch(List<MovieText> page, RateLimiter rateLimiter) throws InterruptedException {
+        List<String> texts = page.stream().map(MovieText::text).toList();
+        int estimatedTokens = texts.stream().mapToInt(t -> t.length() / 4 + 1).sum();
+
+        List<float[]> vectors = null;
+        for (int attempt = 1; vectors == null; attempt++) {
+            rateLimiter.acquire(estimatedTokens);
+            try {
+                EmbeddingResponse response = embeddingModel.embedForResponse(texts);
+                embeddingSpendMeter.record("backfill", response, texts);
+                vectors = response.getResults().stream()
+                        .map(org.springframework.ai.embedding.Embedding::getOutput)
+                        .toList();
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                long delay = RETRY_DELAY_MS << (attempt - 1);
+                log.warn("Embedding batch attempt {} failed, retrying in {} ms: {}", attempt, delay, e.getMessage());
+                Thread.sleep(delay);
+            }
+        }
+        if (vectors.size() != page.size()) {
+            throw new IllegalStateException("Embedding model returned " + vectors.size() + " vectors for " + page.size() + " texts");
+        }
+
+        List<float[]> embeddings = vectors;
+        jdbcTemplate.execute(pgVectorBinding.statement(UPSERT_VECTOR_SQL, ps -> {
+            for (int i = 0; i < page.size(); i++) {
+                MovieText movie = page.get(i);
+                ps.setObject(1, UUID.fromString(MovieEmbeddingService.movieDocId(movie.movieId())));
+                ps.setString(2, movie.text());
+                ps.setString(3, "{\"movieId\":\"" + movie.movieId() + "\"}");
+                pgVectorBinding.setVector(ps, 4, Embedding.of(embeddings.get(i)));
+                ps.addBatch();
+            }
+        }), (PreparedStatementCallback<int[]>) PreparedStatement::executeBatch);
+    }
+
+    // ── Checkpoint ───────────────────────────────────────────────────────────
+
+    private Checkpoint claim(boolean restart) {
+        jdbcTemplate.update(ENSURE_CHECKPOINT_SQL, JOB_NAME);
+        Timestamp staleBefore = Timestamp.valueOf(LocalDateTime.now().minusMinutes(STALE_CLAIM_MINUTES));
+        List<Checkpoint> claimed = jdbcTemplate.query(CLAIM_CHECKPOINT_SQL,
+                (rs, i) -> new Checkpoint(rs.getLong("last_movie_id"), rs.getLong("embedded")),
+                restart, restart, JOB_NAME, staleBefore);
+        if (claimed.isEmpty()) {
+            throw new IllegalStateException("Embedding backfill is already running");
+        }
+        return claimed.get(0);
+    }
+
+    private void saveCheckpoint(String status, Progress progress) {
+        try {
+            jdbcTemplate.update(SAVE_CHECKPOINT_SQL, status, progress.watermark(),
+                    progress.embedded.get(), progress.failed.get(), JOB_NAME);
+        } catch (Exception e) {
+            log.warn("Failed to save embedding backfill checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private record Checkpoint(long lastMovieId, long embedded) {}
+
+    private record MovieText(long movieId, String text) {}
+
+    private static final class Batch {
+        private final long lastMovieId;
+        private volatile boolean done;
+
+        Batch(long lastMovieId) {
+            this.lastMovieId = lastMovieId;
+        }
+    }
+
+    /**
+     * Low watermark over out-of-order batch completion.
+     */
+    private static final class Progress {
+        private final Deque<Batch> pending = new ArrayDeque<>();
+        private final AtomicLong embedded;
+        private final AtomicLong embeddedThisRun = new AtomicLong();
+        private final Queue<Long> embeddedIds = new ConcurrentLinkedQueue<>();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile boolean hasFailed;
+        private long watermark;
+
+        Progress(long watermark, long embedded) {
+            this.watermark = watermark;
+            this.embedded = new AtomicLong(embedded);
+        }
+
+        synchronized Batch enqueue(long lastMovieId) {
+            Batch batch = new Batch(lastMovieId);
+            pending.addLast(batch);
+            return batch;
+        }
+
+        synchronized void completed(Batch batch, List<MovieText> movies) {
+            embedded.addAndGet(movies.size());
+            embeddedThisRun.addAndGet(movies.size());
+            movies.forEach(movie -> embeddedIds.add(movie.movieId()));
+            batch.done = true;
+            while (!pending.isEmpty() && pending.peekFirst().done) {
+                watermark = pending.pollFirst().lastMovieId;
+            }
+        }
+
+        void failed(int movies) {
+            failed.addAndGet(movies);
+            hasFailed = true;
+        }
+
+        boolean hasFailed() {
+            return hasFailed;
+        }
+
+        synchronized long watermark() {
+            return watermark;
+        }
+    }
+
+    /**
+     * Requests/min + tokens/min token buckets shared by all workers (provider rate limits).
+     */
+    static final class RateLimiter {
+        private final double requestsPerNano;
+        private final double tokensPerNano;
+        private final double requestCapacity;
+        private final double tokenCapacity;
+        private double requests;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        RateLimiter(int requestsPerMinute, int tokensPerMinute) {
+            this.requestCapacity = Math.max(requestsPerMinute, 1);
+            this.tokenCapacity = Math.max(tokensPerMinute, 1);
+            this.requestsPerNano = requestCapacity / TimeUnit.MINUTES.toNanos(1);
+            this.tokensPerNano = tokenCapacity / TimeUnit.MINUTES.toNanos(1);
+            // Start with a small burst rather than a full minute of budget
+            this.requests = Math.min(requestCapacity, 1 + requestCapacity / 60);
+            this.tokens = Math.min(tokenCapacity, tokenCapacity / 60);
+        }
+
+        void acquire(int tokenCost) throws InterruptedException {
+            double cost = Math.min(tokenCost, tokenCapacity);
+            while (true) {
+                long waitNanos;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    requests = Math.min(requestCapacity, requests + (now - lastRefill) * requestsPerNano);
+                    tokens = Math.min(tokenCapacity, tokens + (now - lastRefill) * tokensPerNano);
+                    lastRefill = now;
+                    if (requests >= 1 && tokens >= cost) {
+                        requests -= 1;
+                        tokens -= cost;
+                        return;
+                    }
+                    double requestWait = requests >= 1 ? 0 : (1 - requests) / requestsPerNano;
+                    double tokenWait = tokens >= cost ? 0 : (cost - tokens) / tokensPerNano;
+                    waitNanos = (long) Math.ceil(Math.max(requestWait, tokenWait));
+                }
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000));
+            }
+        }
+    }
+
+    // DTO
+    public record BackfillStatus(
+            String status,
+            long lastMovieId,
+            long embedded,
+            long failed,
+            LocalDateTime startedAt,
+            LocalDateTime updatedAt
+    ) {}
+}
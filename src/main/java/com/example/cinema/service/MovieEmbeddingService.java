@@ -6,7 +6,6 @@ import com.example.cinema.repository.MovieRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
@@ -15,6 +14,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -24,9 +26,10 @@ import static com.example.cinema.config.CacheConfig.*;
  * Movie Embedding Service - Manages AI embeddings for movies
  *
  * Write path : VectorStore.add()              → vector_store table (for similarity search)
+ *              MovieEmbeddingBackfillService  → batched bulk backfill of the same rows
  *
- * Search path: VectorStore.similaritySearch()  → returns Documents with movieId metadata
- *              → fetch Movie entities by ID
+ * Search path: MovieVectorIndex (in memory) or pgvector on the stored row → scored movie ids
+ *              → optional MMR re-rank → fetch Movie entities by ID
  */
 @Service
 @RequiredArgsConstructor
@@ -36,13 +39,30 @@ public class MovieEmbeddingService {
     private final MovieRepository movieRepository;
     private final VectorStore vectorStore;
     private final AiProperties aiProperties;
+    private final MovieVectorIndex movieVectorIndex;
+    private final MovieEmbeddingBackfillService movieEmbeddingBackfillService;
+    private final MovieSimilarityService movieSimilarityService;
+    private final SingleFlight singleFlight;
 
     /**
      * Generate and save embedding for a single movie.
      * Writes to vector_store table only (via Spring AI PgVectorStore).
+     *
+     * Concurrent calls for the same movie (e.g. many users opening a new movie's similar list)
+     * share one call; on other nodes they wait for the row to appear instead of embedding again.
      */
     @Transactional
     public Movie generateAndSaveMovieEmbedding(Movie movie) {
+        return singleFlight.execute("movie-vector:" + movie.getId(), () -> embedAndSave(movie), () -> {
+            if (!hasEmbedding(movie)) {
+                return null;
+            }
+            movieVectorIndex.refreshMovie(movie.getId());
+            return movie;
+        });
+    }
+
+    private Movie embedAndSave(Movie movie) {
         try {
             log.info("Generating embedding for movie: {} (ID: {})", movie.getTitle(), movie.getId());
 
@@ -56,6 +76,8 @@ public class MovieEmbeddingService {
             Document doc = new Document(docId, movieText,
                 Map.of("movieId", movie.getId().toString()));
             vectorStore.add(List.of(doc));
+            movieVectorIndex.refreshMovie(movie.getId());
+            movieSimilarityService.onEmbeddingChanged(movie.getId());
 
             log.info("Saved embedding for movie: {}", movie.getTitle());
             return movie;
@@ -69,37 +91,10 @@ public class MovieEmbeddingService {
 
     /**
      * Generate embeddings for all movies that don't have one yet (batch processing).
+     * Resumes from the last checkpoint if a previous run stopped part-way.
      */
-    @Transactional
-    public void generateEmbeddingsForAllMovies() {
-        log.info("Starting batch embedding generation for all movies without embeddings");
-
-        List<Long> movieIdsWithoutEmbeddings = movieRepository.findMovieIdsWithoutEmbeddings();
-        if (movieIdsWithoutEmbeddings.isEmpty()) {
-            log.info("All movies already have embeddings. No processing needed.");
-            return;
-        }
-
-        log.info("Found {} movies without embeddings. Starting generation...",
-                 movieIdsWithoutEmbeddings.size());
-
-        int successCount = 0;
-        int failureCount = 0;
-
-        for (Long movieId : movieIdsWithoutEmbeddings) {
-            try {
-                Movie movie = movieRepository.findById(movieId)
-                        .orElseThrow(() -> new RuntimeException("Movie not found: " + movieId));
-                generateAndSaveMovieEmbedding(movie);
-                successCount++;
-                Thread.sleep(Math.max(aiProperties.getBatchEmbeddingDelayMs(), 0));
-            } catch (Exception e) {
-                failureCount++;
-                log.warn("Failed to generate embedding for movieId {}. Skipping.", movieId);
-            }
-        }
-
-        log.info("Batch embedding completed. Success: {}, Failures: {}", successCount, failureCount);
+    public MovieEmbeddingBackfillService.BackfillStatus generateEmbeddingsForAllMovies() {
+        return movieEmbeddingBackfillService.run(false);
     }
 
     /**
@@ -134,59 +129,114 @@ public class MovieEmbeddingService {
     }
 
     /**
-     * Find movies similar to targetMovie using Spring AI PgVectorStore.
-     * VectorStore executes a native pgvector <=> query — no in-memory computation.
+     * Similar movies from the precomputed movie_similarities table (single indexed lookup).
+     * Empty Optional when the movie's neighbours have not been computed yet.
      */
-    public List<Movie> findSimilarMovies(Movie targetMovie, double similarityThreshold, int limit) {
-        if (!hasEmbedding(targetMovie)) {
-            log.warn("Movie {} has no embedding. Cannot find similar movies.", targetMovie.getTitle());
-            return List.of();
+    public Optional<List<Movie>> findPrecomputedSimilarMovies(Movie targetMovie, double similarityThreshold, int limit) {
+        return findPrecomputedSimilarMovies(targetMovie, similarityThreshold, limit, false);
+    }
+
+    /**
+     * @param diversify MMR re-rank of a wider candidate pool (see MovieVectorIndex.diversify)
+     */
+    public Optional<List<Movie>> findPrecomputedSimilarMovies(Movie targetMovie, double similarityThreshold,
+                                                              int limit, boolean diversify) {
+        List<MovieVectorIndex.ScoredMovie> stored = movieSimilarityService.findNeighbours(
+            targetMovie.getId(), Math.max(candidatePool(limit, diversify), aiProperties.getSimilarMoviesTopK()));
+        if (stored.isEmpty()) {
+            return Optional.empty();
         }
+        return Optional.of(fetchInOrder(select(stored, similarityThreshold, limit, diversify)));
+    }
 
-        String movieText = EmbeddingService.buildMovieText(
-            targetMovie.getTitle(), targetMovie.getDescription(),
-            targetMovie.getGenre(), targetMovie.getDirector());
+    /**
+     * Find movies similar to targetMovie.
+     * Uses the stored embedding in MovieVectorIndex when loaded (no embedding call, no DB
+     * round-trip for the search); otherwise one pgvector query against the movie's stored
+     * vector_store row, which returns the scores as well.
+     */
+    public List<Movie> findSimilarMovies(Movie targetMovie, double similarityThreshold, int limit) {
+        return findSimilarMovies(targetMovie, similarityThreshold, limit, false);
+    }
 
+    /**
+     * @param diversify MMR re-rank of a wider candidate pool (see MovieVectorIndex.diversify)
+     */
+    public List<Movie> findSimilarMovies(Movie targetMovie, double similarityThreshold, int limit, boolean diversify) {
         double primaryThreshold = Math.max(similarityThreshold, aiProperties.getSimilarMoviePrimaryThreshold());
         double fallbackThreshold = Math.max(
             Math.min(primaryThreshold - 0.05, aiProperties.getSimilarMovieFallbackThreshold()),
             0.0
         );
+        int pool = candidatePool(limit, diversify);
 
-        int topK = Math.max(limit + 1, limit * Math.max(aiProperties.getRecommendationCandidateMultiplier(), 1));
-
-        List<Movie> results = searchAndFetch(movieText, primaryThreshold, topK, targetMovie.getId());
-
-        if (results.size() < Math.min(2, limit)) {
-            results = searchAndFetch(movieText, fallbackThreshold, topK, targetMovie.getId());
-            log.info("findSimilarMovies - fallback threshold {} → {} results", fallbackThreshold, results.size());
+        // One search at the fallback threshold covers both passes
+        List<MovieVectorIndex.ScoredMovie> scored;
+        if (movieVectorIndex.isReady() && movieVectorIndex.contains(targetMovie.getId())) {
+            float[] vector = movieVectorIndex.vectorOf(targetMovie.getId()).orElseThrow();
+            scored = movieVectorIndex.search(vector, fallbackThreshold, pool, Set.of(targetMovie.getId()));
         } else {
-            log.info("findSimilarMovies - primary threshold {} → {} results", primaryThreshold, results.size());
+            scored = movieVectorIndex.searchDatabaseSimilarTo(targetMovie.getId(), fallbackThreshold, pool);
+            if (scored.isEmpty() && !hasEmbedding(targetMovie)) {
+                log.warn("Movie {} has no embedding. Cannot find similar movies.", targetMovie.getTitle());
+                return List.of();
+            }
+            log.info("findSimilarMovies - pgvector → {} candidates above {}", scored.size(), fallbackThreshold);
         }
-
-        return results.stream().limit(limit).collect(Collectors.toList());
+        return fetchInOrder(select(scored, similarityThreshold, limit, diversify));
     }
 
     // ── Private helpers ──────────────────────────────────────────────────────
 
-    private List<Movie> searchAndFetch(String query, double threshold, int topK, Long excludeMovieId) {
-        List<Document> docs = vectorStore.similaritySearch(
-            SearchRequest.builder()
-                .query(query)
-                .topK(topK)
-                .similarityThreshold(threshold)
-                .build());
-
-        List<Long> movieIds = docs.stream()
-            .map(d -> Long.parseLong(d.getMetadata().get("movieId").toString()))
-            .filter(id -> !id.equals(excludeMovieId))
+    private int candidatePool(int limit, boolean diversify) {
+        return diversify ? limit * Math.max(aiProperties.getMmrCandidateMultiplier(), 1) : limit;
+    }
+
+    /**
+     * Threshold selection, then (optionally) MMR down to {@code limit}.
+     */
+    private List<Long> select(List<MovieVectorIndex.ScoredMovie> scored, double similarityThreshold,
+                              int limit, boolean diversify) {
+        List<MovieVectorIndex.ScoredMovie> selected =
+            selectByThreshold(scored, similarityThreshold, candidatePool(limit, diversify));
+        if (diversify) {
+            selected = movieVectorIndex.diversify(selected, limit, aiProperties.getMmrLambda());
+        }
+        return selected.stream().map(MovieVectorIndex.ScoredMovie::movieId).collect(Collectors.toList());
+    }
+
+    /**
+     * Primary threshold if it leaves enough results, otherwise everything above the fallback threshold.
+     */
+    private List<MovieVectorIndex.ScoredMovie> selectByThreshold(List<MovieVectorIndex.ScoredMovie> scored,
+                                                                 double similarityThreshold, int limit) {
+        double primaryThreshold = Math.max(similarityThreshold, aiProperties.getSimilarMoviePrimaryThreshold());
+        double fallbackThreshold = Math.max(
+            Math.min(primaryThreshold - 0.05, aiProperties.getSimilarMovieFallbackThreshold()),
+            0.0
+        );
+
+        List<MovieVectorIndex.ScoredMovie> selected = scored.stream()
+            .filter(m -> m.score() >= primaryThreshold)
+            .limit(limit)
             .collect(Collectors.toList());
+        if (selected.size() < Math.min(2, limit)) {
+            selected = scored.stream()
+                .filter(m -> m.score() >= fallbackThreshold)
+                .limit(limit)
+                .collect(Collectors.toList());
+        }
+        return selected;
+    }
 
-        return movieRepository.findAllById(movieIds);
+    private List<Movie> fetchInOrder(List<Long> movieIds) {
+        Map<Long, Movie> byId = movieRepository.findAllById(movieIds).stream()
+            .collect(Collectors.toMap(Movie::getId, m -> m));
+        return movieIds.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     /** Deterministic UUID for a movie document — guarantees upsert stability in vector_store. */
-    private static String movieDocId(Long movieId) {
+    static String movieDocId(Long movieId) {
         return UUID.nameUUIDFromBytes(("movie:" + movieId).getBytes(StandardCharsets.UTF_8)).toString();
     }
 
@@ -0,0 +1,292 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import com.example.cinema.dto.MovieResponseDto;
+import com.example.cinema.entity.Movie;
+import com.example.cinema.repository.MovieRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Movie Search Service - hybrid lexical + vector movie search.
+ *
+ * Lexical leg: Postgres full-text (movies.search_vector) and trigram indexes (V14), ranked by
+ * title word-similarity + ts_rank_cd. Vector leg: query embedding (two-tier cache) against
+ * MovieVectorIndex / pgvector, or the local n-gram index while the remote model is unavailable.
+ * The two rankings are merged with reciprocal rank fusion: score = Σ 1 / (k + rank).
+ *
+ * Modes:
+ *   LEXICAL  : indexes only, never calls the embedding API
+ *   SEMANTIC : vector leg only (same candidates as semantic search)
+ *   HYBRID   : both legs fused with RRF
+ *   AUTO     : lexical first; a confident title match is answered lexically, otherwise HYBRID
+ *
+ * The vector leg can cost a paid embedding call, so anonymous callers always get LEXICAL and
+ * each signed-in user gets at most app.search.vector-requests-per-minute vector legs per node;
+ * past that the leg is served from the local n-gram index when it is loaded, else dropped.
+ */
+@Service
+@Slf4j
+public class MovieSearchService {
+
+    // Query literals are inlined (not a CTE) so the planner can match them against the GIN indexes
+    private static final String LEXICAL_SQL = """
+            SELECT id, title_similarity, text_rank
+            FROM (
+                SELECT m.id,
+                       word_similarity(lower(?), lower(m.title))                          AS title_similarity,
+                       ts_rank_cd(m.search_vector, websearch_to_tsquery('simple', ?), 32) AS text_rank
+                FROM movies m
+                WHERE m.search_vector @@ websearch_to_tsquery('simple', ?)
+                   OR lower(m.title) LIKE ?
+                   OR lower(m.director) LIKE ?
+                   OR lower(m.genre) LIKE ?
+                   OR lower(?) <% lower(m.title)
+            ) hits
+            ORDER BY 2 * title_similarity + text_rank DESC, id
+            LIMIT ?
+            """;
+
+    public enum SearchMode { AUTO, LEXICAL, SEMANTIC, HYBRID }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MovieRepository movieRepository;
+    private final MovieVectorIndex movieVectorIndex;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final LocalEmbeddingFallback localEmbeddingFallback;
+    private final AiProperties aiProperties;
+    private final int rrfK;
+    private final int candidates;
+    private final double titleMatchThreshold;
+    private final VectorLegLimiter vectorLegLimiter;
+
+    public MovieSearchService(JdbcTemplate jdbcTemplate,
+                              MovieRepository movieRepository,
+                              MovieVectorIndex movieVectorIndex,
+                              QueryEmbeddingCache queryEmbeddingCache,
+                              LocalEmbeddingFallback localEmbeddingFallback,
+                              AiProperties aiProperties,
+                              @Value("${app.search.rrf-k:60}") int rrfK,
+                              @Value("${app.search.candidates:50}") int candidates,
+                              @Value("${app.search.title-match-threshold:0.8}") double titleMatchThreshold,
+                              @Value("${app.search.vector-requests-per-minute:30}") int vectorRequestsPerMinute) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.movieRepository = movieRepository;
+        this.movieVectorIndex = movieVectorIndex;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.localEmbeddingFallback = localEmbeddingFallback;
+        this.aiProperties = aiProperties;
+        this.rrfK = rrfK;
+        this.candidates = candidates;
+        this.titleMatchThreshold = titleMatchThreshold;
+        this.vectorLegLimiter = new VectorLegLimiter(vectorRequestsPerMinute);
+    }
+
+    /**
+     * @param userId signed-in caller, or null for anonymous (lexical only)
+     */
+    public SearchResponse search(String query, SearchMode mode, int limit, Long userId) {
+        long started = System.nanoTime();
+        String trimmed = query.trim();
+        int depth = Math.max(candidates, limit);
+        if (userId == null) {
+            mode = SearchMode.LEXICAL;
+        }
+
+        List<LexicalHit> lexical = mode == SearchMode.SEMANTIC ? List.of() : lexicalSearch(trimmed, depth);
+        SearchMode resolved = mode;
+        if (mode == SearchMode.AUTO) {
+            boolean titleMatch = !lexical.isEmpty() && lexical.get(0).titleSimilarity() >= titleMatchThreshold;
+            resolved = titleMatch ? SearchMode.LEXICAL : SearchMode.HYBRID;
+        }
+
+        VectorLeg vector = resolved == SearchMode.LEXICAL ? VectorLeg.NONE : vectorSearch(trimmed, depth, userId);
+
+        List<Long> lexicalIds = lexical.stream().map(LexicalHit::movieId).toList();
+        List<Fused> fused = fuse(lexicalIds, vector.movieIds(), limit, rrfK);
+        List<SearchHit> hits = toHits(fused);
+
+        long tookMillis = (System.nanoTime() - started) / 1_000_000;
+        log.debug("Movie search '{}' mode={} → {} (lexical={}, vector={} via {}) in {} ms",
+                trimmed, mode, resolved, lexicalIds.size(), vector.movieIds().size(), vector.source(), tookMillis);
+        return new SearchResponse(trimmed, resolved, vector.source(), hits, tookMillis);
+    }
+
+    private List<LexicalHit> lexicalSearch(String query, int limit) {
+        String pattern = "%" + escapeLike(query.toLowerCase(Locale.ROOT)) + "%";
+        return jdbcTemplate.query(LEXICAL_SQL,
+                (rs, i) -> new LexicalHit(rs.getLong("id"), rs.getDouble("title_similarity"), rs.getDouble("text_rank")),
+                query, query, query, pattern, pattern, pattern, query, limit);
+    }
+
+    /**
+     * Vector ranking for the query. Degrades to the local index, then to no vector leg at all,
+     * so a failing embedding API (or a caller over the per-minute limit) never fails the search.
+     */
+    private VectorLeg vectorSearch(String query, int limit, long userId) {
+        if (!vectorLegLimiter.tryAcquire(userId)) {
+            log.debug("Vector leg rate limit reached for user {}", userId);
+            return localEmbeddingFallback.isReady() ? localVectorLeg(query, limit) : VectorLeg.NONE;
+        }
+        boolean tryRemote = localEmbeddingFallback.isRemoteAvailable() || !localEmbeddingFallback.isReady();
+        try {
+            Embedding embedding = tryRemote
+                    ? queryEmbeddingCache.get(query)
+                    // Remote marked down: a query already in L1/L2 still needs no API call
+                    : queryEmbeddingCache.getCached(query).orElse(null);
+            if (embedding != null) {
+                return remoteVectorLeg(embedding, limit);
+            }
+        } catch (RuntimeException e) {
+            if (localEmbeddingFallback.isReady()) {
+                localEmbeddingFallback.recordRemoteFailure(e);
+            } else {
+                log.warn("Vector leg unavailable for '{}', lexical results only: {}", query, e.getMessage());
+                return VectorLeg.NONE;
+            }
+        }
+        if (localEmbeddingFallback.isReady()) {
+            return localVectorLeg(query, limit);
+        }
+        return VectorLeg.NONE;
+    }
+
+    private VectorLeg remoteVectorLeg(Embedding embedding, int limit) {
+        double threshold = aiProperties.getSemanticFallbackThreshold();
+        List<Long> ids = movieVectorIndex.isReady()
+                ? movieVectorIndex.search(embedding, threshold, limit, Set.of()).stream()
+                        .map(MovieVectorIndex.ScoredMovie::movieId)
+                        .toList()
+                : movieVectorIndex.searchDatabase(embedding, threshold, limit);
+        return new VectorLeg("remote", ids);
+    }
+
+    private VectorLeg localVectorLeg(String query, int limit) {
+        return new VectorLeg("local", localEmbeddingFallback.search(query, limit).stream()
+                .map(MovieVectorIndex.ScoredMovie::movieId)
+                .toList());
+    }
+
+    /**
+     * Reciprocal rank fusion; a leg that is absent simply contributes nothing, so single-leg
+     * modes keep that leg's order.
+     */
+    static List<Fused> fuse(List<Long> lexicalIds, List<Long> vectorIds, int limit, int rrfK) {
+        Map<Long, Fused> byId = new LinkedHashMap<>();
+        for (int i = 0; i < lexicalIds.size(); i++) {
+            byId.computeIfAbsent(lexicalIds.get(i), Fused::new).addLexical(i + 1, rrfK);
+        }
+        for (int i = 0; i < vectorIds.size(); i++) {
+            byId.computeIfAbsent(vectorIds.get(i), Fused::new).addVector(i + 1, rrfK);
+        }
+        return byId.values().stream()
+                .sorted(Comparator.comparingDouble(Fused::score).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private List<SearchHit> toHits(List<Fused> fused) {
+        if (fused.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Movie> movieById = movieRepository.findAllById(fused.stream().map(Fused::movieId).toList())
+                .stream()
+                .collect(Collectors.toMap(Movie::getId, Function.identity()));
+        List<SearchHit> hits = new ArrayList<>(fused.size());
+        for (Fused f : fused) {
+            Movie movie = movieById.get(f.movieId());
+            if (movie != null) {
+                hits.add(new SearchHit(MovieResponseDto.from(movie), f.score(), f.lexicalRank(), f.vectorRank()));
+            }
+        }
+        return hits;
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private record LexicalHit(long movieId, double titleSimilarity, double textRank) {}
+
+    private record VectorLeg(String source, List<Long> movieIds) {
+        static final VectorLeg NONE = new VectorLeg("none", List.of());
+    }
+
+    static final class Fused {
+        private final long movieId;
+        private double score;
+        private Integer lexicalRank;
+        private Integer vectorRank;
+
+        Fused(long movieId) {
+            this.movieId = movieId;
+        }
+
+        void addLexical(int rank, int k) {
+            lexicalRank = rank;
+            score += 1.0 / (k + rank);
+        }
+
+        void addVector(int rank, int k) {
+            vectorRank = rank;
+            score += 1.0 / (k + rank);
+        }
+
+        long movieId() { return movieId; }
+        double score() { return score; }
+        Integer lexicalRank() { return lexicalRank; }
+        Integer vectorRank() { return vectorRank; }
+    }
+
+    /**
+     * Fixed one-minute window of vector legs per user; counters are dropped when the window rolls.
+     */
+    static final class VectorLegLimiter {
+        private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+        private final int perWindow;
+        private final Map<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+        private long windowStart = System.nanoTime();
+
+        VectorLegLimiter(int perWindow) {
+            this.perWindow = Math.max(perWindow, 1);
+        }
+
+        boolean tryAcquire(long userId) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now - windowStart >= WINDOW_NANOS) {
+                    counts.clear();
+                    windowStart = now;
+                }
+            }
+            return counts.computeIfAbsent(userId, id -> new AtomicInteger()).incrementAndGet() <= perWindow;
+        }
+    }
+
+    // DTO
+    public record SearchHit(
+            MovieResponseDto movie,
+            double score,
+            Integer lexicalRank,
+            Integer vectorRank
+    ) {}
+
+    // DTO
+    public record SearchResponse(
+            String query,
+            SearchMode mode,
+            String vectorSource,
+            List<SearchHit> results,
+            long tookMillis
+    ) {}
+}
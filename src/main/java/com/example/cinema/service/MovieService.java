@@ -25,6 +25,8 @@ public class MovieService {
     private final MovieRepository movieRepository;
     private final CacheManagementService cacheManagementService;
     private final MovieEmbeddingOrchestrator movieEmbeddingOrchestrator;
+    private final MovieVectorIndex movieVectorIndex;
+    private final MovieSimilarityService movieSimilarityService;
 
     /**
      * Get all movies with pagination
@@ -166,6 +168,8 @@ public class MovieService {
         return movieRepository.findById(id)
                 .map(movie -> {
                     movieRepository.delete(movie);
+                    movieVectorIndex.remove(id);
+                    movieSimilarityService.onEmbeddingChanged(id);
                     return true;
                 })
                 .orElse(false);
@@ -177,6 +181,8 @@ public class MovieService {
     public void deleteMovieOrThrow(Long id) {
         Movie movie = getMovieByIdOrThrow(id);
         movieRepository.delete(movie);
+        movieVectorIndex.remove(id);
+        movieSimilarityService.onEmbeddingChanged(id);
         cacheManagementService.onMovieDeleted(id);
     }
 
@@ -0,0 +1,249 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Movie Similarity Service - materialized top-K similar movies per movie (movie_similarities).
+ *
+ * Read path : one primary-key range lookup per movie detail page, no vector search.
+ *
+ * Write path: computed from MovieVectorIndex (exact cosine). When one movie's embedding changes,
+ * only the lists that can change are recomputed:
+ *   - the changed movie itself
+ *   - movies that currently list it (its score to them may have dropped)
+ *   - movies whose K-th neighbour it now beats, or whose list is not full (it may now enter)
+ * A full rebuild is O(N²) dot products and only runs when the table is empty or on request.
+ */
+@Service
+@Slf4j
+public class MovieSimilarityService {
+
+    private static final String FIND_NEIGHBOURS_SQL = """
+            SELECT similar_movie_id, score
+            FROM movie_similarities
+            WHERE movie_id = ?
+            ORDER BY rank
+            LIMIT ?
+            """;
+
+    private static final String REVERSE_NEIGHBOURS_SQL =
+            "SELECT movie_id FROM movie_similarities WHERE similar_movie_id = ?";
+
+    // Per movie: score of its weakest stored neighbour and how many it has
+    private static final String LIST_FLOORS_SQL = """
+            SELECT movie_id, MIN(score) AS floor_score, COUNT(*) AS neighbours
+            FROM movie_similarities
+            GROUP BY movie_id
+            """;
+
+    private static final String DELETE_LISTS_SQL = "DELETE FROM movie_similarities WHERE movie_id = ANY(?)";
+
+    private static final String INSERT_NEIGHBOUR_SQL = """
+            INSERT INTO movie_similarities (movie_id, rank, similar_movie_id, score, computed_at)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    // Lists left short, e.g. by ON DELETE CASCADE when a neighbour movie was deleted
+    private static final String SHORT_LISTS_SQL = """
+            SELECT movie_id FROM movie_similarities
+            GROUP BY movie_id
+            HAVING COUNT(*) < ?
+            """;
+
+    private static final String HAS_ROWS_SQL = "SELECT EXISTS (SELECT 1 FROM movie_similarities)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MovieVectorIndex movieVectorIndex;
+    private final AiProperties aiProperties;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "movie-similarity-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public MovieSimilarityService(JdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  MovieVectorIndex movieVectorIndex,
+                                  AiProperties aiProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.movieVectorIndex = movieVectorIndex;
+        this.aiProperties = aiProperties;
+    }
+
+    /**
+     * First deploy / empty table: build everything once the vector index has loaded.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() {
+        if (!movieVectorIndex.isReady()) {
+            return;
+        }
+        if (isEmpty()) {
+            rebuildAllAsync();
+        }
+    }
+
+    /**
+     * No list has been computed yet (first deploy, or the table was cleared).
+     */
+    public boolean isEmpty() {
+        return !Boolean.TRUE.equals(jdbcTemplate.queryForObject(HAS_ROWS_SQL, Boolean.class));
+    }
+
+    /**
+     * Stored neighbours in similarity order; empty when the movie has not been computed yet.
+     */
+    public List<MovieVectorIndex.ScoredMovie> findNeighbours(Long movieId, int limit) {
+        return jdbcTemplate.query(FIND_NEIGHBOURS_SQL,
+                (rs, i) -> new MovieVectorIndex.ScoredMovie(rs.getLong("similar_movie_id"), rs.getFloat("score")),
+                movieId, limit);
+    }
+
+    /**
+     * Incremental recompute after one movie's embedding was written or removed.
+     */
+    public void onEmbeddingChanged(Long movieId) {
+        if (!movieVectorIndex.isReady() || movieId == null) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            Set<Long> affected = new LinkedHashSet<>();
+            affected.add(movieId);
+            affected.addAll(jdbcTemplate.queryForList(REVERSE_NEIGHBOURS_SQL, Long.class, movieId));
+
+            Optional<float[]> vector = movieVectorIndex.vectorOf(movieId);
+            if (vector.isPresent()) {
+                affected.addAll(listsItCanEnter(movieId, vector.get()));
+            } else {
+                affected.addAll(jdbcTemplate.queryForList(SHORT_LISTS_SQL, Long.class, topK()));
+            }
+
+            Map<Long, List<MovieVectorIndex.ScoredMovie>> lists = new LinkedHashMap<>();
+            for (Long id : affected) {
+                lists.put(id, computeNeighbours(id));
+            }
+            writeLists(lists);
+            log.debug("Recomputed similar movies for {} lists after movie {} changed in {} ms",
+                    lists.size(), movieId, (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Failed to recompute similar movies for movie {}: {}", movieId, e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild every list in the background; no-op while a rebuild is already running.
+     */
+    public boolean rebuildAllAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.submit(() -> {
+            try {
+                rebuildAll();
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    void rebuildAll() {
+        if (!movieVectorIndex.isReady()) {
+            log.info("Vector index not loaded, skipping similar-movies rebuild");
+            return;
+        }
+        long started = System.nanoTime();
+        long[] ids = movieVectorIndex.movieIds();
+        int chunk = 200;
+        for (int from = 0; from < ids.length; from += chunk) {
+            Map<Long, List<MovieVectorIndex.ScoredMovie>> lists = new LinkedHashMap<>();
+            for (int i = from; i < Math.min(from + chunk, ids.length); i++) {
+                lists.put(ids[i], computeNeighbours(ids[i]));
+            }
+            writeLists(lists);
+        }
+        log.info("Similar-movies table rebuilt for {} movies in {} ms",
+                ids.length, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // ── Internal ─────────────────────────────────────────────────────────────
+
+    private List<MovieVectorIndex.ScoredMovie> computeNeighbours(Long movieId) {
+        return movieVectorIndex.vectorOf(movieId)
+                .map(v -> movieVectorIndex.search(v, aiProperties.getSimilarMoviesMinScore(),
+                        topK(), Set.of(movieId)))
+                .orElse(List.of());
+    }
+
+    /**
+     * Movies whose stored list the changed movie would now enter: one full scan of its
+     * similarities compared with each list's floor score.
+     */
+    private Set<Long> listsItCanEnter(Long movieId, float[] vector) {
+        Map<Long, double[]> floors = new HashMap<>();
+        jdbcTemplate.query(LIST_FLOORS_SQL, rs -> {
+            floors.put(rs.getLong("movie_id"), new double[]{rs.getDouble("floor_score"), rs.getInt("neighbours")});
+        });
+
+        int k = topK();
+        double minScore = aiProperties.getSimilarMoviesMinScore();
+        Set<Long> result = new HashSet<>();
+        for (MovieVectorIndex.ScoredMovie other :
+                movieVectorIndex.search(vector, minScore, movieVectorIndex.size(), Set.of(movieId))) {
+            double[] floor = floors.get(other.movieId());
+            if (floor == null || floor[1] < k || other.score() > floor[0]) {
+                result.add(other.movieId());
+            }
+        }
+        return result;
+    }
+
+    private void writeLists(Map<Long, List<MovieVectorIndex.ScoredMovie>> lists) {
+        if (lists.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        lists.forEach((movieId, neighbours) -> {
+            for (int rank = 0; rank < neighbours.size(); rank++) {
+                MovieVectorIndex.ScoredMovie n = neighbours.get(rank);
+                rows.add(new Object[]{movieId, rank + 1, n.movieId(), (float) n.score(), now});
+            }
+        });
+        Long[] movieIds = lists.keySet().toArray(Long[]::new);
+        transactionTemplate.executeWithoutResult(tx -> {
+            jdbcTemplate.update(DELETE_LISTS_SQL,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", movieIds)));
+            jdbcTemplate.batchUpdate(INSERT_NEIGHBOUR_SQL, rows);
+        });
+    }
+
+    private int topK() {
+        return Math.max(aiProperties.getSimilarMoviesTopK(), 1);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
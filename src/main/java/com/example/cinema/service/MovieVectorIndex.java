@@ -0,0 +1,765 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process vector index over the movie embeddings stored in vector_store.
+ *
+ * The catalog is small (thousands of movies), so an exact brute-force scan over a single
+ * contiguous float[] of L2-normalised rows is faster than a pgvector round-trip and needs no
+ * approximate structure: cosine similarity becomes a dot product, and the unrolled inner loop
+ * is auto-vectorised by the JIT.
+ *
+ * Loaded once the application is ready, kept current by MovieEmbeddingService writes and
+ * movie deletes on this node, and fully reloaded periodically to pick up writes from other
+ * nodes. Until the first load completes {@link #isReady()} is false and callers fall back to
+ * the pgvector queries.
+ *
+ * Optional quantization (app.ai.vector-index-quantization = int8 | binary): rows are held as
+ * QuantizedVectors instead of float32 (~4x / ~32x less heap). A search scans the quantized rows
+ * for k × rerank-multiplier candidates, then re-ranks them exactly with their full-precision
+ * vectors read from vector_store by primary key, so returned scores are exact cosines.
+ */
+@Service
+@Slf4j
+public class MovieVectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final String LOAD_ALL_SQL = """
+            SELECT m.id AS movie_id, vs.embedding
+            FROM vector_store vs
+            JOIN movies m ON m.id = (vs.metadata::jsonb ->> 'movieId')::bigint
+            WHERE vs.metadata IS NOT NULL
+              AND jsonb_exists(vs.metadata::jsonb, 'movieId')
+              AND vs.embedding IS NOT NULL
+            """;
+
+    private static final String LOAD_ONE_SQL = """
+            SELECT vs.embedding
+            FROM vector_store vs
+            WHERE vs.metadata IS NOT NULL
+              AND vs.metadata::jsonb ->> 'movieId' = CAST(? AS text)
+              AND vs.embedding IS NOT NULL
+            LIMIT 1
+            """;
+
+    // Full-precision vectors for re-ranking quantized candidates (vector_store.id = movieDocId)
+    private static final String LOAD_EXACT_SQL = """
+            SELECT (vs.metadata::jsonb ->> 'movieId')::bigint AS movie_id, vs.embedding
+            FROM vector_store vs
+            WHERE vs.id = ANY(?)
+            """;
+
+    // pgvector path while the index is loading or disabled
+    private static final String DATABASE_TOP_K_SQL = """
+            SELECT (vs.metadata::jsonb ->> 'movieId')::bigint AS movie_id,
+                   1 - (vs.embedding <=> ?) AS score
+            FROM vector_store vs
+            WHERE vs.metadata IS NOT NULL
+              AND jsonb_exists(vs.metadata::jsonb, 'movieId')
+              AND (1 - (vs.embedding <=> ?)) >= ?
+            ORDER BY vs.embedding <=> ?
+            LIMIT ?
+            """;
+
+    // Binary-quantized HNSW first pass (V13 expression index), exact <=> re-rank of the candidates
+    private static final String DATABASE_TOP_K_QUANTIZED_SQL = """
+            SELECT movie_id, 1 - distance AS score
+            FROM (
+                SELECT (vs.metadata::jsonb ->> 'movieId')::bigint AS movie_id,
+                       vs.embedding <=> ? AS distance
+                FROM vector_store vs
+                WHERE vs.metadata IS NOT NULL
+                  AND jsonb_exists(vs.metadata::jsonb, 'movieId')
+                ORDER BY binary_quantize(vs.embedding)::bit(1536) <~> binary_quantize(?)
+                LIMIT ?
+            ) candidates
+            WHERE (1 - distance) >= ?
+            ORDER BY distance
+            LIMIT ?
+            """;
+
+    private static final String PGVECTOR_VERSION_SQL = "SELECT extversion FROM pg_extension WHERE extname = 'vector'";
+
+    // Neighbours of a stored movie vector; the scalar subquery runs once, so the HNSW index still applies
+    private static final String DATABASE_SIMILAR_TO_SQL = """
+            SELECT (vs.metadata::jsonb ->> 'movieId')::bigint AS movie_id,
+                   1 - (vs.embedding <=> (SELECT embedding FROM vector_store WHERE id = ?)) AS score
+            FROM vector_store vs
+            WHERE vs.metadata IS NOT NULL
+              AND jsonb_exists(vs.metadata::jsonb, 'movieId')
+              AND vs.id <> ?
+              AND (1 - (vs.embedding <=> (SELECT embedding FROM vector_store WHERE id = ?))) >= ?
+            ORDER BY vs.embedding <=> (SELECT embedding FROM vector_store WHERE id = ?)
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgVectorBinding pgVectorBinding;
+    private final AiProperties aiProperties;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Row-major matrix: row i = normalised embedding of movieIds[i]
+    private float[] vectors = new float[0];
+    private long[] movieIds = new long[0];
+    private final Map<Long, Integer> slotByMovieId = new HashMap<>();
+    // Non-null when quantization is on; `vectors` is then empty
+    private QuantizedVectors quantized;
+    private int size;
+    private int dimensions;
+    private volatile boolean ready;
+    // Set once at startup from the installed pgvector version; full precision until then
+    private volatile boolean databaseQuantizedSearch;
+
+    public MovieVectorIndex(JdbcTemplate jdbcTemplate, PgVectorBinding pgVectorBinding, AiProperties aiProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pgVectorBinding = pgVectorBinding;
+        this.aiProperties = aiProperties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void loadOnStartup() {
+        if (quantizationMode() == QuantizedVectors.Mode.BINARY) {
+            databaseQuantizedSearch = detectBinaryQuantizeSupport();
+        }
+        if (aiProperties.isVectorIndexEnabled()) {
+            reload();
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.ai.vector-index-refresh-ms:600000}",
+            fixedDelayString = "${app.ai.vector-index-refresh-ms:600000}")
+    public void scheduledReload() {
+        if (aiProperties.isVectorIndexEnabled()) {
+            reload();
+        }
+    }
+
+    /**
+     * Rebuild the index from vector_store. The new matrix is built off-lock and swapped in.
+     */
+    public void reload() {
+        long started = System.nanoTime();
+        try {
+            List<Long> ids = new ArrayList<>();
+            List<float[]> rows = new ArrayList<>();
+            jdbcTemplate.query(pgVectorBinding.statement(LOAD_ALL_SQL, ps -> {}), rs -> {
+                float[] vector = pgVectorBinding.getVectorValues(rs, "embedding");
+                if (vector.length > 0 && normalize(vector)) {
+                    ids.add(rs.getLong("movie_id"));
+                    rows.add(vector);
+                }
+            });
+
+            int dims = rows.isEmpty() ? 0 : rows.get(0).length;
+            int capacity = Math.max(INITIAL_CAPACITY, rows.size() * 2);
+            QuantizedVectors.Mode mode = quantizationMode();
+            QuantizedVectors newQuantized = mode == null || dims == 0 ? null : new QuantizedVectors(mode, dims, capacity);
+            float[] newVectors = newQuantized != null ? new float[0] : new float[capacity * Math.max(dims, 1)];
+            long[] newIds = new long[capacity];
+            Map<Long, Integer> newSlots = new HashMap<>(rows.size() * 2);
+            int count = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                float[] row = rows.get(i);
+                if (row.length != dims || newSlots.containsKey(ids.get(i))) {
+                    continue;
+                }
+                if (newQuantized != null) {
+                    newQuantized.set(count, row);
+                } else {
+                    System.arraycopy(row, 0, newVectors, count * dims, dims);
+                }
+                newIds[count] = ids.get(i);
+                newSlots.put(ids.get(i), count);
+                count++;
+            }
+
+            lock.writeLock().lock();
+            try {
+                vectors = newVectors;
+                quantized = newQuantized;
+                movieIds = newIds;
+                slotByMovieId.clear();
+                slotByMovieId.putAll(newSlots);
+                size = count;
+                dimensions = dims;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Movie vector index loaded: {} movies, {} dims, quantization {}, ~{} KB in {} ms",
+                    count, dims, newQuantized != null ? newQuantized.mode() : "NONE",
+                    count * bytesPerVector() / 1024, (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Failed to load movie vector index, pgvector queries stay in use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read one movie's embedding from vector_store after it was written.
+     */
+    public void refreshMovie(Long movieId) {
+        if (!ready || movieId == null) {
+            return;
+        }
+        try {
+            List<float[]> rows = jdbcTemplate.query(
+                    pgVectorBinding.statement(LOAD_ONE_SQL, ps -> ps.setString(1, movieId.toString())),
+                    (rs, i) -> pgVectorBinding.getVectorValues(rs, "embedding"));
+            if (rows.isEmpty() || rows.get(0).length == 0) {
+                remove(movieId);
+            } else {
+                upsert(movieId, rows.get(0));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh movie {} in vector index: {}", movieId, e.getMessage());
+        }
+    }
+
+    public void upsert(Long movieId, float[] embedding) {
+        float[] vector = Arrays.copyOf(embedding, embedding.length);
+        if (!normalize(vector)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (dimensions == 0) {
+                dimensions = vector.length;
+                QuantizedVectors.Mode mode = quantizationMode();
+                if (mode != null) {
+                    quantized = new QuantizedVectors(mode, dimensions, movieIds.length);
+                } else {
+                    vectors = new float[Math.max(movieIds.length, INITIAL_CAPACITY) * dimensions];
+                }
+            } else if (vector.length != dimensions) {
+                log.warn("Ignoring {}-dim embedding for movie {} (index has {} dims)", vector.length, movieId, dimensions);
+                return;
+            }
+
+            Integer slot = slotByMovieId.get(movieId);
+            if (slot == null) {
+                ensureCapacity(size + 1);
+                slot = size++;
+                movieIds[slot] = movieId;
+                slotByMovieId.put(movieId, slot);
+            }
+            if (quantized != null) {
+                quantized.set(slot, vector);
+            } else {
+                System.arraycopy(vector, 0, vectors, slot * dimensions, dimensions);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long movieId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByMovieId.remove(movieId);
+            if (slot == null) {
+                return;
+            }
+            // Move the last row into the hole so the matrix stays dense
+            int last = size - 1;
+            if (slot != last) {
+                if (quantized != null) {
+                    quantized.copy(last, slot);
+                } else {
+                    System.arraycopy(vectors, last * dimensions, vectors, slot * dimensions, dimensions);
+                }
+                movieIds[slot] = movieIds[last];
+                slotByMovieId.put(movieIds[slot], slot);
+            }
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready && aiProperties.isVectorIndexEnabled();
+    }
+
+    public boolean contains(Long movieId) {
+        lock.readLock().lock();
+        try {
+            return slotByMovieId.containsKey(movieId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Snapshot of the indexed movie ids.
+     */
+    public long[] movieIds() {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOf(movieIds, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Normalised embedding of a movie, or empty if it is not indexed.
+     */
+    public Optional<float[]> vectorOf(Long movieId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByMovieId.get(movieId);
+            if (slot == null) {
+                return Optional.empty();
+            }
+            if (quantized == null) {
+                return Optional.of(Arrays.copyOfRange(vectors, slot * dimensions, (slot + 1) * dimensions));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Quantized rows are lossy: read the stored full-precision vector
+        return Optional.ofNullable(loadExact(List.of(movieId)).get(movieId));
+    }
+
+    /**
+     * Normalised embeddings of the indexed movies among {@code ids}; one query in quantized mode.
+     */
+    public Map<Long, float[]> vectorsOf(Collection<Long> ids) {
+        List<Long> indexed = new ArrayList<>(ids.size());
+        Map<Long, float[]> result = new HashMap<>(ids.size() * 2);
+        lock.readLock().lock();
+        try {
+            for (Long movieId : ids) {
+                Integer slot = slotByMovieId.get(movieId);
+                if (slot == null) {
+                    continue;
+                }
+                if (quantized == null) {
+                    result.put(movieId, Arrays.copyOfRange(vectors, slot * dimensions, (slot + 1) * dimensions));
+                } else {
+                    indexed.add(movieId);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!indexed.isEmpty()) {
+            result.putAll(loadExact(indexed));
+        }
+        return result;
+    }
+
+    /**
+     * Approximate heap held by the indexed rows.
+     */
+    public long memoryBytes() {
+        return (long) size * bytesPerVector();
+    }
+
+    /**
+     * Exact top-K by cosine similarity.
+     *
+     * @param query     query embedding (need not be normalised)
+     * @param threshold minimum cosine similarity, same meaning as searchDatabase
+     * @param k         maximum number of results
+     * @param exclude   movie ids to skip (may be empty)
+     * @return results ordered by descending similarity
+     */
+    public List<ScoredMovie> search(float[] query, double threshold, int k, Set<Long> exclude) {
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] q = Arrays.copyOf(query, query.length);
+        if (!normalize(q)) {
+            return List.of();
+        }
+
+        List<ScoredMovie> candidates;
+        boolean exact;
+        lock.readLock().lock();
+        try {
+            if (q.length != dimensions || size == 0) {
+                return List.of();
+            }
+            QuantizedVectors codes = quantized;
+            if (codes == null) {
+                candidates = topK(slot -> dot(q, vectors, slot * dimensions, dimensions),
+                        (float) threshold, Math.min(k, size), exclude);
+                exact = true;
+            } else {
+                QuantizedVectors.Prepared prepared = codes.prepare(q);
+                // INT8 scores are within ~0.01 of exact; sign-bit scores are only an angle estimate
+                float firstPassThreshold = codes.mode() == QuantizedVectors.Mode.INT8 ? (float) threshold - 0.02f : -1f;
+                int candidateCount = Math.min(size, k * Math.max(aiProperties.getVectorIndexRerankMultiplier(), 1));
+                candidates = topK(slot -> codes.score(prepared, slot), firstPassThreshold, candidateCount, exclude);
+                exact = false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return exact ? candidates : rerank(q, candidates, threshold, k);
+    }
+
+    /**
+     * Exact cosine for quantized candidates; keeps the approximate order if vector_store is unreachable.
+     */
+    private List<ScoredMovie> rerank(float[] q, List<ScoredMovie> candidates, double threshold, int k) {
+        Map<Long, float[]> exactVectors;
+        try {
+            exactVectors = loadExact(candidates.stream().map(ScoredMovie::movieId).toList());
+        } catch (Exception e) {
+            log.warn("Exact re-rank unavailable, returning quantized scores: {}", e.getMessage());
+            return candidates.stream().filter(c -> c.score() >= threshold).limit(k).toList();
+        }
+        List<ScoredMovie> results = new ArrayList<>(candidates.size());
+        for (ScoredMovie candidate : candidates) {
+            float[] vector = exactVectors.get(candidate.movieId());
+            double score = vector != null && vector.length == q.length
+                    ? dot(q, vector, 0, q.length)
+                    : candidate.score();
+            if (score >= threshold) {
+                results.add(new ScoredMovie(candidate.movieId(), score));
+            }
+        }
+        results.sort(Comparator.comparingDouble(ScoredMovie::score).reversed());
+        return results.size() > k ? new ArrayList<>(results.subList(0, k)) : results;
+    }
+
+    /**
+     * Bounded min-heap top-K over all rows; caller holds the read lock.
+     */
+    private List<ScoredMovie> topK(RowScorer scorer, float minScore, int capacity, Set<Long> exclude) {
+        // heapScores[0] is the weakest of the current top-K
+        float[] heapScores = new float[capacity];
+        int[] heapSlots = new int[capacity];
+        int heapSize = 0;
+
+        for (int slot = 0; slot < size; slot++) {
+            float score = scorer.score(slot);
+            if (score < minScore) {
+                continue;
+            }
+            if (heapSize < capacity) {
+                if (!exclude.isEmpty() && exclude.contains(movieIds[slot])) {
+                    continue;
+                }
+                heapScores[heapSize] = score;
+                heapSlots[heapSize] = slot;
+                siftUp(heapScores, heapSlots, heapSize++);
+            } else if (score > heapScores[0]) {
+                if (!exclude.isEmpty() && exclude.contains(movieIds[slot])) {
+                    continue;
+                }
+                heapScores[0] = score;
+                heapSlots[0] = slot;
+                siftDown(heapScores, heapSlots, heapSize);
+            }
+        }
+
+        List<ScoredMovie> results = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            results.add(new ScoredMovie(movieIds[heapSlots[i]], heapScores[i]));
+        }
+        results.sort(Comparator.comparingDouble(ScoredMovie::score).reversed());
+        return results;
+    }
+
+    public List<ScoredMovie> search(Embedding query, double threshold, int k, Set<Long> exclude) {
+        return search(query.values(), threshold, k, exclude);
+    }
+
+    /**
+     * Movie ids only, in the same shape as searchDatabase.
+     */
+    public List<Long> searchIds(Embedding query, double threshold, int k) {
+        return search(query, threshold, k, Set.of()).stream().map(ScoredMovie::movieId).toList();
+    }
+
+    /**
+     * Top-K straight from pgvector (HNSW), for callers that cannot wait for the index to load.
+     */
+    public List<Long> searchDatabase(Embedding query, double threshold, int limit) {
+        return searchDatabaseScored(query, threshold, limit).stream().map(ScoredMovie::movieId).toList();
+    }
+
+    /**
+     * pgvector top-K with cosine scores, threshold and limit applied in the one query; callers with
+     * a primary/fallback threshold query once at the fallback and pick from the scores.
+     */
+    public List<ScoredMovie> searchDatabaseScored(Embedding query, double threshold, int limit) {
+        if (databaseQuantizedSearch && quantizationMode() == QuantizedVectors.Mode.BINARY) {
+            int candidates = limit * Math.max(aiProperties.getVectorIndexRerankMultiplier(), 1);
+            return jdbcTemplate.query(pgVectorBinding.statement(DATABASE_TOP_K_QUANTIZED_SQL, ps -> {
+                pgVectorBinding.setVector(ps, 1, query);
+                pgVectorBinding.setVector(ps, 2, query);
+                ps.setInt(3, candidates);
+                ps.setDouble(4, threshold);
+                ps.setInt(5, limit);
+            }), MovieVectorIndex::scoredMovie);
+        }
+        return jdbcTemplate.query(pgVectorBinding.statement(DATABASE_TOP_K_SQL, ps -> {
+            pgVectorBinding.setVector(ps, 1, query);
+            pgVectorBinding.setVector(ps, 2, query);
+            ps.setDouble(3, threshold);
+            pgVectorBinding.setVector(ps, 4, query);
+            ps.setInt(5, limit);
+        }), MovieVectorIndex::scoredMovie);
+    }
+
+    /**
+     * pgvector neighbours of a movie's stored embedding, with scores; no embedding call.
+     */
+    public List<ScoredMovie> searchDatabaseSimilarTo(Long movieId, double threshold, int limit) {
+        UUID docId = UUID.fromString(MovieEmbeddingService.movieDocId(movieId));
+        return jdbcTemplate.query(DATABASE_SIMILAR_TO_SQL, MovieVectorIndex::scoredMovie,
+                docId, docId, docId, threshold, docId, limit);
+    }
+
+    /**
+     * Maximal marginal relevance: re-order {@code candidates} (scored against the query) so each
+     * pick balances its relevance against its similarity to the movies already picked:
+     *
+     *   next = argmax  λ · score(c) − (1 − λ) · max_{s ∈ picked} cos(c, s)
+     *
+     * λ = 1 keeps the relevance order; lower values spread results across more of the space
+     * (fewer near-duplicates such as sequels). Candidate vectors come from the index, so this is
+     * in memory; only candidates missing from it are read from vector_store, in one query.
+     * Scores in the result are the original relevance scores.
+     */
+    public List<ScoredMovie> diversify(List<ScoredMovie> candidates, int k, double lambda) {
+        int n = candidates.size();
+        if (k <= 0 || n == 0) {
+            return List.of();
+        }
+        if (lambda >= 1.0 || n == 1) {
+            return candidates.size() > k ? candidates.subList(0, k) : candidates;
+        }
+
+        List<Long> ids = candidates.stream().map(ScoredMovie::movieId).toList();
+        Map<Long, float[]> byId = new HashMap<>(vectorsOf(ids));
+        List<Long> missing = ids.stream().filter(id -> !byId.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            try {
+                byId.putAll(loadExact(missing));
+            } catch (Exception e) {
+                log.debug("MMR without vectors for {} candidates: {}", missing.size(), e.getMessage());
+            }
+        }
+        float[][] vectors = new float[n][];
+        for (int i = 0; i < n; i++) {
+            vectors[i] = byId.get(candidates.get(i).movieId());
+        }
+
+        double[] maxSimilarity = new double[n];
+        boolean[] picked = new boolean[n];
+        List<ScoredMovie> result = new ArrayList<>(Math.min(k, n));
+        while (result.size() < Math.min(k, n)) {
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (picked[i]) {
+                    continue;
+                }
+                double value = lambda * candidates.get(i).score() - (1 - lambda) * maxSimilarity[i];
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = i;
+                }
+            }
+            picked[best] = true;
+            result.add(candidates.get(best));
+            float[] chosen = vectors[best];
+            if (chosen == null) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (!picked[i] && vectors[i] != null && vectors[i].length == chosen.length) {
+                    maxSimilarity[i] = Math.max(maxSimilarity[i], dot(chosen, vectors[i], 0, chosen.length));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ScoredMovie scoredMovie(ResultSet rs, int rowNum) throws SQLException {
+        return new ScoredMovie(rs.getLong("movie_id"), rs.getDouble("score"));
+    }
+
+    private Map<Long, float[]> loadExact(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        UUID[] docIds = ids.stream()
+                .map(id -> UUID.fromString(MovieEmbeddingService.movieDocId(id)))
+                .toArray(UUID[]::new);
+        Map<Long, float[]> result = new HashMap<>(ids.size() * 2);
+        jdbcTemplate.query(pgVectorBinding.statement(LOAD_EXACT_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", docIds))), rs -> {
+            float[] vector = pgVectorBinding.getVectorValues(rs, "embedding");
+            if (vector.length > 0 && normalize(vector)) {
+                result.put(rs.getLong("movie_id"), vector);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * binary_quantize needs pgvector >= 0.7 (V13 only creates the index then). Checked once, on a
+     * plain autocommit query at startup, so a failing probe can never abort a caller's transaction.
+     */
+    private boolean detectBinaryQuantizeSupport() {
+        String version;
+        try {
+            version = jdbcTemplate.query(PGVECTOR_VERSION_SQL, rs -> rs.next() ? rs.getString(1) : null);
+        } catch (Exception e) {
+            log.warn("Cannot read pgvector version, using full-precision pgvector search: {}", e.getMessage());
+            return false;
+        }
+        boolean supported = supportsBinaryQuantize(version);
+        if (supported) {
+            log.info("pgvector {}: binary-quantized database search enabled", version);
+        } else {
+            log.warn("pgvector {} has no binary_quantize (needs >= 0.7), using full-precision pgvector search", version);
+        }
+        return supported;
+    }
+
+    static boolean supportsBinaryQuantize(String extversion) {
+        if (extversion == null || extversion.isBlank()) {
+            return false;
+        }
+        String[] parts = extversion.trim().split("-", 2)[0].split("\\.");
+        try {
+            int major = Integer.parseInt(parts[0]);
+            int minor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return major > 0 || minor >= 7;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private QuantizedVectors.Mode quantizationMode() {
+        String configured = aiProperties.getVectorIndexQuantization();
+        if (configured == null || configured.isBlank() || "none".equalsIgnoreCase(configured)) {
+            return null;
+        }
+        return QuantizedVectors.Mode.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private long bytesPerVector() {
+        QuantizedVectors codes = quantized;
+        return codes != null ? codes.bytesPerVector() : (long) dimensions * Float.BYTES;
+    }
+
+    @FunctionalInterface
+    private interface RowScorer {
+        float score(int slot);
+    }
+
+    // ── Math helpers ─────────────────────────────────────────────────────────
+
+    static float dot(float[] q, float[] matrix, int offset, int dims) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        int upper = dims - (dims % 4);
+        for (; i < upper; i += 4) {
+            s0 += q[i] * matrix[offset + i];
+            s1 += q[i + 1] * matrix[offset + i + 1];
+            s2 += q[i + 2] * matrix[offset + i + 2];
+            s3 += q[i + 3] * matrix[offset + i + 3];
+        }
+        for (; i < dims; i++) {
+            s0 += q[i] * matrix[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /** Scale to unit length in place; false for a zero vector. */
+    static boolean normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) {
+            norm += (double) x * x;
+        }
+        if (norm == 0) {
+            return false;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < v.length; i++) {
+            v[i] *= inv;
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= movieIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, Math.max(INITIAL_CAPACITY, movieIds.length * 2));
+        movieIds = Arrays.copyOf(movieIds, newCapacity);
+        if (quantized != null) {
+            quantized.ensureCapacity(newCapacity);
+        } else {
+            vectors = Arrays.copyOf(vectors, newCapacity * dimensions);
+        }
+    }
+
+    private static void siftUp(float[] scores, int[] slots, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) {
+                break;
+            }
+            swap(scores, slots, parent, i);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(float[] scores, int[] slots, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int right = left + 1;
+            int smallest = right < size && scores[right] < scores[left] ? right : left;
+            if (scores[i] <= scores[smallest]) {
+                break;
+            }
+            swap(scores, slots, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(float[] scores, int[] slots, int a, int b) {
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+        int t = slots[a];
+        slots[a] = slots[b];
+        slots[b] = t;
+    }
+
+    public record ScoredMovie(long movieId, double score) {}
+}
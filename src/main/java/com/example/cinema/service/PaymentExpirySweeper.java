@@ -0,0 +1,238 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.SePayConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Payment expiry sweeper - expires PENDING payments past their checkout deadline and rolls
+ * back their bookings in bounded, set-based batches.
+ *
+ * Each batch claims rows through idx_payments_expires_at with FOR UPDATE SKIP LOCKED, so
+ * every node can run the sweeper at the same time without double-processing or waiting on
+ * each other. The SePay webhook locks its payment row (PaymentRepository.findByBookingIdForUpdate)
+ * for its whole transaction, so a payment a webhook is processing is skipped until the next
+ * run, and a webhook arriving mid-sweep waits for the batch to commit and then sees EXPIRED.
+ * The booking rollback is the set-based equivalent of BookingService.rollbackPendingBooking.
+ */
+@Service
+@Slf4j
+public class PaymentExpirySweeper {
+
+    private static final String EXPIRE_REASON = "Payment checkout expired";
+
+    private static final String CLAIM_AND_EXPIRE_SQL = """
+            WITH claimed AS (
+                SELECT id
+                FROM payments
+                WHERE payment_status = 'PENDING' AND expires_at < ?
+                ORDER BY expires_at
+                LIMIT ?
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE payments p
+            SET payment_status = 'EXPIRED', failure_reason = ?
+            FROM claimed
+            WHERE p.id = claimed.id
+            RETURNING p.id, p.booking_id
+            """;
+
+    private static final String CANCEL_BOOKINGS_SQL = """
+            UPDATE bookings
+            SET booking_status = 'CANCELLED'
+            WHERE id = ANY(?) AND booking_status = 'PENDING'
+            RETURNING id
+            """;
+
+    private static final String CANCEL_SEAT_BOOKINGS_SQL = """
+            UPDATE seat_bookings sb
+            SET status = 'CANCELLED', updated_at = CURRENT_TIMESTAMP
+            FROM bookings b
+            WHERE sb.booking_id = b.id AND sb.booking_id = ANY(?) AND sb.status = 'RESERVED'
+            RETURNING sb.showtime_id, sb.seat_id, b.user_id
+            """;
+
+    private static final String RELEASE_SHOWTIME_SEATS_SQL = """
+            UPDATE showtimes s
+            SET available_seats = s.available_seats + released.seats
+            FROM (
+                SELECT showtime_id, SUM(seats_booked) AS seats
+                FROM bookings
+                WHERE id = ANY(?)
+                GROUP BY showtime_id
+            ) released
+            WHERE s.id = released.showtime_id
+            """;
+
+    private static final String BACKLOG_SQL =
+            "SELECT COUNT(*) FROM payments WHERE payment_status = 'PENDING' AND expires_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SePayConfig sePayConfig;
+    private final DistributedLockService distributedLockService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final Timer sweepTimer;
+    private final Counter expiredPayments;
+    private final Counter cancelledBookings;
+
+    @Value("${sepay.expiry-sweeper.batch-size:500}")
+    private int batchSize;
+
+    @Value("${sepay.expiry-sweeper.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
+
+    public PaymentExpirySweeper(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                SePayConfig sePayConfig,
+                                DistributedLockService distributedLockService,
+                                PaymentStatusNotifier paymentStatusNotifier,
+                                ShowtimeAvailabilityIndex showtimeAvailabilityIndex,
+                                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sePayConfig = sePayConfig;
+        this.distributedLockService = distributedLockService;
+        this.paymentStatusNotifier = paymentStatusNotifier;
+        this.showtimeAvailabilityIndex = showtimeAvailabilityIndex;
+
+        Gauge.builder("payments.expiry.backlog", backlog, AtomicLong::get)
+                .description("PENDING payments past their checkout deadline")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("payments.expiry.sweep")
+                .description("Duration of one expiry sweep run")
+                .register(meterRegistry);
+        this.expiredPayments = Counter.builder("payments.expiry.expired")
+                .description("Payments expired by the sweeper")
+                .register(meterRegistry);
+        this.cancelledBookings = Counter.builder("payments.expiry.bookings.cancelled")
+                .description("Pending bookings rolled back by the sweeper")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${sepay.expiry-sweeper.interval-ms:30000}")
+    public void sweep() {
+        sweepTimer.record(() -> {
+            // Same deadline the webhook handler accepts, so a payment inside the grace window is never expired early
+            LocalDateTime cutoff = LocalDateTime.now().minusSeconds(sePayConfig.getPaymentExpirationGraceSeconds());
+
+            int total = 0;
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                int expired = sweepBatch(cutoff);
+                total += expired;
+                if (expired < batchSize) {
+                    break;
+                }
+            }
+
+            Long remaining = jdbcTemplate.queryForObject(BACKLOG_SQL, Long.class, Timestamp.valueOf(cutoff));
+            backlog.set(remaining != null ? remaining : 0);
+            if (total > 0) {
+                log.info("Expiry sweep expired {} payments, backlog now {}", total, backlog.get());
+            }
+        });
+    }
+
+    /**
+     * Expire one batch and roll back its bookings in a single transaction.
+     *
+     * @return number of payments expired
+     */
+    int sweepBatch(LocalDateTime cutoff) {
+        BatchResult result = transactionTemplate.execute(tx -> {
+            List<long[]> expired = jdbcTemplate.query(
+                    CLAIM_AND_EXPIRE_SQL,
+                    (rs, i) -> new long[]{rs.getLong("id"), rs.getLong("booking_id")},
+                    Timestamp.valueOf(cutoff), batchSize, EXPIRE_REASON);
+            if (expired.isEmpty()) {
+                return new BatchResult(expired, List.of());
+            }
+
+            Long[] bookingIds = expired.stream().map(row -> row[1]).toArray(Long[]::new);
+            RolledBack rolledBack = rollbackPendingBookings(jdbcTemplate, bookingIds);
+            cancelledBookings.increment(rolledBack.cancelledBookingIds().size());
+            return new BatchResult(expired, rolledBack.releasedSeats());
+        });
+
+        if (result == null || result.expired().isEmpty()) {
+            return 0;
+        }
+        expiredPayments.increment(result.expired().size());
+
+        // Side effects only after commit: Redis seat locks and long-poll waiters
+        Set<Long> releasedShowtimes = new HashSet<>();
+        for (long[] seat : result.releasedSeats()) {
+            distributedLockService.releaseSeatLock(seat[0], seat[1], seat[2]);
+            releasedShowtimes.add(seat[0]);
+        }
+        releasedShowtimes.forEach(showtimeAvailabilityIndex::refreshShowtimeAfterCommit);
+        for (long[] row : result.expired()) {
+            paymentStatusNotifier.publish(row[1], row[0], "EXPIRED", null);
+        }
+        return result.expired().size();
+    }
+
+    /**
+     * Current backlog as of the last sweep
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * Set-based BookingService.rollbackPendingBooking for the given bookings, in the caller's
+     * transaction: cancels those still PENDING, cancels their RESERVED seat bookings and gives
+     * the seats back to their showtimes. The caller releases the returned Redis seat locks
+     * after commit.
+     */
+    static RolledBack rollbackPendingBookings(JdbcTemplate jdbcTemplate, Long[] bookingIds) {
+        if (bookingIds.length == 0) {
+            return new RolledBack(List.of(), List.of());
+        }
+        List<Long> cancelled = jdbcTemplate.query(CANCEL_BOOKINGS_SQL,
+                ps -> ps.setArray(1, bigintArray(ps.getConnection(), bookingIds)),
+                (rs, i) -> rs.getLong("id"));
+        if (cancelled.isEmpty()) {
+            return new RolledBack(List.of(), List.of());
+        }
+
+        Long[] cancelledIds = cancelled.toArray(Long[]::new);
+        List<long[]> releasedSeats = jdbcTemplate.query(CANCEL_SEAT_BOOKINGS_SQL,
+                ps -> ps.setArray(1, bigintArray(ps.getConnection(), cancelledIds)),
+                (rs, i) -> new long[]{rs.getLong("showtime_id"), rs.getLong("seat_id"), rs.getLong("user_id")});
+        jdbcTemplate.update(RELEASE_SHOWTIME_SEATS_SQL,
+                ps -> ps.setArray(1, bigintArray(ps.getConnection(), cancelledIds)));
+        return new RolledBack(cancelled, releasedSeats);
+    }
+
+    private static Array bigintArray(java.sql.Connection connection, Long[] ids) throws java.sql.SQLException {
+        return connection.createArrayOf("bigint", ids);
+    }
+
+    private record BatchResult(List<long[]> expired, List<long[]> releasedSeats) {}
+
+    /**
+     * @param releasedSeats (showtime_id, seat_id, user_id) of every seat booking cancelled
+     */
+    record RolledBack(List<Long> cancelledBookingIds, List<long[]> releasedSeats) {}
+}
@@ -0,0 +1,554 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.SePayConfig;
+import com.example.cinema.entity.Booking;
+import com.example.cinema.entity.Payment;
+import com.example.cinema.repository.BookingRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Payment reconciliation - compares the payments table with a gateway settlement file.
+ *
+ * Both sides are read as streams ordered by booking id (payments through a server-side
+ * cursor, the file through SettlementFileReader) and merge-joined, so memory stays constant
+ * regardless of the number of rows. Every mismatch is written to a CSV report file; only the
+ * first few are kept in the returned summary.
+ *
+ * Fixes are limited to what the missing webhook would have done and are applied in batches,
+ * each in its own transaction and guarded on the current status so a webhook arriving
+ * concurrently always wins. A confirmed row goes through the same post-commit side effects
+ * as a webhook confirm (SePayService.onBookingConfirmed); a failed or cancelled row rolls its
+ * PENDING booking back in the same batch, like the expiry sweeper, and releases the seats.
+ * Anything that needs a refund or a human decision is report-only.
+ *
+ * Before any fix is applied the whole file is read once and validated, so a malformed or
+ * unsorted file is rejected without leaving a partially applied run behind.
+ */
+@Service
+@Slf4j
+public class PaymentReconciliationService {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int FIX_BATCH_SIZE = 500;
+    private static final int MAX_SAMPLES = 100;
+
+    private static final String PAYMENT_STREAM_SQL = """
+            SELECT p.id, p.booking_id, p.amount, p.payment_status, p.transaction_id, p.expires_at,
+                   b.booking_status
+            FROM payments p
+            JOIN bookings b ON b.id = p.booking_id
+            WHERE (CAST(? AS timestamp) IS NULL OR p.created_at >= ?)
+              AND (CAST(? AS timestamp) IS NULL OR p.created_at < ?)
+            ORDER BY p.booking_id
+            """;
+
+    private static final String CONFIRM_PAYMENT_SQL = """
+            UPDATE payments
+            SET payment_status = 'SUCCESS',
+                transaction_id = COALESCE(?, transaction_id),
+                paid_at = COALESCE(?, CURRENT_TIMESTAMP),
+                payment_method = COALESCE(payment_method, 'BANK_TRANSFER')
+            WHERE id = ? AND payment_status = 'PENDING'
+            """;
+
+    private static final String CONFIRM_BOOKING_SQL = """
+            UPDATE bookings
+            SET booking_status = 'CONFIRMED'
+            WHERE id = ? AND booking_status = 'PENDING'
+              AND EXISTS (SELECT 1 FROM payments p WHERE p.booking_id = bookings.id AND p.payment_status = 'SUCCESS')
+            """;
+
+    private static final String CLOSE_PAYMENT_SQL = """
+            UPDATE payments
+            SET payment_status = ?, failure_reason = ?
+            WHERE id = ? AND payment_status = 'PENDING'
+            """;
+
+    public enum MismatchType {
+        /** Gateway settled successfully but we never processed the success webhook */
+        MISSING_WEBHOOK,
+        /** Gateway settled successfully after the checkout deadline - needs refund */
+        LATE_SUCCESS,
+        AMOUNT_MISMATCH,
+        TRANSACTION_ID_MISMATCH,
+        /** Terminal statuses disagree (e.g. we confirmed, gateway says failed) */
+        STATUS_MISMATCH,
+        /** Payment is SUCCESS locally but absent from the settlement file */
+        MISSING_SETTLEMENT,
+        /** Settlement row without a matching payment */
+        UNKNOWN_PAYMENT,
+        DUPLICATE_SETTLEMENT
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate fixTransaction;
+    private final SePayConfig sePayConfig;
+    private final ObjectMapper objectMapper;
+    private final BookingRepository bookingRepository;
+    private final SePayService sePayService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final DistributedLockService distributedLockService;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
+
+    public PaymentReconciliationService(JdbcTemplate jdbcTemplate,
+                                        DataSource dataSource,
+                                        PlatformTransactionManager transactionManager,
+                                        SePayConfig sePayConfig,
+                                        ObjectMapper objectMapper,
+                                        BookingRepository bookingRepository,
+                                        SePayService sePayService,
+                                        PaymentStatusNotifier paymentStatusNotifier,
+                                        DistributedLockService distributedLockService,
+                                        ShowtimeAvailabilityIndex showtimeAvailabilityIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Postgres only uses a server-side cursor when a fetch size is set and autocommit is off
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.fixTransaction = new TransactionTemplate(transactionManager);
+        this.fixTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sePayConfig = sePayConfig;
+        this.objectMapper = objectMapper;
+        this.bookingRepository = bookingRepository;
+        this.sePayService = sePayService;
+        this.paymentStatusNotifier = paymentStatusNotifier;
+        this.distributedLockService = distributedLockService;
+        this.showtimeAvailabilityIndex = showtimeAvailabilityIndex;
+    }
+
+    /**
+     * Reconcile payments created in [from, to) against a settlement file.
+     *
+     * @param settlement settlement file; opened twice when fixes are applied (validation pass first)
+     * @param from       inclusive lower bound on payments.created_at, or null for no bound
+     * @param to         exclusive upper bound on payments.created_at, or null for no bound
+     * @param applyFixes false = dry run (report only)
+     * @throws IllegalArgumentException if the file has an invalid or out-of-order row
+     */
+    public ReconciliationReport reconcile(InputStreamSource settlement,
+                                          SettlementFileReader.Format format,
+                                          LocalDateTime from,
+                                          LocalDateTime to,
+                                          boolean applyFixes) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        if (applyFixes) {
+            try (InputStream in = settlement.getInputStream()) {
+                long records = SettlementFileReader.validate(in, format, objectMapper);
+                log.info("Settlement file validated: {} records", records);
+            }
+        }
+
+        Path reportFile = Files.createTempFile("payment-reconciliation-", ".csv");
+        log.info("Starting payment reconciliation (format={}, from={}, to={}, applyFixes={}) -> {}",
+                format, from, to, applyFixes, reportFile);
+
+        boolean completed = false;
+        try (InputStream in = settlement.getInputStream();
+             SettlementFileReader settlements = SettlementFileReader.open(in, format, objectMapper);
+             BufferedWriter report = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+
+            report.write("type,booking_id,payment_id,payment_status,booking_status,payment_amount,"
+                    + "settlement_row,settlement_status,settlement_amount,settlement_transaction_id,settled_at,action");
+            report.newLine();
+
+            MergeState state = new MergeState(report, applyFixes);
+            Timestamp fromTs = from != null ? Timestamp.valueOf(from) : null;
+            Timestamp toTs = to != null ? Timestamp.valueOf(to) : null;
+
+            readTransaction.executeWithoutResult(tx -> {
+                try (Stream<PaymentRow> rows = streamingJdbcTemplate.queryForStream(
+                        PAYMENT_STREAM_SQL,
+                        (rs, i) -> new PaymentRow(
+                                rs.getLong("id"),
+                                rs.getLong("booking_id"),
+                                rs.getBigDecimal("amount"),
+                                rs.getString("payment_status"),
+                                rs.getString("transaction_id"),
+                                toLocalDateTime(rs.getTimestamp("expires_at")),
+                                rs.getString("booking_status")
+                        ),
+                        fromTs, fromTs, toTs, toTs)) {
+                    mergeJoin(rows.iterator(), settlements, state);
+                }
+            });
+            state.flushFixes();
+
+            ReconciliationReport result = new ReconciliationReport(
+                    !applyFixes,
+                    state.paymentsRead,
+                    state.settlementsRead,
+                    state.matched,
+                    state.counts,
+                    state.fixesApplied,
+                    state.fixesSkipped,
+                    state.fixesFailed,
+                    reportFile.toString(),
+                    state.samples,
+                    System.currentTimeMillis() - startedAt
+            );
+            log.info("Payment reconciliation finished: payments={}, settlements={}, matched={}, mismatches={}, fixed={}",
+                    result.paymentsRead(), result.settlementsRead(), result.matched(), result.mismatches(), result.fixesApplied());
+            completed = true;
+            return result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(reportFile);
+            }
+        }
+    }
+
+    private void mergeJoin(Iterator<PaymentRow> payments, SettlementFileReader settlements, MergeState state) {
+        PaymentRow payment = nextOrNull(payments, state, true);
+        SettlementFileReader.SettlementRecord record = nextOrNull(settlements, state, false);
+
+        while (payment != null || record != null) {
+            if (record == null || (payment != null && payment.bookingId() < record.bookingId())) {
+                if (Payment.PaymentStatus.SUCCESS.name().equals(payment.status())) {
+                    state.mismatch(MismatchType.MISSING_SETTLEMENT, payment, null, "report");
+                }
+                payment = nextOrNull(payments, state, true);
+            } else if (payment == null || record.bookingId() < payment.bookingId()) {
+                state.mismatch(MismatchType.UNKNOWN_PAYMENT, null, record, "report");
+                record = nextOrNull(settlements, state, false);
+            } else {
+                compare(payment, record, state);
+                long key = record.bookingId();
+                record = nextOrNull(settlements, state, false);
+                while (record != null && record.bookingId() == key) {
+                    state.mismatch(MismatchType.DUPLICATE_SETTLEMENT, payment, record, "report");
+                    record = nextOrNull(settlements, state, false);
+                }
+                payment = nextOrNull(payments, state, true);
+            }
+        }
+    }
+
+    private void compare(PaymentRow payment, SettlementFileReader.SettlementRecord record, MergeState state) {
+        boolean localPending = Payment.PaymentStatus.PENDING.name().equals(payment.status());
+        boolean localSuccess = Payment.PaymentStatus.SUCCESS.name().equals(payment.status());
+
+        if (record.isSuccess()) {
+            boolean amountMatches = record.amount() != null && payment.amount().compareTo(record.amount()) == 0
+                    && (record.currency() == null || "VND".equalsIgnoreCase(record.currency()));
+            if (!amountMatches) {
+                state.mismatch(MismatchType.AMOUNT_MISMATCH, payment, record, "report");
+            } else if (localSuccess) {
+                if (record.transactionId() != null && payment.transactionId() != null
+                        && !record.transactionId().equals(payment.transactionId())) {
+                    state.mismatch(MismatchType.TRANSACTION_ID_MISMATCH, payment, record, "report");
+                } else {
+                    state.matched++;
+                }
+            } else if (!isSettledOnTime(payment, record)) {
+                state.mismatch(MismatchType.LATE_SUCCESS, payment, record, "refund");
+            } else if (localPending && "PENDING".equals(payment.bookingStatus())) {
+                state.mismatch(MismatchType.MISSING_WEBHOOK, payment, record, state.applyFixes ? "confirm" : "confirm (dry-run)");
+                state.queueConfirm(payment, record);
+            } else {
+                state.mismatch(MismatchType.STATUS_MISMATCH, payment, record, "report");
+            }
+        } else if (record.isFailed() || record.isCancelled()) {
+            if (localSuccess) {
+                state.mismatch(MismatchType.STATUS_MISMATCH, payment, record, "report");
+            } else if (localPending) {
+                String target = record.isFailed() ? Payment.PaymentStatus.FAILED.name() : Payment.PaymentStatus.CANCELLED.name();
+                state.mismatch(MismatchType.MISSING_WEBHOOK, payment, record,
+                        state.applyFixes ? "mark " + target : "mark " + target + " (dry-run)");
+                state.queueClose(payment, target);
+            } else {
+                state.matched++;
+            }
+        } else {
+            state.mismatch(MismatchType.STATUS_MISMATCH, payment, record, "report");
+        }
+    }
+
+    /**
+     * Same deadline as the webhook handler: expires_at plus the configured grace period.
+     */
+    private boolean isSettledOnTime(PaymentRow payment, SettlementFileReader.SettlementRecord record) {
+        if (payment.expiresAt() == null || record.settledAt() == null) {
+            return true;
+        }
+        return !record.settledAt().isAfter(payment.expiresAt().plusSeconds(sePayConfig.getPaymentExpirationGraceSeconds()));
+    }
+
+    private static <T> T nextOrNull(Iterator<T> iterator, MergeState state, boolean paymentSide) {
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        if (paymentSide) {
+            state.paymentsRead++;
+        } else {
+            state.settlementsRead++;
+        }
+        return iterator.next();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.contains(",") || text.contains("\"") || text.contains("\n")) {
+            return "\"" + text.replace("\"", "\"\"") + "\"";
+        }
+        return text;
+    }
+
+    /**
+     * Mutable counters and fix buffers for one run. Buffers are bounded by FIX_BATCH_SIZE.
+     */
+    private final class MergeState {
+        private final BufferedWriter report;
+        private final boolean applyFixes;
+        private final Map<MismatchType, Long> counts = new EnumMap<>(MismatchType.class);
+        private final List<Mismatch> samples = new ArrayList<>();
+        private final List<Object[]> confirmPayments = new ArrayList<>();
+        private final List<Object[]> confirmBookings = new ArrayList<>();
+        private final List<Object[]> closePayments = new ArrayList<>();
+        private final List<Long> closeBookingIds = new ArrayList<>();
+
+        private long paymentsRead;
+        private long settlementsRead;
+        private long matched;
+        private long fixesApplied;
+        private long fixesSkipped;
+        private long fixesFailed;
+
+        MergeState(BufferedWriter report, boolean applyFixes) {
+            this.report = report;
+            this.applyFixes = applyFixes;
+        }
+
+        void mismatch(MismatchType type, PaymentRow payment, SettlementFileReader.SettlementRecord record, String action) {
+            counts.merge(type, 1L, Long::sum);
+            Mismatch mismatch = new Mismatch(
+                    type,
+                    payment != null ? payment.bookingId() : record.bookingId(),
+                    payment != null ? payment.id() : null,
+                    payment != null ? payment.status() : null,
+                    payment != null ? payment.bookingStatus() : null,
+                    payment != null ? payment.amount() : null,
+                    record != null ? record.rowNumber() : null,
+                    record != null ? record.status() : null,
+                    record != null ? record.amount() : null,
+                    record != null ? record.transactionId() : null,
+                    record != null ? record.settledAt() : null,
+                    action
+            );
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(mismatch);
+            }
+            try {
+                report.write(String.join(",",
+                        csv(mismatch.type()), csv(mismatch.bookingId()), csv(mismatch.paymentId()),
+                        csv(mismatch.paymentStatus()), csv(mismatch.bookingStatus()), csv(mismatch.paymentAmount()),
+                        csv(mismatch.settlementRow()), csv(mismatch.settlementStatus()), csv(mismatch.settlementAmount()),
+                        csv(mismatch.settlementTransactionId()), csv(mismatch.settledAt()), csv(mismatch.action())));
+                report.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void queueConfirm(PaymentRow payment, SettlementFileReader.SettlementRecord record) {
+            if (!applyFixes) {
+                return;
+            }
+            confirmPayments.add(new Object[]{
+                    record.transactionId(),
+                    record.settledAt() != null ? Timestamp.valueOf(record.settledAt()) : null,
+                    payment.id()
+            });
+            confirmBookings.add(new Object[]{payment.bookingId()});
+            flushIfFull();
+        }
+
+        void queueClose(PaymentRow payment, String targetStatus) {
+            if (!applyFixes) {
+                return;
+            }
+            closePayments.add(new Object[]{targetStatus, "Reconciled from gateway settlement", payment.id()});
+            closeBookingIds.add(payment.bookingId());
+            flushIfFull();
+        }
+
+        private void flushIfFull() {
+            if (confirmPayments.size() + closePayments.size() >= FIX_BATCH_SIZE) {
+                flushFixes();
+            }
+        }
+
+        void flushFixes() {
+            if (confirmPayments.isEmpty() && closePayments.isEmpty()) {
+                return;
+            }
+            int queued = confirmPayments.size() + closePayments.size();
+            try {
+                int[] updated = fixTransaction.execute(tx -> {
+                    int[] confirmed = jdbcTemplate.batchUpdate(CONFIRM_PAYMENT_SQL, confirmPayments);
+                    int[] bookingsConfirmed = jdbcTemplate.batchUpdate(CONFIRM_BOOKING_SQL, confirmBookings);
+                    int[] closed = jdbcTemplate.batchUpdate(CLOSE_PAYMENT_SQL, closePayments);
+                    PaymentExpirySweeper.RolledBack rolledBack = PaymentExpirySweeper.rollbackPendingBookings(
+                            jdbcTemplate, closedBookingIds(closed).toArray(Long[]::new));
+                    runSideEffects(confirmed, bookingsConfirmed, closed, rolledBack);
+                    return new int[]{sumUpdated(confirmed), sumUpdated(closed)};
+                });
+                long applied = updated != null ? (long) updated[0] + updated[1] : 0;
+                fixesApplied += applied;
+                // Rows that no longer matched the PENDING guard were handled by a webhook in the meantime
+                fixesSkipped += queued - applied;
+            } catch (Exception e) {
+                fixesFailed += queued;
+                log.error("Failed to apply reconciliation fix batch of {} rows: {}", queued, e.getMessage());
+            } finally {
+                confirmPayments.clear();
+                confirmBookings.clear();
+                closePayments.clear();
+                closeBookingIds.clear();
+            }
+        }
+
+        /**
+         * Same side effects as the webhook for every row this batch actually changed, including
+         * the Redis seat locks of rolled-back bookings; all of them are deferred until the fix
+         * transaction commits.
+         */
+        private void runSideEffects(int[] confirmed, int[] bookingsConfirmed, int[] closed,
+                                    PaymentExpirySweeper.RolledBack rolledBack) {
+            List<Long> confirmedBookingIds = new ArrayList<>();
+            for (int i = 0; i < confirmed.length; i++) {
+                Long bookingId = (Long) confirmBookings.get(i)[0];
+                if (confirmed[i] != 0) {
+                    paymentStatusNotifier.publish(bookingId, (Long) confirmPayments.get(i)[2],
+                            Payment.PaymentStatus.SUCCESS.name(), (String) confirmPayments.get(i)[0]);
+                }
+                if (bookingsConfirmed[i] != 0) {
+                    confirmedBookingIds.add(bookingId);
+                }
+            }
+            for (Booking booking : bookingRepository.findAllById(confirmedBookingIds)) {
+                sePayService.onBookingConfirmed(booking);
+            }
+            for (int i = 0; i < closed.length; i++) {
+                if (closed[i] != 0) {
+                    paymentStatusNotifier.publish(closeBookingIds.get(i), (Long) closePayments.get(i)[2],
+                            (String) closePayments.get(i)[0], null);
+                }
+            }
+
+            List<long[]> releasedSeats = rolledBack.releasedSeats();
+            releasedSeats.stream().map(seat -> seat[0]).distinct()
+                    .forEach(showtimeAvailabilityIndex::refreshShowtimeAfterCommit);
+            if (!releasedSeats.isEmpty()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        for (long[] seat : releasedSeats) {
+                            distributedLockService.releaseSeatLock(seat[0], seat[1], seat[2]);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Bookings whose payment this batch actually closed (the PENDING guard matched).
+         */
+        private List<Long> closedBookingIds(int[] closed) {
+            List<Long> bookingIds = new ArrayList<>();
+            for (int i = 0; i < closed.length; i++) {
+                if (closed[i] != 0) {
+                    bookingIds.add(closeBookingIds.get(i));
+                }
+            }
+            return bookingIds;
+        }
+
+        private int sumUpdated(int[] counts) {
+            int total = 0;
+            for (int c : counts) {
+                // SUCCESS_NO_INFO (-2) counts as one row
+                total += c < 0 ? 1 : c;
+            }
+            return total;
+        }
+    }
+
+    private record PaymentRow(
+            long id,
+            long bookingId,
+            BigDecimal amount,
+            String status,
+            String transactionId,
+            LocalDateTime expiresAt,
+            String bookingStatus
+    ) {}
+
+    // DTOs
+    public record Mismatch(
+            MismatchType type,
+            Long bookingId,
+            Long paymentId,
+            String paymentStatus,
+            String bookingStatus,
+            BigDecimal paymentAmount,
+            Long settlementRow,
+            String settlementStatus,
+            BigDecimal settlementAmount,
+            String settlementTransactionId,
+            LocalDateTime settledAt,
+            String action
+    ) {}
+
+    public record ReconciliationReport(
+            boolean dryRun,
+            long paymentsRead,
+            long settlementsRead,
+            long matched,
+            Map<MismatchType, Long> mismatchCounts,
+            long fixesApplied,
+            long fixesSkipped,
+            long fixesFailed,
+            String reportFile,
+            List<Mismatch> sampleMismatches,
+            long elapsedMs
+    ) {
+        public long mismatches() {
+            return mismatchCounts.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+}
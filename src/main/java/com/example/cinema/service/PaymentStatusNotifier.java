@@ -0,0 +1,160 @@
+package com.example.cinema.service;
+
+import com.example.cinema.entity.Payment;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Payment status push - parks long-poll requests per booking and completes them when the
+ * payment leaves PENDING (webhook, checkout expiry, pending-booking cleanup).
+ *
+ * Status changes are published on a Redis channel after the transaction commits, so a
+ * waiter parked on any node is woken up no matter which node processed the webhook.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatusNotifier implements MessageListener {
+
+    public static final String PAYMENT_STATUS_CHANNEL = "cinema:payment-status";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Map<Long, Set<DeferredResult<Map<String, Object>>>> waiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(PAYMENT_STATUS_CHANNEL));
+    }
+
+    /**
+     * Park a long-poll request until the booking's payment status changes or the timeout hits.
+     */
+    public DeferredResult<Map<String, Object>> await(Long bookingId, long timeoutMillis) {
+        DeferredResult<Map<String, Object>> result = new DeferredResult<>(timeoutMillis);
+        Set<DeferredResult<Map<String, Object>>> set =
+                waiters.computeIfAbsent(bookingId, id -> ConcurrentHashMap.newKeySet());
+        set.add(result);
+        result.onCompletion(() -> removeWaiter(bookingId, result));
+        return result;
+    }
+
+    /**
+     * Drop a parked waiter that is not managed by Spring MVC (its completion callback never fires).
+     */
+    public void cancel(Long bookingId, DeferredResult<Map<String, Object>> result) {
+        removeWaiter(bookingId, result);
+    }
+
+    /**
+     * Announce a payment status change. Deferred until commit when called inside a transaction,
+     * so woken clients never observe a rolled-back status.
+     */
+    public void publish(Payment payment) {
+        if (payment == null || payment.getBooking() == null) {
+            return;
+        }
+        Map<String, Object> event = toStatusBody(payment);
+        event.put("bookingId", payment.getBooking().getId());
+        publishEvent(event);
+    }
+
+    /**
+     * Same as {@link #publish(Payment)} for callers that changed the row with plain SQL.
+     */
+    public void publish(Long bookingId, Long paymentId, String status, String transactionId) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("paymentId", paymentId);
+        event.put("status", status);
+        event.put("transactionId", transactionId);
+        event.put("bookingId", bookingId);
+        publishEvent(event);
+    }
+
+    private void publishEvent(Map<String, Object> event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    /**
+     * Response body shared with GET /api/payments/sepay/status
+     */
+    public static Map<String, Object> toStatusBody(Payment payment) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("paymentId", payment.getId());
+        body.put("status", payment.getPaymentStatus() != null ? payment.getPaymentStatus().name() : null);
+        body.put("transactionId", payment.getTransactionId());
+        return body;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object decoded = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (decoded instanceof Map<?, ?> event) {
+                deliverLocally(event);
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring malformed payment status event: {}", e.getMessage());
+        }
+    }
+
+    private void send(Map<String, Object> event) {
+        try {
+            redisTemplate.convertAndSend(PAYMENT_STATUS_CHANNEL, event);
+        } catch (Exception e) {
+            // Redis down: at least wake up waiters on this node
+            log.warn("Failed to publish payment status for booking {}: {}", event.get("bookingId"), e.getMessage());
+            deliverLocally(event);
+        }
+    }
+
+    private void deliverLocally(Map<?, ?> event) {
+        Object rawBookingId = event.get("bookingId");
+        if (!(rawBookingId instanceof Number number)) {
+            return;
+        }
+        Set<DeferredResult<Map<String, Object>>> parked = waiters.remove(number.longValue());
+        if (parked == null || parked.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("paymentId", event.get("paymentId"));
+        body.put("status", event.get("status"));
+        body.put("transactionId", event.get("transactionId"));
+        parked.forEach(result -> result.setResult(body));
+        log.debug("Woke {} payment status waiter(s) for booking {}", parked.size(), number);
+    }
+
+    private void removeWaiter(Long bookingId, DeferredResult<Map<String, Object>> result) {
+        waiters.computeIfPresent(bookingId, (id, set) -> {
+            set.remove(result);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
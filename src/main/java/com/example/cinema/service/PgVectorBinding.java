@@ -0,0 +1,108 @@
+package com.example.cinema.service;
+
+import com.pgvector.PGvector;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGStatement;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.util.PGobject;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * pgvector binary binding for JdbcTemplate queries.
+ *
+ * Registers the pgvector type on each physical connection (once) and marks its OID for binary
+ * send/receive, so vector parameters go over the wire as the pgvector binary format
+ * (int16 dims, int16 unused, dims x float4) instead of a "[0.1,...]" literal that Postgres parses,
+ * and vector columns come back as float[] without text decoding.
+ *
+ * Statements built here use prepareThreshold=-1: pgjdbc only requests binary result columns for
+ * described statements, and a negative threshold forces that from the first execution.
+ */
+@Component
+@Slf4j
+public class PgVectorBinding {
+
+    private static final String VECTOR_OID_SQL = "SELECT 'vector'::regtype::oid";
+
+    private final Set<BaseConnection> registered = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    /**
+     * PreparedStatementCreator with vector binary transfer enabled; the binder sets parameters.
+     */
+    public PreparedStatementCreator statement(String sql, ParameterBinder binder) {
+        return connection -> {
+            register(connection);
+            PreparedStatement ps = connection.prepareStatement(sql);
+            if (ps.isWrapperFor(PGStatement.class)) {
+                ps.unwrap(PGStatement.class).setPrepareThreshold(-1);
+            }
+            binder.bind(ps);
+            return ps;
+        };
+    }
+
+    public void setVector(PreparedStatement ps, int index, Embedding embedding) throws SQLException {
+        ps.setObject(index, new PGvector(embedding.values()));
+    }
+
+    /**
+     * Read a vector column (binary or text transfer), or null.
+     */
+    public Embedding getVector(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof PGvector vector) {
+            float[] values = vector.toArray();
+            return values == null || values.length == 0 ? null : Embedding.of(values);
+        }
+        if (value instanceof PGobject object) {
+            return Embedding.parse(object.getValue());
+        }
+        return value == null ? null : Embedding.parse(value.toString());
+    }
+
+    /**
+     * Raw float[] of a vector column - empty when null; for bulk loads that skip the wrapper.
+     */
+    public float[] getVectorValues(ResultSet rs, String column) throws SQLException {
+        Embedding embedding = getVector(rs, column);
+        return embedding == null ? new float[0] : embedding.values();
+    }
+
+    private void register(Connection connection) throws SQLException {
+        if (!connection.isWrapperFor(BaseConnection.class)) {
+            return;
+        }
+        BaseConnection pg = connection.unwrap(BaseConnection.class);
+        if (registered.contains(pg)) {
+            return;
+        }
+        pg.addDataType("vector", PGvector.class);
+        int oid;
+        try (PreparedStatement ps = connection.prepareStatement(VECTOR_OID_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                return;
+            }
+            oid = (int) rs.getLong(1);
+        }
+        pg.getQueryExecutor().addBinarySendOid(oid);
+        pg.getQueryExecutor().addBinaryReceiveOid(oid);
+        registered.add(pg);
+        log.debug("Enabled pgvector binary transfer (oid={}) on connection {}", oid, pg);
+    }
+
+    @FunctionalInterface
+    public interface ParameterBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+}
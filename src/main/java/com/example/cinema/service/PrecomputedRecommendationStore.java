@@ -0,0 +1,191 @@
+package com.example.cinema.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Precomputed Recommendation Store - per-user AI-personalized movie ids (user_recommendations).
+ *
+ * Read path: one query returns the stored list together with the user's current genre
+ * preferences and favorite ids; the pref/fav versions are recomputed from those with
+ * EmbeddingService.prefListVersion and must match the stored ones, so a preference or
+ * favorite change invalidates the row without any explicit eviction. Bookings also feed the
+ * local user vector but are not versioned; a confirmed or cancelled booking deletes the
+ * user's row after commit (evictAfterCommit).
+ */
+@Service
+@Slf4j
+public class PrecomputedRecommendationStore {
+
+    private static final String FIND_SQL = """
+            SELECT r.pref_version, r.fav_version, r.movie_ids, r.depth,
+                   ARRAY(SELECT p.genre || ':' || p.preference_score
+                         FROM user_genre_preferences p WHERE p.user_id = r.user_id) AS preferences,
+                   ARRAY(SELECT f.movie_id::text
+                         FROM favorite_movies f WHERE f.user_id = r.user_id)        AS favorites
+            FROM user_recommendations r
+            WHERE r.user_id = ? AND r.computed_at > ?
+            """;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO user_recommendations (user_id, pref_version, fav_version, movie_ids, depth, computed_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            ON CONFLICT (user_id) DO UPDATE SET
+                pref_version = EXCLUDED.pref_version,
+                fav_version  = EXCLUDED.fav_version,
+                movie_ids    = EXCLUDED.movie_ids,
+                depth        = EXCLUDED.depth,
+                computed_at  = EXCLUDED.computed_at
+            """;
+
+    private static final String DELETE_SQL = "DELETE FROM user_recommendations WHERE user_id = ?";
+
+    private static final String PURGE_SQL = "DELETE FROM user_recommendations WHERE computed_at <= ?";
+
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM user_recommendations WHERE computed_at > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.recommendation.precompute.top-n:50}")
+    private int depth;
+
+    @Value("${app.recommendation.precompute.max-age-hours:36}")
+    private int maxAgeHours;
+
+    public PrecomputedRecommendationStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * How many ids are computed and stored per user.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * Stored ids in rank order when the row is fresh, its versions still match and it can
+     * answer {@code limit}; empty otherwise (caller computes live).
+     */
+    public Optional<List<Long>> findCurrent(Long userId, int limit) {
+        try {
+            return find(userId, limit);
+        } catch (DataAccessException e) {
+            log.warn("Failed to read stored recommendations for user {}: {}", userId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<List<Long>> find(Long userId, int limit) {
+        return jdbcTemplate.query(FIND_SQL, rs -> {
+            if (!rs.next()) {
+                return Optional.<List<Long>>empty();
+            }
+            int prefVersion = EmbeddingService.prefListVersion(Arrays.asList((String[]) rs.getArray("preferences").getArray()));
+            int favVersion = EmbeddingService.prefListVersion(Arrays.asList((String[]) rs.getArray("favorites").getArray()));
+            if (prefVersion != rs.getInt("pref_version") || favVersion != rs.getInt("fav_version")) {
+                return Optional.<List<Long>>empty();
+            }
+            List<Long> movieIds = Arrays.asList((Long[]) rs.getArray("movie_ids").getArray());
+            if (movieIds.isEmpty() || (movieIds.size() < limit && rs.getInt("depth") < limit)) {
+                return Optional.<List<Long>>empty();
+            }
+            return Optional.of(movieIds.subList(0, Math.min(limit, movieIds.size())));
+        }, userId, Timestamp.valueOf(freshAfter()));
+    }
+
+    /**
+     * Write-through from the live path; a failed write only costs the next request a recompute.
+     */
+    public void save(Long userId, RecommendationService.PersonalizedRanking ranking) {
+        // Mixed-recommendation sections run in read-only transactions; the next plain request writes it
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        try {
+            saveAll(List.of(new Entry(userId, ranking)));
+        } catch (DataAccessException e) {
+            log.warn("Failed to store recommendations for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    public void saveAll(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            RecommendationService.PersonalizedRanking ranking = entry.ranking();
+            ps.setLong(1, entry.userId());
+            ps.setInt(2, ranking.prefVersion());
+            ps.setInt(3, ranking.favVersion());
+            ps.setArray(4, bigintArray(ps, ranking.movieIds()));
+            ps.setInt(5, ranking.depth());
+            ps.setTimestamp(6, now);
+        });
+    }
+
+    /**
+     * The user's bookings changed: drop the stored row once the caller's transaction has
+     * committed, so the next request computes live. A failed delete leaves the row servable
+     * until it ages out.
+     */
+    public void evictAfterCommit(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        Runnable evict = () -> {
+            try {
+                jdbcTemplate.update(DELETE_SQL, userId);
+            } catch (DataAccessException e) {
+                log.warn("Failed to drop stored recommendations for user {}: {}", userId, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    /**
+     * Drop rows too old to be served.
+     */
+    public int purgeExpired() {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(freshAfter()));
+    }
+
+    public long countFresh() {
+        Long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class, Timestamp.valueOf(freshAfter()));
+        return count != null ? count : 0;
+    }
+
+    private LocalDateTime freshAfter() {
+        return LocalDateTime.now().minusHours(maxAgeHours);
+    }
+
+    private static Array bigintArray(PreparedStatement ps, List<Long> ids) throws SQLException {
+        return ps.getConnection().createArrayOf("bigint", ids.toArray());
+    }
+
+    public record Entry(Long userId, RecommendationService.PersonalizedRanking ranking) {}
+}
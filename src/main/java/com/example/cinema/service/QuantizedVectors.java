@@ -0,0 +1,147 @@
+package com.example.cinema.service;
+
+import java.util.Arrays;
+
+/**
+ * Quantized row storage for unit-length embeddings, used for the approximate first pass of
+ * MovieVectorIndex before exact re-ranking.
+ *
+ *   INT8   : one signed byte per dimension plus a per-row scale (x ≈ code / scale). The query
+ *            is quantized the same way and scored with an integer dot product. ~4x smaller.
+ *   BINARY : one sign bit per dimension packed into longs. Scored by Hamming distance, turned
+ *            into an angle estimate cos(π · h / d). ~32x smaller, coarse: re-rank more candidates.
+ */
+public final class QuantizedVectors {
+
+    public enum Mode { INT8, BINARY }
+
+    private static final int INT8_MAX = 127;
+
+    private final Mode mode;
+    private final int dims;
+    private final int words;
+
+    private byte[] codes = new byte[0];
+    private float[] inverseScales = new float[0];
+    private long[] bits = new long[0];
+
+    public QuantizedVectors(Mode mode, int dims, int capacity) {
+        this.mode = mode;
+        this.dims = dims;
+        this.words = (dims + 63) >>> 6;
+        ensureCapacity(capacity);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public void ensureCapacity(int rows) {
+        if (mode == Mode.INT8) {
+            if ((long) rows * dims > codes.length) {
+                codes = Arrays.copyOf(codes, rows * dims);
+                inverseScales = Arrays.copyOf(inverseScales, rows);
+            }
+        } else if ((long) rows * words > bits.length) {
+            bits = Arrays.copyOf(bits, rows * words);
+        }
+    }
+
+    public int capacity() {
+        return mode == Mode.INT8 ? inverseScales.length : bits.length / Math.max(words, 1);
+    }
+
+    /**
+     * Encode one unit-length row into {@code slot}.
+     */
+    public void set(int slot, float[] vector) {
+        if (mode == Mode.INT8) {
+            float maxAbs = 0f;
+            for (float x : vector) {
+                maxAbs = Math.max(maxAbs, Math.abs(x));
+            }
+            float scale = maxAbs == 0f ? 1f : INT8_MAX / maxAbs;
+            int offset = slot * dims;
+            for (int i = 0; i < dims; i++) {
+                codes[offset + i] = (byte) Math.round(vector[i] * scale);
+            }
+            inverseScales[slot] = 1f / scale;
+        } else {
+            long[] packed = signBits(vector);
+            System.arraycopy(packed, 0, bits, slot * words, words);
+        }
+    }
+
+    /**
+     * Copy row {@code from} over row {@code to} (used to keep rows dense on removal).
+     */
+    public void copy(int from, int to) {
+        if (mode == Mode.INT8) {
+            System.arraycopy(codes, from * dims, codes, to * dims, dims);
+            inverseScales[to] = inverseScales[from];
+        } else {
+            System.arraycopy(bits, from * words, bits, to * words, words);
+        }
+    }
+
+    /**
+     * Per-query state for {@link #score}: the query quantized the same way as the rows.
+     */
+    public Prepared prepare(float[] query) {
+        if (mode == Mode.BINARY) {
+            return new Prepared(null, 0f, signBits(query));
+        }
+        float maxAbs = 0f;
+        for (float x : query) {
+            maxAbs = Math.max(maxAbs, Math.abs(x));
+        }
+        float scale = maxAbs == 0f ? 1f : INT8_MAX / maxAbs;
+        byte[] q = new byte[dims];
+        for (int i = 0; i < dims; i++) {
+            q[i] = (byte) Math.round(query[i] * scale);
+        }
+        return new Prepared(q, 1f / scale, null);
+    }
+
+    /**
+     * Approximate cosine similarity between a prepared unit-length query and row {@code slot}.
+     */
+    public float score(Prepared query, int slot) {
+        if (mode == Mode.INT8) {
+            // Integer multiply-add: associative, so the JIT vectorizes the reduction
+            byte[] q = query.codes;
+            int offset = slot * dims;
+            int sum = 0;
+            for (int i = 0; i < dims; i++) {
+                sum += q[i] * codes[offset + i];
+            }
+            return sum * query.inverseScale * inverseScales[slot];
+        }
+        long[] q = query.bits;
+        int offset = slot * words;
+        int hamming = 0;
+        for (int w = 0; w < words; w++) {
+            hamming += Long.bitCount(q[w] ^ bits[offset + w]);
+        }
+        return (float) Math.cos(Math.PI * hamming / dims);
+    }
+
+    /**
+     * Heap bytes per stored row.
+     */
+    public long bytesPerVector() {
+        return mode == Mode.INT8 ? dims + Float.BYTES : (long) words * Long.BYTES;
+    }
+
+    public record Prepared(byte[] codes, float inverseScale, long[] bits) {}
+
+    static long[] signBits(float[] vector) {
+        long[] packed = new long[(vector.length + 63) >>> 6];
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0f) {
+                packed[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.example.cinema.config.CacheConfig.QUERY_EMBEDDINGS_CACHE;
+
+/**
+ * Query Embedding Cache - two-tier cache for search query embeddings.
+ *
+ *   canonicalize(query) → L1 (in-process LRU, float[] on heap, no I/O)
+ *                       → L2 (Redis, binary Embedding codec, shared across nodes)
+ *                       → EmbeddingService.embedQuery (OpenAI, metered)
+ *
+ * Canonical form: NFKC, lower case, punctuation dropped, whitespace collapsed and a light
+ * plural stemmer ("Action Movies", "action movies " and "action movie" share one entry).
+ * The canonical text is also what gets embedded, so a key always maps to the same vector.
+ *
+ * Meters: ai.query_embedding.cache (tags tier=l1|l2, result=hit|miss), ai.query_embedding.l1.size.
+ */
+@Service
+@Slf4j
+public class QueryEmbeddingCache {
+
+    private static final Pattern APOSTROPHES = Pattern.compile("['’`]");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String KEY_PREFIX = "q1:";
+
+    // -ies words whose singular is -ie, and -ies words that are already singular
+    private static final Set<String> IES_TO_IE = Set.of(
+            "movies", "zombies", "cookies", "indies", "rookies", "hippies", "selfies", "goalies", "aunties");
+    private static final Set<String> IES_UNCHANGED = Set.of("series", "species");
+
+    private final EmbeddingService embeddingService;
+    private final SingleFlight singleFlight;
+    private final Cache l2;
+    private final LocalLru l1;
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+
+    public QueryEmbeddingCache(EmbeddingService embeddingService,
+                               SingleFlight singleFlight,
+                               CacheManager cacheManager,
+                               AiProperties aiProperties,
+                               MeterRegistry meterRegistry) {
+        this.embeddingService = embeddingService;
+        this.singleFlight = singleFlight;
+        this.l2 = cacheManager.getCache(QUERY_EMBEDDINGS_CACHE);
+        this.l1 = new LocalLru(aiProperties.getQueryEmbeddingL1MaxEntries(), aiProperties.getQueryEmbeddingL1TtlMs());
+
+        this.l1Hits = cacheCounter(meterRegistry, "l1", "hit");
+        this.l1Misses = cacheCounter(meterRegistry, "l1", "miss");
+        this.l2Hits = cacheCounter(meterRegistry, "l2", "hit");
+        this.l2Misses = cacheCounter(meterRegistry, "l2", "miss");
+        Gauge.builder("ai.query_embedding.l1.size", l1, LocalLru::size)
+                .description("Entries in the in-process query embedding cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Embedding of a search query, served from L1, then L2, then the embedding API.
+     */
+    public Embedding get(String query) {
+        String canonical = canonicalize(query);
+        if (canonical.isEmpty()) {
+            throw new IllegalArgumentException("Query cannot be null or empty");
+        }
+        String key = KEY_PREFIX + sha256(canonical);
+
+        Embedding embedding = lookup(key);
+        if (embedding != null) {
+            return embedding;
+        }
+        // Concurrent misses for the same query (here or on another node) share one API call
+        embedding = singleFlight.execute("query-embedding:" + key, () -> {
+            Embedding embedded = embeddingService.embedQuery(canonical);
+            writeL2(key, embedded);
+            return embedded;
+        }, () -> readL2(key));
+        l1.put(key, embedding);
+        return embedding;
+    }
+
+    /**
+     * Embedding of a search query from L1 or L2 only, never calling the embedding API (for
+     * callers that must not reach the remote model, e.g. while it is marked down).
+     */
+    public Optional<Embedding> getCached(String query) {
+        String canonical = canonicalize(query);
+        if (canonical.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(lookup(KEY_PREFIX + sha256(canonical)));
+    }
+
+    public QueryCacheStats getStats() {
+        return new QueryCacheStats(
+                (long) l1Hits.count(), (long) l1Misses.count(),
+                (long) l2Hits.count(), (long) l2Misses.count(),
+                l1.size());
+    }
+
+    public void clearLocal() {
+        l1.clear();
+    }
+
+    /**
+     * Canonical search text: case, whitespace, punctuation and simple plurals folded.
+     */
+    public static String canonicalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        text = APOSTROPHES.matcher(text).replaceAll("");
+        text = NON_WORD.matcher(text).replaceAll(" ").trim();
+        if (text.isEmpty()) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String token : text.split(" ")) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(stem(token));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Plural folding only (comedies → comedy, movies → movie, classes → class); words ending
+     * in -ss / -us / -is and short tokens are left alone.
+     */
+    static String stem(String token) {
+        int n = token.length();
+        if (n <= 3 || !Character.isLetter(token.charAt(n - 1))) {
+            return token;
+        }
+        if (token.endsWith("ies") && n > 4) {
+            if (IES_UNCHANGED.contains(token)) {
+                return token;
+            }
+            return IES_TO_IE.contains(token) ? token.substring(0, n - 1) : token.substring(0, n - 3) + "y";
+        }
+        if (token.endsWith("sses")) {
+            return token.substring(0, n - 2);
+        }
+        if (token.endsWith("ss") || token.endsWith("us") || token.endsWith("is")) {
+            return token;
+        }
+        if (token.endsWith("s")) {
+            return token.substring(0, n - 1);
+        }
+        return token;
+    }
+
+    // ── Internal ─────────────────────────────────────────────────────────────
+
+    /**
+     * L1, then L2 (an L2 hit is copied into L1); null when neither has the key.
+     */
+    private Embedding lookup(String key) {
+        Embedding embedding = l1.get(key);
+        if (embedding != null) {
+            l1Hits.increment();
+            return embedding;
+        }
+        l1Misses.increment();
+
+        embedding = readL2(key);
+        if (embedding == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        l1.put(key, embedding);
+        return embedding;
+    }
+
+    private Embedding readL2(String key) {
+        if (l2 == null) {
+            return null;
+        }
+        try {
+            return l2.get(key, Embedding.class);
+        } catch (RuntimeException e) {
+            log.warn("Query embedding L2 read failed, treating as miss: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeL2(String key, Embedding embedding) {
+        if (l2 == null) {
+            return;
+        }
+        try {
+            l2.put(key, embedding);
+        } catch (RuntimeException e) {
+            log.warn("Query embedding L2 write failed: {}", e.getMessage());
+        }
+    }
+
+    private static Counter cacheCounter(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("ai.query_embedding.cache")
+                .description("Query embedding cache lookups")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Size-bounded, access-ordered LRU with a per-entry TTL.
+     */
+    static final class LocalLru {
+
+        private final long ttlNanos;
+        private final LinkedHashMap<String, Entry> entries;
+
+        LocalLru(int maxEntries, long ttlMs) {
+            int capacity = Math.max(maxEntries, 1);
+            this.ttlNanos = Math.max(ttlMs, 1) * 1_000_000;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized Embedding get(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.storedAt > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.embedding;
+        }
+
+        synchronized void put(String key, Embedding embedding) {
+            entries.put(key, new Entry(embedding, System.nanoTime()));
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+
+        private record Entry(Embedding embedding, long storedAt) {}
+    }
+
+    // DTO
+    public record QueryCacheStats(long l1Hits, long l1Misses, long l2Hits, long l2Misses, int l1Size) {}
+}
@@ -0,0 +1,187 @@
+package com.example.cinema.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recommendation Precompute Service - nightly batch of AI-personalized recommendations for
+ * active users into user_recommendations, so the request path is a single read.
+ *
+ * Active = has genre preferences and booked, favorited or changed preferences within
+ * app.recommendation.precompute.active-days. Users are split into chunks computed in parallel
+ * (one RecommendationService ranking per user, one batched upsert per chunk). Users outside the
+ * batch are still written through on their first live request.
+ */
+@Service
+@Slf4j
+public class RecommendationPrecomputeService {
+
+    private static final String ACTIVE_USERS_SQL = """
+            SELECT DISTINCT p.user_id
+            FROM user_genre_preferences p
+            WHERE p.user_id IN (
+                SELECT b.user_id FROM bookings b WHERE b.created_at > ?
+                UNION
+                SELECT f.user_id FROM favorite_movies f WHERE f.added_at > ?
+                UNION
+                SELECT g.user_id FROM user_genre_preferences g WHERE COALESCE(g.updated_at, g.created_at) > ?
+            )
+            ORDER BY p.user_id
+            """;
+
+    private final RecommendationService recommendationService;
+    private final PrecomputedRecommendationStore store;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService runExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "recommendation-precompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile RunStats lastRun;
+
+    @Value("${app.recommendation.precompute.threads:4}")
+    private int threads;
+
+    @Value("${app.recommendation.precompute.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${app.recommendation.precompute.active-days:30}")
+    private int activeDays;
+
+    public RecommendationPrecomputeService(RecommendationService recommendationService,
+                                           PrecomputedRecommendationStore store,
+                                           JdbcTemplate jdbcTemplate) {
+        this.recommendationService = recommendationService;
+        this.store = store;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Scheduled(cron = "${app.recommendation.precompute.cron:0 0 4 * * *}")
+    public void scheduledRun() {
+        runAsync();
+    }
+
+    /**
+     * Precompute in the background; no-op while a run is already in progress.
+     */
+    public boolean runAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runExecutor.submit(() -> {
+            try {
+                run();
+            } catch (Exception e) {
+                log.warn("Recommendation precompute failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    void run() {
+        long started = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        Timestamp since = Timestamp.valueOf(startedAt.minusDays(activeDays));
+        List<Long> userIds = jdbcTemplate.queryForList(ACTIVE_USERS_SQL, Long.class, since, since, since);
+
+        AtomicInteger stored = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int depth = store.depth();
+        int size = Math.max(chunkSize, 1);
+
+        // Pool only lives for the run (off-peak), sized so embedding/pgvector calls stay bounded
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+            Thread thread = new Thread(r, "recommendation-precompute-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int from = 0; from < userIds.size(); from += size) {
+                List<Long> chunk = userIds.subList(from, Math.min(from + size, userIds.size()));
+                chunks.add(pool.submit(() -> computeChunk(chunk, depth, stored, failed)));
+            }
+            for (Future<?> chunk : chunks) {
+                try {
+                    chunk.get();
+                } catch (ExecutionException e) {
+                    log.warn("Recommendation precompute chunk failed: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int purged = store.purgeExpired();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        lastRun = new RunStats(startedAt, userIds.size(), stored.get(), failed.get(), purged, elapsedMs);
+        log.info("Precomputed recommendations for {}/{} active users ({} failed, {} expired rows purged) in {} ms",
+                stored.get(), userIds.size(), failed.get(), purged, elapsedMs);
+    }
+
+    private void computeChunk(List<Long> userIds, int depth, AtomicInteger stored, AtomicInteger failed) {
+        List<PrecomputedRecommendationStore.Entry> entries = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                Optional<RecommendationService.PersonalizedRanking> ranking =
+                        recommendationService.computeAIPersonalizedRanking(userId, depth);
+                ranking.filter(r -> !r.movieIds().isEmpty())
+                        .ifPresent(r -> entries.add(new PrecomputedRecommendationStore.Entry(userId, r)));
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.debug("Recommendation precompute failed for user {}: {}", userId, e.getMessage());
+            }
+        }
+        store.saveAll(entries);
+        stored.addAndGet(entries.size());
+    }
+
+    public PrecomputeStats getStats() {
+        return new PrecomputeStats(running.get(), store.countFresh(), lastRun);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runExecutor.shutdownNow();
+    }
+
+    // DTO
+    public record RunStats(
+            LocalDateTime startedAt,
+            int activeUsers,
+            int stored,
+            int failed,
+            int purged,
+            long elapsedMs
+    ) {}
+
+    // DTO
+    public record PrecomputeStats(
+            boolean running,
+            long freshRows,
+            RunStats lastRun
+    ) {}
+}
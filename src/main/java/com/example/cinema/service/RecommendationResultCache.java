@@ -0,0 +1,207 @@
+package com.example.cinema.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.cinema.config.CacheConfig.RECOMMENDATION_RESULTS_CACHE;
+
+/**
+ * Recommendation Result Cache - per-user recommendation results, invalidated by domain events.
+ *
+ * Entries are keyed by (kind, userId, limit) plus two generation counters kept in Redis:
+ *   user generation   : bumped when the user's genre preferences or favorites change, or one of
+ *                       their bookings is confirmed or cancelled (booked movies feed the user
+ *                       vector and collaborative filtering)
+ *   global generation : bumped when movie content changes (add/update/delete, batch embedding)
+ *                       or the set of bookable movies changes (showtime schedule, sell-outs)
+ * A bump makes every affected key unreachable at once; nothing is scanned or deleted, old
+ * entries expire with the region TTL. Bumps run after the caller's transaction commits, and the
+ * generations are read before a result is computed, so a result computed from pre-change data
+ * is always stored under the old key and can never be served after the change.
+ *
+ * Only ranked movie ids are stored; movies are loaded by id on a hit (one PK query), so entity
+ * fields are never stale. If Redis is unreachable the cache is skipped, never served stale.
+ */
+@Service
+@Slf4j
+public class RecommendationResultCache {
+
+    private static final String USER_GENERATION_PREFIX = "rec-gen:user:";
+    private static final String GLOBAL_GENERATION_KEY = "rec-gen:global";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Cache cache;
+    private final boolean enabled;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter userInvalidations;
+    private final Counter globalInvalidations;
+
+    public RecommendationResultCache(RedisTemplate<String, Object> redisTemplate,
+                                     CacheManager cacheManager,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.recommendation.result-cache.enabled:true}") boolean enabled) {
+        this.redisTemplate = redisTemplate;
+        this.cache = cacheManager.getCache(RECOMMENDATION_RESULTS_CACHE);
+        this.enabled = enabled && cache != null;
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        this.userInvalidations = invalidationCounter(meterRegistry, "user");
+        this.globalInvalidations = invalidationCounter(meterRegistry, "global");
+    }
+
+    /**
+     * Key for the user's result under the current generations; empty when caching is off or
+     * Redis is unreachable (caller computes without caching). Read it before computing.
+     */
+    public Optional<String> keyFor(String kind, Long userId, int limit) {
+        if (!enabled || userId == null) {
+            return Optional.empty();
+        }
+        try {
+            List<Object> generations = redisTemplate.opsForValue()
+                    .multiGet(List.of(USER_GENERATION_PREFIX + userId, GLOBAL_GENERATION_KEY));
+            return Optional.of(kind + ":" + userId + ":" + limit
+                    + ":u" + generation(generations, 0) + ":g" + generation(generations, 1));
+        } catch (Exception e) {
+            log.debug("Recommendation result cache unavailable: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public Optional<CachedRecommendation> get(String key) {
+        try {
+            CachedRecommendation cached = cache.get(key, CachedRecommendation.class);
+            (cached != null ? hits : misses).increment();
+            return Optional.ofNullable(cached);
+        } catch (Exception e) {
+            misses.increment();
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, CachedRecommendation value) {
+        try {
+            cache.put(key, value);
+        } catch (Exception e) {
+            log.debug("Failed to cache recommendation result {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Preferences, favorites or bookings of one user changed: drop that user's results once the
+     * caller's transaction has committed.
+     */
+    public void invalidateUserAfterCommit(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        afterCommit(() -> bump(USER_GENERATION_PREFIX + userId, userInvalidations));
+    }
+
+    /**
+     * Something every user's results may depend on changed (movie content, bookable movies):
+     * drop all results once the caller's transaction has committed.
+     */
+    public void invalidateAllAfterCommit() {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(this::invalidateAll);
+    }
+
+    /**
+     * Immediate global invalidation, for callers that already run after the commit (a
+     * synchronization registered from inside afterCommit would never run).
+     */
+    public void invalidateAll() {
+        if (enabled) {
+            bump(GLOBAL_GENERATION_KEY, globalInvalidations);
+        }
+    }
+
+    public ResultCacheStats getStats() {
+        return new ResultCacheStats(enabled, (long) hits.count(), (long) misses.count(),
+                (long) userInvalidations.count(), (long) globalInvalidations.count());
+    }
+
+    private void bump(String generationKey, Counter counter) {
+        try {
+            redisTemplate.opsForValue().increment(generationKey);
+            counter.increment();
+        } catch (Exception e) {
+            // Entries written before this change stay reachable until the region TTL
+            log.warn("Failed to invalidate recommendation results ({}): {}", generationKey, e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static long generation(List<Object> generations, int index) {
+        Object value = generations != null && generations.size() > index ? generations.get(index) : null;
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result) {
+        return Counter.builder("recommendation.result_cache.lookups")
+                .description("Recommendation result cache lookups by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter invalidationCounter(MeterRegistry registry, String scope) {
+        return Counter.builder("recommendation.result_cache.invalidations")
+                .description("Recommendation result cache generation bumps by scope")
+                .tag("scope", scope)
+                .register(registry);
+    }
+
+    /**
+     * Cached value: the response without the Movie entities (non-final class so the Redis JSON
+     * serializer records its type).
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CachedRecommendation {
+        private String title;
+        private List<Long> movieIds;
+        private List<String> reasons;
+        private RecommendationService.RecommendationType type;
+    }
+
+    // DTO
+    public record ResultCacheStats(
+            boolean enabled,
+            long hits,
+            long misses,
+            long userInvalidations,
+            long globalInvalidations
+    ) {}
+}
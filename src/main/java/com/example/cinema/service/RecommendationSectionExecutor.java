@@ -0,0 +1,118 @@
+package com.example.cinema.service;
+
+import com.example.cinema.entity.Movie;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Recommendation Section Executor - computes the sections of a mixed recommendation page
+ * concurrently so latency is close to the slowest section instead of their sum.
+ *
+ *   - bounded pool + bounded queue; when saturated, sections are skipped rather than queued
+ *   - one shared deadline per page; sections still running at the deadline are cancelled
+ *     and left out (partial result)
+ *   - each section runs in its own read-only transaction and initializes the lazy review
+ *     collections Movie serializes (averageRating / reviewCount), because the request's
+ *     open-in-view session does not cover entities loaded on worker threads
+ */
+@Component
+@Slf4j
+public class RecommendationSectionExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long sectionTimeoutMs;
+
+    public RecommendationSectionExecutor(PlatformTransactionManager transactionManager,
+                                         @Value("${app.recommendation.mixed.threads:16}") int threads,
+                                         @Value("${app.recommendation.mixed.queue-capacity:256}") int queueCapacity,
+                                         @Value("${app.recommendation.mixed.section-timeout-ms:1500}") long sectionTimeoutMs) {
+        AtomicInteger counter = new AtomicInteger();
+        int poolSize = Math.max(threads, 1);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                r -> {
+                    Thread thread = new Thread(r, "recommendation-section-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.sectionTimeoutMs = sectionTimeoutMs;
+    }
+
+    /**
+     * Run every section concurrently and return the results of those that finished in time,
+     * keyed and ordered like {@code sections}. Failed, rejected and timed-out sections are absent.
+     */
+    public <T> Map<String, T> runAll(Map<String, Supplier<T>> sections) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sectionTimeoutMs);
+
+        Map<String, Future<T>> futures = new LinkedHashMap<>();
+        sections.forEach((name, section) -> {
+            try {
+                futures.put(name, executor.submit(() -> readOnlyTransaction.execute(tx -> initialize(section.get()))));
+            } catch (RejectedExecutionException e) {
+                log.warn("Recommendation section '{}' skipped: executor saturated", name);
+            }
+        });
+
+        Map<String, T> results = new LinkedHashMap<>();
+        List<String> timedOut = new ArrayList<>();
+        futures.forEach((name, future) -> {
+            try {
+                long remaining = Math.max(deadline - System.nanoTime(), 0);
+                results.put(name, future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timedOut.add(name);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.warn("Recommendation section '{}' failed: {}", name, e.getCause().getMessage());
+            }
+        });
+        if (!timedOut.isEmpty()) {
+            log.warn("Recommendation sections {} exceeded {} ms, returning partial result", timedOut, sectionTimeoutMs);
+        }
+        return results;
+    }
+
+    private static <T> T initialize(T result) {
+        if (result instanceof RecommendationService.RecommendationResponse response) {
+            initializeMovies(response.movies());
+        } else if (result instanceof List<?> list) {
+            initializeMovies(list);
+        }
+        return result;
+    }
+
+    private static void initializeMovies(List<?> movies) {
+        for (Object item : movies) {
+            if (item instanceof Movie movie) {
+                Hibernate.initialize(movie.getReviews());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -10,28 +10,42 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Recommendation Service - Smart Movie Recommendations
  *
  * ─────────────────────────────────────────────────────────────────────
- * CACHE CHỈ ĐƯỢC ĐẶT Ở 2 ĐIỂM DUY NHẤT CÓ GỌI OPENAI:
+ * CACHE ĐẶT Ở 3 ĐIỂM: 2 điểm có gọi OpenAI (cache embedding) + 1 cache kết quả theo user:
  *
  *   1. getAIPersonalizedRecommendations()
  *      → bên trong gọi generateUserPreferenceEmbedding() → OpenAI API
  *      → cache theo (userId, prefVersion, favVersion) tự miss khi sở thích đổi
+ *      → chỉ khi app.ai.user-vector-mode=remote; mặc định (local) vector user được trộn từ
+ *        embedding phim + centroid thể loại (LocalUserVectorService), không tốn token
  *
  *   2. semanticMovieSearch()
- *      → bên trong gọi generateEmbedding(query) → OpenAI API
- *      → cache theo (query, date) tự miss sang ngày mới
+ *      → bên trong gọi QueryEmbeddingCache.get(query) → OpenAI API khi miss
+ *      → cache 2 tầng (L1 in-process, L2 Redis) theo query đã chuẩn hoá
+ *
+ *   3. Kết quả theo user (RecommendationResultCache, chỉ lưu movie ids):
+ *      getPersonalizedRecommendations(), getSimilarToFavorites(), getAIPersonalizedRecommendations()
+ *      → key gồm generation của user + generation chung; tăng sau commit khi user đổi sở thích /
+ *        favorite / booking, khi phim thêm/sửa/xoá, hoặc khi tập phim còn suất chiếu thay đổi
+ *        → không stale, không cần xoá key
+ *      → chỉ cache kết quả "thật" (không cache fallback popular / lỗi AI)
  *
  * ─────────────────────────────────────────────────────────────────────
  * KHÔNG cache:
- *   - getPersonalizedRecommendations()  → chỉ query DB
- *   - getSimilarToFavorites()           → chỉ query DB
  *   - getRecommendationsByGenre()       → chỉ query DB
  *   - findSimilarMovies()               → đọc embedding từ DB + tính cosine (CPU, không token)
+ *   - getTrendingMovies()               → top-K giữ sẵn trong bộ nhớ (TrendingService), chỉ load phim theo id
+ *
+ * Lọc/ưu tiên theo suất chiếu (ShowtimeAvailabilityIndex): danh sách AI, trending và collaborative
+ * được xếp lại để phim còn suất chiếu + còn ghế trong N ngày tới lên trước (mode=prefer) hoặc chỉ
+ * giữ các phim đó (mode=only). Tập phim nằm sẵn trong bộ nhớ → không thêm query.
  *
  * Lý do: cache DB query thêm complexity mà gain không đáng, DB đã có index.
  * ─────────────────────────────────────────────────────────────────────
@@ -48,12 +62,30 @@ public class RecommendationService {
     private final MovieEmbeddingService movieEmbeddingService;
     private final UserPreferenceVectorService userPreferenceVectorService;
     private final AiProperties aiProperties;
+    private final MovieVectorIndex movieVectorIndex;
+    private final CollaborativeFilteringService collaborativeFilteringService;
+    private final RecommendationSectionExecutor sectionExecutor;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final LocalEmbeddingFallback localEmbeddingFallback;
+    private final PrecomputedRecommendationStore precomputedRecommendationStore;
+    private final LocalUserVectorService localUserVectorService;
+    private final TrendingService trendingService;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
+    private final RecommendationResultCache recommendationResultCache;
+
+    private static final List<String> AI_PERSONALIZED_REASONS = List.of("Based on AI analysis of your movie preferences");
 
     /**
      * Get personalized movie recommendations for user
-     * Không cache - chỉ query DB, không tốn token AI
+     * Cache theo user (RecommendationResultCache), invalidate khi sở thích / phim thay đổi
      */
     public RecommendationResponse getPersonalizedRecommendations(Long userId, int limit) {
+        return cachedForUser("personalized", userId, limit,
+                r -> r.type() == RecommendationType.PERSONALIZED,
+                () -> computePersonalizedRecommendations(userId, limit));
+    }
+
+    private RecommendationResponse computePersonalizedRecommendations(Long userId, int limit) {
         List<Movie> recommendations = new ArrayList<>();
         List<String> reasonsList = new ArrayList<>();
 
@@ -112,9 +144,15 @@ public class RecommendationService {
 
     /**
      * Get similar movies based on user's favorites
-     * Không cache - chỉ query DB, không tốn token AI
+     * Cache theo user (RecommendationResultCache), invalidate khi favorite / phim thay đổi
      */
     public RecommendationResponse getSimilarToFavorites(Long userId, int limit) {
+        return cachedForUser("similar-to-favorites", userId, limit,
+                r -> r.type() == RecommendationType.SIMILAR_TO_FAVORITES,
+                () -> computeSimilarToFavorites(userId, limit));
+    }
+
+    private RecommendationResponse computeSimilarToFavorites(Long userId, int limit) {
         List<FavoriteMovie> userFavorites = favoriteMovieService.getAllUserFavorites(userId);
 
         if (userFavorites.isEmpty()) {
@@ -161,7 +199,7 @@ public class RecommendationService {
         List<Movie> recommendations = new ArrayList<>();
 
         // Get trending movies
-        List<Movie> trending = movieService.getPopularMovies(PageRequest.of(0, limit / 3)).getContent();
+        List<Movie> trending = getTrendingMovies(limit / 3);
         recommendations.addAll(trending);
 
         // Get currently showing movies
@@ -199,52 +237,76 @@ public class RecommendationService {
      * Get mixed recommendations combining multiple strategies
      */
     public MixedRecommendationResponse getMixedRecommendations(Long userId, int limit) {
-        List<RecommendationSection> sections = new ArrayList<>();
+        return getMixedRecommendations(userId, limit, false);
+    }
 
-        // Personalized recommendations
-        RecommendationResponse personalized = getPersonalizedRecommendations(userId, limit / 3);
-        if (!personalized.movies().isEmpty()) {
-            sections.add(new RecommendationSection(
-                    "For You",
-                    personalized.movies().stream().limit(5).collect(Collectors.toList()),
-                    "Based on your preferences"
-            ));
+    /**
+     * Get mixed recommendations; sections are computed concurrently and a section that fails or
+     * misses the deadline is left out instead of delaying the page.
+     *
+     * @param includeAiSection prepend the AI personalized section (stored user vector)
+     */
+    public MixedRecommendationResponse getMixedRecommendations(Long userId, int limit, boolean includeAiSection) {
+        Map<String, Supplier<List<Movie>>> tasks = new LinkedHashMap<>();
+        if (includeAiSection) {
+            tasks.put("ai", () -> getAIPersonalizedRecommendations(userId, 8).movies());
         }
+        tasks.put("personalized", () -> getPersonalizedRecommendations(userId, limit / 3).movies());
+        tasks.put("similar", () -> getSimilarToFavorites(userId, limit / 3).movies());
+        tasks.put("collaborative", () -> getCollaborativeRecommendations(userId, 5).movies());
+        tasks.put("trending", () -> getTrendingMovies(8));
+        tasks.put("showing", () -> movieService.getCurrentlyShowingMovies(PageRequest.of(0, 8)).getContent());
+
+        Map<String, List<Movie>> results = sectionExecutor.runAll(tasks);
+
+        List<RecommendationSection> sections = new ArrayList<>();
+        addSection(sections, results.get("ai"), "AI Recommended for You",
+                "Powered by AI analysis of your preferences");
+        addSection(sections, results.get("personalized"), "For You",
+                "Based on your preferences");
+        addSection(sections, results.get("similar"), "More Like Your Favorites",
+                "Similar to movies you've favorited");
+        addSection(sections, results.get("collaborative"), "Viewers Like You Also Booked",
+                "Based on bookings and favorites of similar viewers");
+        addSection(sections, results.get("trending"), "Trending Now",
+                "Popular movies everyone's watching");
+        addSection(sections, results.get("showing"), "In Theaters Now",
+                "Movies currently playing");
+
+        return new MixedRecommendationResponse(sections);
+    }
 
-        // Similar to favorites
-        RecommendationResponse similar = getSimilarToFavorites(userId, limit / 3);
-        if (!similar.movies().isEmpty()) {
+    private static void addSection(List<RecommendationSection> sections, List<Movie> movies,
+                                   String title, String description) {
+        if (movies != null && !movies.isEmpty()) {
             sections.add(new RecommendationSection(
-                    "More Like Your Favorites",
-                    similar.movies().stream().limit(5).collect(Collectors.toList()),
-                    "Similar to movies you've favorited"
+                    title,
+                    movies.stream().limit(5).collect(Collectors.toList()),
+                    description
             ));
         }
+    }
 
-        // Trending/Popular
-        List<Movie> trending = movieService.getPopularMovies(PageRequest.of(0, 8)).getContent();
-        sections.add(new RecommendationSection(
-                "Trending Now",
-                trending.stream().limit(5).collect(Collectors.toList()),
-                "Popular movies everyone's watching"
-        ));
-
-        // Currently showing
-        List<Movie> currentlyShowing = movieService.getCurrentlyShowingMovies(PageRequest.of(0, 8)).getContent();
-        sections.add(new RecommendationSection(
-                "In Theaters Now",
-                currentlyShowing.stream().limit(5).collect(Collectors.toList()),
-                "Movies currently playing"
-        ));
-
-        return new MixedRecommendationResponse(sections);
+    /**
+     * Trending movies from the in-memory decayed scores (TrendingService); all-time booking
+     * count query only until the first trending build has finished
+     */
+    public List<Movie> getTrendingMovies(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Optional<List<Long>> trending = trendingService.topMovieIds(showtimeAvailabilityIndex.candidatePoolSize(limit));
+        if (trending.isPresent() && !trending.get().isEmpty()) {
+            return loadInOrder(showtimeAvailabilityIndex.rank(trending.get(), limit));
+        }
+        return movieService.getPopularMovies(PageRequest.of(0, limit)).getContent();
     }
 
     /**
      * Get default recommendations for users without preferences
      */
     private RecommendationResponse getDefaultRecommendations(int limit, String reason) {
-        List<Movie> movies = movieService.getPopularMovies(PageRequest.of(0, limit)).getContent();
+        List<Movie> movies = getTrendingMovies(limit);
         return new RecommendationResponse(
                 "Popular Movies",
                 movies,
@@ -289,6 +351,11 @@ public class RecommendationService {
 
     public record RecommendationSection(String title, List<Movie> movies, String description) {}
 
+    /**
+     * depth = how many ids were asked for; fewer ids means the candidates ran out.
+     */
+    public record PersonalizedRanking(int prefVersion, int favVersion, List<Long> movieIds, int depth) {}
+
     public enum RecommendationType {
         PERSONALIZED,
         SIMILAR_TO_FAVORITES,
@@ -297,7 +364,9 @@ public class RecommendationService {
         POPULAR,
         TRENDING,
         AI_PERSONALIZED,
-        AI_SIMILAR_MOVIES
+        AI_SIMILAR_MOVIES,
+        COLLABORATIVE,
+        ALSO_BOOKED
     }
 
     // ================================
@@ -307,104 +376,55 @@ public class RecommendationService {
     /**
      * AI-powered recommendations using vector similarity
      *
-     * KHÔNG cache method này vì:
-     *   - Bên trong đã gọi generateUserPreferenceEmbedding() - method đó đã cache embedding
-     *   - Nếu cache outer result thì khi user đổi preference:
-     *       embedding cache → miss (key đổi) → OpenAI gọi lại ✅
-     *       nhưng outer result cache → vẫn HIT → user thấy recommendation CŨ ❌
-     *
-     * Chi phí thực sự là OpenAI call trong generateUserPreferenceEmbedding().
-     * Method đó đã được cache với key (userId, prefVersion, favVersion).
-     * → Phần tính toán similarity (CPU) chạy lại mỗi request là chấp nhận được.
+     * Cache theo thứ tự:
+     *   1. RecommendationResultCache: kết quả cuối (đã xếp theo suất chiếu), key gồm generation
+     *      của user + generation chung → sở thích / favorite / booking / phim đổi thì key đổi ngay
+     *      sau commit, kết quả cũ không bao giờ được trả lại
+     *   2. user_recommendations: danh sách precompute (batch đêm + ghi lại sau mỗi lần tính live),
+     *      chỉ dùng khi prefVersion/favVersion còn khớp; booking xác nhận / huỷ xoá row sau commit
+     *   3. Tính live: vector user (local, hoặc remote qua generateUserPreferenceEmbedding() đã cache
+     *      theo (userId, prefVersion, favVersion)) + similarity trên vector index
      */
     public RecommendationResponse getAIPersonalizedRecommendations(Long userId, int limit) {
+        return cachedForUser("ai-personalized", userId, limit,
+                r -> r.type() == RecommendationType.AI_PERSONALIZED && r.reasons().equals(AI_PERSONALIZED_REASONS),
+                () -> computeAIPersonalizedRecommendations(userId, limit));
+    }
+
+    private RecommendationResponse computeAIPersonalizedRecommendations(Long userId, int limit) {
         try {
-            List<UserGenrePreference> preferences = genrePreferenceService.getUserGenrePreferences(userId);
-            List<FavoriteMovie> favorites = favoriteMovieService.getAllUserFavorites(userId);
+            // Precomputed (nightly / previous request) and still matching pref/fav versions → 1 read
+            Optional<List<Long>> precomputed = precomputedRecommendationStore.findCurrent(
+                    userId, showtimeAvailabilityIndex.candidatePoolSize(limit));
+            if (precomputed.isPresent()) {
+                List<Movie> movies = loadInOrder(showtimeAvailabilityIndex.rank(precomputed.get(), limit));
+                if (!movies.isEmpty()) {
+                    return new RecommendationResponse(
+                            "AI-Powered Recommendations",
+                            movies,
+                            AI_PERSONALIZED_REASONS,
+                            RecommendationType.AI_PERSONALIZED
+                    );
+                }
+            }
 
-            if (preferences.isEmpty()) {
+            // Versions changed (or never computed): live compute at the stored depth, write through
+            Optional<PersonalizedRanking> ranking =
+                    computeAIPersonalizedRanking(userId, Math.max(limit, precomputedRecommendationStore.depth()));
+            if (ranking.isEmpty()) {
                 return getDefaultRecommendations(limit, "New user - showing popular movies");
             }
-
-            List<String> preferredGenres = preferences.stream()
-                    .filter(p -> p.getPreferenceScore() >= 3)
-                    .map(UserGenrePreference::getGenre)
-                    .collect(Collectors.toList());
-
-            List<String> favoriteMovieTitles = favorites.stream()
-                    .map(fm -> fm.getMovie().getTitle())
-                    .collect(Collectors.toList());
-
-            int prefVersion = EmbeddingService.prefListVersion(
-                    preferences.stream()
-                            .map(p -> p.getGenre() + ":" + p.getPreferenceScore())
-                            .collect(Collectors.toList())
-            );
-            int favVersion = EmbeddingService.prefListVersion(
-                    favorites.stream()
-                            .map(fm -> String.valueOf(fm.getMovie().getId()))
-                            .collect(Collectors.toList())
-            );
-
-            List<Long> favoriteMovieIdsForMetadata = favorites.stream()
-                    .map(fm -> fm.getMovie().getId())
-                    .collect(Collectors.toList());
-
-            List<Double> userPreferenceEmbedding = userPreferenceVectorService
-                    .findVectorIfCurrent(userId, prefVersion, favVersion)
-                    .orElseGet(() -> {
-                        List<Double> generated = embeddingService.generateUserPreferenceEmbedding(
-                                userId,
-                                prefVersion,
-                                favVersion,
-                                preferredGenres,
-                                favoriteMovieTitles
-                        );
-                        userPreferenceVectorService.upsertVector(
-                                userId,
-                                generated,
-                                prefVersion,
-                                favVersion,
-                                preferredGenres,
-                                favoriteMovieIdsForMetadata
-                        );
-                        return generated;
-                    });
-
-            String queryVector = EmbeddingService.toVectorLiteral(userPreferenceEmbedding);
-
-            int candidateMultiplier = Math.max(aiProperties.getRecommendationCandidateMultiplier(), 1);
-            int topK = Math.max(limit * candidateMultiplier, limit);
-            double primaryThreshold = aiProperties.getPersonalizedPrimaryThreshold();
-            double fallbackThreshold = Math.min(primaryThreshold - 0.05, aiProperties.getPersonalizedFallbackThreshold());
-
-            List<Long> movieIds = movieRepository.findTopMovieIdsByEmbedding(queryVector, primaryThreshold, topK);
-            if (movieIds.size() < Math.min(2, topK)) {
-                movieIds = movieRepository.findTopMovieIdsByEmbedding(queryVector, fallbackThreshold, topK);
+            if (!ranking.get().movieIds().isEmpty()) {
+                precomputedRecommendationStore.save(userId, ranking.get());
             }
 
-            Set<Long> favoriteMovieIds = favorites.stream()
-                    .map(fm -> fm.getMovie().getId())
-                    .collect(Collectors.toSet());
-
-            List<Long> filteredMovieIds = movieIds.stream()
-                    .filter(id -> !favoriteMovieIds.contains(id))
-                    .limit(limit)
-                    .collect(Collectors.toList());
-
-            List<Movie> loadedMovies = movieRepository.findAllById(filteredMovieIds);
-            Map<Long, Movie> movieById = loadedMovies.stream()
-                    .collect(Collectors.toMap(Movie::getId, m -> m));
-            List<Movie> recommendations = filteredMovieIds.stream()
-                    .map(movieById::get)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            List<Movie> recommendations = loadInOrder(showtimeAvailabilityIndex.rank(ranking.get().movieIds(), limit));
 
             if (!recommendations.isEmpty()) {
                 return new RecommendationResponse(
                         "AI-Powered Recommendations",
                         recommendations,
-                        List.of("Based on AI analysis of your movie preferences"),
+                        AI_PERSONALIZED_REASONS,
                         RecommendationType.AI_PERSONALIZED
                 );
             }
@@ -434,6 +454,96 @@ public class RecommendationService {
         }
     }
 
+    /**
+     * Ranked AI-personalized movie ids (favorites excluded) with the pref/fav versions they were
+     * computed for. Empty when the user has no genre preferences. Used live and by the nightly
+     * precompute (RecommendationPrecomputeService).
+     */
+    public Optional<PersonalizedRanking> computeAIPersonalizedRanking(Long userId, int limit) {
+        List<UserGenrePreference> preferences = genrePreferenceService.getUserGenrePreferences(userId);
+        List<FavoriteMovie> favorites = favoriteMovieService.getAllUserFavorites(userId);
+
+        if (preferences.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<String> preferredGenres = preferences.stream()
+                .filter(p -> p.getPreferenceScore() >= 3)
+                .map(UserGenrePreference::getGenre)
+                .collect(Collectors.toList());
+
+        List<String> favoriteMovieTitles = favorites.stream()
+                .map(fm -> fm.getMovie().getTitle())
+                .collect(Collectors.toList());
+
+        int prefVersion = EmbeddingService.prefListVersion(
+                preferences.stream()
+                        .map(p -> p.getGenre() + ":" + p.getPreferenceScore())
+                        .collect(Collectors.toList())
+        );
+        int favVersion = EmbeddingService.prefListVersion(
+                favorites.stream()
+                        .map(fm -> String.valueOf(fm.getMovie().getId()))
+                        .collect(Collectors.toList())
+        );
+
+        List<Long> favoriteMovieIdsForMetadata = favorites.stream()
+                .map(fm -> fm.getMovie().getId())
+                .collect(Collectors.toList());
+
+        // Local mode: mixed from movie embeddings + genre centroids, no API call and not persisted
+        Optional<Embedding> localVector = localUserVectorService.isEnabled()
+                ? localUserVectorService.build(userId, genreScores(preferences), favoriteMovieIdsForMetadata)
+                : Optional.empty();
+
+        Embedding userPreferenceEmbedding = localVector.orElseGet(() -> userPreferenceVectorService
+                .findVectorIfCurrent(userId, prefVersion, favVersion)
+                .orElseGet(() -> {
+                    Embedding generated = embeddingService.generateUserPreferenceEmbedding(
+                            userId,
+                            prefVersion,
+                            favVersion,
+                            preferredGenres,
+                            favoriteMovieTitles
+                    );
+                    userPreferenceVectorService.upsertVector(
+                            userId,
+                            generated,
+                            prefVersion,
+                            favVersion,
+                            preferredGenres,
+                            favoriteMovieIdsForMetadata
+                    );
+                    return generated;
+                }));
+
+        int candidateMultiplier = Math.max(aiProperties.getRecommendationCandidateMultiplier(), 1);
+        int topK = Math.max(limit * candidateMultiplier, limit);
+        double primaryThreshold = aiProperties.getPersonalizedPrimaryThreshold();
+        double fallbackThreshold = Math.min(primaryThreshold - 0.05, aiProperties.getPersonalizedFallbackThreshold());
+
+        List<Long> movieIds = findTopMovieIds(userPreferenceEmbedding, primaryThreshold, fallbackThreshold, topK, Math.min(2, topK));
+
+        Set<Long> favoriteMovieIds = favorites.stream()
+                .map(fm -> fm.getMovie().getId())
+                .collect(Collectors.toSet());
+
+        List<Long> filteredMovieIds = movieIds.stream()
+                .filter(id -> !favoriteMovieIds.contains(id))
+                .limit(limit)
+                .collect(Collectors.toList());
+
+        return Optional.of(new PersonalizedRanking(prefVersion, favVersion, filteredMovieIds, limit));
+    }
+
+    private static Map<String, Integer> genreScores(List<UserGenrePreference> preferences) {
+        Map<String, Integer> scores = new HashMap<>();
+        for (UserGenrePreference preference : preferences) {
+            scores.merge(preference.getGenre(), preference.getPreferenceScore(), Math::max);
+        }
+        return scores;
+    }
+
     private RecommendationResponse getTopReviewedGenreFallbackRecommendations(Long userId, int limit, String reason) {
         if (limit <= 0) {
             return new RecommendationResponse(
@@ -482,29 +592,18 @@ public class RecommendationService {
     }
 
     private RecommendationResponse getAIPersonalizedRecommendationsFromStoredVector(Long userId, int limit) {
-        List<Double> fallbackVector = userPreferenceVectorService.findLatestVector(userId)
+        Embedding fallbackVector = userPreferenceVectorService.findLatestVector(userId)
                 .orElseThrow(() -> new RuntimeException("No stored user preference vector for userId=" + userId));
 
-        String queryVector = EmbeddingService.toVectorLiteral(fallbackVector);
-        int candidateMultiplier = Math.max(aiProperties.getRecommendationCandidateMultiplier(), 1);
-        int topK = Math.max(limit * candidateMultiplier, limit);
+        // Pool sized from the bookable share of the catalog (at most limit × candidate multiplier)
+        int topK = Math.max(showtimeAvailabilityIndex.candidatePoolSize(limit), limit);
 
         double primaryThreshold = aiProperties.getPersonalizedPrimaryThreshold();
         double fallbackThreshold = Math.min(primaryThreshold - 0.05, aiProperties.getPersonalizedFallbackThreshold());
 
-        List<Long> movieIds = movieRepository.findTopMovieIdsByEmbedding(queryVector, primaryThreshold, topK);
-        if (movieIds.size() < Math.min(2, topK)) {
-            movieIds = movieRepository.findTopMovieIdsByEmbedding(queryVector, fallbackThreshold, topK);
-        }
+        List<Long> movieIds = findTopMovieIds(fallbackVector, primaryThreshold, fallbackThreshold, topK, Math.min(2, topK));
 
-        List<Movie> loadedMovies = movieRepository.findAllById(movieIds);
-        Map<Long, Movie> movieById = loadedMovies.stream()
-                .collect(Collectors.toMap(Movie::getId, m -> m));
-        List<Movie> recommendations = movieIds.stream()
-                .map(movieById::get)
-                .filter(Objects::nonNull)
-                .limit(limit)
-                .collect(Collectors.toList());
+        List<Movie> recommendations = loadInOrder(showtimeAvailabilityIndex.rank(movieIds, limit));
 
         return new RecommendationResponse(
                 "AI-Powered Recommendations",
@@ -520,17 +619,30 @@ public class RecommendationService {
      * Không gọi OpenAI → không tốn token
      */
     public RecommendationResponse findSimilarMovies(Long movieId, int limit) {
+        return findSimilarMovies(movieId, limit, false);
+    }
+
+    /**
+     * diversify = true: lấy nhiều ứng viên hơn rồi re-rank bằng MMR (giảm phim gần trùng nhau, vd. phần tiếp theo)
+     */
+    public RecommendationResponse findSimilarMovies(Long movieId, int limit, boolean diversify) {
         try {
             Movie targetMovie = movieRepository.findById(movieId)
                     .orElseThrow(() -> new RuntimeException("Movie not found with ID: " + movieId));
 
-            if (!movieEmbeddingService.hasEmbedding(targetMovie)) {
-                // Generate embedding if not exists
-                targetMovie = movieEmbeddingService.generateAndSaveMovieEmbedding(targetMovie);
+            // Precomputed neighbours first; live vector search only for movies not computed yet
+            Optional<List<Movie>> precomputed = movieEmbeddingService.findPrecomputedSimilarMovies(targetMovie, 0.6, limit + 1, diversify);
+            List<Movie> similarMovies;
+            if (precomputed.isPresent()) {
+                similarMovies = precomputed.get();
+            } else {
+                if (!movieEmbeddingService.hasEmbedding(targetMovie)) {
+                    // Generate embedding if not exists
+                    targetMovie = movieEmbeddingService.generateAndSaveMovieEmbedding(targetMovie);
+                }
+                similarMovies = movieEmbeddingService.findSimilarMovies(targetMovie, 0.6, limit + 1, diversify);
             }
 
-            List<Movie> similarMovies = movieEmbeddingService.findSimilarMovies(targetMovie, 0.6, limit + 1);
-
             // Remove the target movie itself from results
             List<Movie> filteredSimilarMovies = similarMovies.stream()
                     .filter(movie -> !movie.getId().equals(movieId))
@@ -550,17 +662,95 @@ public class RecommendationService {
         }
     }
 
+    // ================================
+    // COLLABORATIVE FILTERING METHODS
+    // ================================
+
+    /**
+     * "People who booked this movie also booked" - item-item co-occurrence, no embeddings needed
+     */
+    public RecommendationResponse getAlsoBookedRecommendations(Long movieId, int limit) {
+        List<Movie> movies = loadInScoreOrder(collaborativeFilteringService.alsoBooked(movieId, limit));
+        return new RecommendationResponse(
+                "Viewers Also Booked",
+                movies,
+                List.of("Based on bookings, favorites and reviews of viewers of this movie"),
+                RecommendationType.ALSO_BOOKED
+        );
+    }
+
+    /**
+     * Item-based collaborative filtering scores for one user
+     */
+    public RecommendationResponse getCollaborativeRecommendations(Long userId, int limit) {
+        List<Long> candidates = collaborativeFilteringService
+                .recommendForUser(userId, showtimeAvailabilityIndex.candidatePoolSize(limit), Set.of()).stream()
+                .map(MovieVectorIndex.ScoredMovie::movieId)
+                .toList();
+        List<Movie> movies = loadInOrder(showtimeAvailabilityIndex.rank(candidates, limit));
+        return new RecommendationResponse(
+                "Viewers Like You Also Booked",
+                movies,
+                List.of("Based on bookings and favorites of viewers with similar taste"),
+                RecommendationType.COLLABORATIVE
+        );
+    }
+
+    private List<Movie> loadInScoreOrder(List<MovieVectorIndex.ScoredMovie> scored) {
+        return loadInOrder(scored.stream().map(MovieVectorIndex.ScoredMovie::movieId).toList());
+    }
+
+    /**
+     * Per-user result through RecommendationResultCache. The key (with the current generations) is
+     * read before computing; only results accepted by {@code cacheable} are stored, as movie ids.
+     */
+    private RecommendationResponse cachedForUser(String kind, Long userId, int limit,
+                                                 Predicate<RecommendationResponse> cacheable,
+                                                 Supplier<RecommendationResponse> compute) {
+        Optional<String> key = recommendationResultCache.keyFor(kind, userId, limit);
+        if (key.isPresent()) {
+            Optional<RecommendationResultCache.CachedRecommendation> cached = recommendationResultCache.get(key.get());
+            if (cached.isPresent()) {
+                RecommendationResultCache.CachedRecommendation hit = cached.get();
+                return new RecommendationResponse(hit.getTitle(), loadInOrder(hit.getMovieIds()),
+                        hit.getReasons(), hit.getType());
+            }
+        }
+
+        RecommendationResponse response = compute.get();
+        if (key.isPresent() && !response.movies().isEmpty() && cacheable.test(response)) {
+            recommendationResultCache.put(key.get(), new RecommendationResultCache.CachedRecommendation(
+                    response.title(),
+                    response.movies().stream().map(Movie::getId).collect(Collectors.toList()),
+                    new ArrayList<>(response.reasons()),
+                    response.type()));
+        }
+        return response;
+    }
+
+    private List<Movie> loadInOrder(List<Long> movieIds) {
+        if (movieIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Movie> movieById = movieRepository.findAllById(movieIds).stream()
+                .collect(Collectors.toMap(Movie::getId, m -> m));
+        return movieIds.stream()
+                .map(movieById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Semantic search for movies using natural language queries
      *
-     * KHÔNG cache method này vì:
-     *   - generateEmbedding(query) bên trong sẽ được cache trực tiếp ở EmbeddingService
+     * KHÔNG cache kết quả method này vì:
+     *   - embedding của query đã được cache 2 tầng trong QueryEmbeddingCache
+     *     (L1 in-process → L2 Redis, key = query đã chuẩn hoá)
      *   - Nếu cache outer result với key có date → mỗi ngày tất cả query đều miss
      *     dù embedding của query không đổi → lãng phí
      *   - Phần tính cosine similarity (CPU) rất nhanh, không cần cache
      *
-     * Chi phí thực sự là OpenAI call trong generateEmbedding(query).
-     * → Cache đặt tại generateEmbedding() với key = hash(query text).
+     * Chi phí thực sự là OpenAI call khi query miss cả L1 và L2.
      */
     public RecommendationResponse semanticMovieSearch(String query, int limit) {
         try {
@@ -568,14 +758,19 @@ public class RecommendationService {
             double primaryThreshold = aiProperties.getSemanticPrimaryThreshold();
             double fallbackThreshold = Math.min(primaryThreshold - 0.05, aiProperties.getSemanticFallbackThreshold());
 
-            List<Double> queryEmbedding = embeddingService.generateEmbedding(query);
-            String queryVector = EmbeddingService.toVectorLiteral(queryEmbedding);
-
-            List<Long> movieIds = movieRepository.findTopMovieIdsByEmbedding(queryVector, primaryThreshold, limit);
-
-            if (movieIds.size() < Math.min(3, limit)) {
-                movieIds = movieRepository.findTopMovieIdsByEmbedding(queryVector, fallbackThreshold, limit);
-            }
+            boolean tryRemote = localEmbeddingFallback.isRemoteAvailable() || !localEmbeddingFallback.isReady();
+            // Remote marked down: a query already in L1/L2 still needs no API call
+            Embedding queryEmbedding = tryRemote
+                    ? remoteQueryEmbedding(query)
+                    : queryEmbeddingCache.getCached(query).orElse(null);
+            boolean local = queryEmbedding == null;
+
+            List<Long> movieIds = local
+                    // Remote embedding unavailable (or offline mode): lexical n-gram index, no thresholds
+                    ? localEmbeddingFallback.search(query, limit).stream()
+                            .map(MovieVectorIndex.ScoredMovie::movieId)
+                            .collect(Collectors.toList())
+                    : findTopMovieIds(queryEmbedding, primaryThreshold, fallbackThreshold, limit, Math.min(3, limit));
 
             List<Movie> loadedMovies = movieRepository.findAllById(movieIds);
             Map<Long, Movie> movieById = loadedMovies.stream()
@@ -588,7 +783,9 @@ public class RecommendationService {
             return new RecommendationResponse(
                     "Search Results for: \"" + query + "\"",
                     searchResults,
-                    List.of("AI semantic search results (" + searchResults.size() + " matches)"),
+                    List.of(local
+                            ? "Keyword-similarity results (" + searchResults.size() + " matches, AI search unavailable)"
+                            : "AI semantic search results (" + searchResults.size() + " matches)"),
                     RecommendationType.AI_PERSONALIZED
             );
 
@@ -598,4 +795,43 @@ public class RecommendationService {
                     List.of("Search failed: " + e.getMessage()), RecommendationType.AI_PERSONALIZED);
         }
     }
+
+    /**
+     * Query embedding from the remote model (via the two-tier cache); null when the call failed
+     * and the local index can answer instead.
+     */
+    private Embedding remoteQueryEmbedding(String query) {
+        try {
+            return queryEmbeddingCache.get(query);
+        } catch (RuntimeException e) {
+            if (!localEmbeddingFallback.isReady()) {
+                throw e;
+            }
+            localEmbeddingFallback.recordRemoteFailure(e);
+            return null;
+        }
+    }
+
+    /**
+     * Vector top-K with primary/fallback threshold.
+     * In-process index when loaded (one scan serves both thresholds), pgvector otherwise.
+     */
+    private List<Long> findTopMovieIds(Embedding embedding,
+                                       double primaryThreshold,
+                                       double fallbackThreshold,
+                                       int topK,
+                                       int minResults) {
+        // One search at the looser threshold; the primary cut is taken from the returned scores
+        List<MovieVectorIndex.ScoredMovie> scored = movieVectorIndex.isReady()
+                ? movieVectorIndex.search(embedding, fallbackThreshold, topK, Set.of())
+                : movieVectorIndex.searchDatabaseScored(embedding, fallbackThreshold, topK);
+        List<Long> primary = scored.stream()
+                .filter(m -> m.score() >= primaryThreshold)
+                .map(MovieVectorIndex.ScoredMovie::movieId)
+                .collect(Collectors.toList());
+        if (primary.size() >= minResults) {
+            return primary;
+        }
+        return scored.stream().map(MovieVectorIndex.ScoredMovie::movieId).collect(Collectors.toList());
+    }
 }
@@ -23,6 +23,7 @@ public class ReviewService {
 
     private final ReviewRepository reviewRepository;
     private final MovieRepository movieRepository;
+    private final TrendingService trendingService;
 
     /**
      * Get all reviews with pagination (Admin only)
@@ -108,6 +109,7 @@ public class ReviewService {
                 .build();
 
         Review savedReview = reviewRepository.save(review);
+        trendingService.recordAfterCommit(movieId, TrendingService.Signal.REVIEW, rating);
         return ReviewResult.success(savedReview);
     }
 
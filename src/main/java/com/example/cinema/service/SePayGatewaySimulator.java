@@ -0,0 +1,354 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.SePayConfig;
+import com.example.cinema.config.SePaySimulatorProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local SePay gateway stand-in for load testing the checkout → webhook → confirm cycle.
+ *
+ * Accepts the form fields produced by SePayService.generateCheckoutFormFields, validates
+ * them the way the gateway does (merchant, amount, HMAC signature) and then fires signed
+ * webhooks at sepay.callback-url. Webhooks go through a rate-limited dispatcher so the
+ * load on the webhook endpoint is controlled by sepay.simulator.max-webhooks-per-second.
+ */
+@Service
+@ConditionalOnProperty(prefix = "sepay.simulator", name = "enabled", havingValue = "true")
+@Slf4j
+public class SePayGatewaySimulator {
+
+    public enum Scenario {
+        SUCCESS,
+        FAILURE,
+        CANCEL,
+        LATE_PAYMENT,
+        DUPLICATE_DELIVERY
+    }
+
+    private final SePayConfig sePayConfig;
+    private final SePaySimulatorProperties properties;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ExecutorService senders;
+    private final BlockingQueue<PendingWebhook> readyQueue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong checkoutsAccepted = new AtomicLong();
+    private final AtomicLong checkoutsRejected = new AtomicLong();
+    private final AtomicLong webhooksSent = new AtomicLong();
+    private final AtomicLong webhooksFailed = new AtomicLong();
+    private final Map<Scenario, AtomicLong> scenarioCounts = new ConcurrentHashMap<>();
+
+    public SePayGatewaySimulator(SePayConfig sePayConfig,
+                                 SePaySimulatorProperties properties,
+                                 RestTemplate restTemplate,
+                                 ObjectMapper objectMapper) {
+        this.sePayConfig = sePayConfig;
+        this.properties = properties;
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.senders = Executors.newFixedThreadPool(Math.max(properties.getSenderThreads(), 1));
+
+        for (Scenario scenario : Scenario.values()) {
+            scenarioCounts.put(scenario, new AtomicLong());
+        }
+
+        int rate = properties.getMaxWebhooksPerSecond();
+        if (rate > 0) {
+            long periodMicros = Math.max(1_000_000L / rate, 1L);
+            scheduler.scheduleAtFixedRate(this::dispatchOne, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+        }
+        log.warn("SePay gateway simulator is ENABLED - webhooks will be sent to {}", sePayConfig.getCallbackUrl());
+    }
+
+    /**
+     * Accept a checkout form submission and schedule the webhooks for the chosen scenario.
+     *
+     * @param formFields fields exactly as posted to the gateway checkout URL
+     * @param forcedScenario scenario to use, or null to pick one from the configured rates
+     * @throws IllegalArgumentException if the form is invalid or the signature does not match
+     */
+    public SimulatedCheckout acceptCheckout(Map<String, String> formFields, Scenario forcedScenario) {
+        String rejection = validateCheckout(formFields);
+        if (rejection != null) {
+            checkoutsRejected.incrementAndGet();
+            throw new IllegalArgumentException(rejection);
+        }
+
+        Scenario scenario = forcedScenario != null ? forcedScenario : pickScenario();
+        scenarioCounts.get(scenario).incrementAndGet();
+        checkoutsAccepted.incrementAndGet();
+
+        String transactionId = "SIM-" + UUID.randomUUID();
+        String invoice = formFields.get("order_invoice_number");
+        String amount = formFields.get("order_amount");
+
+        List<CompletableFuture<DeliveryResult>> deliveries = new ArrayList<>();
+        long delayMs = Math.max(properties.getWebhookDelayMs(), 0);
+
+        switch (scenario) {
+            case SUCCESS -> deliveries.add(schedule(invoice, amount, transactionId, "success", scenario, delayMs));
+            case FAILURE -> deliveries.add(schedule(invoice, amount, transactionId, "fail", scenario, delayMs));
+            case CANCEL -> deliveries.add(schedule(invoice, amount, transactionId, "cancel", scenario, delayMs));
+            case LATE_PAYMENT -> deliveries.add(schedule(invoice, amount, transactionId, "success", scenario,
+                    TimeUnit.SECONDS.toMillis(properties.getLateDelaySeconds())));
+            case DUPLICATE_DELIVERY -> {
+                int copies = 1 + Math.max(properties.getDuplicateCopies(), 1);
+                for (int i = 0; i < copies; i++) {
+                    deliveries.add(schedule(invoice, amount, transactionId, "success", scenario,
+                            delayMs + i * Math.max(properties.getDuplicateSpacingMs(), 0)));
+                }
+            }
+        }
+
+        log.debug("Simulator accepted checkout {} with scenario {} ({} webhooks)", invoice, scenario, deliveries.size());
+        return new SimulatedCheckout(invoice, transactionId, scenario, deliveries);
+    }
+
+    public SimulatorStats getStats() {
+        Map<String, Long> byScenario = new LinkedHashMap<>();
+        scenarioCounts.forEach((scenario, count) -> byScenario.put(scenario.name(), count.get()));
+        return new SimulatorStats(
+                checkoutsAccepted.get(),
+                checkoutsRejected.get(),
+                webhooksSent.get(),
+                webhooksFailed.get(),
+                readyQueue.size(),
+                byScenario
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    // ── Validation ──────────────────────────────────────────────────────────
+
+    private String validateCheckout(Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return "Empty checkout form";
+        }
+        for (String required : List.of("merchant_id", "order_invoice_number", "order_amount", "currency")) {
+            String value = fields.get(required);
+            if (value == null || value.isBlank()) {
+                return "Missing required field: " + required;
+            }
+        }
+        if (sePayConfig.getMerchantId() != null && !sePayConfig.getMerchantId().equals(fields.get("merchant_id"))) {
+            return "Unknown merchant_id";
+        }
+        if (!"VND".equalsIgnoreCase(fields.get("currency"))) {
+            return "Unsupported currency";
+        }
+        try {
+            if (new java.math.BigDecimal(fields.get("order_amount")).signum() <= 0) {
+                return "Invalid order_amount";
+            }
+        } catch (NumberFormatException e) {
+            return "Invalid order_amount";
+        }
+
+        String secretKey = sePayConfig.getSecretKey();
+        if (secretKey == null || secretKey.isEmpty()) {
+            // Same behaviour as SePayService: unsigned forms are only possible without a secret.
+            return null;
+        }
+
+        StringBuilder dataToSign = new StringBuilder();
+        for (Map.Entry<String, String> entry : fields.entrySet()) {
+            if ("signature".equals(entry.getKey())) {
+                continue;
+            }
+            if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+                if (dataToSign.length() > 0) {
+                    dataToSign.append("&");
+                }
+                dataToSign.append(entry.getKey()).append("=").append(entry.getValue());
+            }
+        }
+        String expected = hmacHex(secretKey, dataToSign.toString());
+        String provided = fields.getOrDefault("signature", "");
+        if (!MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), provided.getBytes(StandardCharsets.UTF_8))) {
+            return "Invalid signature";
+        }
+        return null;
+    }
+
+    private Scenario pickScenario() {
+        double roll = ThreadLocalRandom.current().nextDouble();
+        double cumulative = properties.getFailureRate();
+        if (roll < cumulative) {
+            return Scenario.FAILURE;
+        }
+        cumulative += properties.getCancelRate();
+        if (roll < cumulative) {
+            return Scenario.CANCEL;
+        }
+        cumulative += properties.getLatePaymentRate();
+        if (roll < cumulative) {
+            return Scenario.LATE_PAYMENT;
+        }
+        cumulative += properties.getDuplicateDeliveryRate();
+        if (roll < cumulative) {
+            return Scenario.DUPLICATE_DELIVERY;
+        }
+        return Scenario.SUCCESS;
+    }
+
+    // ── Webhook dispatch ────────────────────────────────────────────────────
+
+    private CompletableFuture<DeliveryResult> schedule(String invoice, String amount, String transactionId,
+                                                       String status, Scenario scenario, long delayMs) {
+        PendingWebhook webhook = new PendingWebhook(invoice, amount, transactionId, status, scenario, new CompletableFuture<>());
+        scheduler.schedule(() -> enqueue(webhook), delayMs, TimeUnit.MILLISECONDS);
+        return webhook.result();
+    }
+
+    private void enqueue(PendingWebhook webhook) {
+        if (properties.getMaxWebhooksPerSecond() > 0) {
+            readyQueue.offer(webhook);
+        } else {
+            senders.execute(() -> send(webhook));
+        }
+    }
+
+    private void dispatchOne() {
+        PendingWebhook webhook = readyQueue.poll();
+        if (webhook != null) {
+            senders.execute(() -> send(webhook));
+        }
+    }
+
+    private void send(PendingWebhook webhook) {
+        long startedNanos = System.nanoTime();
+        int statusCode;
+        try {
+            String body = objectMapper.writeValueAsString(buildPayload(webhook));
+            String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set("X-SePay-Timestamp", timestamp);
+            String webhookSecret = sePayConfig.getWebhookSecret();
+            if (webhookSecret != null && !webhookSecret.isBlank()) {
+                headers.set("X-SePay-Signature", "sha256=" + hmacHex(webhookSecret, timestamp + "." + body));
+            }
+
+            ResponseEntity<String> response = restTemplate.postForEntity(
+                    sePayConfig.getCallbackUrl(), new HttpEntity<>(body, headers), String.class);
+            statusCode = response.getStatusCode().value();
+        } catch (HttpStatusCodeException e) {
+            statusCode = e.getStatusCode().value();
+        } catch (Exception e) {
+            log.warn("Simulator webhook delivery failed for {}: {}", webhook.invoice(), e.getMessage());
+            statusCode = -1;
+        }
+
+        long latencyNanos = System.nanoTime() - startedNanos;
+        webhooksSent.incrementAndGet();
+        if (statusCode < 200 || statusCode >= 300) {
+            webhooksFailed.incrementAndGet();
+        }
+        webhook.result().complete(new DeliveryResult(
+                webhook.invoice(), webhook.scenario(), webhook.status(), statusCode, startedNanos, latencyNanos));
+    }
+
+    private Map<String, Object> buildPayload(PendingWebhook webhook) {
+        Map<String, Object> order = new LinkedHashMap<>();
+        order.put("order_invoice_number", webhook.invoice());
+        order.put("order_amount", webhook.amount());
+        order.put("order_currency", "VND");
+        order.put("order_status", webhook.status());
+
+        Map<String, Object> transaction = new LinkedHashMap<>();
+        transaction.put("transaction_id", webhook.transactionId());
+        transaction.put("transaction_status", webhook.status());
+        transaction.put("transaction_amount", webhook.amount());
+        transaction.put("transaction_currency", "VND");
+        transaction.put("payment_method", "BANK_TRANSFER");
+        transaction.put("transaction_date", Instant.now().toString());
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("order", order);
+        payload.put("transaction", transaction);
+        return payload;
+    }
+
+    private static String hmacHex(String secret, String data) {
+        try {
+            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA256");
+            mac.init(new javax.crypto.spec.SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] digest = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot compute HMAC", e);
+        }
+    }
+
+    // DTOs
+    private record PendingWebhook(
+            String invoice,
+            String amount,
+            String transactionId,
+            String status,
+            Scenario scenario,
+            CompletableFuture<DeliveryResult> result
+    ) {}
+
+    public record DeliveryResult(
+            String invoice,
+            Scenario scenario,
+            String webhookStatus,
+            int httpStatus,
+            long startedNanos,
+            long latencyNanos
+    ) {
+        public boolean delivered() {
+            return httpStatus >= 200 && httpStatus < 300;
+        }
+    }
+
+    public record SimulatedCheckout(
+            String invoice,
+            String transactionId,
+            Scenario scenario,
+            List<CompletableFuture<DeliveryResult>> deliveries
+    ) {}
+
+    public record SimulatorStats(
+            long checkoutsAccepted,
+            long checkoutsRejected,
+            long webhooksSent,
+            long webhooksFailed,
+            int webhooksQueued,
+            Map<String, Long> checkoutsByScenario
+    ) {}
+}
@@ -0,0 +1,255 @@
+package com.example.cinema.service;
+
+import com.example.cinema.dto.SePayCheckoutResponse;
+import com.example.cinema.entity.Booking;
+import com.example.cinema.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Load scenario for the SePay checkout → webhook → confirm cycle, driven by the local
+ * gateway simulator.
+ *
+ * Takes existing PENDING bookings (seed them through the booking API first), opens a
+ * checkout for each exactly like PaymentController does, submits the form to the
+ * simulator and waits for every webhook.
+ *
+ * A payment only counts as confirmed when PaymentStatusNotifier reports it as SUCCESS, which
+ * happens after the confirming transaction commits; a 2xx webhook response alone proves
+ * nothing (SePayService answers 2xx with an error body for rejected webhooks). Latency is
+ * measured from sending the first "success" webhook of an invoice to that SUCCESS event.
+ */
+@Service
+@ConditionalOnProperty(prefix = "sepay.simulator", name = "enabled", havingValue = "true")
+@Slf4j
+public class SePayLoadScenarioService {
+
+    private static final String SIM_RETURN_URL = "http://localhost/sepay-sim/return";
+
+    // Status events trail the webhook response by the commit + Redis round-trip
+    private static final long STATUS_EVENT_GRACE_MS = 5_000;
+
+    private final SePayGatewaySimulator simulator;
+    private final SePayService sePayService;
+    private final BookingRepository bookingRepository;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final TransactionTemplate transactionTemplate;
+
+    public SePayLoadScenarioService(SePayGatewaySimulator simulator,
+                                    SePayService sePayService,
+                                    BookingRepository bookingRepository,
+                                    PaymentStatusNotifier paymentStatusNotifier,
+                                    PlatformTransactionManager transactionManager) {
+        this.simulator = simulator;
+        this.sePayService = sePayService;
+        this.bookingRepository = bookingRepository;
+        this.paymentStatusNotifier = paymentStatusNotifier;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Run the scenario against up to {@code bookingCount} pending bookings.
+     *
+     * @param forcedScenario scenario for every checkout, or null to use the configured mix
+     * @param timeoutSeconds how long to wait for all webhooks before reporting
+     */
+    public LoadReport run(int bookingCount, SePayGatewaySimulator.Scenario forcedScenario, long timeoutSeconds) {
+        List<Long> bookingIds = bookingRepository
+                .findByBookingStatus(Booking.BookingStatus.PENDING, PageRequest.of(0, Math.max(bookingCount, 1)))
+                .map(Booking::getId)
+                .getContent();
+
+        log.info("SePay load scenario starting with {} pending bookings (scenario={})",
+                bookingIds.size(), forcedScenario != null ? forcedScenario : "mixed");
+
+        long startedNanos = System.nanoTime();
+        long deadlineNanos = startedNanos + TimeUnit.SECONDS.toNanos(Math.max(timeoutSeconds, 1));
+        List<CompletableFuture<SePayGatewaySimulator.DeliveryResult>> deliveries = new ArrayList<>();
+        Map<String, Long> successAtByInvoice = new ConcurrentHashMap<>();
+        List<StatusWaiter> statusWaiters = new ArrayList<>();
+        int checkoutErrors = 0;
+
+        for (Long bookingId : bookingIds) {
+            StatusWaiter waiter = null;
+            try {
+                SePayCheckoutResponse checkout = transactionTemplate.execute(status -> {
+                    Booking booking = bookingRepository.findByIdWithUser(bookingId).orElseThrow();
+                    return sePayService.initializeCheckout(booking, SIM_RETURN_URL, SIM_RETURN_URL, SIM_RETURN_URL);
+                });
+                String invoice = checkout.getFormFields().get("order_invoice_number");
+                // Parked before any webhook can be sent, so the SUCCESS event cannot be missed
+                waiter = awaitStatus(bookingId, invoice, successAtByInvoice, deadlineNanos);
+                statusWaiters.add(waiter);
+                deliveries.addAll(simulator.acceptCheckout(checkout.getFormFields(), forcedScenario).deliveries());
+            } catch (Exception e) {
+                checkoutErrors++;
+                if (waiter != null) {
+                    release(waiter);
+                    statusWaiters.remove(waiter);
+                }
+                log.warn("Load scenario could not open checkout for booking {}: {}", bookingId, e.getMessage());
+            }
+        }
+
+        boolean timedOut = !waitUntil(CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])), deadlineNanos);
+
+        // Rejected or late webhooks produce no event: wait only a short grace for the rest
+        long graceDeadline = Math.min(deadlineNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STATUS_EVENT_GRACE_MS));
+        waitUntil(CompletableFuture.allOf(statusWaiters.stream().map(StatusWaiter::event).toArray(CompletableFuture[]::new)),
+                Math.max(graceDeadline, System.nanoTime()));
+        statusWaiters.forEach(this::release);
+
+        List<SePayGatewaySimulator.DeliveryResult> results = deliveries.stream()
+                .filter(CompletableFuture::isDone)
+                .map(CompletableFuture::join)
+                .toList();
+
+        return buildReport(bookingIds.size(), checkoutErrors, deliveries.size(), results,
+                Map.copyOf(successAtByInvoice), startedNanos, timedOut);
+    }
+
+    /**
+     * Park a status waiter for the booking; the event future completes on the first status
+     * change, and SUCCESS records the time it was observed.
+     */
+    private StatusWaiter awaitStatus(Long bookingId, String invoice, Map<String, Long> successAtByInvoice, long deadlineNanos) {
+        long timeoutMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()), 1)
+                + STATUS_EVENT_GRACE_MS;
+        DeferredResult<Map<String, Object>> result = paymentStatusNotifier.await(bookingId, timeoutMillis);
+        CompletableFuture<Void> event = new CompletableFuture<>();
+        result.setResultHandler(value -> {
+            if (value instanceof Map<?, ?> body && "SUCCESS".equals(body.get("status")) && invoice != null) {
+                successAtByInvoice.putIfAbsent(invoice, System.nanoTime());
+            }
+            event.complete(null);
+        });
+        return new StatusWaiter(bookingId, result, event);
+    }
+
+    private void release(StatusWaiter waiter) {
+        waiter.result().setErrorResult("load scenario finished");
+        paymentStatusNotifier.cancel(waiter.bookingId(), waiter.result());
+    }
+
+    private static boolean waitUntil(CompletableFuture<?> future, long deadlineNanos) {
+        try {
+            future.get(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Load scenario wait failed: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    private LoadReport buildReport(int bookings,
+                                   int checkoutErrors,
+                                   int webhooksScheduled,
+                                   List<SePayGatewaySimulator.DeliveryResult> results,
+                                   Map<String, Long> successAtByInvoice,
+                                   long startedNanos,
+                                   boolean timedOut) {
+        long firstSend = results.stream().mapToLong(SePayGatewaySimulator.DeliveryResult::startedNanos).min().orElse(startedNanos);
+        long lastDone = results.stream().mapToLong(r -> r.startedNanos() + r.latencyNanos()).max().orElse(firstSend);
+        double windowSeconds = Math.max(lastDone - firstSend, 1L) / 1_000_000_000.0;
+
+        long delivered = results.stream().filter(SePayGatewaySimulator.DeliveryResult::delivered).count();
+
+        // First "success" webhook sent per invoice, and whether any of them got a 2xx answer
+        Map<String, Long> firstSuccessSent = new HashMap<>();
+        Set<String> successAcknowledged = new HashSet<>();
+        for (SePayGatewaySimulator.DeliveryResult r : results) {
+            if ("success".equals(r.webhookStatus())) {
+                firstSuccessSent.merge(r.invoice(), r.startedNanos(), Math::min);
+                if (r.delivered()) {
+                    successAcknowledged.add(r.invoice());
+                }
+            }
+        }
+        // Confirmed = payment row reached SUCCESS (post-commit status event); latency from webhook send
+        long[] latencies = successAtByInvoice.entrySet().stream()
+                .filter(e -> firstSuccessSent.containsKey(e.getKey()))
+                .mapToLong(e -> Math.max(e.getValue() - firstSuccessSent.get(e.getKey()), 0))
+                .sorted()
+                .toArray();
+        long acknowledgedNotConfirmed = successAcknowledged.stream()
+                .filter(invoice -> !successAtByInvoice.containsKey(invoice))
+                .count();
+
+        Map<String, Long> byHttpStatus = new TreeMap<>();
+        Map<String, Long> byScenario = new TreeMap<>();
+        for (SePayGatewaySimulator.DeliveryResult r : results) {
+            byHttpStatus.merge(String.valueOf(r.httpStatus()), 1L, Long::sum);
+            byScenario.merge(r.scenario().name(), 1L, Long::sum);
+        }
+
+        LoadReport report = new LoadReport(
+                bookings,
+                checkoutErrors,
+                webhooksScheduled,
+                results.size(),
+                delivered,
+                timedOut,
+                (System.nanoTime() - startedNanos) / 1_000_000,
+                results.isEmpty() ? 0.0 : results.size() / windowSeconds,
+                latencies.length,
+                acknowledgedNotConfirmed,
+                percentileMs(latencies, 50),
+                percentileMs(latencies, 90),
+                percentileMs(latencies, 95),
+                percentileMs(latencies, 99),
+                latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / 1_000_000.0,
+                byScenario,
+                byHttpStatus
+        );
+        log.info("SePay load scenario finished: {}", report);
+        return report;
+    }
+
+    /** Nearest-rank percentile over sorted nanosecond samples, reported in milliseconds. */
+    private static double percentileMs(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sortedNanos.length);
+        return sortedNanos[Math.min(Math.max(rank - 1, 0), sortedNanos.length - 1)] / 1_000_000.0;
+    }
+
+    private record StatusWaiter(Long bookingId, DeferredResult<Map<String, Object>> result, CompletableFuture<Void> event) {}
+
+    // DTO
+    public record LoadReport(
+            int bookings,
+            int checkoutErrors,
+            int webhooksScheduled,
+            int webhooksCompleted,
+            long webhooksDelivered,
+            boolean timedOut,
+            long elapsedMs,
+            double webhooksPerSecond,
+            int paymentsConfirmed,
+            long successWebhooksAcknowledgedNotConfirmed,
+            double webhookToSuccessP50Ms,
+            double webhookToSuccessP90Ms,
+            double webhookToSuccessP95Ms,
+            double webhookToSuccessP99Ms,
+            double webhookToSuccessMaxMs,
+            Map<String, Long> webhooksByScenario,
+            Map<String, Long> webhooksByHttpStatus
+    ) {}
+}
@@ -1,7 +1,10 @@
 package com.example.cinema.service;
 
 import com.example.cinema.config.SePayConfig;
+import com.example.cinema.config.SePaySimulatorProperties;
+import com.example.cinema.dto.BookingDto;
 import com.example.cinema.dto.SePayCheckoutResponse;
+import com.example.cinema.dto.SeatBookingDto;
 import com.example.cinema.entity.Booking;
 import com.example.cinema.entity.Payment;
 import com.example.cinema.repository.BookingRepository;
@@ -9,9 +12,10 @@ import com.example.cinema.repository.PaymentRepository;
 import com.example.cinema.repository.SeatBookingRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
@@ -40,11 +44,17 @@ public class SePayService {
     }
 
     private final SePayConfig sePayConfig;
+    private final SePaySimulatorProperties simulatorProperties;
     private final PaymentRepository paymentRepository;
     private final BookingRepository bookingRepository;
     private final DistributedLockService distributedLockService;
     private final SeatBookingRepository seatBookingRepository;
     private final BookingService bookingService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final TrendingService trendingService;
+    private final BookingEmailService bookingEmailService;
+    private final RecommendationResultCache recommendationResultCache;
+    private final PrecomputedRecommendationStore precomputedRecommendationStore;
 
     /**
      * Generate one-time payment form fields for SePay checkout
@@ -274,7 +284,9 @@ public class SePayService {
                 return WebhookResult.INVALID_PAYLOAD;
             }
 
-            Payment payment = getPaymentByBookingId(bookingId);
+            // Row lock held until commit: the expiry sweeper skips this payment meanwhile, and a
+            // payment the sweeper is expiring is read only after that commits (then no longer PENDING)
+            Payment payment = paymentRepository.findByBookingIdForUpdate(bookingId).orElse(null);
 
             if (payment == null) {
                 log.warn("Payment not found for booking ID: {}", bookingId);
@@ -283,6 +295,15 @@ public class SePayService {
 
             // Update payment based on status (support both old and new status values)
             if ("success".equalsIgnoreCase(status) || "CAPTURED".equalsIgnoreCase(status) || "APPROVED".equalsIgnoreCase(status)) {
+                if (payment.isSuccess()) {
+                    // Repeat delivery: the PENDING → SUCCESS side effects already ran, only re-release locks
+                    if (payment.getBooking() != null) {
+                        releaseSeatLocksForBooking(payment.getBooking());
+                    }
+                    log.info("Ignoring repeated success webhook for booking {}", bookingId);
+                    return WebhookResult.OK;
+                }
+
                 BigDecimal paidAmount = parseAmount(firstPresent(
                         webhookData,
                         "transaction.transaction_amount",
@@ -301,6 +322,7 @@ public class SePayService {
                 if (!isPaymentMatch(payment, paidAmount, currency)) {
                     payment.markAsFailed("Webhook amount or currency does not match payment");
                     paymentRepository.save(payment);
+                    paymentStatusNotifier.publish(payment);
                     log.warn("Rejected SePay webhook for booking {} due to amount/currency mismatch", bookingId);
                     return WebhookResult.OK;
                 }
@@ -311,7 +333,7 @@ public class SePayService {
                     return WebhookResult.OK;
                 }
 
-                if (!payment.isPending() && !payment.isSuccess()) {
+                if (!payment.isPending()) {
                     log.warn("Ignoring success webhook for booking {} because payment status is {}", bookingId, payment.getPaymentStatus());
                     return WebhookResult.OK;
                 }
@@ -319,19 +341,21 @@ public class SePayService {
                 payment.markAsSuccess(transactionId != null ? transactionId : "TXN-" + System.currentTimeMillis());
                 payment.setPaymentMethod(method != null ? method : "BANK_TRANSFER");
                 paymentRepository.save(payment);
+                paymentStatusNotifier.publish(payment);
 
                 // Update booking status to CONFIRMED
                 Booking booking = payment.getBooking();
                 if (booking != null) {
                     booking.setBookingStatus(Booking.BookingStatus.CONFIRMED);
                     bookingRepository.save(booking);
-                    releaseSeatLocksForBooking(booking);
+                    onBookingConfirmed(booking);
                     log.info("Booking {} confirmed after successful payment", bookingId);
                 }
                 log.info("Payment marked as SUCCESS for booking {}", bookingId);
             } else if ("fail".equalsIgnoreCase(status) || "FAILED".equalsIgnoreCase(status) || "DECLINED".equalsIgnoreCase(status)) {
                 payment.markAsFailed("Payment failed on SePay gateway: " + status);
                 paymentRepository.save(payment);
+                paymentStatusNotifier.publish(payment);
 
                 // Cancel pending booking on payment failure and release both Redis and DB reservations.
                 Booking booking = payment.getBooking();
@@ -346,6 +370,7 @@ public class SePayService {
             } else if ("cancel".equalsIgnoreCase(status) || "CANCELLED".equalsIgnoreCase(status)) {
                 payment.setPaymentStatus(Payment.PaymentStatus.CANCELLED);
                 paymentRepository.save(payment);
+                paymentStatusNotifier.publish(payment);
 
                 // Cancel pending booking on payment cancellation and release both Redis and DB reservations.
                 Booking booking = payment.getBooking();
@@ -368,6 +393,40 @@ public class SePayService {
         }
     }
 
+    /**
+     * Side effects of a booking becoming CONFIRMED, shared by the webhook and the settlement
+     * reconciliation: release the Redis seat locks, record the trending signal, invalidate the
+     * user's cached and stored recommendations and, when sepay.confirmation-email-enabled is set
+     * (never with the simulator on), send the confirmation email once the caller's transaction
+     * has committed.
+     * Must be called inside that transaction (DTOs are built from lazy associations).
+     */
+    public void onBookingConfirmed(Booking booking) {
+        releaseSeatLocksForBooking(booking);
+        trendingService.recordAfterCommit(booking.getShowtime().getMovie().getId(), TrendingService.Signal.BOOKING);
+        recommendationResultCache.invalidateUserAfterCommit(booking.getUser().getId());
+        precomputedRecommendationStore.evictAfterCommit(booking.getUser().getId());
+
+        if (!sePayConfig.isConfirmationEmailEnabled() || simulatorProperties.isEnabled()) {
+            return;
+        }
+        BookingDto bookingDto = BookingDto.fromEntity(booking);
+        List<SeatBookingDto> seatBookings = seatBookingRepository.findByBooking(booking).stream()
+                .map(SeatBookingDto::fromEntity)
+                .toList();
+        Runnable sendEmail = () -> bookingEmailService.sendBookingConfirmation(bookingDto, seatBookings);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sendEmail.run();
+                }
+            });
+        } else {
+            sendEmail.run();
+        }
+    }
+
     private void releaseSeatLocksForBooking(Booking booking) {
         try {
             Long showtimeId = booking.getShowtime().getId();
@@ -497,6 +556,7 @@ public class SePayService {
 
         payment.markAsExpired(reason);
         paymentRepository.save(payment);
+        paymentStatusNotifier.publish(payment);
 
         Booking booking = payment.getBooking();
         if (booking != null && booking.getBookingStatus() == Booking.BookingStatus.PENDING) {
@@ -505,20 +565,6 @@ public class SePayService {
         }
     }
 
-    @Scheduled(fixedDelay = 60_000L)
-    @Transactional
-    public void expirePendingPayments() {
-        List<Payment> expiredPayments = paymentRepository.findByPaymentStatusAndExpiresAtBefore(
-                Payment.PaymentStatus.PENDING,
-                LocalDateTime.now()
-        );
-
-        for (Payment payment : expiredPayments) {
-            expirePaymentAndBooking(payment, "Payment checkout expired");
-            log.info("Expired pending payment {} for booking {}", payment.getId(), payment.getBooking().getId());
-        }
-    }
-
     private String firstPresent(Map<String, String> data, String... keys) {
         for (String key : keys) {
             String value = data.get(key);
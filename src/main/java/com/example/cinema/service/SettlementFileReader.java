@@ -0,0 +1,286 @@
+package com.example.cinema.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming reader for gateway settlement files - one record in memory at a time.
+ *
+ * Fixture / export format (CSV with header, or JSON array / NDJSON with the same keys):
+ * <pre>
+ * invoice_number,transaction_id,amount,currency,status,settled_at
+ * INV-20260510093000-101,TXN-9001,150000,VND,success,2026-05-10 09:31:12
+ * </pre>
+ * status is the gateway status (success | fail | cancel, same values as the webhook) and
+ * settled_at accepts "yyyy-MM-dd HH:mm:ss" or ISO-8601. Rows must be sorted by the booking id
+ * encoded in the invoice number (suffix after the last '-'), which is what lets the
+ * reconciliation merge-join against payments without buffering either side.
+ */
+public class SettlementFileReader implements Iterator<SettlementFileReader.SettlementRecord>, Closeable {
+
+    public enum Format { CSV, JSON }
+
+    private static final DateTimeFormatter GATEWAY_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Closeable source;
+    private final Iterator<Map<String, String>> rows;
+    private long rowNumber;
+    private long lastBookingId = Long.MIN_VALUE;
+
+    private SettlementFileReader(Closeable source, Iterator<Map<String, String>> rows) {
+        this.source = source;
+        this.rows = rows;
+    }
+
+    public static SettlementFileReader open(InputStream in, Format format, ObjectMapper objectMapper) throws IOException {
+        if (format == Format.JSON) {
+            // readValues unwraps a top-level array and also accepts whitespace-separated objects (NDJSON)
+            MappingIterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(in);
+            Iterator<Map<String, String>> rows = new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return nodes.hasNext();
+                }
+
+                @Override
+                public Map<String, String> next() {
+                    JsonNode node = nodes.next();
+                    Map<String, String> row = new HashMap<>();
+                    node.fields().forEachRemaining(e -> row.put(e.getKey(), e.getValue().isNull() ? null : e.getValue().asText()));
+                    return row;
+                }
+            };
+            return new SettlementFileReader(nodes, rows);
+        }
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            return new SettlementFileReader(reader, java.util.Collections.emptyIterator());
+        }
+        List<String> header = parseCsvLine(stripBom(headerLine));
+        return new SettlementFileReader(reader, new CsvRowIterator(reader, header));
+    }
+
+    /**
+     * Read the whole file once, checking every row (fields, booking id order) without keeping any.
+     *
+     * @return number of records
+     * @throws IllegalArgumentException on the first invalid or out-of-order row
+     */
+    public static long validate(InputStream in, Format format, ObjectMapper objectMapper) throws IOException {
+        try (SettlementFileReader reader = open(in, format, objectMapper)) {
+            long records = 0;
+            while (reader.hasNext()) {
+                reader.next();
+                records++;
+            }
+            return records;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rows.hasNext();
+    }
+
+    @Override
+    public SettlementRecord next() {
+        Map<String, String> row = rows.next();
+        rowNumber++;
+
+        String invoice = trimToNull(row.get("invoice_number"));
+        if (invoice == null) {
+            throw new IllegalArgumentException("Settlement row " + rowNumber + " has no invoice_number");
+        }
+        long bookingId = bookingIdFromInvoice(invoice, rowNumber);
+        if (bookingId < lastBookingId) {
+            throw new IllegalArgumentException("Settlement file is not sorted by booking id at row " + rowNumber
+                    + " (" + invoice + " after booking " + lastBookingId + ")");
+        }
+        lastBookingId = bookingId;
+
+        return new SettlementRecord(
+                rowNumber,
+                bookingId,
+                invoice,
+                trimToNull(row.get("transaction_id")),
+                parseAmount(row.get("amount"), rowNumber),
+                trimToNull(row.get("currency")),
+                trimToNull(row.get("status")),
+                parseDateTime(row.get("settled_at"), rowNumber)
+        );
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Same invoice → booking mapping as the webhook handler (INV-yyyyMMddHHmmss-bookingId, or a bare id).
+     */
+    static long bookingIdFromInvoice(String invoice, long rowNumber) {
+        String[] parts = invoice.split("-");
+        try {
+            return Long.parseLong(parts[parts.length - 1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cannot parse booking id from invoice '" + invoice + "' at row " + rowNumber);
+        }
+    }
+
+    private static BigDecimal parseAmount(String raw, long rowNumber) {
+        String value = trimToNull(raw);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount '" + raw + "' at row " + rowNumber);
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String raw, long rowNumber) {
+        String value = trimToNull(raw);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return value.indexOf('T') > 0 ? LocalDateTime.parse(value) : LocalDateTime.parse(value, GATEWAY_DATE_TIME);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid settled_at '" + raw + "' at row " + rowNumber);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    /**
+     * Minimal RFC 4180 line parser: comma separated, double-quoted fields, "" as an escaped quote.
+     * Quoted fields spanning several lines are not supported (settlement exports don't use them).
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static final class CsvRowIterator implements Iterator<Map<String, String>> {
+        private final BufferedReader reader;
+        private final List<String> header;
+        private String nextLine;
+
+        CsvRowIterator(BufferedReader reader, List<String> header) {
+            this.reader = reader;
+            this.header = header.stream().map(h -> h.trim().toLowerCase()).toList();
+            advance();
+        }
+
+        private void advance() {
+            try {
+                do {
+                    nextLine = reader.readLine();
+                } while (nextLine != null && nextLine.isBlank());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLine != null;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (nextLine == null) {
+                throw new NoSuchElementException();
+            }
+            List<String> values = parseCsvLine(nextLine);
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                row.put(header.get(i), values.get(i));
+            }
+            advance();
+            return row;
+        }
+    }
+
+    public record SettlementRecord(
+            long rowNumber,
+            long bookingId,
+            String invoiceNumber,
+            String transactionId,
+            BigDecimal amount,
+            String currency,
+            String status,
+            LocalDateTime settledAt
+    ) {
+        public boolean isSuccess() {
+            return "success".equalsIgnoreCase(status) || "CAPTURED".equalsIgnoreCase(status) || "APPROVED".equalsIgnoreCase(status);
+        }
+
+        public boolean isFailed() {
+            return "fail".equalsIgnoreCase(status) || "FAILED".equalsIgnoreCase(status) || "DECLINED".equalsIgnoreCase(status);
+        }
+
+        public boolean isCancelled() {
+            return "cancel".equalsIgnoreCase(status) || "CANCELLED".equalsIgnoreCase(status);
+        }
+    }
+}
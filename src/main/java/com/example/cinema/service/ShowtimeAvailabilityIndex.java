@@ -0,0 +1,309 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Showtime Availability Index - which movies can be booked in the next N days, in memory.
+ *
+ * A movie is bookable when it has a non-cancelled showtime starting between now and now + N days
+ * with at least one free seat. Recommendation lists are re-ordered ("prefer": bookable movies
+ * first, then the rest) or filtered ("only") against this set without any query, and the
+ * candidate pool is sized from the bookable share of the catalog instead of always fetching
+ * limit × recommendation-candidate-multiplier.
+ *
+ * Kept current by re-reading one showtime row after showtime create/update/delete, bookings,
+ * releases and cancellations; a minute tick handles showtimes starting or entering the window,
+ * and a periodic full reload catches bulk SQL updates. Whenever the bookable set changes, cached
+ * recommendation results are invalidated (RecommendationResultCache global generation).
+ */
+@Service
+@Slf4j
+public class ShowtimeAvailabilityIndex {
+
+    private static final String SHOWTIMES_SQL = """
+            SELECT id, movie_id, show_datetime, available_seats
+            FROM showtimes
+            WHERE cancelled_at IS NULL AND show_datetime > ? AND show_datetime <= ?
+            """;
+
+    private static final String SHOWTIME_SQL =
+            "SELECT movie_id, show_datetime, available_seats, cancelled_at FROM showtimes WHERE id = ?";
+
+    private static final String COUNT_MOVIES_SQL = "SELECT COUNT(*) FROM movies";
+
+    public enum Mode { OFF, PREFER, ONLY }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AiProperties aiProperties;
+    private final RecommendationResultCache recommendationResultCache;
+    private final Mode mode;
+    private final long horizonMillis;
+
+    // Guarded by this; showtimes within the horizon (+1 day so the minute tick sees new ones enter)
+    private final Map<Long, Slot> slotsByShowtime = new HashMap<>();
+    private final Map<Long, Set<Long>> showtimesByMovie = new HashMap<>();
+    private final Set<Long> bookable = new HashSet<>();
+
+    private volatile Set<Long> bookableSnapshot = Set.of();
+    private volatile long catalogSize;
+    private volatile boolean ready;
+
+    public ShowtimeAvailabilityIndex(JdbcTemplate jdbcTemplate,
+                                     AiProperties aiProperties,
+                                     RecommendationResultCache recommendationResultCache,
+                                     @Value("${app.recommendation.showtime-aware.mode:prefer}") String mode,
+                                     @Value("${app.recommendation.showtime-aware.days:14}") int days) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aiProperties = aiProperties;
+        this.recommendationResultCache = recommendationResultCache;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.horizonMillis = days * 86_400_000L;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (mode != Mode.OFF) {
+            reload();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.recommendation.showtime-aware.reload-ms:300000}",
+               fixedDelayString = "${app.recommendation.showtime-aware.reload-ms:300000}")
+    public void scheduledReload() {
+        if (mode != Mode.OFF) {
+            reload();
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void tick() {
+        if (ready) {
+            boolean changed;
+            synchronized (this) {
+                changed = recomputeAll();
+            }
+            if (changed) {
+                recommendationResultCache.invalidateAll();
+            }
+        }
+    }
+
+    public void reload() {
+        try {
+            long now = System.currentTimeMillis();
+            Map<Long, Slot> fresh = new HashMap<>();
+            jdbcTemplate.query(SHOWTIMES_SQL, rs -> {
+                fresh.put(rs.getLong("id"), new Slot(rs.getLong("movie_id"),
+                        rs.getTimestamp("show_datetime").getTime(), rs.getInt("available_seats")));
+            }, new Timestamp(now), new Timestamp(now + horizonMillis + 86_400_000L));
+            Long movies = jdbcTemplate.queryForObject(COUNT_MOVIES_SQL, Long.class);
+
+            boolean changed;
+            synchronized (this) {
+                slotsByShowtime.clear();
+                showtimesByMovie.clear();
+                fresh.forEach(this::put);
+                changed = recomputeAll();
+            }
+            if (changed) {
+                recommendationResultCache.invalidateAll();
+            }
+            catalogSize = movies != null ? movies : 0;
+            ready = true;
+            log.debug("Showtime availability reloaded: {} showtimes, {} bookable movies",
+                    fresh.size(), bookableSnapshot.size());
+        } catch (Exception e) {
+            log.warn("Showtime availability reload failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read one showtime (seats, time, movie, cancellation) once the caller's transaction has committed.
+     */
+    public void refreshShowtimeAfterCommit(Long showtimeId) {
+        if (mode == Mode.OFF || showtimeId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshShowtime(showtimeId);
+                }
+            });
+        } else {
+            refreshShowtime(showtimeId);
+        }
+    }
+
+    private void refreshShowtime(Long showtimeId) {
+        if (!ready) {
+            return;
+        }
+        try {
+            List<Slot> rows = jdbcTemplate.query(SHOWTIME_SQL, (rs, i) -> rs.getTimestamp("cancelled_at") != null
+                    ? null
+                    : new Slot(rs.getLong("movie_id"), rs.getTimestamp("show_datetime").getTime(), rs.getInt("available_seats")),
+                    showtimeId);
+            Slot slot = rows.isEmpty() ? null : rows.get(0);
+            boolean changed;
+            synchronized (this) {
+                Slot previous = slotsByShowtime.get(showtimeId);
+                remove(showtimeId);
+                if (slot != null) {
+                    put(showtimeId, slot);
+                    recompute(slot.movieId(), System.currentTimeMillis());
+                }
+                if (previous != null && (slot == null || previous.movieId() != slot.movieId())) {
+                    recompute(previous.movieId(), System.currentTimeMillis());
+                }
+                changed = publish();
+            }
+            if (changed) {
+                recommendationResultCache.invalidateAll();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh showtime {} availability: {}", showtimeId, e.getMessage());
+        }
+    }
+
+    public boolean isBookable(Long movieId) {
+        return bookableSnapshot.contains(movieId);
+    }
+
+    /**
+     * How many ranked candidates to fetch so that {@code limit} of them are likely bookable:
+     * limit / (bookable share of the catalog), capped at limit × recommendation-candidate-multiplier.
+     */
+    public int candidatePoolSize(int limit) {
+        int max = limit * Math.max(aiProperties.getRecommendationCandidateMultiplier(), 1);
+        if (mode == Mode.OFF || !ready || limit <= 0) {
+            return limit;
+        }
+        int bookableMovies = bookableSnapshot.size();
+        if (bookableMovies == 0 || catalogSize <= bookableMovies) {
+            return limit;
+        }
+        long needed = (long) Math.ceil((double) limit * catalogSize / bookableMovies);
+        return (int) Math.min(Math.max(needed, limit), max);
+    }
+
+    /**
+     * Apply the configured mode to a ranked candidate list: bookable movies first (PREFER) or only
+     * bookable movies (ONLY), relative order kept, at most {@code limit}.
+     */
+    public List<Long> rank(List<Long> candidates, int limit) {
+        if (mode == Mode.OFF || !ready) {
+            return candidates.stream().limit(limit).toList();
+        }
+        Set<Long> current = bookableSnapshot;
+        List<Long> result = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Long movieId : candidates) {
+            if (result.size() == limit) {
+                return result;
+            }
+            if (current.contains(movieId)) {
+                result.add(movieId);
+            }
+        }
+        if (mode == Mode.PREFER) {
+            for (Long movieId : candidates) {
+                if (result.size() == limit) {
+                    break;
+                }
+                if (!current.contains(movieId)) {
+                    result.add(movieId);
+                }
+            }
+        }
+        return result;
+    }
+
+    public AvailabilityStats getStats() {
+        synchronized (this) {
+            return new AvailabilityStats(mode.name(), ready, slotsByShowtime.size(),
+                    bookableSnapshot.size(), catalogSize);
+        }
+    }
+
+    // ================================
+    // State (caller holds the lock)
+    // ================================
+
+    private void put(Long showtimeId, Slot slot) {
+        slotsByShowtime.put(showtimeId, slot);
+        showtimesByMovie.computeIfAbsent(slot.movieId(), m -> new HashSet<>()).add(showtimeId);
+    }
+
+    private void remove(Long showtimeId) {
+        Slot slot = slotsByShowtime.remove(showtimeId);
+        if (slot != null) {
+            Set<Long> showtimes = showtimesByMovie.get(slot.movieId());
+            if (showtimes != null && showtimes.remove(showtimeId) && showtimes.isEmpty()) {
+                showtimesByMovie.remove(slot.movieId());
+            }
+        }
+    }
+
+    private void recompute(long movieId, long now) {
+        boolean any = false;
+        for (Long showtimeId : showtimesByMovie.getOrDefault(movieId, Set.of())) {
+            Slot slot = slotsByShowtime.get(showtimeId);
+            if (slot.availableSeats() > 0 && slot.startMillis() > now && slot.startMillis() <= now + horizonMillis) {
+                any = true;
+                break;
+            }
+        }
+        if (any) {
+            bookable.add(movieId);
+        } else {
+            bookable.remove(movieId);
+        }
+    }
+
+    private boolean recomputeAll() {
+        long now = System.currentTimeMillis();
+        slotsByShowtime.values().removeIf(slot -> slot.startMillis() <= now);
+        showtimesByMovie.values().forEach(ids -> ids.removeIf(id -> !slotsByShowtime.containsKey(id)));
+        showtimesByMovie.values().removeIf(Set::isEmpty);
+        bookable.clear();
+        for (Long movieId : showtimesByMovie.keySet()) {
+            recompute(movieId, now);
+        }
+        return publish();
+    }
+
+    /**
+     * @return whether the bookable set differs from the previous snapshot
+     */
+    private boolean publish() {
+        if (bookable.equals(bookableSnapshot)) {
+            return false;
+        }
+        bookableSnapshot = Set.copyOf(bookable);
+        return true;
+    }
+
+    private record Slot(long movieId, long startMillis, int availableSeats) {}
+
+    // DTO
+    public record AvailabilityStats(
+            String mode,
+            boolean ready,
+            int showtimes,
+            int bookableMovies,
+            long catalogMovies
+    ) {}
+}
@@ -0,0 +1,344 @@
+package com.example.cinema.service;
+
+import com.example.cinema.entity.Showtime;
+import com.example.cinema.exception.ResourceNotFoundException;
+import com.example.cinema.repository.ShowtimeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Showtime cancellation - cancels a showtime and all of its active bookings in bulk.
+ *
+ * The showtime is closed for sale first (cancelled_at set, available_seats = 0), then the
+ * bookings are processed in chunks: one transaction per chunk cancels the bookings, their
+ * seat reservations and their payments with set-based UPDATEs. Paid bookings move to
+ * REFUND_PENDING, which is the refund queue picked up by the settlement/refund process.
+ * Customer emails and Redis seat-lock cleanup happen after each chunk commits.
+ *
+ * Jobs run in the background; progress is kept in memory on the node that started the job.
+ */
+@Service
+@Slf4j
+public class ShowtimeCancellationService {
+
+    private static final String CANCELLATION_REASON = "Showtime cancelled";
+
+    private static final String CLOSE_SHOWTIME_SQL = """
+            UPDATE showtimes
+            SET cancelled_at = ?, available_seats = 0
+            WHERE id = ? AND cancelled_at IS NULL
+            """;
+
+    private static final String COUNT_ACTIVE_BOOKINGS_SQL = """
+            SELECT COUNT(*) FROM bookings
+            WHERE showtime_id = ? AND booking_status IN ('PENDING', 'CONFIRMED')
+            """;
+
+    private static final String CANCEL_BOOKING_CHUNK_SQL = """
+            WITH chunk AS (
+                SELECT id FROM bookings
+                WHERE showtime_id = ? AND booking_status IN ('PENDING', 'CONFIRMED')
+                ORDER BY id
+                LIMIT ?
+                FOR UPDATE
+            )
+            UPDATE bookings b
+            SET booking_status = 'CANCELLED'
+            FROM chunk, users u
+            WHERE b.id = chunk.id AND u.id = b.user_id
+            RETURNING b.id, b.user_id, b.booking_reference, u.email, u.full_name
+            """;
+
+    private static final String CANCEL_SEAT_BOOKINGS_SQL = """
+            UPDATE seat_bookings
+            SET status = 'CANCELLED', updated_at = CURRENT_TIMESTAMP
+            WHERE booking_id = ANY(?) AND status = 'RESERVED'
+            RETURNING booking_id, seat_id
+            """;
+
+    private static final String CANCEL_PAYMENTS_SQL = """
+            UPDATE payments
+            SET payment_status = CASE WHEN payment_status = 'SUCCESS' THEN 'REFUND_PENDING' ELSE 'CANCELLED' END,
+                failure_reason = ?
+            WHERE booking_id = ANY(?) AND payment_status IN ('SUCCESS', 'PENDING')
+            RETURNING id, booking_id, payment_status, amount, transaction_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ShowtimeRepository showtimeRepository;
+    private final DistributedLockService distributedLockService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final BookingEmailService bookingEmailService;
+    private final CacheManagementService cacheManagementService;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
+
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "showtime-cancellation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, JobProgress> jobs = new ConcurrentHashMap<>();
+
+    @Value("${app.showtime-cancellation.chunk-size:200}")
+    private int chunkSize;
+
+    public ShowtimeCancellationService(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       ShowtimeRepository showtimeRepository,
+                                       DistributedLockService distributedLockService,
+                                       PaymentStatusNotifier paymentStatusNotifier,
+                                       BookingEmailService bookingEmailService,
+                                       CacheManagementService cacheManagementService,
+                                       ShowtimeAvailabilityIndex showtimeAvailabilityIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.showtimeRepository = showtimeRepository;
+        this.distributedLockService = distributedLockService;
+        this.paymentStatusNotifier = paymentStatusNotifier;
+        this.bookingEmailService = bookingEmailService;
+        this.cacheManagementService = cacheManagementService;
+        this.showtimeAvailabilityIndex = showtimeAvailabilityIndex;
+    }
+
+    /**
+     * Close the showtime for sale and start processing its bookings in the background.
+     * Only the request that actually closes the showtime starts a job; a retry while that job
+     * is still queued or running gets its status back.
+     *
+     * @throws IllegalStateException if the showtime was already cancelled and no job for it is running here
+     */
+    public CancellationStatus startCancellation(Long showtimeId) {
+        Showtime showtime = showtimeRepository.findById(showtimeId)
+                .orElseThrow(() -> new ResourceNotFoundException("Showtime", "id", showtimeId));
+
+        // Closing the showtime is its own short transaction so no new booking can start meanwhile
+        Integer closed = transactionTemplate.execute(tx ->
+                jdbcTemplate.update(CLOSE_SHOWTIME_SQL, Timestamp.valueOf(LocalDateTime.now()), showtimeId));
+        if (closed == null || closed == 0) {
+            return activeJob(showtimeId)
+                    .map(JobProgress::snapshot)
+                    .orElseThrow(() -> new IllegalStateException("Showtime " + showtimeId + " is already cancelled"));
+        }
+        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(showtimeId);
+
+        Long total = jdbcTemplate.queryForObject(COUNT_ACTIVE_BOOKINGS_SQL, Long.class, showtimeId);
+        String jobId = UUID.randomUUID().toString();
+        JobProgress progress = new JobProgress(jobId, showtimeId, total != null ? total : 0);
+        jobs.put(jobId, progress);
+
+        ShowtimeInfo info = new ShowtimeInfo(showtime.getId(), showtime.getMovieTitle(),
+                showtime.getTheaterName(), showtime.getShowDatetime());
+        jobExecutor.submit(() -> run(info, progress));
+        cacheManagementService.onShowtimeChanged();
+
+        log.info("Showtime {} cancelled, processing {} bookings in job {}", showtimeId, progress.totalBookings, jobId);
+        return progress.snapshot();
+    }
+
+    public Optional<CancellationStatus> getStatus(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(JobProgress::snapshot);
+    }
+
+    private Optional<JobProgress> activeJob(Long showtimeId) {
+        return jobs.values().stream()
+                .filter(job -> job.showtimeId.equals(showtimeId))
+                .filter(job -> job.state == JobState.QUEUED || job.state == JobState.RUNNING)
+                .findFirst();
+    }
+
+    private void run(ShowtimeInfo showtime, JobProgress progress) {
+        progress.state = JobState.RUNNING;
+        try {
+            while (true) {
+                ChunkResult chunk = transactionTemplate.execute(tx -> cancelChunk(showtime.id()));
+                if (chunk == null || chunk.bookings().isEmpty()) {
+                    break;
+                }
+                afterChunkCommit(showtime, chunk);
+
+                progress.chunks.incrementAndGet();
+                progress.bookingsCancelled.addAndGet(chunk.bookings().size());
+                progress.seatsReleased.addAndGet(chunk.seats().size());
+                progress.refundsQueued.addAndGet(chunk.refunds());
+                progress.paymentsCancelled.addAndGet(chunk.payments().size() - chunk.refunds());
+            }
+            progress.state = JobState.COMPLETED;
+        } catch (Exception e) {
+            progress.state = JobState.FAILED;
+            progress.error = e.getMessage();
+            log.error("Showtime cancellation job {} failed after {} bookings",
+                    progress.jobId, progress.bookingsCancelled.get(), e);
+        } finally {
+            progress.finishedNanos = System.nanoTime();
+            log.info("Showtime cancellation job {} {}: {}", progress.jobId, progress.state, progress.snapshot());
+        }
+    }
+
+    private ChunkResult cancelChunk(Long showtimeId) {
+        List<CancelledBooking> bookings = jdbcTemplate.query(CANCEL_BOOKING_CHUNK_SQL,
+                (rs, i) -> new CancelledBooking(
+                        rs.getLong("id"),
+                        rs.getLong("user_id"),
+                        rs.getString("booking_reference"),
+                        rs.getString("email"),
+                        rs.getString("full_name")),
+                showtimeId, chunkSize);
+        if (bookings.isEmpty()) {
+            return new ChunkResult(List.of(), List.of(), List.of());
+        }
+
+        Long[] bookingIds = bookings.stream().map(CancelledBooking::id).toArray(Long[]::new);
+        List<long[]> seats = jdbcTemplate.query(CANCEL_SEAT_BOOKINGS_SQL,
+                ps -> ps.setArray(1, bigintArray(ps.getConnection(), bookingIds)),
+                (rs, i) -> new long[]{rs.getLong("booking_id"), rs.getLong("seat_id")});
+
+        List<AffectedPayment> payments = new ArrayList<>();
+        jdbcTemplate.query(CANCEL_PAYMENTS_SQL,
+                ps -> {
+                    ps.setString(1, CANCELLATION_REASON);
+                    ps.setArray(2, bigintArray(ps.getConnection(), bookingIds));
+                },
+                rs -> {
+                    AffectedPayment payment = new AffectedPayment(rs.getLong("id"), rs.getLong("booking_id"),
+                            rs.getString("payment_status"), rs.getBigDecimal("amount"), rs.getString("transaction_id"));
+                    payments.add(payment);
+                });
+
+        return new ChunkResult(bookings, seats, payments);
+    }
+
+    private void afterChunkCommit(ShowtimeInfo showtime, ChunkResult chunk) {
+        Map<Long, CancelledBooking> byId = new HashMap<>();
+        chunk.bookings().forEach(b -> byId.put(b.id(), b));
+
+        for (long[] seat : chunk.seats()) {
+            CancelledBooking booking = byId.get(seat[0]);
+            if (booking != null) {
+                distributedLockService.releaseSeatLock(showtime.id(), seat[1], booking.userId());
+            }
+        }
+
+        Map<Long, BigDecimal> refundByBooking = new HashMap<>();
+        for (AffectedPayment payment : chunk.payments()) {
+            paymentStatusNotifier.publish(payment.bookingId(), payment.paymentId(), payment.status(), payment.transactionId());
+            if (payment.isRefund()) {
+                refundByBooking.put(payment.bookingId(), payment.amount());
+            }
+        }
+
+        List<BookingEmailService.ShowtimeCancellationNotice> notices = chunk.bookings().stream()
+                .filter(b -> b.email() != null)
+                .map(b -> new BookingEmailService.ShowtimeCancellationNotice(
+                        b.email(), b.fullName(), b.bookingReference(), refundByBooking.get(b.id())))
+                .toList();
+        if (!notices.isEmpty()) {
+            bookingEmailService.sendShowtimeCancellations(
+                    showtime.movieTitle(), showtime.theaterName(), showtime.showDatetime(), notices);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+
+    private static Array bigintArray(Connection connection, Long[] ids) throws SQLException {
+        return connection.createArrayOf("bigint", ids);
+    }
+
+    public enum JobState { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    private static final class JobProgress {
+        private final String jobId;
+        private final Long showtimeId;
+        private final long totalBookings;
+        private final long startedNanos = System.nanoTime();
+        private final AtomicInteger chunks = new AtomicInteger();
+        private final AtomicLong bookingsCancelled = new AtomicLong();
+        private final AtomicLong seatsReleased = new AtomicLong();
+        private final AtomicLong refundsQueued = new AtomicLong();
+        private final AtomicLong paymentsCancelled = new AtomicLong();
+        private volatile JobState state = JobState.QUEUED;
+        private volatile long finishedNanos;
+        private volatile String error;
+
+        JobProgress(String jobId, Long showtimeId, long totalBookings) {
+            this.jobId = jobId;
+            this.showtimeId = showtimeId;
+            this.totalBookings = totalBookings;
+        }
+
+        CancellationStatus snapshot() {
+            long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+            long elapsedMs = (end - startedNanos) / 1_000_000;
+            long done = bookingsCancelled.get();
+            return new CancellationStatus(
+                    jobId,
+                    showtimeId,
+                    state,
+                    totalBookings,
+                    done,
+                    totalBookings == 0 ? 100.0 : Math.min(100.0, done * 100.0 / totalBookings),
+                    chunks.get(),
+                    seatsReleased.get(),
+                    refundsQueued.get(),
+                    paymentsCancelled.get(),
+                    elapsedMs,
+                    elapsedMs == 0 ? 0.0 : done * 1000.0 / elapsedMs,
+                    error
+            );
+        }
+    }
+
+    private record ShowtimeInfo(Long id, String movieTitle, String theaterName, LocalDateTime showDatetime) {}
+
+    private record CancelledBooking(Long id, Long userId, String bookingReference, String email, String fullName) {}
+
+    private record AffectedPayment(long paymentId, long bookingId, String status, BigDecimal amount, String transactionId) {
+        boolean isRefund() {
+            return "REFUND_PENDING".equals(status);
+        }
+    }
+
+    private record ChunkResult(List<CancelledBooking> bookings, List<long[]> seats, List<AffectedPayment> payments) {
+        long refunds() {
+            return payments.stream().filter(AffectedPayment::isRefund).count();
+        }
+    }
+
+    // DTO
+    public record CancellationStatus(
+            String jobId,
+            Long showtimeId,
+            JobState state,
+            long totalBookings,
+            long bookingsCancelled,
+            double percentComplete,
+            int chunks,
+            long seatsReleased,
+            long refundsQueued,
+            long paymentsCancelled,
+            long elapsedMs,
+            double bookingsPerSecond,
+            String error
+    ) {}
+}
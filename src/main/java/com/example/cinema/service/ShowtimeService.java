@@ -32,6 +32,7 @@ public class ShowtimeService {
     private final ShowtimeRepository showtimeRepository;
     private final MovieRepository movieRepository;
     private final TheaterRepository theaterRepository;
+    private final ShowtimeAvailabilityIndex showtimeAvailabilityIndex;
 
     /**
      * Get all showtimes with pagination
@@ -229,6 +230,7 @@ public class ShowtimeService {
                 .build();
 
         Showtime savedShowtime = showtimeRepository.save(showtime);
+        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(savedShowtime.getId());
         return ShowtimeResult.success(savedShowtime);
     }
 
@@ -271,6 +273,7 @@ public class ShowtimeService {
         }
 
         Showtime updatedShowtime = showtimeRepository.save(showtime);
+        showtimeAvailabilityIndex.refreshShowtimeAfterCommit(updatedShowtime.getId());
         return ShowtimeResult.success(updatedShowtime);
     }
 
@@ -281,6 +284,7 @@ public class ShowtimeService {
         return showtimeRepository.findById(id)
                 .map(showtime -> {
                     showtimeRepository.delete(showtime);
+                    showtimeAvailabilityIndex.refreshShowtimeAfterCommit(id);
                     return true;
                 })
                 .orElse(false);
@@ -0,0 +1,208 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Single Flight - concurrent identical computations (same key) share one execution.
+ *
+ *   In-process : the first caller for a key runs the loader; callers arriving while it runs
+ *                wait on the same future and get its result (or its exception).
+ *   Cross-node : the in-process leader claims {@code sf:<key>} in Redis (SET NX, short TTL).
+ *                If another node holds it, this node polls the caller's cache lookup until the
+ *                other node's result shows up, and only calls the loader itself when the claim is
+ *                released/expired without a result or the wait runs out.
+ *
+ * Meant for expensive, idempotent loads in front of a cache (embedding API calls): it removes
+ * cache stampedes, not the cache. If Redis is unreachable it degrades to in-process only.
+ */
+@Service
+@Slf4j
+public class SingleFlight {
+
+    private static final String CLAIM_PREFIX = "sf:";
+
+    /**
+     * Deletes the claim only while it still holds this leader's token, in one atomic step; a
+     * separate GET then DEL could delete a claim another node took after this one expired.
+     */
+    static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+            Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final AiProperties aiProperties;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+    private final Counter localJoins;
+    private final Counter remoteWaits;
+    private final Counter remoteHits;
+
+    public SingleFlight(RedisTemplate<String, Object> redisTemplate,
+                        AiProperties aiProperties,
+                        MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.aiProperties = aiProperties;
+        this.leaders = outcomeCounter(meterRegistry, "leader");
+        this.localJoins = outcomeCounter(meterRegistry, "local_join");
+        this.remoteWaits = outcomeCounter(meterRegistry, "remote_wait");
+        this.remoteHits = outcomeCounter(meterRegistry, "remote_hit");
+        Gauge.builder("single_flight.in_flight", inFlight, Map::size)
+                .description("Keys with a computation currently in flight on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param key       identity of the computation (e.g. the cache key it fills)
+     * @param loader    the computation; runs at most once per key at a time on this node
+     * @param published lookup of a result another node has already produced (null = not yet)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader, Supplier<T> published) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            localJoins.increment();
+            return (T) join(running);
+        }
+        try {
+            T value = claimOrWait(key, loader, published);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * In-process coalescing only, for loads whose result is not visible to other nodes.
+     */
+    public <T> T execute(String key, Supplier<T> loader) {
+        return execute(key, loader, null);
+    }
+
+    public SingleFlightStats getStats() {
+        return new SingleFlightStats(inFlight.size(), (long) leaders.count(), (long) localJoins.count(),
+                (long) remoteWaits.count(), (long) remoteHits.count());
+    }
+
+    private <T> T claimOrWait(String key, Supplier<T> loader, Supplier<T> published) {
+        if (published == null) {
+            leaders.increment();
+            return loader.get();
+        }
+        String claimKey = CLAIM_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        Boolean claimed;
+        try {
+            claimed = redisTemplate.opsForValue()
+                    .setIfAbsent(claimKey, token, Duration.ofMillis(aiProperties.getSingleFlightClaimMs()));
+        } catch (Exception e) {
+            log.debug("Single-flight claim unavailable for {}, running locally: {}", key, e.getMessage());
+            leaders.increment();
+            return loader.get();
+        }
+
+        if (Boolean.TRUE.equals(claimed)) {
+            leaders.increment();
+            try {
+                return loader.get();
+            } finally {
+                release(claimKey, token);
+            }
+        }
+
+        remoteWaits.increment();
+        long deadline = System.currentTimeMillis() + aiProperties.getSingleFlightWaitMs();
+        while (System.currentTimeMillis() < deadline) {
+            T value = published.get();
+            if (value != null) {
+                remoteHits.increment();
+                return value;
+            }
+            if (!claimHeld(claimKey)) {
+                // Leader finished (check once more) or gave up / died: compute here
+                value = published.get();
+                if (value != null) {
+                    remoteHits.increment();
+                    return value;
+                }
+                break;
+            }
+            try {
+                Thread.sleep(aiProperties.getSingleFlightPollMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        leaders.increment();
+        return loader.get();
+    }
+
+    private boolean claimHeld(String claimKey) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(claimKey));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void release(String claimKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(claimKey), token);
+        } catch (Exception e) {
+            log.debug("Single-flight claim release failed for {} (expires on its own): {}", claimKey, e.getMessage());
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static Counter outcomeCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("single_flight.calls")
+                .description("Single-flight executions by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    // DTO
+    public record SingleFlightStats(
+            int inFlight,
+            long leaders,
+            long localJoins,
+            long remoteWaits,
+            long remoteHits
+    ) {}
+}
@@ -0,0 +1,296 @@
+package com.example.cinema.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Trending Service - exponentially time-decayed popularity per movie, kept in memory.
+ *
+ *   score(movie, now) = Σ weight(event) · 2^(-(now - t_event) / halfLife)
+ *
+ * Scores are stored relative to a fixed epoch t0 (each event adds weight · e^((t_event - t0) / τ)),
+ * so all scores decay by the same factor and never need touching as time passes; the ranking only
+ * changes when an event arrives. Since stored scores only grow, the top-K can be maintained on each
+ * event in O(K): the updated movie either moves up inside it or displaces the current minimum.
+ *
+ * Events: confirmed booking, favorite added, review posted (recorded after their transaction
+ * commits). On startup and nightly the counters are rebuilt from the last few half-lives of data
+ * with a fresh epoch, which also drops anything later cancelled or removed.
+ */
+@Service
+@Slf4j
+public class TrendingService {
+
+    // Same events and weights as recordAfterCommit, decayed in SQL; :t0 and τ bound per run
+    private static final String DECAYED_SCORES_SQL = """
+            SELECT movie_id, SUM(weight * EXP(EXTRACT(EPOCH FROM (at - ?)) / ?)) AS score
+            FROM (
+                SELECT s.movie_id, ? AS weight, b.created_at AS at
+                FROM bookings b
+                JOIN showtimes s ON s.id = b.showtime_id
+                WHERE b.booking_status = 'CONFIRMED' AND b.created_at >= ?
+                UNION ALL
+                SELECT f.movie_id, ?, f.added_at
+                FROM favorite_movies f
+                WHERE f.added_at >= ?
+                UNION ALL
+                SELECT r.movie_id, ? * r.rating / 5.0, r.created_at
+                FROM reviews r
+                WHERE r.created_at >= ?
+            ) events
+            GROUP BY movie_id
+            """;
+
+    public enum Signal { BOOKING, FAVORITE, REVIEW }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double tauMillis;
+    private final int windowDays;
+    private final int topK;
+    private final double bookingWeight;
+    private final double favoriteWeight;
+    private final double reviewWeight;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "trending-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // Guarded by this
+    private long epochMillis = System.currentTimeMillis();
+    private Map<Long, Double> scores = new HashMap<>();
+    private long[] topIds = new long[0];
+    private double[] topScores = new double[0];
+    private List<long[]> pendingDuringRebuild;
+    private long events;
+
+    private volatile List<Long> topSnapshot = List.of();
+    private volatile boolean ready;
+    private volatile long lastBuildMs;
+
+    public TrendingService(JdbcTemplate jdbcTemplate,
+                           @Value("${app.trending.half-life-hours:72}") double halfLifeHours,
+                           @Value("${app.trending.window-days:28}") int windowDays,
+                           @Value("${app.trending.top-k:100}") int topK,
+                           @Value("${app.trending.booking-weight:1.0}") double bookingWeight,
+                           @Value("${app.trending.favorite-weight:0.5}") double favoriteWeight,
+                           @Value("${app.trending.review-weight:0.3}") double reviewWeight) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tauMillis = halfLifeHours * 3_600_000.0 / Math.log(2);
+        this.windowDays = windowDays;
+        this.topK = Math.max(topK, 1);
+        this.bookingWeight = bookingWeight;
+        this.favoriteWeight = favoriteWeight;
+        this.reviewWeight = reviewWeight;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuildAsync();
+    }
+
+    @Scheduled(cron = "${app.trending.rebuild-cron:0 15 4 * * *}")
+    public void scheduledRebuild() {
+        rebuildAsync();
+    }
+
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.submit(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("Trending rebuild failed: {}", e.getMessage());
+                synchronized (this) {
+                    pendingDuringRebuild = null;
+                }
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    void rebuild() {
+        long started = System.nanoTime();
+        long t0 = System.currentTimeMillis();
+        synchronized (this) {
+            // Events committed from here on may be missed by the query; replay them after the swap
+            pendingDuringRebuild = new ArrayList<>();
+        }
+
+        Timestamp epoch = new Timestamp(t0);
+        Timestamp from = new Timestamp(t0 - windowDays * 86_400_000L);
+        double tauSeconds = tauMillis / 1000.0;
+        Map<Long, Double> fresh = new HashMap<>();
+        jdbcTemplate.query(DECAYED_SCORES_SQL, rs -> {
+            fresh.put(rs.getLong("movie_id"), rs.getDouble("score"));
+        }, epoch, tauSeconds, bookingWeight, from, favoriteWeight, from, reviewWeight, from);
+
+        synchronized (this) {
+            epochMillis = t0;
+            scores = fresh;
+            rankAll();
+            for (long[] event : pendingDuringRebuild) {
+                apply(event[0], Double.longBitsToDouble(event[1]), event[2]);
+            }
+            pendingDuringRebuild = null;
+            publish();
+        }
+        ready = true;
+        lastBuildMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Trending scores rebuilt for {} movies in {} ms", fresh.size(), lastBuildMs);
+    }
+
+    /**
+     * Record an event for a movie once the caller's transaction has committed.
+     */
+    public void recordAfterCommit(Long movieId, Signal signal, int rating) {
+        if (movieId == null) {
+            return;
+        }
+        double weight = switch (signal) {
+            case BOOKING -> bookingWeight;
+            case FAVORITE -> favoriteWeight;
+            case REVIEW -> reviewWeight * rating / 5.0;
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(movieId, weight, System.currentTimeMillis());
+                }
+            });
+        } else {
+            record(movieId, weight, System.currentTimeMillis());
+        }
+    }
+
+    public void recordAfterCommit(Long movieId, Signal signal) {
+        recordAfterCommit(movieId, signal, 5);
+    }
+
+    private synchronized void record(long movieId, double weight, long atMillis) {
+        events++;
+        if (pendingDuringRebuild != null) {
+            pendingDuringRebuild.add(new long[]{movieId, Double.doubleToLongBits(weight), atMillis});
+        }
+        apply(movieId, weight, atMillis);
+        publish();
+    }
+
+    /**
+     * Top trending movie ids, best first; empty until the first build has finished.
+     */
+    public Optional<List<Long>> topMovieIds(int limit) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        List<Long> top = topSnapshot;
+        return Optional.of(top.subList(0, Math.min(Math.max(limit, 0), top.size())));
+    }
+
+    public synchronized TrendingStats getStats() {
+        double decay = Math.exp((System.currentTimeMillis() - epochMillis) / -tauMillis);
+        List<TrendingEntry> top = new ArrayList<>();
+        for (int i = 0; i < Math.min(topIds.length, 10); i++) {
+            top.add(new TrendingEntry(topIds[i], topScores[i] * decay));
+        }
+        return new TrendingStats(ready, rebuilding.get(), scores.size(), events, lastBuildMs, top);
+    }
+
+    // ================================
+    // Scores and top-K (caller holds the lock)
+    // ================================
+
+    private void apply(long movieId, double weight, long atMillis) {
+        double score = scores.merge(movieId, weight * Math.exp((atMillis - epochMillis) / tauMillis), Double::sum);
+
+        int position = -1;
+        for (int i = 0; i < topIds.length; i++) {
+            if (topIds[i] == movieId) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (topIds.length < topK) {
+                topIds = Arrays.copyOf(topIds, topIds.length + 1);
+                topScores = Arrays.copyOf(topScores, topScores.length + 1);
+            } else if (score <= topScores[topScores.length - 1]) {
+                return;
+            }
+            position = topIds.length - 1;
+        }
+        // Scores only grow: bubble the movie up to its new rank
+        while (position > 0 && topScores[position - 1] < score) {
+            topIds[position] = topIds[position - 1];
+            topScores[position] = topScores[position - 1];
+            position--;
+        }
+        topIds[position] = movieId;
+        topScores[position] = score;
+    }
+
+    private void rankAll() {
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > topK) {
+                heap.poll();
+            }
+        }
+        int n = heap.size();
+        topIds = new long[n];
+        topScores = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            Map.Entry<Long, Double> entry = heap.poll();
+            topIds[i] = entry.getKey();
+            topScores[i] = entry.getValue();
+        }
+    }
+
+    private void publish() {
+        List<Long> top = new ArrayList<>(topIds.length);
+        for (long id : topIds) {
+            top.add(id);
+        }
+        topSnapshot = Collections.unmodifiableList(top);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    // DTO
+    public record TrendingEntry(Long movieId, double score) {}
+
+    // DTO
+    public record TrendingStats(
+            boolean ready,
+            boolean rebuilding,
+            int movies,
+            long eventsSinceStart,
+            long lastBuildMs,
+            List<TrendingEntry> top
+    ) {}
+}
@@ -0,0 +1,158 @@
+package com.example.cinema.service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory user similarity index over liked genres (preference score ≥ 4).
+ *
+ * Each user's liked genres are one 64-bit mask (bit = genre from a shared dictionary), so
+ * "genres in common" is Long.bitCount(a & b) and a full scan over 1M users is ~1M
+ * AND+POPCNT operations - a few milliseconds, exact, no self-join. Genre vocabularies are small;
+ * past 64 distinct genres the index reports {@link #isOverflowed()} and callers fall back to SQL.
+ *
+ * Top-N without sorting every match: one pass builds a histogram of common counts (at most 64
+ * distinct values), a second pass collects only users at or above the cut-off count.
+ */
+public final class UserGenreBitmapIndex {
+
+    public static final int MAX_GENRES = Long.SIZE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> bitByGenre = new HashMap<>();
+    private final ItemCooccurrenceModel.LongIntHashMap slotByUser;
+    private long[] userIds;
+    private long[] masks;
+    private int size;
+    private boolean overflowed;
+
+    public UserGenreBitmapIndex(int expectedUsers) {
+        int capacity = Math.max(expectedUsers, INITIAL_CAPACITY);
+        slotByUser = new ItemCooccurrenceModel.LongIntHashMap(capacity);
+        userIds = new long[capacity];
+        masks = new long[capacity];
+    }
+
+    /**
+     * Replace a user's liked genres (an empty collection clears them).
+     */
+    public void setUser(long userId, Collection<String> likedGenres) {
+        lock.writeLock().lock();
+        try {
+            long mask = 0L;
+            for (String genre : likedGenres) {
+                int bit = bitFor(genre);
+                if (bit >= 0) {
+                    mask |= 1L << bit;
+                }
+            }
+            int slot = slotByUser.get(userId);
+            if (slot < 0) {
+                if (mask == 0L) {
+                    return;
+                }
+                if (size == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, size * 2);
+                    masks = Arrays.copyOf(masks, size * 2);
+                }
+                slot = size++;
+                userIds[slot] = userId;
+                slotByUser.put(userId, slot);
+            }
+            // Cleared users keep their slot with mask 0, which never matches
+            masks[slot] = mask;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Users sharing at least {@code minCommon} liked genres with {@code userId}, most genres in
+     * common first (ties in index order), at most {@code limit}.
+     */
+    public List<UserGenrePreferenceService.SimilarUser> similar(long userId, int minCommon, int limit) {
+        lock.readLock().lock();
+        try {
+            int self = slotByUser.get(userId);
+            if (self < 0 || masks[self] == 0L || limit <= 0) {
+                return List.of();
+            }
+            long query = masks[self];
+            int min = Math.max(minCommon, 1);
+
+            int[] histogram = new int[MAX_GENRES + 1];
+            for (int slot = 0; slot < size; slot++) {
+                histogram[Long.bitCount(query & masks[slot])]++;
+            }
+            histogram[Long.bitCount(query)]--; // the user itself
+
+            int cutoff = MAX_GENRES;
+            int above = 0;
+            while (cutoff > min && above + histogram[cutoff] < limit) {
+                above += histogram[cutoff];
+                cutoff--;
+            }
+
+            List<long[]> hits = new ArrayList<>(Math.min(limit, above + histogram[cutoff]));
+            int atCutoff = limit - above;
+            for (int slot = 0; slot < size; slot++) {
+                if (slot == self) {
+                    continue;
+                }
+                int common = Long.bitCount(query & masks[slot]);
+                if (common > cutoff || (common == cutoff && atCutoff-- > 0)) {
+                    hits.add(new long[]{userIds[slot], common});
+                }
+            }
+            hits.sort((a, b) -> Long.compare(b[1], a[1]));
+            List<UserGenrePreferenceService.SimilarUser> result = new ArrayList<>(hits.size());
+            for (long[] hit : hits) {
+                result.add(new UserGenrePreferenceService.SimilarUser(hit[0], hit[1]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isOverflowed() {
+        lock.readLock().lock();
+        try {
+            return overflowed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public IndexStats stats() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) userIds.length * (Long.BYTES * 2) + slotByUser.bytes();
+            return new IndexStats(size, bitByGenre.size(), overflowed, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int bitFor(String genre) {
+        if (genre == null || genre.isBlank()) {
+            return -1;
+        }
+        String key = genre.trim().toLowerCase(Locale.ROOT);
+        Integer bit = bitByGenre.get(key);
+        if (bit != null) {
+            return bit;
+        }
+        if (bitByGenre.size() == MAX_GENRES) {
+            overflowed = true;
+            return -1;
+        }
+        bitByGenre.put(key, bitByGenre.size());
+        return bitByGenre.size() - 1;
+    }
+
+    // DTO
+    public record IndexStats(int users, int genres, boolean overflowed, long estimatedBytes) {}
+}
@@ -28,6 +28,8 @@ public class UserGenrePreferenceService {
     private final UserGenrePreferenceRepository preferenceRepository;
     private final UserRepository userRepository;
     private final MovieService movieService;
+    private final UserSimilarityService userSimilarityService;
+    private final RecommendationResultCache recommendationResultCache;
 
     /**
      * Set user's genre preference
@@ -67,6 +69,8 @@ public class UserGenrePreferenceService {
         preference.setUpdatedAt(LocalDateTime.now());
 
         UserGenrePreference saved = preferenceRepository.save(preference);
+        userSimilarityService.refreshUserAfterCommit(userId);
+        recommendationResultCache.invalidateUserAfterCommit(userId);
         return saved;
     }
 
@@ -126,6 +130,8 @@ public class UserGenrePreferenceService {
         }
 
         List<String> availableGenres = movieService.getAllGenres();
+        userSimilarityService.refreshUserAfterCommit(userId);
+        recommendationResultCache.invalidateUserAfterCommit(userId);
 
         return preferredGenres.stream()
                 .filter(genre -> availableGenres.stream().anyMatch(g -> g.equalsIgnoreCase(genre)))
@@ -164,7 +170,10 @@ public class UserGenrePreferenceService {
                         .build());
 
         preference.incrementPreference();
-        return preferenceRepository.save(preference);
+        UserGenrePreference saved = preferenceRepository.save(preference);
+        userSimilarityService.refreshUserAfterCommit(userId);
+        recommendationResultCache.invalidateUserAfterCommit(userId);
+        return saved;
     }
 
     /**
@@ -183,7 +192,10 @@ public class UserGenrePreferenceService {
                         .build());
 
         preference.decrementPreference();
-        return preferenceRepository.save(preference);
+        UserGenrePreference saved = preferenceRepository.save(preference);
+        userSimilarityService.refreshUserAfterCommit(userId);
+        recommendationResultCache.invalidateUserAfterCommit(userId);
+        return saved;
     }
 
     /**
@@ -195,6 +207,8 @@ public class UserGenrePreferenceService {
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
 
         preferenceRepository.deleteByUserAndGenreIgnoreCase(user, genre);
+        userSimilarityService.refreshUserAfterCommit(userId);
+        recommendationResultCache.invalidateUserAfterCommit(userId);
     }
 
     /**
@@ -221,9 +235,20 @@ public class UserGenrePreferenceService {
     }
 
     /**
-     * Find users with similar genre preferences
+     * Find users with similar genre preferences (most liked genres in common first, at most limit).
+     * Served from the in-memory bitmap index; the SQL self-join is only used until it is built.
+     */
+    public List<SimilarUser> findUsersWithSimilarPreferences(Long userId, int minCommonGenres, int limit) {
+        return userSimilarityService.findSimilar(userId, minCommonGenres, limit)
+                .orElseGet(() -> findUsersWithSimilarPreferencesFromDatabase(userId, minCommonGenres).stream()
+                        .limit(limit)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Same answer computed by the database (self-join on user_genre_preferences), unbounded.
      */
-    public List<SimilarUser> findUsersWithSimilarPreferences(Long userId, int minCommonGenres) {
+    public List<SimilarUser> findUsersWithSimilarPreferencesFromDatabase(Long userId, int minCommonGenres) {
         List<Object[]> results = preferenceRepository.findUsersWithSimilarPreferences(userId, minCommonGenres);
         return results.stream()
                 .map(row -> new SimilarUser(((Number) row[0]).longValue(), ((Number) row[1]).longValue()))
@@ -20,67 +20,71 @@ public class UserPreferenceVectorService {
 
     private final JdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
+    private final PgVectorBinding pgVectorBinding;
 
-    public Optional<List<Double>> findVectorIfCurrent(Long userId, int prefVersion, int favVersion) {
+    public Optional<Embedding> findVectorIfCurrent(Long userId, int prefVersion, int favVersion) {
         String sql = """
                 SELECT
-                    preference_vector::text AS vector_text,
+                    preference_vector,
                     COALESCE((genre_weights->>'prefVersion')::int, -1) AS pref_version,
                     COALESCE((genre_weights->>'favVersion')::int, -1) AS fav_version
                 FROM user_preference_vectors
                 WHERE user_id = ?
                 """;
 
-        return jdbcTemplate.query(sql, rs -> {
+        return jdbcTemplate.query(pgVectorBinding.statement(sql, ps -> ps.setLong(1, userId)), rs -> {
             if (!rs.next()) {
-                return Optional.<List<Double>>empty();
+                return Optional.<Embedding>empty();
             }
 
             int storedPrefVersion = rs.getInt("pref_version");
             int storedFavVersion = rs.getInt("fav_version");
             if (storedPrefVersion != prefVersion || storedFavVersion != favVersion) {
-                return Optional.<List<Double>>empty();
+                return Optional.<Embedding>empty();
             }
 
-            return Optional.of(parseVectorText(rs.getString("vector_text")));
-        }, userId);
+            return Optional.ofNullable(pgVectorBinding.getVector(rs, "preference_vector"));
+        });
     }
 
-    public Optional<List<Double>> findLatestVector(Long userId) {
+    public Optional<Embedding> findLatestVector(Long userId) {
         String sql = """
-                SELECT preference_vector::text AS vector_text
+                SELECT preference_vector
                 FROM user_preference_vectors
                 WHERE user_id = ?
                 """;
 
-        return jdbcTemplate.query(sql, rs -> {
+        return jdbcTemplate.query(pgVectorBinding.statement(sql, ps -> ps.setLong(1, userId)), rs -> {
             if (!rs.next()) {
-                return Optional.<List<Double>>empty();
+                return Optional.<Embedding>empty();
             }
-            return Optional.of(parseVectorText(rs.getString("vector_text")));
-        }, userId);
+            return Optional.ofNullable(pgVectorBinding.getVector(rs, "preference_vector"));
+        });
     }
 
     public void upsertVector(Long userId,
-                             List<Double> embedding,
+                             Embedding embedding,
                              int prefVersion,
                              int favVersion,
                              List<String> preferredGenres,
                              List<Long> favoriteMovieIds) {
         String sql = """
                 INSERT INTO user_preference_vectors(user_id, preference_vector, last_updated, genre_weights, created_at)
-                VALUES (?, CAST(? AS vector), NOW(), CAST(? AS jsonb), NOW())
+                VALUES (?, ?, NOW(), CAST(? AS jsonb), NOW())
                 ON CONFLICT (user_id)
                 DO UPDATE SET
-                    preference_vector = CAST(EXCLUDED.preference_vector AS vector),
+                    preference_vector = EXCLUDED.preference_vector,
                     last_updated = NOW(),
                     genre_weights = EXCLUDED.genre_weights
                 """;
 
-        String vectorLiteral = EmbeddingService.toVectorLiteral(embedding);
         String metadataJson = toMetadataJson(prefVersion, favVersion, preferredGenres, favoriteMovieIds);
 
-        jdbcTemplate.update(sql, userId, vectorLiteral, metadataJson);
+        jdbcTemplate.update(pgVectorBinding.statement(sql, ps -> {
+            ps.setLong(1, userId);
+            pgVectorBinding.setVector(ps, 2, embedding);
+            ps.setString(3, metadataJson);
+        }));
     }
 
     private String toMetadataJson(int prefVersion,
@@ -100,26 +104,4 @@ public class UserPreferenceVectorService {
             throw new RuntimeException("Failed to serialize user preference vector metadata", e);
         }
     }
-
-    private List<Double> parseVectorText(String vectorText) {
-        if (vectorText == null || vectorText.isBlank()) {
-            return List.of();
-        }
-
-        String cleaned = vectorText.trim();
-        if (cleaned.startsWith("[") && cleaned.endsWith("]")) {
-            cleaned = cleaned.substring(1, cleaned.length() - 1);
-        }
-
-        if (cleaned.isBlank()) {
-            return List.of();
-        }
-
-        String[] values = cleaned.split(",");
-        List<Double> vector = new java.util.ArrayList<>(values.length);
-        for (String value : values) {
-            vector.add(Double.parseDouble(value.trim()));
-        }
-        return vector;
-    }
 }
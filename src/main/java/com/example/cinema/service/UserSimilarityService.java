@@ -0,0 +1,187 @@
+package com.example.cinema.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * User Similarity Service - keeps UserGenreBitmapIndex in sync with user_genre_preferences and
+ * answers "similar users" from it.
+ *
+ * Full build on startup and nightly (streams the liked-genre rows once); in between, every
+ * preference change re-reads that one user's liked genres after its transaction commits.
+ * Until the first build finishes (or if the genre dictionary overflows) callers get empty and
+ * use the SQL query instead.
+ */
+@Service
+@Slf4j
+public class UserSimilarityService {
+
+    private static final int FETCH_SIZE = 10_000;
+
+    // Same liked-genre rule as UserGenrePreferenceRepository.findUsersWithSimilarPreferences
+    private static final String LIKED_GENRES_SQL = """
+            SELECT user_id, genre
+            FROM user_genre_preferences
+            WHERE preference_score >= 4
+            ORDER BY user_id
+            """;
+
+    private static final String USER_LIKED_GENRES_SQL =
+            "SELECT genre FROM user_genre_preferences WHERE user_id = ? AND preference_score >= 4";
+
+    private static final String COUNT_USERS_SQL =
+            "SELECT COUNT(DISTINCT user_id) FROM user_genre_preferences WHERE preference_score >= 4";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "user-similarity-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile UserGenreBitmapIndex index;
+    private volatile long lastBuildMs;
+
+    public UserSimilarityService(JdbcTemplate jdbcTemplate,
+                                 DataSource dataSource,
+                                 PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Postgres only streams with a fetch size inside a transaction
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuildAsync();
+    }
+
+    @Scheduled(cron = "${app.user-similarity.rebuild-cron:0 45 3 * * *}")
+    public void scheduledRebuild() {
+        rebuildAsync();
+    }
+
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        rebuildExecutor.submit(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.warn("User similarity index rebuild failed: {}", e.getMessage());
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    void rebuild() {
+        long started = System.nanoTime();
+        Long users = jdbcTemplate.queryForObject(COUNT_USERS_SQL, Long.class);
+        UserGenreBitmapIndex fresh = new UserGenreBitmapIndex(users != null ? users.intValue() : 0);
+        readOnlyTransaction.executeWithoutResult(tx -> {
+            long[] current = {Long.MIN_VALUE};
+            List<String> genres = new ArrayList<>();
+            streamingJdbcTemplate.query(LIKED_GENRES_SQL, rs -> {
+                long userId = rs.getLong(1);
+                if (userId != current[0] && !genres.isEmpty()) {
+                    fresh.setUser(current[0], genres);
+                    genres.clear();
+                }
+                current[0] = userId;
+                genres.add(rs.getString(2));
+            });
+            if (!genres.isEmpty()) {
+                fresh.setUser(current[0], genres);
+            }
+        });
+        index = fresh;
+        lastBuildMs = (System.nanoTime() - started) / 1_000_000;
+        UserGenreBitmapIndex.IndexStats stats = fresh.stats();
+        log.info("User similarity index built: {} users, {} genres, ~{} KB in {} ms",
+                stats.users(), stats.genres(), stats.estimatedBytes() / 1024, lastBuildMs);
+    }
+
+    /**
+     * Similar users from the index; empty when the index cannot answer (not built / overflowed).
+     */
+    public Optional<List<UserGenrePreferenceService.SimilarUser>> findSimilar(Long userId, int minCommonGenres, int limit) {
+        UserGenreBitmapIndex current = index;
+        if (current == null || current.isOverflowed()) {
+            return Optional.empty();
+        }
+        return Optional.of(current.similar(userId, minCommonGenres, limit));
+    }
+
+    /**
+     * Re-read one user's liked genres once the caller's transaction has committed.
+     */
+    public void refreshUserAfterCommit(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshUser(userId);
+                }
+            });
+        } else {
+            refreshUser(userId);
+        }
+    }
+
+    private void refreshUser(Long userId) {
+        UserGenreBitmapIndex current = index;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.setUser(userId, jdbcTemplate.queryForList(USER_LIKED_GENRES_SQL, String.class, userId));
+        } catch (Exception e) {
+            log.warn("Failed to refresh user {} in similarity index: {}", userId, e.getMessage());
+        }
+    }
+
+    public SimilarityIndexStats getStats() {
+        UserGenreBitmapIndex current = index;
+        return new SimilarityIndexStats(current != null, rebuilding.get(),
+                current != null ? current.stats() : null, lastBuildMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    // DTO
+    public record SimilarityIndexStats(
+            boolean ready,
+            boolean rebuilding,
+            UserGenreBitmapIndex.IndexStats index,
+            long lastBuildMs
+    ) {}
+}
@@ -0,0 +1,7 @@
+-- Showtime cancellation: mark cancelled showtimes and support bulk processing of their bookings
+
+ALTER TABLE showtimes
+    ADD COLUMN IF NOT EXISTS cancelled_at TIMESTAMP;
+
+-- Bulk cancellation (and seat availability checks) scan bookings by showtime
+CREATE INDEX IF NOT EXISTS idx_bookings_showtime_status ON bookings(showtime_id, booking_status);
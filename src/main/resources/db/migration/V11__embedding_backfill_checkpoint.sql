@@ -0,0 +1,11 @@
+-- Movie embedding backfill: resumable progress of the batched backfill job
+
+CREATE TABLE IF NOT EXISTS embedding_backfill_checkpoints (
+    job_name      VARCHAR(64) PRIMARY KEY,
+    status        VARCHAR(20) NOT NULL,
+    last_movie_id BIGINT      NOT NULL DEFAULT 0,  -- every movie up to this id has been processed
+    embedded      BIGINT      NOT NULL DEFAULT 0,
+    failed        BIGINT      NOT NULL DEFAULT 0,
+    started_at    TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at    TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
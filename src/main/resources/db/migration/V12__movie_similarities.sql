@@ -0,0 +1,13 @@
+-- Precomputed item-to-item neighbours: top-K most similar movies per movie by embedding cosine similarity
+
+CREATE TABLE IF NOT EXISTS movie_similarities (
+    movie_id         BIGINT    NOT NULL REFERENCES movies(id) ON DELETE CASCADE,
+    rank             SMALLINT  NOT NULL,
+    similar_movie_id BIGINT    NOT NULL REFERENCES movies(id) ON DELETE CASCADE,
+    score            REAL      NOT NULL,
+    computed_at      TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (movie_id, rank)
+);
+
+-- Reverse lookup: which movies list a given movie as a neighbour (incremental recompute)
+CREATE INDEX IF NOT EXISTS idx_movie_similarities_similar ON movie_similarities(similar_movie_id);
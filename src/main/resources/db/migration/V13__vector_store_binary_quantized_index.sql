@@ -0,0 +1,17 @@
+-- Binary-quantized HNSW index for the optional quantized pgvector search (app.ai.vector-index-quantization=binary):
+-- 1 bit per dimension (~32x smaller than the float HNSW graph), candidates re-ranked exactly with <=>.
+-- binary_quantize() needs pgvector >= 0.7; on older versions the index is skipped and the app stays on full precision.
+
+DO $$
+BEGIN
+    IF EXISTS (
+        SELECT 1 FROM pg_extension
+        WHERE extname = 'vector'
+          AND string_to_array(split_part(extversion, '-', 1), '.')::int[] >= ARRAY[0, 7]
+    ) THEN
+        EXECUTE 'CREATE INDEX IF NOT EXISTS vector_store_embedding_bq_hnsw_idx
+                 ON vector_store USING hnsw ((binary_quantize(embedding)::bit(1536)) bit_hamming_ops)
+                 WITH (m = 16, ef_construction = 64)';
+    END IF;
+END
+$$;
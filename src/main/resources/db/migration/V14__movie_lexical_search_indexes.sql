@@ -0,0 +1,19 @@
+-- Indexed lexical movie search (hybrid search lexical leg + the existing LIKE '%x%' search)
+--   search_vector : weighted full-text document (title A, director/genre B, description C), 'simple' config
+--                   so Vietnamese and English titles are matched as written, without stemming
+--   *_trgm        : trigram GIN indexes on lower(...) — serve LOWER(col) LIKE '%x%' and typo-tolerant title lookups
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE movies
+ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple'::regconfig, coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple'::regconfig, coalesce(director, '')), 'B') ||
+    setweight(to_tsvector('simple'::regconfig, coalesce(genre, '')), 'B') ||
+    setweight(to_tsvector('simple'::regconfig, coalesce(description, '')), 'C')
+) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_movies_search_vector ON movies USING gin (search_vector);
+CREATE INDEX IF NOT EXISTS idx_movies_title_trgm ON movies USING gin (lower(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_movies_director_trgm ON movies USING gin (lower(director) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_movies_genre_trgm ON movies USING gin (lower(genre) gin_trgm_ops);
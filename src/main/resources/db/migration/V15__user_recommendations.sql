@@ -0,0 +1,17 @@
+-- Precomputed AI-personalized recommendations per user (nightly batch + write-through on live compute)
+-- Valid only while pref_version / fav_version match the user's current genre preferences and favorites,
+-- the same versions user_preference_vectors is keyed by.
+
+CREATE TABLE IF NOT EXISTS user_recommendations (
+    user_id      BIGINT    PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    pref_version INTEGER   NOT NULL,
+    fav_version  INTEGER   NOT NULL,
+    movie_ids    BIGINT[]  NOT NULL,
+    depth        INTEGER   NOT NULL, -- how many were requested; fewer ids means the candidates ran out
+    computed_at  TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_recommendations_computed_at ON user_recommendations(computed_at);
+
+-- Active-user selection for the batch
+CREATE INDEX IF NOT EXISTS idx_favorite_movies_added_at ON favorite_movies(added_at);
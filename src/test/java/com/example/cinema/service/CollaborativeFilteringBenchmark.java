@@ -0,0 +1,115 @@
+package com.example.cinema.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Collaborative Filtering Benchmark - training time and memory of ItemCooccurrenceModel on a
+ * synthetic interaction log (Zipf-distributed movie popularity, uniform users).
+ *
+ * In-process and single-shot, so numbers are indicative rather than JMH-grade. Excluded from
+ * the regular test run (needs a heap of ~1 GB at the default size):
+ *   ./gradlew benchmark --tests CollaborativeFilteringBenchmark
+ */
+@Tag("benchmark")
+@Slf4j
+class CollaborativeFilteringBenchmark {
+
+    private static final int QUERY_SAMPLES = 2_000;
+
+    @Test
+    void trainOnSyntheticLog() {
+        BenchmarkReport report = run(100_000, 5_000, 1_000_000, 500, 50);
+        assertTrue(report.itemsRanked() > 0);
+    }
+
+    BenchmarkReport run(int users, int movies, int interactions, int maxItemsPerUser, int neighboursPerItem) {
+        SplittableRandom random = new SplittableRandom(7);
+        double[] popularityCdf = zipfCdf(movies, 1.0);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        long allocatedBefore = allocatedBytes();
+
+        ItemCooccurrenceModel model = new ItemCooccurrenceModel(maxItemsPerUser, neighboursPerItem);
+        long started = System.nanoTime();
+        for (int n = 0; n < interactions; n++) {
+            long userId = 1 + random.nextInt(users);
+            long movieId = 1 + Arrays.binarySearch(popularityCdf, random.nextDouble()) * -1 - 1;
+            model.add(userId, Math.min(movieId, movies), 1 + random.nextInt(3));
+        }
+        long accumulateNanos = System.nanoTime() - started;
+
+        started = System.nanoTime();
+        int ranked = model.refreshNeighbours();
+        long rankNanos = System.nanoTime() - started;
+
+        long allocated = allocatedBefore < 0 ? -1 : allocatedBytes() - allocatedBefore;
+        System.gc();
+        long heapRetained = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+
+        started = System.nanoTime();
+        for (int q = 0; q < QUERY_SAMPLES; q++) {
+            model.recommend(1 + random.nextInt(users), 10, Set.of());
+        }
+        double recommendMicros = (System.nanoTime() - started) / 1_000.0 / QUERY_SAMPLES;
+
+        started = System.nanoTime();
+        for (int q = 0; q < QUERY_SAMPLES; q++) {
+            model.neighbours(1 + random.nextInt(movies), 10);
+        }
+        double neighboursMicros = (System.nanoTime() - started) / 1_000.0 / QUERY_SAMPLES;
+
+        ItemCooccurrenceModel.ModelStats stats = model.stats();
+        BenchmarkReport report = new BenchmarkReport(
+                users, movies, interactions, stats,
+                accumulateNanos / 1_000_000, rankNanos / 1_000_000, ranked,
+                allocated, heapRetained, recommendMicros, neighboursMicros);
+        log.info("Collaborative filtering benchmark: {}", report);
+        return report;
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / Math.pow(k, exponent);
+            cdf[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported()) {
+            return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    record BenchmarkReport(
+            int users,
+            int movies,
+            int interactions,
+            ItemCooccurrenceModel.ModelStats model,
+            long accumulateMs,
+            long rankMs,
+            int itemsRanked,
+            long allocatedBytes,
+            long heapRetainedBytes,
+            double recommendMicros,
+            double neighboursMicros
+    ) {}
+}
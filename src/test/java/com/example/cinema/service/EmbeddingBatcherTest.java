@@ -0,0 +1,171 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests cho EmbeddingBatcher (batching, failures, shutdown, timeout)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests EmbeddingBatcherTest
+ */
+@ExtendWith(MockitoExtension.class)
+class EmbeddingBatcherTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private EmbeddingSpendMeter embeddingSpendMeter;
+
+    private AiProperties aiProperties;
+    private EmbeddingBatcher batcher;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        aiProperties = new AiProperties();
+        callers = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+        callers.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentTextsShareOneCall() throws Exception {
+        aiProperties.setQueryEmbeddingBatchMaxSize(4);
+        aiProperties.setQueryEmbeddingBatchWindowMs(5_000);
+        when(embeddingModel.embedForResponse(anyList())).thenAnswer(inv -> response(inv.getArgument(0)));
+        batcher = newBatcher();
+
+        List<Future<Embedding>> results = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            String text = "t" + i;
+            results.add(callers.submit(() -> batcher.embed(text)));
+        }
+
+        // Each caller gets the result at its own position in the batch
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, results.get(i - 1).get(5, TimeUnit.SECONDS).values()[0]);
+        }
+        verify(embeddingModel, times(1)).embedForResponse(anyList());
+        assertEquals(1, batcher.getStats().batches());
+        assertEquals(4.0, batcher.getStats().maxBatchSize());
+    }
+
+    @Test
+    void testFailedCallFailsEveryCaller() throws Exception {
+        aiProperties.setQueryEmbeddingBatchMaxSize(2);
+        aiProperties.setQueryEmbeddingBatchWindowMs(5_000);
+        IllegalStateException failure = new IllegalStateException("rate limited");
+        when(embeddingModel.embedForResponse(anyList())).thenThrow(failure);
+        batcher = newBatcher();
+
+        Future<Embedding> first = callers.submit(() -> batcher.embed("t1"));
+        Future<Embedding> second = callers.submit(() -> batcher.embed("t2"));
+
+        assertSame(failure, assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS)).getCause());
+        assertSame(failure, assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(1, batcher.getStats().failedBatches());
+    }
+
+    @Test
+    void testShutdownFailsTextsStillCollecting() throws Exception {
+        aiProperties.setQueryEmbeddingBatchWindowMs(60_000);
+        batcher = newBatcher();
+
+        Future<Embedding> collecting = callers.submit(() -> batcher.embed("t1"));
+        awaitQueueEmpty();
+        batcher.shutdown();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> collecting.get(5, TimeUnit.SECONDS));
+        assertEquals("Embedding batcher is shut down", e.getCause().getMessage());
+        verifyNoInteractions(embeddingModel);
+        assertThrows(IllegalStateException.class, () -> batcher.embed("t2"));
+    }
+
+    @Test
+    void testShutdownFailsBatchesWaitingForSender() throws Exception {
+        aiProperties.setQueryEmbeddingBatchMaxSize(1);
+        aiProperties.setQueryEmbeddingBatchConcurrency(1);
+        CountDownLatch callStarted = new CountDownLatch(1);
+        when(embeddingModel.embedForResponse(anyList())).thenAnswer(inv -> {
+            callStarted.countDown();
+            // Hold the only sender until shutdown interrupts it (HTTP clients surface that unchecked)
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("interrupted", e);
+            }
+            return response(inv.getArgument(0));
+        });
+        batcher = newBatcher();
+
+        Future<Embedding> sending = callers.submit(() -> batcher.embed("t1"));
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+        Future<Embedding> waiting = callers.submit(() -> batcher.embed("t2"));
+        awaitQueueEmpty();
+        batcher.shutdown();
+
+        assertThrows(ExecutionException.class, () -> sending.get(5, TimeUnit.SECONDS));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertEquals("Embedding batcher is shut down", e.getCause().getMessage());
+        verify(embeddingModel, times(1)).embedForResponse(anyList());
+    }
+
+    @Test
+    void testCallerGivesUpAfterTimeout() {
+        aiProperties.setQueryEmbeddingBatchTimeoutMs(50);
+        aiProperties.setQueryEmbeddingBatchWindowMs(60_000);
+        batcher = newBatcher();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> batcher.embed("t1"));
+        assertTrue(e.getMessage().contains("timed out"));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    private EmbeddingBatcher newBatcher() {
+        return new EmbeddingBatcher(embeddingModel, embeddingSpendMeter, aiProperties, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Waits until the dispatcher has taken the text, plus a moment for it to hand the batch on.
+     */
+    private void awaitQueueEmpty() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        do {
+            assertTrue(System.currentTimeMillis() < deadline, "dispatcher did not take the queued text");
+            Thread.sleep(50);
+        } while (batcher.getStats().queued() > 0);
+    }
+
+    private static EmbeddingResponse response(List<String> texts) {
+        List<org.springframework.ai.embedding.Embedding> results = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float value = Float.parseFloat(texts.get(i).substring(1));
+            results.add(new org.springframework.ai.embedding.Embedding(new float[]{value, 1}, i));
+        }
+        return new EmbeddingResponse(results);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.CacheConfig;
+import com.example.cinema.config.EmbeddingRedisSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Embedding Codec Benchmark - per-vector memory and serialization cost of the old boxed
+ * List<Double> + typed JSON cache format versus float[]-backed Embedding + binary codec.
+ *
+ * In-process micro-benchmark (warm-up, then averaged timed loop). Numbers are indicative,
+ * not JMH-grade. Excluded from the regular test run:
+ *   ./gradlew benchmark --tests EmbeddingCodecBenchmark
+ */
+@Tag("benchmark")
+@Slf4j
+class EmbeddingCodecBenchmark {
+
+    private static final int DIMENSIONS = 1536;
+    private static final int ITERATIONS = 10_000;
+
+    private static final int WARMUP_ITERATIONS = 2_000;
+
+    // Compressed oops, 8-byte alignment (default 64-bit HotSpot with heap < 32 GB)
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    private final GenericJackson2JsonRedisSerializer jsonSerializer = CacheConfig.jsonValueSerializer();
+    private final EmbeddingRedisSerializer binarySerializer = new EmbeddingRedisSerializer();
+
+    @Test
+    void compareBoxedJsonWithFloatBinary() {
+        BenchmarkReport report = run(DIMENSIONS, ITERATIONS);
+        log.info("{}", report);
+        assertTrue(report.floatBinary().retainedBytes() < report.boxedJson().retainedBytes());
+        assertTrue(report.floatBinary().serializedBytes() < report.boxedJson().serializedBytes());
+    }
+
+    BenchmarkReport run(int dimensions, int iterations) {
+        float[] raw = randomVector(dimensions);
+        List<Double> boxed = toBoxed(raw);
+        Embedding embedding = Embedding.of(raw.clone());
+
+        byte[] json = jsonSerializer.serialize(boxed);
+        byte[] binary = binarySerializer.serialize(embedding);
+        String literal = embedding.toVectorLiteral();
+
+        FormatCost boxedJson = new FormatCost(
+                "List<Double> + JSON",
+                boxedRetainedBytes(dimensions),
+                measureAllocation(() -> toBoxed(raw)),
+                json.length,
+                nanosPerOp(iterations, () -> jsonSerializer.serialize(boxed)),
+                nanosPerOp(iterations, () -> jsonSerializer.deserialize(json)),
+                nanosPerOp(iterations, () -> parseBoxed(literal)));
+
+        FormatCost floatBinary = new FormatCost(
+                "Embedding + binary",
+                embeddingRetainedBytes(dimensions),
+                measureAllocation(() -> Embedding.of(raw.clone())),
+                binary.length,
+                nanosPerOp(iterations, () -> binarySerializer.serialize(embedding)),
+                nanosPerOp(iterations, () -> binarySerializer.deserialize(binary)),
+                nanosPerOp(iterations, () -> Embedding.parse(literal)));
+
+        log.info("Embedding codec benchmark ({} dims, {} iterations): boxed={} bytes heap / {} bytes redis, float={} bytes heap / {} bytes redis",
+                dimensions, iterations, boxedJson.retainedBytes(), boxedJson.serializedBytes(),
+                floatBinary.retainedBytes(), floatBinary.serializedBytes());
+        return new BenchmarkReport(dimensions, iterations, boxedJson, floatBinary);
+    }
+
+    // ── Memory model ─────────────────────────────────────────────────────────
+
+    /** ArrayList + Object[] of references + one Double per element. */
+    static long boxedRetainedBytes(int dimensions) {
+        long arrayList = align(OBJECT_HEADER + 4 + 4 + REFERENCE);
+        long elementArray = align(ARRAY_HEADER + (long) dimensions * REFERENCE);
+        long doubles = (long) dimensions * align(OBJECT_HEADER + Double.BYTES);
+        return arrayList + elementArray + doubles;
+    }
+
+    /** Embedding wrapper + float[]. */
+    static long embeddingRetainedBytes(int dimensions) {
+        return align(OBJECT_HEADER + REFERENCE) + align(ARRAY_HEADER + (long) dimensions * Float.BYTES);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Bytes allocated by the current thread for one call, or -1 when the JVM does not expose it.
+     */
+    private static long measureAllocation(Supplier<?> allocation) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)
+                || !threads.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+        long threadId = Thread.currentThread().getId();
+        allocation.get();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        Object keep = allocation.get();
+        long after = threads.getThreadAllocatedBytes(threadId);
+        return keep == null ? -1 : after - before;
+    }
+
+    // ── Timing ───────────────────────────────────────────────────────────────
+
+    private static double nanosPerOp(int iterations, Supplier<?> op) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink = op.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = op.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == null) {
+            throw new IllegalStateException("Benchmark operation returned null");
+        }
+        return (double) elapsed / iterations;
+    }
+
+    // ── Old representation, kept here only as the baseline ──────────────────
+
+    private static List<Double> toBoxed(float[] values) {
+        List<Double> list = new ArrayList<>(values.length);
+        for (float v : values) {
+            list.add((double) v);
+        }
+        return list;
+    }
+
+    private static List<Double> parseBoxed(String literal) {
+        String[] parts = literal.substring(1, literal.length() - 1).split(",");
+        List<Double> list = new ArrayList<>(parts.length);
+        for (String part : parts) {
+            list.add(Double.parseDouble(part.trim()));
+        }
+        return list;
+    }
+
+    private static float[] randomVector(int dimensions) {
+        SplittableRandom random = new SplittableRandom(42);
+        float[] v = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            v[i] = (float) (random.nextDouble() * 2 - 1);
+        }
+        return v;
+    }
+
+    record FormatCost(
+            String format,
+            long retainedBytes,
+            long allocatedBytes,
+            int serializedBytes,
+            double serializeNanos,
+            double deserializeNanos,
+            double parseVectorTextNanos
+    ) {}
+
+    record BenchmarkReport(
+            int dimensions,
+            int iterations,
+            FormatCost boxedJson,
+            FormatCost floatBinary
+    ) {}
+}
@@ -0,0 +1,95 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.CacheConfig;
+import com.example.cinema.config.EmbeddingRedisSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho Embedding (binary codec, pgvector text format)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests EmbeddingTest
+ */
+class EmbeddingTest {
+
+    private final EmbeddingRedisSerializer serializer = new EmbeddingRedisSerializer();
+
+    @Test
+    void testBinaryRoundTrip() {
+        float[] values = {0.1f, -0.25f, 1e-7f, Float.MAX_VALUE, -0.0f, 3.14159f};
+        Embedding embedding = Embedding.of(values.clone());
+
+        byte[] bytes = embedding.toBytes();
+
+        assertEquals(Embedding.HEADER_BYTES + values.length * Float.BYTES, bytes.length);
+        assertEquals(Embedding.MAGIC, bytes[0]);
+        assertEquals(Embedding.FORMAT_VERSION, bytes[1]);
+        Embedding decoded = Embedding.fromBytes(bytes);
+        assertNotNull(decoded);
+        assertArrayEquals(values, decoded.values());
+        assertEquals(embedding, decoded);
+    }
+
+    @Test
+    void testBinaryLayoutIsLittleEndian() {
+        byte[] bytes = Embedding.of(new float[]{1.0f}).toBytes();
+
+        // dimensions = 1, then 1.0f = 0x3F800000
+        assertArrayEquals(new byte[]{'E', 1, 1, 0, 0, 0, 0, 0, (byte) 0x80, 0x3F}, bytes);
+    }
+
+    @Test
+    void testSerializerRoundTrip() {
+        Embedding embedding = Embedding.of(new float[]{0.5f, 0.25f, -1f});
+
+        assertEquals(embedding, serializer.deserialize(serializer.serialize(embedding)));
+        assertNull(serializer.serialize(null));
+        assertNull(serializer.deserialize(null));
+    }
+
+    @Test
+    void testLegacyJsonEntryReadsAsMiss() {
+        byte[] legacy = CacheConfig.jsonValueSerializer().serialize(List.of(0.1, 0.2, 0.3));
+
+        assertNull(serializer.deserialize(legacy));
+    }
+
+    @Test
+    void testCorruptBytesRejected() {
+        byte[] bytes = Embedding.of(new float[]{0.1f, 0.2f}).toBytes();
+
+        assertNull(Embedding.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertNull(Embedding.fromBytes(Arrays.copyOf(bytes, Embedding.HEADER_BYTES)));
+        byte[] wrongVersion = bytes.clone();
+        wrongVersion[1] = 2;
+        assertNull(Embedding.fromBytes(wrongVersion));
+        byte[] negativeDimensions = bytes.clone();
+        negativeDimensions[5] = (byte) 0x80;
+        assertNull(Embedding.fromBytes(negativeDimensions));
+    }
+
+    @Test
+    void testVectorLiteralRoundTrip() {
+        float[] values = {0.1f, -0.2f, 12345.678f, 1e-8f};
+        Embedding embedding = Embedding.of(values.clone());
+
+        Embedding parsed = Embedding.parse(embedding.toVectorLiteral());
+
+        assertNotNull(parsed);
+        assertArrayEquals(values, parsed.values());
+    }
+
+    @Test
+    void testParseEdgeCases() {
+        assertNull(Embedding.parse(null));
+        assertNull(Embedding.parse("[]"));
+        assertNull(Embedding.parse("no vector"));
+        assertArrayEquals(new float[]{1f, 2.5f}, Embedding.parse(" [1, 2.5] ").values());
+        assertThrows(IllegalArgumentException.class, () -> Embedding.of(new float[0]));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.cinema.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho ItemCooccurrenceModel
+ *
+ * Fixture (weight 1 everywhere):
+ *   user 1: movies 10, 20
+ *   user 2: movies 10, 20, 30
+ *   user 3: movies 20, 30
+ * → N(10)=2, N(20)=3, N(30)=2; C(10,20)=2, C(10,30)=1, C(20,30)=2
+ * → sim(10,20)=sim(20,30)=2/√6, sim(10,30)=1/2
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests ItemCooccurrenceModelTest
+ */
+class ItemCooccurrenceModelTest {
+
+    private static final double SIM_STRONG = 2 / Math.sqrt(6);
+    private static final double SIM_WEAK = 0.5;
+    private static final double DELTA = 1e-5;
+
+    private ItemCooccurrenceModel model;
+
+    @BeforeEach
+    void setUp() {
+        model = new ItemCooccurrenceModel(500, 50);
+        loadFixture(model);
+        model.refreshNeighbours();
+    }
+
+    @Test
+    void testNeighboursRankedByCosine() {
+        List<MovieVectorIndex.ScoredMovie> neighbours = model.neighbours(10, 10);
+
+        assertEquals(List.of(20L, 30L), ids(neighbours));
+        assertEquals(SIM_STRONG, neighbours.get(0).score(), DELTA);
+        assertEquals(SIM_WEAK, neighbours.get(1).score(), DELTA);
+        assertEquals(List.of(20L), ids(model.neighbours(10, 1)));
+        assertTrue(model.neighbours(999, 10).isEmpty());
+    }
+
+    @Test
+    void testRecommendExcludesSeenMovies() {
+        List<MovieVectorIndex.ScoredMovie> forUser1 = model.recommend(1, 10, Set.of());
+        assertEquals(List.of(30L), ids(forUser1));
+        assertEquals(SIM_WEAK + SIM_STRONG, forUser1.get(0).score(), DELTA);
+
+        List<MovieVectorIndex.ScoredMovie> forUser3 = model.recommend(3, 10, Set.of());
+        assertEquals(List.of(10L), ids(forUser3));
+        assertEquals(SIM_STRONG + SIM_WEAK, forUser3.get(0).score(), DELTA);
+
+        assertTrue(model.recommend(2, 10, Set.of()).isEmpty());
+        assertTrue(model.recommend(1, 10, Set.of(30L)).isEmpty());
+        assertTrue(model.recommend(1, 0, Set.of()).isEmpty());
+        assertTrue(model.recommend(999, 10, Set.of()).isEmpty());
+    }
+
+    @Test
+    void testRecommendOrdersByWeightedScore() {
+        // user 4 has booked 10 (weight 3) and reviewed 40 (weight 1); 40 co-occurs only with 50
+        model.add(4, 10, 3);
+        model.add(4, 40, 1);
+        model.add(5, 40, 1);
+        model.add(5, 50, 1);
+        model.refreshNeighbours();
+
+        List<Long> ranked = ids(model.recommend(4, 10, Set.of()));
+
+        assertEquals(20L, ranked.get(0));
+        assertTrue(ranked.containsAll(List.of(20L, 30L, 50L)));
+        assertFalse(ranked.contains(10L));
+        assertFalse(ranked.contains(40L));
+    }
+
+    @Test
+    void testAddIsIdempotentUnderRescan() {
+        ItemCooccurrenceModel.ModelStats before = model.stats();
+        List<MovieVectorIndex.ScoredMovie> neighboursBefore = model.neighbours(20, 10);
+        List<MovieVectorIndex.ScoredMovie> recommendBefore = model.recommend(1, 10, Set.of());
+
+        // Incremental refresh re-reads an overlapping window: every interaction arrives again
+        assertFalse(model.add(1, 10, 1));
+        assertFalse(model.add(2, 30, 1));
+        assertFalse(model.add(2, 30, 0.5f));
+        assertFalse(model.add(1, 20, 0));
+        assertEquals(0, model.refreshNeighbours());
+
+        assertEquals(before, model.stats());
+        assertEquals(neighboursBefore, model.neighbours(20, 10));
+        assertEquals(recommendBefore, model.recommend(1, 10, Set.of()));
+    }
+
+    @Test
+    void testStrongerSignalMatchesFreshBuild() {
+        // user 1 books movie 10 after having only favorited it
+        assertTrue(model.add(1, 10, 3));
+        model.refreshNeighbours();
+
+        ItemCooccurrenceModel fresh = new ItemCooccurrenceModel(500, 50);
+        fresh.add(1, 10, 3);
+        fresh.add(1, 20, 1);
+        fresh.add(2, 10, 1);
+        fresh.add(2, 20, 1);
+        fresh.add(2, 30, 1);
+        fresh.add(3, 20, 1);
+        fresh.add(3, 30, 1);
+        fresh.refreshNeighbours();
+
+        // Rows touched by the update are exact; row 30 only sees the new norm of 10 at the next full rebuild
+        for (long movieId : List.of(10L, 20L)) {
+            assertScoresEqual(fresh.neighbours(movieId, 10), model.neighbours(movieId, 10));
+        }
+        assertScoresEqual(fresh.recommend(1, 10, Set.of()), model.recommend(1, 10, Set.of()));
+        assertEquals(fresh.stats().interactions(), model.stats().interactions());
+    }
+
+    @Test
+    void testMaxItemsPerUserCap() {
+        ItemCooccurrenceModel capped = new ItemCooccurrenceModel(2, 50);
+
+        assertTrue(capped.add(1, 10, 1));
+        assertTrue(capped.add(1, 20, 1));
+        assertFalse(capped.add(1, 30, 1));
+        // Upgrading an existing item is still allowed
+        assertTrue(capped.add(1, 20, 3));
+        assertEquals(2, capped.stats().interactions());
+    }
+
+    @Test
+    void testNeighboursPerItemLimit() {
+        ItemCooccurrenceModel small = new ItemCooccurrenceModel(500, 1);
+        loadFixture(small);
+        small.refreshNeighbours();
+
+        assertEquals(List.of(20L), ids(small.neighbours(10, 10)));
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() {
+        ItemCooccurrenceModel large = new ItemCooccurrenceModel(5000, 5);
+        for (long movieId = 1; movieId <= 3000; movieId++) {
+            large.add(1, movieId, 1);
+            large.add(2, movieId, 1);
+        }
+        large.add(3, 1, 1);
+        large.add(3, 2999, 1);
+        large.refreshNeighbours();
+
+        assertEquals(3, large.stats().users());
+        assertEquals(3000, large.stats().items());
+        List<MovieVectorIndex.ScoredMovie> neighbours = large.neighbours(1, 10);
+        assertEquals(5, neighbours.size());
+        // 1 and 2999 share all three users
+        assertEquals(2999L, neighbours.get(0).movieId());
+        assertEquals(1.0, neighbours.get(0).score(), DELTA);
+        assertFalse(large.recommend(3, 5, Set.of()).isEmpty());
+    }
+
+    private static void loadFixture(ItemCooccurrenceModel target) {
+        target.add(1, 10, 1);
+        target.add(1, 20, 1);
+        target.add(2, 10, 1);
+        target.add(2, 20, 1);
+        target.add(2, 30, 1);
+        target.add(3, 20, 1);
+        target.add(3, 30, 1);
+    }
+
+    private static List<Long> ids(List<MovieVectorIndex.ScoredMovie> movies) {
+        return movies.stream().map(MovieVectorIndex.ScoredMovie::movieId).toList();
+    }
+
+    private static void assertScoresEqual(List<MovieVectorIndex.ScoredMovie> expected, List<MovieVectorIndex.ScoredMovie> actual) {
+        assertEquals(ids(expected), ids(actual));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).score(), actual.get(i).score(), DELTA);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.cinema.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Local Embedding Benchmark - quality and latency of the local hashed n-gram model against the
+ * remote model, using the remote vectors already in MovieVectorIndex as ground truth.
+ *
+ * Quality: for sampled movies, overlap@K between their K nearest neighbours under the remote
+ * vectors and under local vectors (1.0 = local finds exactly the remote neighbours). Optionally
+ * the same for free-text queries, which costs one remote embedding call per query.
+ *
+ * Latency: local embed time per movie text; remote time per query when queries are included.
+ *
+ * Needs the full application context (database with embedded movies, and the remote model when
+ * queries are included). Excluded from the regular test run:
+ *   ./gradlew benchmark --tests LocalEmbeddingBenchmark [-Dbenchmark.includeQueries=true]
+ */
+@SpringBootTest
+@Tag("benchmark")
+@Slf4j
+class LocalEmbeddingBenchmark {
+
+    private static final String LOAD_MOVIES_SQL = "SELECT id, title, description, genre, director FROM movies";
+
+    private static final List<String> DEFAULT_QUERIES = List.of(
+            "funny movie for the whole family",
+            "space adventure with aliens",
+            "romantic comedy in a big city",
+            "dark psychological thriller",
+            "animated movie for kids",
+            "superhero action",
+            "horror with a haunted house",
+            "true story about war");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MovieVectorIndex movieVectorIndex;
+    @Autowired
+    private EmbeddingModel embeddingModel;
+    @Autowired
+    private LocalEmbeddingFallback localEmbeddingFallback;
+
+    @Test
+    void compareLocalWithRemoteModel() {
+        BenchmarkReport report = run(200, 10, Boolean.getBoolean("benchmark.includeQueries"));
+        assertTrue(report.moviesCompared() > 0);
+    }
+
+    BenchmarkReport run(int sampleMovies, int k, boolean includeQueries) {
+        if (!movieVectorIndex.isReady() || movieVectorIndex.size() == 0) {
+            throw new IllegalStateException("Vector index is not loaded; remote vectors are the ground truth");
+        }
+        LocalHashingEmbeddingModel local = localEmbeddingFallback.model();
+
+        // Local vectors for every movie that has a remote vector
+        Map<Long, float[]> localVectors = new LinkedHashMap<>();
+        long embedNanos = 0;
+        List<Object[]> rows = jdbcTemplate.query(LOAD_MOVIES_SQL, (rs, i) -> new Object[]{
+                rs.getLong("id"),
+                EmbeddingService.buildMovieText(rs.getString("title"), rs.getString("description"),
+                        rs.getString("genre"), rs.getString("director"))});
+        for (Object[] row : rows) {
+            Long movieId = (Long) row[0];
+            String text = (String) row[1];
+            if (text.isEmpty() || !movieVectorIndex.contains(movieId)) {
+                continue;
+            }
+            long started = System.nanoTime();
+            localVectors.put(movieId, local.embed(text));
+            embedNanos += System.nanoTime() - started;
+        }
+        if (localVectors.isEmpty()) {
+            throw new IllegalStateException("No movies with both text and a remote vector");
+        }
+        double localEmbedMicros = embedNanos / 1_000.0 / localVectors.size();
+
+        // Movie-to-movie neighbourhood agreement
+        List<Long> ids = new ArrayList<>(localVectors.keySet());
+        Collections.shuffle(ids, new Random(42));
+        List<Long> sample = ids.subList(0, Math.min(Math.max(sampleMovies, 1), ids.size()));
+        double overlapSum = 0;
+        for (Long movieId : sample) {
+            Set<Long> remote = idsOf(movieVectorIndex.search(movieVectorIndex.vectorOf(movieId).orElseThrow(),
+                    -1.0, k, Set.of(movieId)));
+            Set<Long> localTop = topLocal(localVectors, localVectors.get(movieId), k, movieId);
+            overlapSum += overlap(remote, localTop, k);
+        }
+        double movieOverlap = overlapSum / sample.size();
+
+        // Free-text queries (remote calls, opt-in)
+        Double queryOverlap = null;
+        Double remoteQueryMillis = null;
+        if (includeQueries) {
+            double sum = 0;
+            long remoteNanos = 0;
+            for (String query : DEFAULT_QUERIES) {
+                long started = System.nanoTime();
+                float[] remoteQuery = embeddingModel.embed(query);
+                remoteNanos += System.nanoTime() - started;
+                Set<Long> remote = idsOf(movieVectorIndex.search(remoteQuery, -1.0, k, Set.of()));
+                Set<Long> localTop = topLocal(localVectors, local.embed(query), k, null);
+                sum += overlap(remote, localTop, k);
+            }
+            queryOverlap = sum / DEFAULT_QUERIES.size();
+            remoteQueryMillis = remoteNanos / 1_000_000.0 / DEFAULT_QUERIES.size();
+        }
+
+        BenchmarkReport report = new BenchmarkReport(
+                localVectors.size(), sample.size(), k,
+                movieOverlap, queryOverlap,
+                localEmbedMicros, remoteQueryMillis);
+        log.info("Local embedding benchmark: {}", report);
+        return report;
+    }
+
+    private static Set<Long> topLocal(Map<Long, float[]> vectors, float[] query, int k, Long exclude) {
+        PriorityQueue<Map.Entry<Long, Float>> heap = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Long, float[]> entry : vectors.entrySet()) {
+            if (entry.getKey().equals(exclude)) {
+                continue;
+            }
+            float score = MovieVectorIndex.dot(query, entry.getValue(), 0, query.length);
+            if (heap.size() < k) {
+                heap.add(Map.entry(entry.getKey(), score));
+            } else if (score > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(Map.entry(entry.getKey(), score));
+            }
+        }
+        Set<Long> result = new HashSet<>();
+        heap.forEach(e -> result.add(e.getKey()));
+        return result;
+    }
+
+    private static Set<Long> idsOf(List<MovieVectorIndex.ScoredMovie> scored) {
+        Set<Long> result = new HashSet<>();
+        scored.forEach(m -> result.add(m.movieId()));
+        return result;
+    }
+
+    private static double overlap(Set<Long> truth, Set<Long> candidate, int k) {
+        if (truth.isEmpty()) {
+            return 1.0;
+        }
+        long hits = candidate.stream().filter(truth::contains).count();
+        return (double) hits / Math.min(k, truth.size());
+    }
+
+    record BenchmarkReport(
+            int moviesCompared,
+            int sampledMovies,
+            int k,
+            double movieNeighbourOverlap,
+            Double queryOverlap,
+            double localEmbedMicros,
+            Double remoteQueryMillis
+    ) {}
+}
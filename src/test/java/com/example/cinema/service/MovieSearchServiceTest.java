@@ -0,0 +1,157 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import com.example.cinema.repository.MovieRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests cho MovieSearchService (RRF fusion, LIKE escaping, vector leg gating)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests MovieSearchServiceTest
+ */
+@ExtendWith(MockitoExtension.class)
+class MovieSearchServiceTest {
+
+    private static final int RRF_K = 60;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private MovieRepository movieRepository;
+
+    @Mock
+    private MovieVectorIndex movieVectorIndex;
+
+    @Mock
+    private QueryEmbeddingCache queryEmbeddingCache;
+
+    @Mock
+    private LocalEmbeddingFallback localEmbeddingFallback;
+
+    private MovieSearchService movieSearchService;
+
+    @BeforeEach
+    void setUp() {
+        movieSearchService = new MovieSearchService(jdbcTemplate, movieRepository, movieVectorIndex,
+                queryEmbeddingCache, localEmbeddingFallback, new AiProperties(), RRF_K, 50, 0.8, 2);
+    }
+
+    @Test
+    void testFuseSumsReciprocalRanks() {
+        List<MovieSearchService.Fused> fused = MovieSearchService.fuse(List.of(1L, 2L, 3L), List.of(3L, 4L, 1L), 10, RRF_K);
+
+        // 1: 1/61 + 1/63, 3: 1/63 + 1/61 (tie, lexical first by insertion), 2: 1/62, 4: 1/62
+        assertEquals(List.of(1L, 3L, 2L, 4L), fused.stream().map(MovieSearchService.Fused::movieId).toList());
+        MovieSearchService.Fused first = fused.get(0);
+        assertEquals(1.0 / 61 + 1.0 / 63, first.score(), 1e-12);
+        assertEquals(1, first.lexicalRank());
+        assertEquals(3, first.vectorRank());
+        MovieSearchService.Fused vectorOnly = fused.get(3);
+        assertNull(vectorOnly.lexicalRank());
+        assertEquals(2, vectorOnly.vectorRank());
+    }
+
+    @Test
+    void testFuseSingleLegKeepsOrder() {
+        assertEquals(List.of(5L, 3L, 9L), ids(MovieSearchService.fuse(List.of(5L, 3L, 9L), List.of(), 10, RRF_K)));
+        assertEquals(List.of(7L, 1L), ids(MovieSearchService.fuse(List.of(), List.of(7L, 1L), 10, RRF_K)));
+        assertTrue(MovieSearchService.fuse(List.of(), List.of(), 10, RRF_K).isEmpty());
+    }
+
+    @Test
+    void testFuseRewardsAgreementAndAppliesLimit() {
+        // 8 is mid-ranked in both legs and beats each leg's top hit
+        List<MovieSearchService.Fused> fused = MovieSearchService.fuse(
+                List.of(1L, 8L, 2L), List.of(3L, 4L, 8L), 2, RRF_K);
+
+        assertEquals(List.of(8L, 1L), ids(fused));
+    }
+
+    @Test
+    void testEscapeLike() {
+        assertEquals("100\\% pure", MovieSearchService.escapeLike("100% pure"));
+        assertEquals("snake\\_case", MovieSearchService.escapeLike("snake_case"));
+        assertEquals("back\\\\slash", MovieSearchService.escapeLike("back\\slash"));
+        assertEquals("\\\\\\%", MovieSearchService.escapeLike("\\%"));
+        assertEquals("plain", MovieSearchService.escapeLike("plain"));
+    }
+
+    @Test
+    void testAnonymousSearchIsLexicalOnly() {
+        stubLexical(List.of());
+
+        MovieSearchService.SearchResponse response = movieSearchService.search("space adventure",
+                MovieSearchService.SearchMode.SEMANTIC, 10, null);
+
+        assertEquals(MovieSearchService.SearchMode.LEXICAL, response.mode());
+        assertEquals("none", response.vectorSource());
+        verifyNoInteractions(queryEmbeddingCache, movieVectorIndex);
+    }
+
+    @Test
+    void testVectorLegRateLimitedPerUser() {
+        stubLexical(List.of());
+        when(localEmbeddingFallback.isRemoteAvailable()).thenReturn(true);
+        when(queryEmbeddingCache.get(anyString())).thenReturn(Embedding.of(new float[]{1f}));
+        when(movieVectorIndex.isReady()).thenReturn(true);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("remote", movieSearchService.search("space", MovieSearchService.SearchMode.HYBRID, 10, 1L).vectorSource());
+        }
+        assertEquals("none", movieSearchService.search("space", MovieSearchService.SearchMode.HYBRID, 10, 1L).vectorSource());
+        // Another user has its own budget
+        assertEquals("remote", movieSearchService.search("space", MovieSearchService.SearchMode.HYBRID, 10, 2L).vectorSource());
+
+        verify(queryEmbeddingCache, times(3)).get(anyString());
+    }
+
+    @Test
+    void testRemoteDownUsesCachedEmbedding() {
+        stubLexical(List.of());
+        when(localEmbeddingFallback.isReady()).thenReturn(true);
+        when(localEmbeddingFallback.isRemoteAvailable()).thenReturn(false);
+        when(queryEmbeddingCache.getCached("space")).thenReturn(Optional.of(Embedding.of(new float[]{1f})));
+        when(queryEmbeddingCache.getCached("ocean")).thenReturn(Optional.empty());
+        when(movieVectorIndex.isReady()).thenReturn(true);
+
+        assertEquals("remote", movieSearchService.search("space", MovieSearchService.SearchMode.HYBRID, 10, 1L).vectorSource());
+        // Not cached: local index, the remote model is not called while it is marked down
+        assertEquals("local", movieSearchService.search("ocean", MovieSearchService.SearchMode.HYBRID, 10, 1L).vectorSource());
+        verify(queryEmbeddingCache, never()).get(anyString());
+    }
+
+    @Test
+    void testLimiterWindow() {
+        MovieSearchService.VectorLegLimiter limiter = new MovieSearchService.VectorLegLimiter(3);
+
+        assertTrue(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(1));
+        assertFalse(limiter.tryAcquire(1));
+        assertTrue(limiter.tryAcquire(2));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubLexical(List<Object> hits) {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(hits);
+    }
+
+    private static List<Long> ids(List<MovieSearchService.Fused> fused) {
+        return fused.stream().map(MovieSearchService.Fused::movieId).toList();
+    }
+}
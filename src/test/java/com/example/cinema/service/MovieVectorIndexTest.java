@@ -0,0 +1,161 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests cho MovieVectorIndex (quantized search + exact re-rank, pgvector version check)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests MovieVectorIndexTest
+ */
+@ExtendWith(MockitoExtension.class)
+class MovieVectorIndexTest {
+
+    private static final int MOVIES = 300;
+    private static final int DIMS = 64;
+    private static final int K = 10;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PgVectorBinding pgVectorBinding;
+
+    @Mock
+    private PreparedStatementCreator statement;
+
+    @Mock
+    private ResultSet resultSet;
+
+    @Test
+    void testQuantizedSearchReturnsExactTopK() throws Exception {
+        for (String mode : List.of("int8", "binary")) {
+            Map<Long, float[]> stored = randomVectors();
+            MovieVectorIndex index = quantizedIndex(mode, stored);
+            stubExactVectors(stored);
+
+            for (long queryMovie : List.of(1L, 42L, 250L)) {
+                float[] query = stored.get(queryMovie);
+                List<MovieVectorIndex.ScoredMovie> results = index.search(query, -1.0, K, Set.of(queryMovie));
+
+                List<MovieVectorIndex.ScoredMovie> expected = bruteForce(stored, query, K, queryMovie);
+                assertEquals(ids(expected), ids(results), mode + " query " + queryMovie);
+                for (int i = 0; i < K; i++) {
+                    // Scores come from the full-precision vectors, not the quantized codes
+                    assertEquals(expected.get(i).score(), results.get(i).score(), 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testQuantizedSearchAppliesThresholdAfterRerank() throws Exception {
+        Map<Long, float[]> stored = randomVectors();
+        MovieVectorIndex index = quantizedIndex("int8", stored);
+        stubExactVectors(stored);
+        float[] query = stored.get(5L);
+
+        List<MovieVectorIndex.ScoredMovie> results = index.search(query, 0.2, K, Set.of());
+
+        assertEquals(5L, results.get(0).movieId());
+        assertEquals(1.0, results.get(0).score(), 1e-6);
+        assertTrue(results.stream().allMatch(r -> r.score() >= 0.2));
+        assertEquals(ids(bruteForce(stored, query, K, null).stream().filter(r -> r.score() >= 0.2).toList()), ids(results));
+    }
+
+    @Test
+    void testQuantizedSearchFallsBackToApproximateScores() {
+        Map<Long, float[]> stored = randomVectors();
+        MovieVectorIndex index = quantizedIndex("int8", stored);
+        when(pgVectorBinding.statement(anyString(), any())).thenReturn(statement);
+        doThrow(new IllegalStateException("database down"))
+                .when(jdbcTemplate).query(eq(statement), any(RowCallbackHandler.class));
+
+        List<MovieVectorIndex.ScoredMovie> results = index.search(stored.get(7L), -1.0, K, Set.of());
+
+        assertEquals(K, results.size());
+        assertEquals(7L, results.get(0).movieId());
+    }
+
+    @Test
+    void testSupportsBinaryQuantize() {
+        assertTrue(MovieVectorIndex.supportsBinaryQuantize("0.7.0"));
+        assertTrue(MovieVectorIndex.supportsBinaryQuantize("0.8.0"));
+        assertTrue(MovieVectorIndex.supportsBinaryQuantize("0.10.1"));
+        assertTrue(MovieVectorIndex.supportsBinaryQuantize("1.0"));
+        assertTrue(MovieVectorIndex.supportsBinaryQuantize("0.7.4-dev"));
+        assertFalse(MovieVectorIndex.supportsBinaryQuantize("0.6.2"));
+        assertFalse(MovieVectorIndex.supportsBinaryQuantize("0.5"));
+        assertFalse(MovieVectorIndex.supportsBinaryQuantize(null));
+        assertFalse(MovieVectorIndex.supportsBinaryQuantize(""));
+        assertFalse(MovieVectorIndex.supportsBinaryQuantize("unknown"));
+    }
+
+    private MovieVectorIndex quantizedIndex(String mode, Map<Long, float[]> stored) {
+        AiProperties aiProperties = new AiProperties();
+        aiProperties.setVectorIndexQuantization(mode);
+        // Sign bits are too coarse for recall on random 64-dim data: re-rank every row in binary mode
+        aiProperties.setVectorIndexRerankMultiplier(mode.equals("binary") ? MOVIES / K : 4);
+        MovieVectorIndex index = new MovieVectorIndex(jdbcTemplate, pgVectorBinding, aiProperties);
+        stored.forEach(index::upsert);
+        return index;
+    }
+
+    /**
+     * vector_store for the re-rank query: every stored row, whatever ids were asked for.
+     */
+    private void stubExactVectors(Map<Long, float[]> stored) throws Exception {
+        reset(jdbcTemplate, pgVectorBinding, resultSet);
+        List<Map.Entry<Long, float[]>> rows = new ArrayList<>(stored.entrySet());
+        int[] current = {0};
+        when(pgVectorBinding.statement(anyString(), any())).thenReturn(statement);
+        when(resultSet.getLong("movie_id")).thenAnswer(inv -> rows.get(current[0]).getKey());
+        when(pgVectorBinding.getVectorValues(resultSet, "embedding"))
+                .thenAnswer(inv -> rows.get(current[0]).getValue().clone());
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (current[0] = 0; current[0] < rows.size(); current[0]++) {
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq(statement), any(RowCallbackHandler.class));
+    }
+
+    private static Map<Long, float[]> randomVectors() {
+        SplittableRandom random = new SplittableRandom(9);
+        Map<Long, float[]> vectors = new LinkedHashMap<>();
+        for (long id = 1; id <= MOVIES; id++) {
+            vectors.put(id, QuantizedVectorsTest.unitVector(random, DIMS));
+        }
+        return vectors;
+    }
+
+    private static List<MovieVectorIndex.ScoredMovie> bruteForce(Map<Long, float[]> stored, float[] query, int k, Long exclude) {
+        return stored.entrySet().stream()
+                .filter(e -> !e.getKey().equals(exclude))
+                .map(e -> new MovieVectorIndex.ScoredMovie(e.getKey(), MovieVectorIndex.dot(query, e.getValue(), 0, DIMS)))
+                .sorted(Comparator.comparingDouble(MovieVectorIndex.ScoredMovie::score).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private static List<Long> ids(List<MovieVectorIndex.ScoredMovie> movies) {
+        return movies.stream().map(MovieVectorIndex.ScoredMovie::movieId).toList();
+    }
+}
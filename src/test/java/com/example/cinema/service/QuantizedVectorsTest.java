@@ -0,0 +1,139 @@
+package com.example.cinema.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho QuantizedVectors (int8 / binary encoding)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests QuantizedVectorsTest
+ */
+class QuantizedVectorsTest {
+
+    private static final int DIMS = 100;
+
+    @Test
+    void testInt8ScoreApproximatesCosine() {
+        SplittableRandom random = new SplittableRandom(1);
+        QuantizedVectors codes = new QuantizedVectors(QuantizedVectors.Mode.INT8, DIMS, 50);
+        float[][] rows = new float[50][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = unitVector(random, DIMS);
+            codes.set(i, rows[i]);
+        }
+
+        float[] query = unitVector(random, DIMS);
+        QuantizedVectors.Prepared prepared = codes.prepare(query);
+        for (int i = 0; i < rows.length; i++) {
+            float exact = MovieVectorIndex.dot(query, rows[i], 0, DIMS);
+            assertEquals(exact, codes.score(prepared, i), 0.01, "row " + i);
+        }
+        assertEquals(1.0, codes.score(codes.prepare(rows[7]), 7), 0.01);
+    }
+
+    @Test
+    void testInt8EncodingUsesFullRange() {
+        QuantizedVectors codes = new QuantizedVectors(QuantizedVectors.Mode.INT8, 4, 1);
+        float[] vector = {0.5f, -0.5f, 0.5f, -0.5f};
+        codes.set(0, vector);
+
+        QuantizedVectors.Prepared prepared = codes.prepare(vector);
+
+        assertArrayEquals(new byte[]{127, -127, 127, -127}, prepared.codes());
+        assertEquals(1.0, codes.score(prepared, 0), 1e-6);
+    }
+
+    @Test
+    void testInt8ZeroVector() {
+        QuantizedVectors codes = new QuantizedVectors(QuantizedVectors.Mode.INT8, 4, 1);
+        codes.set(0, new float[4]);
+
+        assertEquals(0f, codes.score(codes.prepare(new float[]{1f, 0f, 0f, 0f}), 0));
+    }
+
+    @Test
+    void testSignBitsPacking() {
+        float[] vector = new float[130];
+        vector[0] = 1f;
+        vector[63] = 0.1f;
+        vector[64] = 0.2f;
+        vector[129] = 0.3f;
+        vector[1] = -1f;
+        vector[2] = 0f;
+
+        long[] bits = QuantizedVectors.signBits(vector);
+
+        assertEquals(3, bits.length);
+        assertEquals(1L | (1L << 63), bits[0]);
+        assertEquals(1L, bits[1]);
+        assertEquals(1L << 1, bits[2]);
+    }
+
+    @Test
+    void testBinaryScoreFromHammingDistance() {
+        QuantizedVectors codes = new QuantizedVectors(QuantizedVectors.Mode.BINARY, 4, 3);
+        codes.set(0, new float[]{0.5f, 0.5f, 0.5f, 0.5f});
+        codes.set(1, new float[]{-0.5f, -0.5f, -0.5f, -0.5f});
+        codes.set(2, new float[]{0.5f, 0.5f, -0.5f, -0.5f});
+
+        QuantizedVectors.Prepared prepared = codes.prepare(new float[]{0.5f, 0.5f, 0.5f, 0.5f});
+
+        assertEquals(1.0, codes.score(prepared, 0), 1e-6);
+        assertEquals(-1.0, codes.score(prepared, 1), 1e-6);
+        // Hamming 2 of 4 → cos(π/2)
+        assertEquals(0.0, codes.score(prepared, 2), 1e-6);
+    }
+
+    @Test
+    void testBinaryScoreTracksAngle() {
+        SplittableRandom random = new SplittableRandom(2);
+        int dims = 1536;
+        QuantizedVectors codes = new QuantizedVectors(QuantizedVectors.Mode.BINARY, dims, 1);
+        float[] row = unitVector(random, dims);
+        codes.set(0, row);
+
+        float[] near = row.clone();
+        for (int i = 0; i < dims; i++) {
+            near[i] += (float) (random.nextGaussian() * 0.01);
+        }
+        MovieVectorIndex.normalize(near);
+
+        assertEquals(MovieVectorIndex.dot(near, row, 0, dims), codes.score(codes.prepare(near), 0), 0.05);
+    }
+
+    @Test
+    void testCopyAndCapacity() {
+        for (QuantizedVectors.Mode mode : QuantizedVectors.Mode.values()) {
+            QuantizedVectors codes = new QuantizedVectors(mode, 70, 2);
+            assertEquals(2, codes.capacity());
+            codes.ensureCapacity(5);
+            assertEquals(5, codes.capacity());
+
+            float[] vector = unitVector(new SplittableRandom(3), 70);
+            codes.set(4, vector);
+            codes.copy(4, 0);
+            QuantizedVectors.Prepared prepared = codes.prepare(vector);
+            assertEquals(codes.score(prepared, 4), codes.score(prepared, 0), mode.name());
+        }
+    }
+
+    @Test
+    void testBytesPerVector() {
+        assertEquals(1536 + 4, new QuantizedVectors(QuantizedVectors.Mode.INT8, 1536, 1).bytesPerVector());
+        assertEquals(192, new QuantizedVectors(QuantizedVectors.Mode.BINARY, 1536, 1).bytesPerVector());
+        assertEquals(16, new QuantizedVectors(QuantizedVectors.Mode.BINARY, 65, 1).bytesPerVector());
+    }
+
+    static float[] unitVector(SplittableRandom random, int dims) {
+        float[] v = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            v[i] = (float) random.nextGaussian();
+        }
+        MovieVectorIndex.normalize(v);
+        return v;
+    }
+}
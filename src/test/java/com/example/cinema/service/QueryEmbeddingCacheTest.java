@@ -0,0 +1,161 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests cho QueryEmbeddingCache (canonical form, L1 cache)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests QueryEmbeddingCacheTest
+ */
+@ExtendWith(MockitoExtension.class)
+class QueryEmbeddingCacheTest {
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private SingleFlight singleFlight;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    private QueryEmbeddingCache queryEmbeddingCache;
+
+    @BeforeEach
+    void setUp() {
+        // No L2 region: lookups go L1 → embedding API
+        queryEmbeddingCache = new QueryEmbeddingCache(
+                embeddingService, singleFlight, cacheManager, new AiProperties(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testCanonicalizeFoldsCaseWhitespaceAndPunctuation() {
+        assertEquals("action movie", QueryEmbeddingCache.canonicalize("Action Movies"));
+        assertEquals("action movie", QueryEmbeddingCache.canonicalize("  action   movies!! "));
+        assertEquals("action movie", QueryEmbeddingCache.canonicalize("action movie"));
+        assertEquals("sci fi thriller", QueryEmbeddingCache.canonicalize("Sci-Fi, thrillers?"));
+        assertEquals("marvel movie", QueryEmbeddingCache.canonicalize("Marvel's movies"));
+        assertEquals("marvel movie", QueryEmbeddingCache.canonicalize("Marvel’s movies"));
+    }
+
+    @Test
+    void testCanonicalizeUnicode() {
+        // NFKC folds full-width characters; accented letters are kept
+        assertEquals("action 2024", QueryEmbeddingCache.canonicalize("ＡＣＴＩＯＮ　２０２４"));
+        assertEquals("phim hành động", QueryEmbeddingCache.canonicalize("Phim HÀNH ĐỘNG"));
+    }
+
+    @Test
+    void testCanonicalizeEmpty() {
+        assertEquals("", QueryEmbeddingCache.canonicalize(null));
+        assertEquals("", QueryEmbeddingCache.canonicalize("   "));
+        assertEquals("", QueryEmbeddingCache.canonicalize("?!..."));
+    }
+
+    @Test
+    void testStemPlurals() {
+        assertEquals("comedy", QueryEmbeddingCache.stem("comedies"));
+        assertEquals("movie", QueryEmbeddingCache.stem("movies"));
+        assertEquals("zombie", QueryEmbeddingCache.stem("zombies"));
+        assertEquals("class", QueryEmbeddingCache.stem("classes"));
+        assertEquals("thriller", QueryEmbeddingCache.stem("thrillers"));
+    }
+
+    @Test
+    void testStemLeavesSingularsAlone() {
+        assertEquals("series", QueryEmbeddingCache.stem("series"));
+        assertEquals("species", QueryEmbeddingCache.stem("species"));
+        assertEquals("thriller", QueryEmbeddingCache.stem("thriller"));
+        assertEquals("boss", QueryEmbeddingCache.stem("boss"));
+        assertEquals("virus", QueryEmbeddingCache.stem("virus"));
+        assertEquals("analysis", QueryEmbeddingCache.stem("analysis"));
+        assertEquals("bus", QueryEmbeddingCache.stem("bus"));
+        assertEquals("90s", QueryEmbeddingCache.stem("90s"));
+    }
+
+    @Test
+    void testEquivalentQueriesShareOneEmbedding() {
+        Embedding embedding = Embedding.of(new float[]{0.1f, 0.2f});
+        when(singleFlight.execute(anyString(), any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<Embedding>>getArgument(1).get());
+        when(embeddingService.embedQuery("action movie")).thenReturn(embedding);
+
+        assertSame(embedding, queryEmbeddingCache.get("Action Movies"));
+        assertSame(embedding, queryEmbeddingCache.get("action movie "));
+        assertSame(embedding, queryEmbeddingCache.get("ACTION, movies"));
+
+        verify(embeddingService, times(1)).embedQuery(eq("action movie"));
+        QueryEmbeddingCache.QueryCacheStats stats = queryEmbeddingCache.getStats();
+        assertEquals(2, stats.l1Hits());
+        assertEquals(1, stats.l1Misses());
+        assertEquals(1, stats.l1Size());
+    }
+
+    @Test
+    void testCachedLookupNeverCallsApi() {
+        Embedding embedding = Embedding.of(new float[]{0.1f, 0.2f});
+
+        assertTrue(queryEmbeddingCache.getCached("action movies").isEmpty());
+        assertTrue(queryEmbeddingCache.getCached("  ").isEmpty());
+        verifyNoInteractions(embeddingService, singleFlight);
+
+        when(singleFlight.execute(anyString(), any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<Embedding>>getArgument(1).get());
+        when(embeddingService.embedQuery("action movie")).thenReturn(embedding);
+        queryEmbeddingCache.get("Action Movies");
+
+        assertSame(embedding, queryEmbeddingCache.getCached("action movie").orElseThrow());
+        verify(embeddingService, times(1)).embedQuery(anyString());
+    }
+
+    @Test
+    void testBlankQueryRejected() {
+        assertThrows(IllegalArgumentException.class, () -> queryEmbeddingCache.get("  !? "));
+        verifyNoInteractions(embeddingService, singleFlight);
+    }
+
+    @Test
+    void testLocalLruEvictsLeastRecentlyUsed() {
+        QueryEmbeddingCache.LocalLru lru = new QueryEmbeddingCache.LocalLru(2, 60_000);
+        Embedding a = Embedding.of(new float[]{1f});
+        Embedding b = Embedding.of(new float[]{2f});
+        Embedding c = Embedding.of(new float[]{3f});
+
+        lru.put("a", a);
+        lru.put("b", b);
+        assertSame(a, lru.get("a"));
+        lru.put("c", c);
+
+        assertEquals(2, lru.size());
+        assertSame(a, lru.get("a"));
+        assertNull(lru.get("b"));
+        assertSame(c, lru.get("c"));
+    }
+
+    @Test
+    void testLocalLruExpiresEntries() throws InterruptedException {
+        QueryEmbeddingCache.LocalLru lru = new QueryEmbeddingCache.LocalLru(10, 1);
+        lru.put("a", Embedding.of(new float[]{1f}));
+
+        Thread.sleep(5);
+
+        assertNull(lru.get("a"));
+        assertEquals(0, lru.size());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.cinema.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho SettlementFileReader
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests SettlementFileReaderTest
+ */
+class SettlementFileReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testReadCsv() throws IOException {
+        String csv = """
+                \uFEFFinvoice_number,transaction_id,amount,currency,status,settled_at
+                INV-20260510093000-101,TXN-9001,150000,VND,success,2026-05-10 09:31:12
+
+                INV-20260510093500-102,"TXN-""9002""\",90000.50,VND,fail,2026-05-10T09:40:00
+                """;
+
+        List<SettlementFileReader.SettlementRecord> records = readAll(csv, SettlementFileReader.Format.CSV);
+
+        assertEquals(2, records.size());
+        SettlementFileReader.SettlementRecord first = records.get(0);
+        assertEquals(1, first.rowNumber());
+        assertEquals(101, first.bookingId());
+        assertEquals("TXN-9001", first.transactionId());
+        assertEquals(0, new BigDecimal("150000").compareTo(first.amount()));
+        assertEquals(LocalDateTime.of(2026, 5, 10, 9, 31, 12), first.settledAt());
+        assertTrue(first.isSuccess());
+
+        SettlementFileReader.SettlementRecord second = records.get(1);
+        assertEquals(2, second.rowNumber());
+        assertEquals(102, second.bookingId());
+        assertEquals("TXN-\"9002\"", second.transactionId());
+        assertEquals(LocalDateTime.of(2026, 5, 10, 9, 40), second.settledAt());
+        assertTrue(second.isFailed());
+    }
+
+    @Test
+    void testReadJsonArrayAndNdjson() throws IOException {
+        String array = """
+                [{"invoice_number":"INV-1-7","amount":"1000","status":"cancel","settled_at":null},
+                 {"invoice_number":"8","amount":2000,"status":"CAPTURED"}]
+                """;
+        String ndjson = """
+                {"invoice_number":"INV-1-7","amount":"1000","status":"cancel"}
+                {"invoice_number":"8","amount":2000,"status":"CAPTURED"}
+                """;
+
+        for (String json : List.of(array, ndjson)) {
+            List<SettlementFileReader.SettlementRecord> records = readAll(json, SettlementFileReader.Format.JSON);
+            assertEquals(2, records.size());
+            assertEquals(7, records.get(0).bookingId());
+            assertTrue(records.get(0).isCancelled());
+            assertNull(records.get(0).settledAt());
+            assertEquals(8, records.get(1).bookingId());
+            assertTrue(records.get(1).isSuccess());
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        assertTrue(readAll("", SettlementFileReader.Format.CSV).isEmpty());
+    }
+
+    @Test
+    void testUnsortedFileRejected() {
+        String csv = """
+                invoice_number,amount,status
+                INV-1-5,100,success
+                INV-1-3,100,success
+                """;
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> readAll(csv, SettlementFileReader.Format.CSV));
+        assertTrue(e.getMessage().contains("row 2"));
+    }
+
+    @Test
+    void testDuplicateBookingIdAllowed() throws IOException {
+        String csv = """
+                invoice_number,amount,status
+                INV-1-5,100,success
+                INV-2-5,100,success
+                """;
+
+        assertEquals(2, readAll(csv, SettlementFileReader.Format.CSV).size());
+    }
+
+    @Test
+    void testInvalidRowsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> readAll("""
+                invoice_number,amount
+                ,100
+                """, SettlementFileReader.Format.CSV));
+        assertThrows(IllegalArgumentException.class, () -> readAll("""
+                invoice_number,amount
+                INV-1-abc,100
+                """, SettlementFileReader.Format.CSV));
+        assertThrows(IllegalArgumentException.class, () -> readAll("""
+                invoice_number,amount
+                INV-1-1,12x
+                """, SettlementFileReader.Format.CSV));
+        assertThrows(IllegalArgumentException.class, () -> readAll("""
+                invoice_number,settled_at
+                INV-1-1,10/05/2026
+                """, SettlementFileReader.Format.CSV));
+    }
+
+    @Test
+    void testValidateCountsRecords() throws IOException {
+        String csv = """
+                invoice_number,amount,status
+                INV-1-1,100,success
+                INV-1-2,100,success
+                INV-1-3,100,fail
+                """;
+
+        assertEquals(3, SettlementFileReader.validate(stream(csv), SettlementFileReader.Format.CSV, objectMapper));
+    }
+
+    @Test
+    void testValidateRejectsLateUnsortedRow() {
+        String csv = """
+                invoice_number,amount,status
+                INV-1-1,100,success
+                INV-1-2,100,success
+                INV-1-3,100,success
+                INV-1-1,100,success
+                """;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SettlementFileReader.validate(stream(csv), SettlementFileReader.Format.CSV, objectMapper));
+    }
+
+    @Test
+    void testParseCsvLine() {
+        assertEquals(List.of("a", "b,c", "d\"e", ""), SettlementFileReader.parseCsvLine("a,\"b,c\",\"d\"\"e\","));
+    }
+
+    private List<SettlementFileReader.SettlementRecord> readAll(String content, SettlementFileReader.Format format) throws IOException {
+        List<SettlementFileReader.SettlementRecord> records = new ArrayList<>();
+        try (SettlementFileReader reader = SettlementFileReader.open(stream(content), format, objectMapper)) {
+            reader.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
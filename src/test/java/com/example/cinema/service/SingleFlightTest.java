@@ -0,0 +1,217 @@
+package com.example.cinema.service;
+
+import com.example.cinema.config.AiProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests cho SingleFlight (in-process coalescing, Redis claim)
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests SingleFlightTest
+ */
+@ExtendWith(MockitoExtension.class)
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    private SingleFlight singleFlight;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        AiProperties aiProperties = new AiProperties();
+        aiProperties.setSingleFlightWaitMs(2_000);
+        aiProperties.setSingleFlightPollMs(5);
+        singleFlight = new SingleFlight(redisTemplate, aiProperties, new SimpleMeterRegistry());
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentCallersShareOneExecution() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        List<Future<Object>> results = submitCallers(() -> {
+            calls.incrementAndGet();
+            await(release);
+            return new Object();
+        });
+        awaitJoiners();
+        release.countDown();
+
+        Object first = results.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertSame(first, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.getStats().inFlight());
+        assertEquals(1, singleFlight.getStats().leaders());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void testJoinersReceiveLeaderException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("embedding API down");
+
+        List<Future<Object>> results = submitCallers(() -> {
+            await(release);
+            throw failure;
+        });
+        awaitJoiners();
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(0, singleFlight.getStats().inFlight());
+    }
+
+    @Test
+    void testKeyIsReleasedAfterCompletion() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(1, singleFlight.execute("k", calls::incrementAndGet));
+        assertEquals(2, singleFlight.execute("k", calls::incrementAndGet));
+        assertThrows(IllegalArgumentException.class, () -> singleFlight.execute("k", () -> {
+            throw new IllegalArgumentException();
+        }));
+        assertEquals(3, singleFlight.execute("k", calls::incrementAndGet));
+    }
+
+    @Test
+    void testLeaderReleasesOwnClaimWithScript() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("sf:k"), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertEquals("value", singleFlight.execute("k", () -> "value", () -> null));
+
+        ArgumentCaptor<Object> token = ArgumentCaptor.forClass(Object.class);
+        verify(valueOperations).setIfAbsent(eq("sf:k"), token.capture(), any(Duration.class));
+        verify(redisTemplate).execute(SingleFlight.RELEASE_SCRIPT, List.of("sf:k"), token.getValue());
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void testLeaderReleasesClaimWhenLoaderFails() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("sf:k"), anyString(), any(Duration.class))).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("k", () -> {
+            throw new IllegalStateException();
+        }, () -> null));
+
+        verify(redisTemplate).execute(eq(SingleFlight.RELEASE_SCRIPT), eq(List.of("sf:k")), anyString());
+    }
+
+    @Test
+    void testReleaseFailureIsIgnored() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("sf:k"), anyString(), any(Duration.class))).thenReturn(true);
+        when(redisTemplate.execute(eq(SingleFlight.RELEASE_SCRIPT), anyList(), anyString()))
+                .thenThrow(new IllegalStateException("connection reset"));
+
+        assertEquals("value", singleFlight.execute("k", () -> "value", () -> null));
+    }
+
+    @Test
+    void testWaitsForRemoteLeaderResult() {
+        AtomicInteger lookups = new AtomicInteger();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("sf:k"), anyString(), any(Duration.class))).thenReturn(false);
+        when(redisTemplate.hasKey("sf:k")).thenReturn(true);
+
+        String value = singleFlight.execute("k",
+                () -> fail("loader must not run while another node holds the claim"),
+                () -> lookups.incrementAndGet() < 3 ? null : "remote");
+
+        assertEquals("remote", value);
+        assertEquals(1, singleFlight.getStats().remoteHits());
+        assertEquals(0, singleFlight.getStats().leaders());
+    }
+
+    @Test
+    void testRunsLoaderWhenRemoteLeaderGivesUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("sf:k"), anyString(), any(Duration.class))).thenReturn(false);
+        when(redisTemplate.hasKey("sf:k")).thenReturn(false);
+
+        assertEquals("local", singleFlight.execute("k", () -> "local", () -> null));
+        assertEquals(1, singleFlight.getStats().remoteWaits());
+        assertEquals(1, singleFlight.getStats().leaders());
+    }
+
+    @Test
+    void testRunsLocallyWhenRedisUnavailable() {
+        when(redisTemplate.opsForValue()).thenThrow(new IllegalStateException("Redis down"));
+
+        assertEquals("local", singleFlight.execute("k", () -> "local", () -> null));
+        assertEquals(1, singleFlight.getStats().leaders());
+    }
+
+    private List<Future<Object>> submitCallers(Callable<Object> loader) {
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("k", () -> {
+                try {
+                    return loader.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            })));
+        }
+        return results;
+    }
+
+    private void awaitJoiners() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (singleFlight.getStats().localJoins() < CALLERS - 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "callers did not join the running load");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.cinema.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests cho UserGenreBitmapIndex
+ *
+ * Chạy tests:
+ *   ./gradlew test --tests UserGenreBitmapIndexTest
+ */
+class UserGenreBitmapIndexTest {
+
+    @Test
+    void testSimilarCountsCommonGenres() {
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(10);
+        index.setUser(1, List.of("Action", "Comedy", "Drama"));
+        index.setUser(2, List.of("action", "comedy", "drama", "horror"));
+        index.setUser(3, List.of("Action", "Horror"));
+        index.setUser(4, List.of("Romance"));
+        index.setUser(5, List.of(" COMEDY ", "Drama"));
+
+        assertEquals(List.of(similar(2, 3), similar(5, 2), similar(3, 1)), index.similar(1, 1, 10));
+        assertEquals(List.of(similar(2, 3), similar(5, 2)), index.similar(1, 2, 10));
+        assertEquals(List.of(similar(2, 3)), index.similar(1, 3, 10));
+        assertTrue(index.similar(1, 4, 10).isEmpty());
+        assertTrue(index.similar(4, 1, 10).isEmpty());
+    }
+
+    @Test
+    void testLimitKeepsStrongestMatches() {
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(10);
+        index.setUser(1, List.of("a", "b", "c"));
+        index.setUser(2, List.of("a"));
+        index.setUser(3, List.of("a", "b"));
+        index.setUser(4, List.of("b"));
+        index.setUser(5, List.of("a", "b", "c"));
+        index.setUser(6, List.of("c"));
+
+        assertEquals(List.of(similar(5, 3), similar(3, 2)), index.similar(1, 1, 2));
+        // Ties at the cut-off are taken in index order
+        List<UserGenrePreferenceService.SimilarUser> three = index.similar(1, 1, 3);
+        assertEquals(List.of(similar(5, 3), similar(3, 2), similar(2, 1)), three);
+        assertTrue(index.similar(1, 1, 0).isEmpty());
+    }
+
+    @Test
+    void testUnknownAndClearedUsers() {
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(10);
+        index.setUser(1, List.of("Action"));
+        index.setUser(2, List.of("Action"));
+        index.setUser(3, List.of());
+
+        assertTrue(index.similar(99, 1, 10).isEmpty());
+        assertTrue(index.similar(3, 1, 10).isEmpty());
+        assertEquals(2, index.stats().users());
+
+        index.setUser(2, List.of());
+
+        assertTrue(index.similar(1, 1, 10).isEmpty());
+        assertTrue(index.similar(2, 1, 10).isEmpty());
+    }
+
+    @Test
+    void testUpdateReplacesGenres() {
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(10);
+        index.setUser(1, List.of("Action", "Comedy"));
+        index.setUser(2, List.of("Horror"));
+
+        index.setUser(2, Arrays.asList("Action", "Comedy", null, " "));
+
+        assertEquals(List.of(similar(2, 2)), index.similar(1, 1, 10));
+        // Genre bits are never reassigned, "horror" keeps its slot
+        assertEquals(3, index.stats().genres());
+    }
+
+    @Test
+    void testOverflowPastSixtyFourGenres() {
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(10);
+        for (int g = 0; g < UserGenreBitmapIndex.MAX_GENRES; g++) {
+            index.setUser(g + 1, List.of("genre-" + g));
+        }
+        assertFalse(index.isOverflowed());
+
+        index.setUser(100, List.of("genre-64"));
+
+        assertTrue(index.isOverflowed());
+        assertEquals(UserGenreBitmapIndex.MAX_GENRES, index.stats().genres());
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(5);
+        int users = 5_000;
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(16);
+        Map<Long, Set<String>> liked = new LinkedHashMap<>();
+        for (long userId = 1; userId <= users; userId++) {
+            Set<String> genres = new HashSet<>();
+            int count = random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                genres.add("genre-" + random.nextInt(20));
+            }
+            liked.put(userId, genres);
+            index.setUser(userId, genres);
+        }
+
+        for (long userId = 1; userId <= 50; userId++) {
+            for (int minCommon : new int[]{1, 2, 3}) {
+                Map<Long, Long> expected = new HashMap<>();
+                Set<String> mine = liked.get(userId);
+                for (Map.Entry<Long, Set<String>> other : liked.entrySet()) {
+                    if (other.getKey() == userId || mine.isEmpty()) {
+                        continue;
+                    }
+                    long common = other.getValue().stream().filter(mine::contains).count();
+                    if (common >= minCommon) {
+                        expected.put(other.getKey(), common);
+                    }
+                }
+
+                List<UserGenrePreferenceService.SimilarUser> unbounded = index.similar(userId, minCommon, Integer.MAX_VALUE);
+                Map<Long, Long> actual = new HashMap<>();
+                unbounded.forEach(s -> actual.put(s.userId(), s.commonGenres()));
+                assertEquals(expected, actual, "user " + userId + " minCommon " + minCommon);
+
+                // Bounded: the top 20 by common genres, never a weaker match ahead of a stronger one
+                List<UserGenrePreferenceService.SimilarUser> top = index.similar(userId, minCommon, 20);
+                assertEquals(Math.min(20, expected.size()), top.size());
+                long weakestKept = top.isEmpty() ? Long.MAX_VALUE : top.get(top.size() - 1).commonGenres();
+                long strongerDropped = expected.entrySet().stream()
+                        .filter(e -> top.stream().noneMatch(s -> s.userId().equals(e.getKey())))
+                        .filter(e -> e.getValue() > weakestKept)
+                        .count();
+                assertEquals(0, strongerDropped);
+            }
+        }
+    }
+
+    private static UserGenrePreferenceService.SimilarUser similar(long userId, long common) {
+        return new UserGenrePreferenceService.SimilarUser(userId, common);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.cinema.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * User Similarity Benchmark - UserGenreBitmapIndex on synthetic users.
+ *
+ * Zipf-popular genres, 1-5 liked genres per user; build time, memory and query latency at the
+ * requested user count. Exactness against a brute-force scan is covered by UserGenreBitmapIndexTest.
+ * Excluded from the regular test run:
+ *   ./gradlew benchmark --tests UserSimilarityBenchmark
+ */
+@Tag("benchmark")
+@Slf4j
+class UserSimilarityBenchmark {
+
+    @Test
+    void buildAndQueryMillionUsers() {
+        BenchmarkReport report = run(1_000_000, 20, 200, 3, 100);
+        assertTrue(report.averageResults() > 0);
+    }
+
+    BenchmarkReport run(int users, int genres, int queries, int minCommonGenres, int limit) {
+        SplittableRandom random = new SplittableRandom(13);
+        String[] genreNames = new String[genres];
+        for (int g = 0; g < genres; g++) {
+            genreNames[g] = "genre-" + g;
+        }
+        double[] popularityCdf = zipfCdf(genres);
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        long started = System.nanoTime();
+        UserGenreBitmapIndex index = new UserGenreBitmapIndex(users);
+        List<String> liked = new ArrayList<>();
+        for (long userId = 1; userId <= users; userId++) {
+            liked.clear();
+            int count = 1 + random.nextInt(5);
+            for (int i = 0; i < count; i++) {
+                int g = Arrays.binarySearch(popularityCdf, random.nextDouble());
+                liked.add(genreNames[Math.min(g < 0 ? -g - 1 : g, genres - 1)]);
+            }
+            index.setUser(userId, liked);
+        }
+        long buildMs = (System.nanoTime() - started) / 1_000_000;
+
+        System.gc();
+        long heapRetained = runtime.totalMemory() - runtime.freeMemory() - heapBefore;
+
+        long results = 0;
+        started = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            results += index.similar(1 + random.nextInt(users), minCommonGenres, limit).size();
+        }
+        double indexQueryMillis = (System.nanoTime() - started) / 1_000_000.0 / Math.max(queries, 1);
+
+        BenchmarkReport report = new BenchmarkReport(users, genres, index.stats(), buildMs, heapRetained,
+                queries, indexQueryMillis, queries > 0 ? (double) results / queries : 0);
+        log.info("User similarity benchmark: {}", report);
+        return report;
+    }
+
+    private static double[] zipfCdf(int n) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 1; k <= n; k++) {
+            sum += 1.0 / k;
+            cdf[k - 1] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    record BenchmarkReport(
+            int users,
+            int genres,
+            UserGenreBitmapIndex.IndexStats index,
+            long buildMs,
+            long heapRetainedBytes,
+            int queries,
+            double indexQueryMillis,
+            double averageResults
+    ) {}
+}
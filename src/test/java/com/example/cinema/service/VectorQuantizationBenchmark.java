@@ -0,0 +1,185 @@
+package com.example.cinema.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Vector Quantization Benchmark - recall@K, latency and memory of the int8 / binary first pass
+ * with exact re-ranking, against the full-precision brute-force scan MovieVectorIndex uses today.
+ *
+ * Data: synthetic clustered unit vectors. Re-ranking here reads floats from memory, so the
+ * measured re-rank time excludes the vector_store round-trip the index pays in quantized mode.
+ * Excluded from the regular test run:
+ *   ./gradlew benchmark --tests VectorQuantizationBenchmark
+ */
+@Tag("benchmark")
+@Slf4j
+class VectorQuantizationBenchmark {
+
+    @Test
+    void recallAndLatencyPerMode() {
+        BenchmarkReport report = run(5_000, 1536, 200, 10, 4);
+        for (ModeResult result : report.results()) {
+            assertTrue(result.recallAtK() > 0, result.mode());
+        }
+    }
+
+    BenchmarkReport run(int vectors, int dims, int queries, int k, int rerankMultiplier) {
+        SplittableRandom random = new SplittableRandom(11);
+        float[][] data = syntheticVectors(random, vectors, dims);
+        if (data.length <= k) {
+            throw new IllegalStateException("Need more than k vectors, have " + data.length);
+        }
+        int n = data.length;
+        int d = data[0].length;
+        float[] matrix = new float[n * d];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(data[i], 0, matrix, i * d, d);
+        }
+
+        float[][] queryVectors = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            float[] query = Arrays.copyOf(data[random.nextInt(n)], d);
+            for (int i = 0; i < d; i++) {
+                query[i] += (float) (random.nextGaussian() * 0.02);
+            }
+            MovieVectorIndex.normalize(query);
+            queryVectors[q] = query;
+        }
+
+        // Ground truth + full-precision latency
+        int[][] truth = new int[queries][];
+        long started = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            float[] query = queryVectors[q];
+            truth[q] = topRows(n, k, row -> MovieVectorIndex.dot(query, matrix, row * d, d));
+        }
+        double exactMicros = (System.nanoTime() - started) / 1_000.0 / queries;
+
+        List<ModeResult> results = new ArrayList<>();
+        results.add(new ModeResult("NONE", (long) d * Float.BYTES, 1.0, exactMicros, 0));
+        for (QuantizedVectors.Mode mode : QuantizedVectors.Mode.values()) {
+            results.add(measure(mode, data, matrix, queryVectors, truth, k, k * Math.max(rerankMultiplier, 1)));
+        }
+
+        BenchmarkReport report = new BenchmarkReport("synthetic", n, d, queries, k,
+                rerankMultiplier, results);
+        log.info("Vector quantization benchmark: {}", report);
+        return report;
+    }
+
+    private static ModeResult measure(QuantizedVectors.Mode mode, float[][] data, float[] matrix,
+                                      float[][] queries, int[][] truth, int k, int candidates) {
+        int n = data.length;
+        int d = data[0].length;
+        QuantizedVectors codes = new QuantizedVectors(mode, d, n);
+        for (int i = 0; i < n; i++) {
+            codes.set(i, data[i]);
+        }
+
+        long firstPassNanos = 0;
+        long rerankNanos = 0;
+        double recallSum = 0;
+        for (int q = 0; q < queries.length; q++) {
+            float[] query = queries[q];
+            long started = System.nanoTime();
+            QuantizedVectors.Prepared prepared = codes.prepare(query);
+            int[] candidateRows = topRows(n, Math.min(candidates, n), row -> codes.score(prepared, row));
+            long afterFirstPass = System.nanoTime();
+
+            int[] order = Arrays.copyOf(candidateRows, candidateRows.length);
+            float[] exact = new float[order.length];
+            for (int i = 0; i < order.length; i++) {
+                exact[i] = MovieVectorIndex.dot(query, matrix, order[i] * d, d);
+            }
+            int[] reranked = topRows(order.length, k, i -> exact[i]);
+            long finished = System.nanoTime();
+
+            firstPassNanos += afterFirstPass - started;
+            rerankNanos += finished - afterFirstPass;
+
+            Set<Integer> expected = new HashSet<>();
+            for (int row : truth[q]) {
+                expected.add(row);
+            }
+            int hits = 0;
+            for (int i : reranked) {
+                if (expected.contains(order[i])) {
+                    hits++;
+                }
+            }
+            recallSum += (double) hits / truth[q].length;
+        }
+        return new ModeResult(mode.name(), codes.bytesPerVector(), recallSum / queries.length,
+                firstPassNanos / 1_000.0 / queries.length, rerankNanos / 1_000.0 / queries.length);
+    }
+
+    private interface RowScore {
+        float score(int row);
+    }
+
+    private static int[] topRows(int n, int k, RowScore scorer) {
+        // Min-heap of {float bits of score, row}
+        PriorityQueue<long[]> heap = new PriorityQueue<>(Comparator.comparingDouble(e -> Float.intBitsToFloat((int) e[0])));
+        for (int row = 0; row < n; row++) {
+            float score = scorer.score(row);
+            if (heap.size() < k) {
+                heap.add(new long[]{Float.floatToIntBits(score), row});
+            } else if (score > Float.intBitsToFloat((int) heap.peek()[0])) {
+                heap.poll();
+                heap.add(new long[]{Float.floatToIntBits(score), row});
+            }
+        }
+        int[] rows = new int[heap.size()];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = (int) heap.poll()[1];
+        }
+        return rows;
+    }
+
+    /**
+     * Unit vectors around a few hundred random centroids, roughly like genre/topic clusters.
+     */
+    private static float[][] syntheticVectors(SplittableRandom random, int n, int dims) {
+        int clusters = Math.max(8, n / 50);
+        float[][] centroids = new float[clusters][dims];
+        for (float[] centroid : centroids) {
+            for (int i = 0; i < dims; i++) {
+                centroid[i] = (float) random.nextGaussian();
+            }
+            MovieVectorIndex.normalize(centroid);
+        }
+        float[][] data = new float[n][dims];
+        for (int r = 0; r < n; r++) {
+            float[] centroid = centroids[random.nextInt(clusters)];
+            for (int i = 0; i < dims; i++) {
+                data[r][i] = centroid[i] + (float) (random.nextGaussian() * 0.6 / Math.sqrt(dims) * 4);
+            }
+            MovieVectorIndex.normalize(data[r]);
+        }
+        return data;
+    }
+
+    record ModeResult(
+            String mode,
+            long bytesPerVector,
+            double recallAtK,
+            double firstPassMicros,
+            double rerankMicros
+    ) {}
+
+    record BenchmarkReport(
+            String data,
+            int vectors,
+            int dimensions,
+            int queries,
+            int k,
+            int rerankMultiplier,
+            List<ModeResult> results
+    ) {}
+}